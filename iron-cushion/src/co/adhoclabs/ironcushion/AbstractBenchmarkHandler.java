@@ -2,40 +2,113 @@ package co.adhoclabs.ironcushion;
 
 import java.util.concurrent.CountDownLatch;
 
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelFuture;
-import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 
 /**
- * Abstract superclass for handlers used in the benchmark.
+ * Abstract superclass for handlers used in the benchmark. A handler performs
+ * all operations of one connection, and if its channel closes before they are
+ * completed, it continues with the next operation on a new channel. Once all
+ * operations are completed, the channel is left open for the next step.
  * 
  * @author Michael Parker (michael.g.parker@gmail.com)
  */
 public abstract class AbstractBenchmarkHandler extends SimpleChannelUpstreamHandler {
+	protected final int connectionNum;
+	protected final Reconnector reconnector;
 	protected final CountDownLatch countDownLatch;
-
-	protected AbstractBenchmarkHandler(CountDownLatch countDownLatch) {
+	
+	private boolean finished;
+	private int numConsecutiveFailures;
+	
+	protected AbstractBenchmarkHandler(int connectionNum, Reconnector reconnector,
+			CountDownLatch countDownLatch) {
+		this.connectionNum = connectionNum;
+		this.reconnector = reconnector;
 		this.countDownLatch = countDownLatch;
+		
+		this.finished = false;
+		this.numConsecutiveFailures = 0;
+	}
+	
+	/**
+	 * @return the statistics for this connection
+	 */
+	protected abstract AbstractConnectionStatistics getConnectionStatistics();
+	
+	/**
+	 * Fails all operations that were sent but whose responses were not received.
+	 */
+	protected abstract void failSentOperations();
+	
+	/**
+	 * @return {@code true} if operations remain that were not sent
+	 */
+	protected abstract boolean hasRemainingOperations();
+	
+	/**
+	 * Fails all operations that were not sent.
+	 */
+	protected abstract void failRemainingOperations();
+	
+	/**
+	 * Called when a response is received, so that the backoff after the next failure
+	 * starts from its minimum again.
+	 */
+	protected void receivedResponse() {
+		numConsecutiveFailures = 0;
+	}
+	
+	/**
+	 * @return {@code true} if all operations are completed
+	 */
+	protected boolean isFinished() {
+		return finished;
 	}
 	
-	protected void close(Channel channel) {
-		ChannelFuture channelFuture = channel.close();
-		channelFuture.addListener(new ChannelFutureListener() {
-			@Override
-			public void operationComplete(ChannelFuture channelFuture) throws Exception {
-				// Allow the main thread to continue.
-				countDownLatch.countDown();
-			}
-		});
+	/**
+	 * Called once all operations are completed. The channel remains open so that the
+	 * handler for the next step can reuse it.
+	 */
+	protected void finish() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		getConnectionStatistics().stop();
+		// Allow the main thread to continue.
+		countDownLatch.countDown();
 	}
 	
 	@Override
 	public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
-		e.getCause().printStackTrace();
+		System.err.println("Connection " + connectionNum + " failed: " + e.getCause());
+		
+		// Any operations are failed once the channel is closed.
+		e.getChannel().close();
+	}
+	
+	@Override
+	public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+		if (finished) {
+			// All operations were completed.
+			return;
+		}
 		
-		close(e.getChannel());
+		AbstractConnectionStatistics connectionStatistics = getConnectionStatistics();
+		connectionStatistics.connectionError();
+		failSentOperations();
+		numConsecutiveFailures++;
+		if (hasRemainingOperations() && reconnector.reconnect(
+				connectionNum, connectionStatistics.getDatabaseNode(), numConsecutiveFailures)) {
+			connectionStatistics.startReconnect();
+			connectionStatistics.reconnected();
+		} else {
+			// Give up on this connection.
+			failRemainingOperations();
+			finish();
+		}
 	}
 }
@@ -1,7 +1,9 @@
 package co.adhoclabs.ironcushion;
 
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
+import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 
 /**
@@ -11,12 +13,54 @@ import org.jboss.netty.channel.ChannelPipelineFactory;
  */
 public abstract class AbstractBenchmarkPipelineFactory implements ChannelPipelineFactory {
 	protected final CountDownLatch countDownLatch;
+	protected Reconnector reconnector;
+	
+	private int nextConnectionNum;
 
 	protected AbstractBenchmarkPipelineFactory(int numConnections) {
 		this.countDownLatch = new CountDownLatch(numConnections);
+		
+		nextConnectionNum = 0;
+	}
+	
+	/**
+	 * @param reconnector the reconnector for connections that fail
+	 */
+	public void setReconnector(Reconnector reconnector) {
+		this.reconnector = reconnector;
+	}
+	
+	@Override
+	public ChannelPipeline getPipeline() throws Exception {
+		return getPipeline(nextConnectionNum++);
 	}
 	
+	/**
+	 * Returns a new pipeline for the given connection. If the connection was
+	 * established before, then the pipeline reuses its handler, so that the
+	 * connection continues with its next operation.
+	 * 
+	 * @param connectionNum the number of the connection
+	 * @return the pipeline
+	 * @throws Exception if the pipeline could not be created
+	 */
+	public abstract ChannelPipeline getPipeline(int connectionNum) throws Exception;
+	
+	/**
+	 * Returns the handler for the given connection, creating it if needed. This
+	 * handler replaces the handler of an open channel from the previous step.
+	 * 
+	 * @param connectionNum the number of the connection
+	 * @return the handler
+	 */
+	public abstract AbstractBenchmarkHandler getHandler(int connectionNum);
+	
 	public CountDownLatch getCountDownLatch() {
 		return countDownLatch;
 	}
+	
+	/**
+	 * @return the statistics used by connections
+	 */
+	public abstract List<? extends AbstractConnectionStatistics> getAllConnectionStatistics();
 }
@@ -8,16 +8,45 @@ package co.adhoclabs.ironcushion;
 public abstract class AbstractConnectionStatistics {
 	private long jsonBytesSent;
 	private long jsonBytesReceived;
+	private long uncompressedJsonBytesSent;
+	private long compressedJsonBytesSent;
+	private long compressedJsonBytesReceived;
+	private long decompressedJsonBytesReceived;
+	private int numFailedOperations;
+	private int numConnectionErrors;
+	private int numReconnects;
+	private boolean warmingUp;
+	private long warmUpEndTime;
+	private boolean hasDeadline;
+	private long deadline;
+	private DatabaseNode databaseNode;
 	
 	protected final Timer localProcessingTimer;
 	protected final Timer sendDataTimer;
+	protected final Timer reconnectTimer;
+	protected final Timer compressionTimer;
+	protected final Timer decompressionTimer;
 
 	protected AbstractConnectionStatistics() {
 		jsonBytesSent = 0;
 		jsonBytesReceived = 0;
+		uncompressedJsonBytesSent = 0;
+		compressedJsonBytesSent = 0;
+		compressedJsonBytesReceived = 0;
+		decompressedJsonBytesReceived = 0;
+		numFailedOperations = 0;
+		numConnectionErrors = 0;
+		numReconnects = 0;
+		warmingUp = false;
+		warmUpEndTime = 0;
+		hasDeadline = false;
+		deadline = 0;
 		
 		localProcessingTimer = new Timer();
 		sendDataTimer = new Timer();
+		reconnectTimer = new Timer();
+		compressionTimer = new Timer();
+		decompressionTimer = new Timer();
 	}
 
 	/**
@@ -52,6 +81,228 @@ public abstract class AbstractConnectionStatistics {
 		return jsonBytesReceived;
 	}
 	
+	/**
+	 * Records a compressed body of a request. The compression time is also part of
+	 * the time of whichever timer is running.
+	 * 
+	 * @param numBytes the number of bytes of JSON before compressing
+	 * @param numCompressedBytes the number of bytes after compressing
+	 * @param elapsedTime the number of nanoseconds spent compressing
+	 */
+	public void compressedJsonBytes(long numBytes, long numCompressedBytes, long elapsedTime) {
+		uncompressedJsonBytesSent += numBytes;
+		compressedJsonBytesSent += numCompressedBytes;
+		compressionTimer.add(elapsedTime);
+	}
+	
+	/**
+	 * @return the total number of bytes of JSON in compressed requests before compressing
+	 */
+	public long getUncompressedJsonBytesSent() {
+		return uncompressedJsonBytesSent;
+	}
+	
+	/**
+	 * @return the total number of bytes of compressed requests after compressing
+	 */
+	public long getCompressedJsonBytesSent() {
+		return compressedJsonBytesSent;
+	}
+	
+	/**
+	 * @return the number of milliseconds spent compressing requests
+	 */
+	public long getCompressionTimeMillis() {
+		return compressionTimer.getTotalTimeMillis();
+	}
+	
+	/**
+	 * Records a part of a compressed response. The decompression time is also part
+	 * of the time of whichever timer is running.
+	 * 
+	 * @param numCompressedBytes the number of bytes before decompressing
+	 * @param numBytes the number of bytes of JSON after decompressing
+	 * @param elapsedTime the number of nanoseconds spent decompressing
+	 */
+	public void decompressedJsonBytes(long numCompressedBytes, long numBytes, long elapsedTime) {
+		compressedJsonBytesReceived += numCompressedBytes;
+		decompressedJsonBytesReceived += numBytes;
+		decompressionTimer.add(elapsedTime);
+	}
+	
+	/**
+	 * @return the total number of bytes of compressed responses before decompressing
+	 */
+	public long getCompressedJsonBytesReceived() {
+		return compressedJsonBytesReceived;
+	}
+	
+	/**
+	 * @return the total number of bytes of JSON in compressed responses after decompressing
+	 */
+	public long getDecompressedJsonBytesReceived() {
+		return decompressedJsonBytesReceived;
+	}
+	
+	/**
+	 * @return the number of milliseconds spent decompressing responses
+	 */
+	public long getDecompressionTimeMillis() {
+		return decompressionTimer.getTotalTimeMillis();
+	}
+	
+	/**
+	 * Called when an operation fails, either because its response has an error status
+	 * or because the connection failed before its response was received.
+	 * 
+	 * @param numOperations the number of operations that failed
+	 */
+	public void failedOperations(int numOperations) {
+		numFailedOperations += numOperations;
+	}
+	
+	/**
+	 * @return the number of operations that failed
+	 */
+	public int getNumFailedOperations() {
+		return numFailedOperations;
+	}
+	
+	/**
+	 * Called when the connection closes before completing all of its operations.
+	 */
+	public void connectionError() {
+		numConnectionErrors++;
+	}
+	
+	/**
+	 * @return the number of times the connection closed before completing all of
+	 *         its operations
+	 */
+	public int getNumConnectionErrors() {
+		return numConnectionErrors;
+	}
+	
+	/**
+	 * Called when the connection is re-established after an error.
+	 */
+	public void reconnected() {
+		numReconnects++;
+	}
+	
+	/**
+	 * @return the number of times the connection was re-established
+	 */
+	public int getNumReconnects() {
+		return numReconnects;
+	}
+	
+	/**
+	 * @param databaseNode the database node that the connection sends requests to
+	 */
+	public void setDatabaseNode(DatabaseNode databaseNode) {
+		this.databaseNode = databaseNode;
+	}
+	
+	/**
+	 * @return the database node that the connection sends requests to
+	 */
+	public DatabaseNode getDatabaseNode() {
+		return databaseNode;
+	}
+	
+	/**
+	 * Starts a warm-up that ends at the given time. Operations completed before
+	 * then are performed, but everything recorded for them is discarded.
+	 * 
+	 * @param warmUpEndTime the time returned by {@link System#nanoTime()} when the
+	 *        warm-up ends
+	 */
+	public void startWarmUp(long warmUpEndTime) {
+		this.warmingUp = true;
+		this.warmUpEndTime = warmUpEndTime;
+	}
+	
+	/**
+	 * Called when a response is received. If the warm-up has ended, then everything
+	 * recorded before its end is discarded.
+	 */
+	public void endWarmUpIfElapsed() {
+		if (warmingUp && (System.nanoTime() - warmUpEndTime >= 0)) {
+			endWarmUp();
+		}
+	}
+	
+	/**
+	 * Ends the warm-up if it has not already ended, discarding everything recorded
+	 * before its end. This must be called once the connection has finished, in case
+	 * it finished before the warm-up ended.
+	 */
+	public void endWarmUp() {
+		if (warmingUp) {
+			warmingUp = false;
+			long currentTime = System.nanoTime();
+			reset((currentTime - warmUpEndTime < 0) ? currentTime : warmUpEndTime);
+		}
+	}
+	
+	/**
+	 * Sets the time after which the connection sends no more operations, and after
+	 * which any completed operations are excluded from the statistics.
+	 * 
+	 * @param deadline the time returned by {@link System#nanoTime()} when the
+	 *        connection stops
+	 */
+	public void setDeadline(long deadline) {
+		this.hasDeadline = true;
+		this.deadline = deadline;
+	}
+	
+	/**
+	 * @return {@code true} if the connection runs until a deadline instead of
+	 *         performing a fixed number of operations
+	 */
+	public boolean hasDeadline() {
+		return hasDeadline;
+	}
+	
+	/**
+	 * @param time the time returned by {@link System#nanoTime()}
+	 * @return {@code true} if the given time is after the deadline
+	 */
+	public boolean isPastDeadline(long time) {
+		return hasDeadline && (time - deadline >= 0);
+	}
+	
+	/**
+	 * Discards everything recorded before the given time.
+	 * 
+	 * @param resetTime the time returned by {@link System#nanoTime()} to reset to
+	 */
+	protected void reset(long resetTime) {
+		jsonBytesSent = 0;
+		jsonBytesReceived = 0;
+		uncompressedJsonBytesSent = 0;
+		compressedJsonBytesSent = 0;
+		compressedJsonBytesReceived = 0;
+		decompressedJsonBytesReceived = 0;
+		numFailedOperations = 0;
+		numConnectionErrors = 0;
+		numReconnects = 0;
+		localProcessingTimer.reset(resetTime);
+		sendDataTimer.reset(resetTime);
+		reconnectTimer.reset(resetTime);
+		compressionTimer.reset(resetTime);
+		decompressionTimer.reset(resetTime);
+	}
+	
+	/**
+	 * Adds the latencies of all completed operations to the given histogram.
+	 * 
+	 * @param histogram the histogram to add to
+	 */
+	public abstract void addLatencies(LatencyHistogram histogram);
+	
 	/**
 	 * Stops whichever timer is running.
 	 */
@@ -81,6 +332,18 @@ public abstract class AbstractConnectionStatistics {
 		return sendDataTimer.getTotalTimeMillis();
 	}
 	
+	/**
+	 * Starts the timer for waiting to re-establish the connection.
+	 */
+	public abstract void startReconnect();
+	
+	/**
+	 * @return the number of milliseconds spent waiting to re-establish the connection
+	 */
+	public long getReconnectTimeMillis() {
+		return reconnectTimer.getTotalTimeMillis();
+	}
+	
 	/**
 	 * @return the total number of milliseconds spent
 	 */
@@ -6,14 +6,24 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import co.adhoclabs.ironcushion.BenchmarkResults.BulkInsertBenchmarkResults;
 import co.adhoclabs.ironcushion.BenchmarkResults.CrudBenchmarkResults;
+import co.adhoclabs.ironcushion.BenchmarkResults.ViewIndexBenchmarkResults;
+import co.adhoclabs.ironcushion.BenchmarkResults.ViewQueryBenchmarkResults;
 import co.adhoclabs.ironcushion.bulkinsert.BulkInsertConnectionStatistics;
+import co.adhoclabs.ironcushion.bulkinsert.BulkInsertCorpus;
 import co.adhoclabs.ironcushion.bulkinsert.BulkInsertDocumentGenerator;
+import co.adhoclabs.ironcushion.bulkinsert.BulkInsertTemplatePool;
 import co.adhoclabs.ironcushion.crud.CrudConnectionStatistics;
 import co.adhoclabs.ironcushion.crud.CrudOperations;
 import co.adhoclabs.ironcushion.crud.CrudOperations.CrudOperationCounts;
+import co.adhoclabs.ironcushion.crud.KeyChooser;
+import co.adhoclabs.ironcushion.view.ViewConnectionStatistics;
+import co.adhoclabs.ironcushion.view.ViewDesign;
+import co.adhoclabs.ironcushion.view.ViewQueries;
 
 /**
  * The Iron Cushion benchmark for CouchDB.
@@ -21,9 +31,55 @@ import co.adhoclabs.ironcushion.crud.CrudOperations.CrudOperationCounts;
  * @author Michael Parker (michael.g.parker@gmail.com)
  */
 public class Benchmark {
-	private static void performBulkInserts(ParsedArguments parsedArguments,
-			DocumentSchema schema, HttpReactor httpReactor, String[] words,
-			Random rng) throws BenchmarkException {
+	private static List<BulkInsertDocumentGenerator> createBulkInsertDocumentGenerators(
+			ParsedArguments parsedArguments, DocumentSchema schema, DocumentIdGenerator documentIdGenerator,
+			String[] words, Random rng, BulkInsertCorpus corpus, ExecutorService producers,
+			DirectBufferPool directBufferPool) {
+		List<BulkInsertDocumentGenerator> allBulkInsertDocumentGenerators = new ArrayList<BulkInsertDocumentGenerator>(
+				parsedArguments.numConnections);
+		BulkInsertTemplatePool templatePool = null;
+		for (int i = 0; i < parsedArguments.numConnections; ++i) {
+			// Create the value generator even if replaying, so that later values are the same.
+			ValueGenerator valueGenerator = new ValueGenerator(words, rng);
+			BulkInsertDocumentGenerator bulkInsertDocumentGenerator = null;
+			if (corpus != null) {
+				bulkInsertDocumentGenerator = corpus.getGenerator(i);
+			} else if (parsedArguments.numBulkInsertTemplates > 0) {
+				if (templatePool == null) {
+					// Generate the templates from the values of the first connection.
+					templatePool = new BulkInsertTemplatePool(schema, documentIdGenerator, valueGenerator,
+							parsedArguments.numBulkInsertTemplates,
+							parsedArguments.numDocumentsPerBulkInsert);
+					System.out.println("Generated " + templatePool.getNumTemplates() + " bulk insert templates of " +
+							templatePool.getNumTemplateBytes() + " bytes");
+				}
+				bulkInsertDocumentGenerator = templatePool.getGenerator(i,
+						parsedArguments.numBulkInsertOperations);
+			} else if (parsedArguments.durationSecs > 0) {
+				bulkInsertDocumentGenerator = BulkInsertDocumentGenerator.unbounded(
+						schema, documentIdGenerator, valueGenerator, i,
+						parsedArguments.numConnections,
+						parsedArguments.numDocumentsPerBulkInsert);
+			} else {
+				bulkInsertDocumentGenerator = BulkInsertDocumentGenerator.onDemand(
+						schema, documentIdGenerator, valueGenerator, i,
+						parsedArguments.numDocumentsPerBulkInsert,
+						parsedArguments.numBulkInsertOperations);
+			}
+			if (producers != null) {
+				bulkInsertDocumentGenerator = BulkInsertDocumentGenerator.aheadOfTime(
+						bulkInsertDocumentGenerator, producers,
+						parsedArguments.numBulkInsertsProducedAhead, directBufferPool);
+			}
+			allBulkInsertDocumentGenerators.add(bulkInsertDocumentGenerator);
+		}
+		return allBulkInsertDocumentGenerators;
+	}
+	
+	private static List<BulkInsertDocumentGenerator> performBulkInserts(ParsedArguments parsedArguments,
+			DocumentSchema schema, DocumentIdGenerator documentIdGenerator, RevisionRegistry revisionRegistry,
+			HttpReactor httpReactor, String[] words, Random rng, BulkInsertCorpus corpus)
+			throws BenchmarkException {
 		
 		// Create the bulk insert path.
 		StringBuilder sb = new StringBuilder();
@@ -31,52 +87,162 @@ public class Benchmark {
 		sb.append('/').append("_bulk_docs");
 		String bulkInsertPath = sb.toString();
 
-		List<BulkInsertDocumentGenerator> allBulkInsertDocumentGenerators = new ArrayList<BulkInsertDocumentGenerator>(
-				parsedArguments.numConnections);
-		for (int i = 0; i < parsedArguments.numConnections; ++i) {
-			BulkInsertDocumentGenerator bulkInsertDocumentGenerator = BulkInsertDocumentGenerator.onDemand(
-					schema, new ValueGenerator(words, rng), i,
+		ExecutorService producers = null;
+		if (parsedArguments.numBulkInsertsProducedAhead > 0) {
+			// Generate documents on all cores, separately from the event loop.
+			producers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					new NamedThreadFactory("iron-cushion-producer"));
+		}
+		List<BulkInsertDocumentGenerator> allBulkInsertDocumentGenerators = null;
+		List<BulkInsertConnectionStatistics> allBulkInsertConnectionStatistics = null;
+		try {
+			// Generators produced ahead of time start producing once created.
+			allBulkInsertDocumentGenerators = createBulkInsertDocumentGenerators(
+					parsedArguments, schema, documentIdGenerator, words, rng, corpus, producers,
+					httpReactor.getDirectBufferPool());
+			
+			// Perform the bulk insert operations.
+			System.out.println("Starting bulk insert benchmark...");
+			allBulkInsertConnectionStatistics = httpReactor.performBulkInserts(
+					allBulkInsertDocumentGenerators, bulkInsertPath,
+					parsedArguments.numDocumentsPerBulkInsertChunk,
 					parsedArguments.numDocumentsPerBulkInsert,
-					parsedArguments.numBulkInsertOperations);
-			allBulkInsertDocumentGenerators.add(bulkInsertDocumentGenerator);
+					parsedArguments.maxDocumentsPerBulkInsert,
+					documentIdGenerator, revisionRegistry);
+		} finally {
+			if (producers != null) {
+				// Stop producing bulk inserts that will not be sent.
+				producers.shutdownNow();
+			}
 		}
-		
-		// Perform the bulk insert operations.
-		System.out.println("Starting bulk insert benchmark...");
-		List<BulkInsertConnectionStatistics> allBulkInsertConnectionStatistics = httpReactor.performBulkInserts(
-				allBulkInsertDocumentGenerators, bulkInsertPath);
 		BulkInsertBenchmarkResults bulkInsertBenchmarkResults =
 				BenchmarkResults.getBulkInsertResults(parsedArguments, allBulkInsertConnectionStatistics);
 		System.out.println("BULK INSERT BENCHMARK RESULTS:");
 		System.out.println(bulkInsertBenchmarkResults.toString("  "));
+		System.out.println("BULK INSERT EVENT LOOP STATISTICS:");
+		System.out.println(httpReactor.getEventLoopStatistics().toString("  "));
+		if (httpReactor.getDirectBufferPool() != null) {
+			System.out.println("BULK INSERT DIRECT BUFFER POOL STATISTICS:");
+			System.out.println(httpReactor.getDirectBufferPool().toString("  "));
+		}
+		if (revisionRegistry != null) {
+			System.out.println("Recorded the revisions of " + revisionRegistry.getNumRevisions() +
+					" bulk inserted documents");
+		}
+		System.out.println();
+		return allBulkInsertDocumentGenerators;
+	}
+	
+	private static void performViewQueries(ParsedArguments parsedArguments, ViewDesign viewDesign,
+			HttpReactor httpReactor, String[] words, Random rng) throws BenchmarkException {
+		// Create the path of the database.
+		StringBuilder sb = new StringBuilder();
+		sb.append('/').append(parsedArguments.databaseName);
+		String databasePath = sb.toString();
+		
+		// Install the design document and build its index over the bulk inserted documents.
+		System.out.println("Starting view index benchmark for " + viewDesign + "...");
+		List<ViewQueries> allIndexQueries = new ArrayList<ViewQueries>(parsedArguments.numConnections);
+		for (int i = 0; i < parsedArguments.numConnections; ++i) {
+			allIndexQueries.add(ViewQueries.createIndexQueries(i, viewDesign));
+		}
+		List<ViewConnectionStatistics> allIndexConnectionStatistics = httpReactor.buildViewIndex(
+				allIndexQueries, databasePath);
+		boolean builtIndex = false;
+		for (ViewConnectionStatistics connectionStatistics : allIndexConnectionStatistics) {
+			builtIndex |= connectionStatistics.hasBuiltIndex();
+		}
+		if (!builtIndex) {
+			// Continue with the CRUD operations.
+			System.err.println("Could not build the index of " + ViewDesign.DESIGN_DOCUMENT_ID +
+					", so views are not queried");
+			System.out.println();
+			return;
+		}
+		ViewIndexBenchmarkResults viewIndexBenchmarkResults = BenchmarkResults.getViewIndexResults(
+				parsedArguments, allIndexConnectionStatistics);
+		System.out.println("VIEW INDEX BENCHMARK RESULTS:");
+		System.out.println(viewIndexBenchmarkResults.toString("  "));
+		System.out.println();
+		
+		// Create the view queries to perform.
+		List<ViewQueries> allViewQueries = new ArrayList<ViewQueries>(parsedArguments.numConnections);
+		for (int i = 0; i < parsedArguments.numConnections; ++i) {
+			allViewQueries.add(ViewQueries.createViewQueries(
+					viewDesign, new ValueGenerator(words, rng), parsedArguments));
+		}
+		
+		// Perform the view queries.
+		System.out.println("Starting view query benchmark...");
+		List<ViewConnectionStatistics> allViewConnectionStatistics = httpReactor.performViewQueries(
+				allViewQueries, databasePath);
+		ViewQueryBenchmarkResults viewQueryBenchmarkResults = BenchmarkResults.getViewQueryResults(
+				parsedArguments, allViewConnectionStatistics);
+		System.out.println("VIEW QUERY BENCHMARK RESULTS:");
+		System.out.println(viewQueryBenchmarkResults.toString("  "));
+		System.out.println("VIEW QUERY EVENT LOOP STATISTICS:");
+		System.out.println(httpReactor.getEventLoopStatistics().toString("  "));
 		System.out.println();
 	}
 	
 	private static void performCrudOperations(ParsedArguments parsedArguments,
-			DocumentSchema schema, HttpReactor httpReactor, String[] words,
-			Random rng, CrudOperationCounts crudOperationCounts) throws BenchmarkException {
+			DocumentSchema schema, DocumentIdGenerator documentIdGenerator,
+			RevisionRegistry revisionRegistry, HttpReactor httpReactor,
+			String[] words, Random rng, CrudOperationCounts crudOperationCounts,
+			List<BulkInsertDocumentGenerator> allBulkInsertDocumentGenerators) throws BenchmarkException {
 		// Create the CRUD operation path.
 		StringBuilder sb = new StringBuilder();
 		sb.append('/').append(parsedArguments.databaseName);
 		String crudPath = sb.toString();
 		
 		// Create the CRUD operations to perform.
+		int maxNumBulkInsertOperations = 0;
+		int minNumBulkInsertOperations = Integer.MAX_VALUE;
+		for (BulkInsertDocumentGenerator bulkInsertDocumentGenerator : allBulkInsertDocumentGenerators) {
+			maxNumBulkInsertOperations = Math.max(maxNumBulkInsertOperations,
+					bulkInsertDocumentGenerator.getNumReturnedBuffers());
+			minNumBulkInsertOperations = Math.min(minNumBulkInsertOperations,
+					bulkInsertDocumentGenerator.getNumReturnedBuffers());
+		}
+		// Choose from the documents bulk inserted by every connection.
+		int numKeys = parsedArguments.numDocumentsPerBulkInsert * parsedArguments.numConnections *
+				((parsedArguments.durationSecs > 0) ?
+						minNumBulkInsertOperations : parsedArguments.numBulkInsertOperations);
+		KeyChooser keyChooser = null;
+		if (numKeys > 0) {
+			keyChooser = KeyChooser.create(parsedArguments.crudKeyDistribution, numKeys,
+					parsedArguments.zipfianTheta, parsedArguments.hotspotOperationsPercent,
+					parsedArguments.hotspotKeysPercent);
+		}
 		List<CrudOperations> allCrudOperations = new ArrayList<CrudOperations>(
 				parsedArguments.numConnections);
 		for (int i = 0; i < parsedArguments.numConnections; ++i) {
-			CrudOperations crudOperations = CrudOperations.createCrudOperations(
-					i, schema, new ValueGenerator(words, rng), parsedArguments, crudOperationCounts);
+			CrudOperations crudOperations = null;
+			if (parsedArguments.durationSecs > 0) {
+				// Read the documents that were bulk inserted before the duration elapsed.
+				crudOperations = CrudOperations.createUnboundedCrudOperations(
+						i, schema, documentIdGenerator, new ValueGenerator(words, rng), parsedArguments,
+						crudOperationCounts, allBulkInsertDocumentGenerators.get(i).getNumReturnedBuffers(),
+						maxNumBulkInsertOperations, keyChooser, revisionRegistry);
+			} else {
+				crudOperations = CrudOperations.createCrudOperations(
+						i, schema, documentIdGenerator, new ValueGenerator(words, rng), parsedArguments,
+						crudOperationCounts, keyChooser, revisionRegistry);
+			}
 			allCrudOperations.add(crudOperations);
 		}
 
 		// Perform the CRUD operations.
 		System.out.println("Starting CRUD benchmark...");
 		List<CrudConnectionStatistics> allCrudConnectionStatistics = httpReactor.performCrudOperations(
-				allCrudOperations, crudPath);
+				allCrudOperations, crudPath, parsedArguments.crudPipelineDepth,
+				parsedArguments.targetOpsPerSec);
 		CrudBenchmarkResults crudBenchmarkResults = BenchmarkResults.getCrudResults(
-				parsedArguments.numConnections, crudOperationCounts, allCrudConnectionStatistics);
+				parsedArguments, allCrudConnectionStatistics);
 		System.out.println("CRUD BENCHMARK RESULTS:");
 		System.out.println(crudBenchmarkResults.toString("  "));
+		System.out.println("CRUD EVENT LOOP STATISTICS:");
+		System.out.println(httpReactor.getEventLoopStatistics().toString("  "));
 		System.out.println();
 	}
 	
@@ -86,7 +252,8 @@ public class Benchmark {
 				parsedArguments);
 		int numInsertedDocumentsPerConnection = crudOperationCounts.numCreateOperations +
 				(parsedArguments.numDocumentsPerBulkInsert * parsedArguments.numBulkInsertOperations);
-		if (crudOperationCounts.numDeleteOperations > numInsertedDocumentsPerConnection) {
+		if ((parsedArguments.durationSecs == 0) &&
+				(crudOperationCounts.numDeleteOperations > numInsertedDocumentsPerConnection)) {
 			throw new IllegalArgumentException(
 					crudOperationCounts.numDeleteOperations + " docs deleted > " +
 						numInsertedDocumentsPerConnection + " docs inserted per connection");
@@ -106,22 +273,83 @@ public class Benchmark {
 		} else if (parsedArguments.xmlDocumentSchemaFile != null) {
 			schema = DocumentSchema.createSchemaFromXml(parsedArguments.xmlDocumentSchemaFile);
 		}
+		ViewDesign viewDesign = null;
+		if (parsedArguments.numViewQueries > 0) {
+			// Derive the views from the schema before connecting.
+			viewDesign = new ViewDesign(schema, parsedArguments.numViewFields);
+		}
+		DocumentIdGenerator documentIdGenerator = DocumentIdGenerator.create(
+				parsedArguments.documentIdStrategy, parsedArguments.numConnections,
+				parsedArguments.numDocumentIdPartitions);
+		
+		if (parsedArguments.generateCorpusFile != null) {
+			// Write the bulk inserts that a benchmark with the same flags would generate.
+			String[] words = ValueGenerator.createWords(rng);
+			List<BulkInsertDocumentGenerator> allBulkInsertDocumentGenerators = createBulkInsertDocumentGenerators(
+					parsedArguments, schema, documentIdGenerator, words, rng, null, null, null);
+			BulkInsertCorpus.write(parsedArguments.generateCorpusFile, allBulkInsertDocumentGenerators,
+					parsedArguments.numDocumentsPerBulkInsert);
+			System.out.println("Wrote corpus to " + parsedArguments.generateCorpusFile);
+			return;
+		}
+		BulkInsertCorpus corpus = null;
+		if (parsedArguments.corpusFile != null) {
+			corpus = BulkInsertCorpus.open(parsedArguments.corpusFile);
+			if ((corpus.getNumConnections() != parsedArguments.numConnections) ||
+					(corpus.getNumBulkInsertOperations() != parsedArguments.numBulkInsertOperations) ||
+					(corpus.getNumDocumentsPerBulkInsert() != parsedArguments.numDocumentsPerBulkInsert)) {
+				throw new BenchmarkException("Corpus was generated for " + corpus.getNumConnections() +
+						" connections, " + corpus.getNumBulkInsertOperations() + " bulk inserts, and " +
+						corpus.getNumDocumentsPerBulkInsert() + " documents per bulk insert");
+			}
+		}
 
-		// Create the address of the server.
-		URI databaseUri;
-		try {
-			databaseUri = new URI(parsedArguments.databaseAddress);
-		} catch (URISyntaxException e) {
-			throw new BenchmarkException(e);
+		// Create the addresses of the servers.
+		List<DatabaseNode> databaseNodes = new ArrayList<DatabaseNode>(
+				parsedArguments.databaseAddresses.size());
+		for (int i = 0; i < parsedArguments.databaseAddresses.size(); ++i) {
+			URI databaseUri;
+			try {
+				databaseUri = new URI(parsedArguments.databaseAddresses.get(i));
+			} catch (URISyntaxException e) {
+				throw new BenchmarkException(e);
+			}
+			InetSocketAddress databaseAddress = new InetSocketAddress(
+					databaseUri.getHost(), databaseUri.getPort());
+			int databaseWeight = (parsedArguments.databaseWeights != null) ?
+					parsedArguments.databaseWeights.get(i) : 1;
+			databaseNodes.add(new DatabaseNode(databaseUri.getHost() + ":" + databaseUri.getPort(),
+					databaseAddress, databaseWeight));
 		}
-		InetSocketAddress databaseAddress = new InetSocketAddress(
-				databaseUri.getHost(), databaseUri.getPort());
-		HttpReactor httpReactor = new HttpReactor(parsedArguments.numConnections, databaseAddress);
+		DatabaseNodeSelector databaseNodeSelector = DatabaseNodeSelector.create(
+				parsedArguments.nodeSelection, databaseNodes);
+		HttpReactor httpReactor = new HttpReactor(parsedArguments, databaseNodeSelector);
 		String[] words = ValueGenerator.createWords(rng);
+		RevisionRegistry revisionRegistry = null;
+		if (parsedArguments.revisionSource == RevisionRegistry.Source.SHARED) {
+			// Record the revisions of bulk inserted documents for the CRUD operations.
+			revisionRegistry = new RevisionRegistry(
+					parsedArguments.numConnections, parsedArguments.numDocumentsPerBulkInsert);
+		}
 		
-		// Perform the bulk inserts.
-		performBulkInserts(parsedArguments, schema, httpReactor, words, rng);
-		// Perform the CRUD operations.
-		performCrudOperations(parsedArguments, schema, httpReactor, words, rng, crudOperationCounts);
+		try {
+			// Perform the bulk inserts.
+			List<BulkInsertDocumentGenerator> allBulkInsertDocumentGenerators = performBulkInserts(
+					parsedArguments, schema, documentIdGenerator, revisionRegistry, httpReactor, words, rng,
+					corpus);
+			if (parsedArguments.numViewQueries > 0) {
+				// Generate view keys without consuming the values used by the CRUD operations.
+				Random viewRng = (parsedArguments.seed != null) ?
+						new Random(~parsedArguments.seed) : new Random();
+				// Query views of the bulk inserted documents.
+				performViewQueries(parsedArguments, viewDesign, httpReactor, words, viewRng);
+			}
+			// Perform the CRUD operations.
+			performCrudOperations(parsedArguments, schema, documentIdGenerator, revisionRegistry, httpReactor,
+					words, rng, crudOperationCounts, allBulkInsertDocumentGenerators);
+		} finally {
+			// Stop the threads of the event loop even if a step failed, so that the JVM exits.
+			httpReactor.shutdown();
+		}
 	}
 }
@@ -1,13 +1,23 @@
 package co.adhoclabs.ironcushion;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Formatter;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
+import co.adhoclabs.ironcushion.bulkinsert.BulkInsertBatchSizer;
+import co.adhoclabs.ironcushion.bulkinsert.BulkInsertBatchSizer.BatchSizeSample;
 import co.adhoclabs.ironcushion.bulkinsert.BulkInsertConnectionStatistics;
 import co.adhoclabs.ironcushion.crud.CrudConnectionStatistics;
 import co.adhoclabs.ironcushion.crud.CrudOperations;
+import co.adhoclabs.ironcushion.view.ViewConnectionStatistics;
+import co.adhoclabs.ironcushion.view.ViewQueries;
 
 /**
  * The results of the benchmark.
@@ -18,14 +28,70 @@ public abstract class BenchmarkResults {
 	public final long timeTaken;
 	public final long totalJsonBytesSent;
 	public final long totalJsonBytesReceived;
+	public final long uncompressedJsonBytesSent;
+	public final long compressedJsonBytesSent;
+	public final long compressedJsonBytesReceived;
+	public final long decompressedJsonBytesReceived;
+	public final SampleStatistics compressionStatistics;
+	public final SampleStatistics decompressionStatistics;
+	public final long numCompletedOperations;
+	public final long numFailedOperations;
+	public final long numConnectionErrors;
+	public final long numReconnects;
+	public final SampleStatistics reconnectStatistics;
+	public final List<NodeStatistics> allNodeStatistics;
 
-	private BenchmarkResults(long timeTaken, long totalJsonBytesSent, long totalJsonBytesReceived) {
+	private BenchmarkResults(long timeTaken, long totalJsonBytesSent, long totalJsonBytesReceived,
+			List<? extends AbstractConnectionStatistics> allConnectionStatistics,
+			List<NodeStatistics> allNodeStatistics) {
 		this.timeTaken = timeTaken;
 		this.totalJsonBytesSent = totalJsonBytesSent;
 		this.totalJsonBytesReceived = totalJsonBytesReceived;
+		
+		long numCompletedOperations = 0;
+		long numFailedOperations = 0;
+		long numConnectionErrors = 0;
+		long numReconnects = 0;
+		long uncompressedJsonBytesSent = 0;
+		long compressedJsonBytesSent = 0;
+		long compressedJsonBytesReceived = 0;
+		long decompressedJsonBytesReceived = 0;
+		long[] values = new long[allConnectionStatistics.size()];
+		long[] compressionValues = new long[allConnectionStatistics.size()];
+		long[] decompressionValues = new long[allConnectionStatistics.size()];
+		for (int i = 0; i < allConnectionStatistics.size(); ++i) {
+			AbstractConnectionStatistics connectionStatistics = allConnectionStatistics.get(i);
+			uncompressedJsonBytesSent += connectionStatistics.getUncompressedJsonBytesSent();
+			compressedJsonBytesSent += connectionStatistics.getCompressedJsonBytesSent();
+			compressedJsonBytesReceived += connectionStatistics.getCompressedJsonBytesReceived();
+			decompressedJsonBytesReceived += connectionStatistics.getDecompressedJsonBytesReceived();
+			compressionValues[i] = connectionStatistics.getCompressionTimeMillis();
+			decompressionValues[i] = connectionStatistics.getDecompressionTimeMillis();
+			// Every completed operation records its latency.
+			LatencyHistogram histogram = new LatencyHistogram();
+			connectionStatistics.addLatencies(histogram);
+			numCompletedOperations += histogram.getTotalCount();
+			numFailedOperations += connectionStatistics.getNumFailedOperations();
+			numConnectionErrors += connectionStatistics.getNumConnectionErrors();
+			numReconnects += connectionStatistics.getNumReconnects();
+			values[i] = connectionStatistics.getReconnectTimeMillis();
+		}
+		this.numCompletedOperations = numCompletedOperations;
+		this.numFailedOperations = numFailedOperations;
+		this.numConnectionErrors = numConnectionErrors;
+		this.numReconnects = numReconnects;
+		this.uncompressedJsonBytesSent = uncompressedJsonBytesSent;
+		this.compressedJsonBytesSent = compressedJsonBytesSent;
+		this.compressedJsonBytesReceived = compressedJsonBytesReceived;
+		this.decompressedJsonBytesReceived = decompressedJsonBytesReceived;
+		this.compressionStatistics = SampleStatistics.statisticsForPopulation(compressionValues);
+		this.decompressionStatistics = SampleStatistics.statisticsForPopulation(decompressionValues);
+		this.reconnectStatistics = SampleStatistics.statisticsForPopulation(values);
+		this.allNodeStatistics = allNodeStatistics;
 	}
 	
 	private static final double MILLIS_PER_SEC = 1000.0;
+	private static final double NANOS_PER_SEC = 1000000000.0;
 	
 	protected static Formatter getFormatter(StringBuilder sb) {
 		return new Formatter(sb, Locale.getDefault());
@@ -41,6 +107,48 @@ public abstract class BenchmarkResults {
 		return new Formatter().format("%,.3f", value).toString();
 	}
 	
+	private static String formatRatio(long compressedBytes, long bytes) {
+		return format(100.0 * compressedBytes / bytes) + "% of " + format(bytes) + " bytes";
+	}
+	
+	protected void appendCompressionStatistics(StringBuilder sb, String indent) {
+		if ((uncompressedJsonBytesSent == 0) && (decompressedJsonBytesReceived == 0)) {
+			// Nothing was compressed.
+			return;
+		}
+		if (uncompressedJsonBytesSent > 0) {
+			sb.append(indent).append("compressedJsonBytesSent=").append(format(compressedJsonBytesSent));
+			sb.append(" bytes (").append(formatRatio(compressedJsonBytesSent, uncompressedJsonBytesSent)).append(")\n");
+			sb.append(indent).append("compression={").append(compressionStatistics).append("}\n");
+		}
+		if (decompressedJsonBytesReceived > 0) {
+			// The database may not compress its responses.
+			sb.append(indent).append("compressedJsonBytesReceived=").append(format(compressedJsonBytesReceived));
+			sb.append(" bytes (").append(formatRatio(compressedJsonBytesReceived, decompressedJsonBytesReceived)).append(")\n");
+			sb.append(indent).append("decompression={").append(decompressionStatistics).append("}\n");
+		}
+	}
+	
+	protected void appendOperationStatistics(StringBuilder sb, String indent) {
+		sb.append(indent).append("completedOperations=").append(format(numCompletedOperations)).append('\n');
+		sb.append(indent).append("throughput=").append(format(MILLIS_PER_SEC * numCompletedOperations / timeTaken)).append(" ops/sec\n");
+		sb.append(indent).append("failedOperations=").append(format(numFailedOperations)).append('\n');
+		sb.append(indent).append("connectionErrors=").append(format(numConnectionErrors)).append('\n');
+		sb.append(indent).append("reconnects=").append(format(numReconnects)).append('\n');
+		sb.append(indent).append("reconnect={").append(reconnectStatistics).append("}\n");
+	}
+	
+	protected void appendNodeStatistics(StringBuilder sb, String indent) {
+		if (allNodeStatistics.size() < 2) {
+			// The results for the only node are the results above.
+			return;
+		}
+		for (NodeStatistics nodeStatistics : allNodeStatistics) {
+			sb.append('\n').append(indent).append("node[").append(nodeStatistics.node).append("]={");
+			sb.append(nodeStatistics).append("}");
+		}
+	}
+	
 	/**
 	 * Benchmark results for bulk insertions.
 	 */
@@ -49,27 +157,62 @@ public abstract class BenchmarkResults {
 		public final SampleStatistics sendDataStatistics;
 		public final SampleStatistics remoteProcessingStatistics;
 		public final SampleStatistics receiveDataStatistics;
+		public final LatencyStatistics latencyStatistics;
 		
 		public final double remoteProcessingRate;
 		public final double localInsertRate;
 		
+		public final long numSubmittedDocuments;
+		public final long numAcceptedDocuments;
+		public final Map<String, Long> numRejectedDocuments;
+		public final double acceptedRemoteProcessingRate;
+		public final double acceptedLocalInsertRate;
+		
+		public final int bestDocumentsPerBulkInsert;
+		public final int numConvergedConnections;
+		public final int numAdaptiveConnections;
+		public final List<BatchSizeStatistics> allBatchSizeStatistics;
+		
 		private BulkInsertBenchmarkResults(long timeTaken,
 				long totalJsonBytesSent,
 				long totalJsonBytesReceived,
+				List<BulkInsertConnectionStatistics> allConnectionStatistics,
+				List<NodeStatistics> allNodeStatistics,
 				SampleStatistics localProcessingStatistics,
 				SampleStatistics sendDataStatistics,
 				SampleStatistics remoteProcessingStatistics,
 				SampleStatistics receiveDataStatistics,
+				LatencyStatistics latencyStatistics,
 				double remoteProcessingRate,
-				double localInsertRate) {
-			super(timeTaken, totalJsonBytesSent, totalJsonBytesReceived);
+				double localInsertRate,
+				long numSubmittedDocuments,
+				long numAcceptedDocuments,
+				Map<String, Long> numRejectedDocuments,
+				double acceptedRemoteProcessingRate,
+				double acceptedLocalInsertRate,
+				int bestDocumentsPerBulkInsert,
+				int numConvergedConnections,
+				int numAdaptiveConnections,
+				List<BatchSizeStatistics> allBatchSizeStatistics) {
+			super(timeTaken, totalJsonBytesSent, totalJsonBytesReceived, allConnectionStatistics,
+					allNodeStatistics);
 
 			this.localProcessingStatistics = localProcessingStatistics;
 			this.sendDataStatistics = sendDataStatistics;
 			this.remoteProcessingStatistics = remoteProcessingStatistics;
 			this.receiveDataStatistics = receiveDataStatistics;
+			this.latencyStatistics = latencyStatistics;
 			this.remoteProcessingRate = remoteProcessingRate;
 			this.localInsertRate = localInsertRate;
+			this.numSubmittedDocuments = numSubmittedDocuments;
+			this.numAcceptedDocuments = numAcceptedDocuments;
+			this.numRejectedDocuments = numRejectedDocuments;
+			this.acceptedRemoteProcessingRate = acceptedRemoteProcessingRate;
+			this.acceptedLocalInsertRate = acceptedLocalInsertRate;
+			this.bestDocumentsPerBulkInsert = bestDocumentsPerBulkInsert;
+			this.numConvergedConnections = numConvergedConnections;
+			this.numAdaptiveConnections = numAdaptiveConnections;
+			this.allBatchSizeStatistics = allBatchSizeStatistics;
 		}
 		
 		@Override
@@ -82,12 +225,40 @@ public abstract class BenchmarkResults {
 			sb.append(indent).append("timeTaken=").append(format(timeTaken / MILLIS_PER_SEC)).append(" secs\n");
 			sb.append(indent).append("totalJsonBytesSent=").append(format(totalJsonBytesSent)).append(" bytes\n");
 			sb.append(indent).append("totalJsonBytesReceived=").append(format(totalJsonBytesReceived)).append(" bytes\n");
+			appendCompressionStatistics(sb, indent);
+			appendOperationStatistics(sb, indent);
 			sb.append(indent).append("localProcessing={").append(localProcessingStatistics).append("}\n");
 			sb.append(indent).append("sendData={").append(sendDataStatistics).append("}\n");
 			sb.append(indent).append("remoteProcessing={").append(remoteProcessingStatistics).append("}\n");
 			sb.append(indent).append("receiveData={").append(receiveDataStatistics).append("}\n");
+			sb.append(indent).append("latency={").append(latencyStatistics).append("}\n");
 			sb.append(indent).append("remoteProcessingRate=").append(format(remoteProcessingRate)).append(" docs/sec\n");
-			sb.append(indent).append("localInsertRate=").append(format(localInsertRate)).append(" docs/sec");
+			sb.append(indent).append("localInsertRate=").append(format(localInsertRate)).append(" docs/sec\n");
+			sb.append(indent).append("submittedDocuments=").append(format(numSubmittedDocuments)).append('\n');
+			sb.append(indent).append("acceptedDocuments=").append(format(numAcceptedDocuments)).append('\n');
+			sb.append(indent).append("rejectedDocuments={");
+			boolean first = true;
+			for (Map.Entry<String, Long> entry : numRejectedDocuments.entrySet()) {
+				if (!first) {
+					sb.append(", ");
+				}
+				sb.append(entry.getKey()).append('=').append(format(entry.getValue()));
+				first = false;
+			}
+			sb.append("}\n");
+			sb.append(indent).append("acceptedRemoteProcessingRate=").append(format(acceptedRemoteProcessingRate)).append(" docs/sec\n");
+			sb.append(indent).append("acceptedLocalInsertRate=").append(format(acceptedLocalInsertRate)).append(" docs/sec");
+			if (!allBatchSizeStatistics.isEmpty()) {
+				sb.append('\n').append(indent).append("bestDocumentsPerBulkInsert=").append(format(bestDocumentsPerBulkInsert));
+				sb.append(" (converged on ").append(format(numConvergedConnections)).append(" of ");
+				sb.append(format(numAdaptiveConnections)).append(" connections)");
+				for (BatchSizeStatistics batchSizeStatistics : allBatchSizeStatistics) {
+					sb.append('\n').append(indent).append("documentsPerBulkInsert[");
+					sb.append(batchSizeStatistics.numDocumentsPerBulkInsert).append("]={");
+					sb.append(batchSizeStatistics).append("}");
+				}
+			}
+			appendNodeStatistics(sb, indent);
 			return sb.toString();
 		}
 	}
@@ -102,26 +273,49 @@ public abstract class BenchmarkResults {
 		public final SampleStatistics remoteReadProcessingStatistics;
 		public final SampleStatistics remoteUpdateProcessingStatistics;
 		public final SampleStatistics remoteDeleteProcessingStatistics;
+		public final SampleStatistics remoteBatchReadProcessingStatistics;
+		public final SampleStatistics idleStatistics;
 		
 		public final double remoteCreateProcessingRate;
 		public final double remoteReadProcessingRate;
 		public final double remoteUpdateProcessingRate;
 		public final double remoteDeleteProcessingRate;
+		public final double remoteBatchReadProcessingRate;
+		
+		public final LatencyStatistics createLatencyStatistics;
+		public final LatencyStatistics readLatencyStatistics;
+		public final LatencyStatistics updateLatencyStatistics;
+		public final LatencyStatistics deleteLatencyStatistics;
+		public final LatencyStatistics batchReadLatencyStatistics;
+		
+		public final long numBatchReadDocuments;
 		
 		public CrudBenchmarkResults(long timeTaken,
 				long totalJsonBytesSent,
 				long totalJsonBytesReceived,
+				List<CrudConnectionStatistics> allConnectionStatistics,
+				List<NodeStatistics> allNodeStatistics,
 				SampleStatistics localProcessingStatistics,
 				SampleStatistics sendDataStatistics,
 				SampleStatistics remoteCreateProcessingStatistics,
 				SampleStatistics remoteReadProcessingStatistics,
 				SampleStatistics remoteUpdateProcessingStatistics,
 				SampleStatistics remoteDeleteProcessingStatistics,
+				SampleStatistics remoteBatchReadProcessingStatistics,
+				SampleStatistics idleStatistics,
 				double remoteCreateProcessingRate,
 				double remoteReadProcessingRate,
 				double remoteUpdateProcessingRate,
-				double remoteDeleteProcessingRate) {
-			super(timeTaken, totalJsonBytesSent, totalJsonBytesReceived);
+				double remoteDeleteProcessingRate,
+				double remoteBatchReadProcessingRate,
+				LatencyStatistics createLatencyStatistics,
+				LatencyStatistics readLatencyStatistics,
+				LatencyStatistics updateLatencyStatistics,
+				LatencyStatistics deleteLatencyStatistics,
+				LatencyStatistics batchReadLatencyStatistics,
+				long numBatchReadDocuments) {
+			super(timeTaken, totalJsonBytesSent, totalJsonBytesReceived, allConnectionStatistics,
+					allNodeStatistics);
 
 			this.localProcessingStatistics = localProcessingStatistics;
 			this.sendDataStatistics = sendDataStatistics;
@@ -129,10 +323,19 @@ public abstract class BenchmarkResults {
 			this.remoteReadProcessingStatistics = remoteReadProcessingStatistics;
 			this.remoteUpdateProcessingStatistics = remoteUpdateProcessingStatistics;
 			this.remoteDeleteProcessingStatistics = remoteDeleteProcessingStatistics;
+			this.remoteBatchReadProcessingStatistics = remoteBatchReadProcessingStatistics;
+			this.idleStatistics = idleStatistics;
 			this.remoteCreateProcessingRate = remoteCreateProcessingRate;
 			this.remoteReadProcessingRate = remoteReadProcessingRate;
 			this.remoteUpdateProcessingRate = remoteUpdateProcessingRate;
 			this.remoteDeleteProcessingRate = remoteDeleteProcessingRate;
+			this.remoteBatchReadProcessingRate = remoteBatchReadProcessingRate;
+			this.createLatencyStatistics = createLatencyStatistics;
+			this.readLatencyStatistics = readLatencyStatistics;
+			this.updateLatencyStatistics = updateLatencyStatistics;
+			this.deleteLatencyStatistics = deleteLatencyStatistics;
+			this.batchReadLatencyStatistics = batchReadLatencyStatistics;
+			this.numBatchReadDocuments = numBatchReadDocuments;
 		}
 		
 		@Override
@@ -145,22 +348,156 @@ public abstract class BenchmarkResults {
 			sb.append(indent).append("timeTaken=").append(format(timeTaken / MILLIS_PER_SEC)).append(" secs\n");
 			sb.append(indent).append("totalJsonBytesSent=").append(format(totalJsonBytesSent)).append(" bytes\n");
 			sb.append(indent).append("totalJsonBytesReceived=").append(format(totalJsonBytesReceived)).append(" bytes\n");
+			appendCompressionStatistics(sb, indent);
+			appendOperationStatistics(sb, indent);
 			sb.append(indent).append("localProcessing={").append(localProcessingStatistics).append("}\n");
 			sb.append(indent).append("sendData={").append(sendDataStatistics).append("}\n");
 			sb.append(indent).append("remoteCreateProcessing={").append(remoteCreateProcessingStatistics).append("}\n");
 			sb.append(indent).append("remoteReadProcessing={").append(remoteReadProcessingStatistics).append("}\n");
 			sb.append(indent).append("remoteUpdateProcessing={").append(remoteUpdateProcessingStatistics).append("}\n");
 			sb.append(indent).append("remoteDeleteProcessing={").append(remoteDeleteProcessingStatistics).append("}\n");
+			sb.append(indent).append("remoteBatchReadProcessing={").append(remoteBatchReadProcessingStatistics).append("}\n");
+			sb.append(indent).append("idle={").append(idleStatistics).append("}\n");
 			sb.append(indent).append("remoteCreateProcessingRate=").append(format(remoteCreateProcessingRate)).append(" docs/sec\n");
 			sb.append(indent).append("remoteReadProcessingRate=").append(format(remoteReadProcessingRate)).append(" docs/sec\n");
 			sb.append(indent).append("remoteUpdateProcessingRate=").append(format(remoteUpdateProcessingRate)).append(" docs/sec\n");
-			sb.append(indent).append("remoteDeleteProcessingRate=").append(format(remoteDeleteProcessingRate)).append(" docs/sec");
+			sb.append(indent).append("remoteDeleteProcessingRate=").append(format(remoteDeleteProcessingRate)).append(" docs/sec\n");
+			sb.append(indent).append("remoteBatchReadProcessingRate=").append(format(remoteBatchReadProcessingRate)).append(" docs/sec\n");
+			sb.append(indent).append("createLatency={").append(createLatencyStatistics).append("}\n");
+			sb.append(indent).append("readLatency={").append(readLatencyStatistics).append("}\n");
+			sb.append(indent).append("updateLatency={").append(updateLatencyStatistics).append("}\n");
+			sb.append(indent).append("deleteLatency={").append(deleteLatencyStatistics).append("}\n");
+			sb.append(indent).append("batchReadLatency={").append(batchReadLatencyStatistics).append("}\n");
+			sb.append(indent).append("batchReadDocuments=").append(format(numBatchReadDocuments));
+			appendNodeStatistics(sb, indent);
+			return sb.toString();
+		}
+	}
+	
+	/**
+	 * Benchmark results for installing a design document and building its index.
+	 */
+	public static final class ViewIndexBenchmarkResults extends BenchmarkResults {
+		public final LatencyStatistics installLatencyStatistics;
+		public final long indexBuildTime;
+		public final long numIndexedRows;
+		public final double indexRate;
+		
+		public ViewIndexBenchmarkResults(long timeTaken,
+				long totalJsonBytesSent,
+				long totalJsonBytesReceived,
+				List<ViewConnectionStatistics> allConnectionStatistics,
+				List<NodeStatistics> allNodeStatistics,
+				LatencyStatistics installLatencyStatistics,
+				long indexBuildTime,
+				long numIndexedRows,
+				double indexRate) {
+			super(timeTaken, totalJsonBytesSent, totalJsonBytesReceived, allConnectionStatistics,
+					allNodeStatistics);
+			
+			this.installLatencyStatistics = installLatencyStatistics;
+			this.indexBuildTime = indexBuildTime;
+			this.numIndexedRows = numIndexedRows;
+			this.indexRate = indexRate;
+		}
+		
+		@Override
+		public String toString() {
+			return toString("");
+		}
+		
+		public String toString(String indent) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(indent).append("timeTaken=").append(format(timeTaken / MILLIS_PER_SEC)).append(" secs\n");
+			sb.append(indent).append("totalJsonBytesSent=").append(format(totalJsonBytesSent)).append(" bytes\n");
+			sb.append(indent).append("totalJsonBytesReceived=").append(format(totalJsonBytesReceived)).append(" bytes\n");
+			appendCompressionStatistics(sb, indent);
+			appendOperationStatistics(sb, indent);
+			sb.append(indent).append("installLatency={").append(installLatencyStatistics).append("}\n");
+			sb.append(indent).append("indexBuildTime=").append(format(indexBuildTime / NANOS_PER_SEC)).append(" secs\n");
+			sb.append(indent).append("indexedRows=").append(format(numIndexedRows)).append('\n');
+			sb.append(indent).append("indexRate=").append(format(indexRate)).append(" rows/sec");
+			return sb.toString();
+		}
+	}
+	
+	/**
+	 * Benchmark results for view queries.
+	 */
+	public static final class ViewQueryBenchmarkResults extends BenchmarkResults {
+		public final SampleStatistics localProcessingStatistics;
+		public final SampleStatistics sendDataStatistics;
+		public final SampleStatistics remoteProcessingStatistics;
+		
+		public final double remoteProcessingRate;
+		
+		public final LatencyStatistics keyLatencyStatistics;
+		public final LatencyStatistics rangeLatencyStatistics;
+		public final LatencyStatistics reduceLatencyStatistics;
+		public final LatencyStatistics staleKeyLatencyStatistics;
+		
+		public final long numRows;
+		
+		public ViewQueryBenchmarkResults(long timeTaken,
+				long totalJsonBytesSent,
+				long totalJsonBytesReceived,
+				List<ViewConnectionStatistics> allConnectionStatistics,
+				List<NodeStatistics> allNodeStatistics,
+				SampleStatistics localProcessingStatistics,
+				SampleStatistics sendDataStatistics,
+				SampleStatistics remoteProcessingStatistics,
+				double remoteProcessingRate,
+				LatencyStatistics keyLatencyStatistics,
+				LatencyStatistics rangeLatencyStatistics,
+				LatencyStatistics reduceLatencyStatistics,
+				LatencyStatistics staleKeyLatencyStatistics,
+				long numRows) {
+			super(timeTaken, totalJsonBytesSent, totalJsonBytesReceived, allConnectionStatistics,
+					allNodeStatistics);
+			
+			this.localProcessingStatistics = localProcessingStatistics;
+			this.sendDataStatistics = sendDataStatistics;
+			this.remoteProcessingStatistics = remoteProcessingStatistics;
+			this.remoteProcessingRate = remoteProcessingRate;
+			this.keyLatencyStatistics = keyLatencyStatistics;
+			this.rangeLatencyStatistics = rangeLatencyStatistics;
+			this.reduceLatencyStatistics = reduceLatencyStatistics;
+			this.staleKeyLatencyStatistics = staleKeyLatencyStatistics;
+			this.numRows = numRows;
+		}
+		
+		@Override
+		public String toString() {
+			return toString("");
+		}
+		
+		public String toString(String indent) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(indent).append("timeTaken=").append(format(timeTaken / MILLIS_PER_SEC)).append(" secs\n");
+			sb.append(indent).append("totalJsonBytesSent=").append(format(totalJsonBytesSent)).append(" bytes\n");
+			sb.append(indent).append("totalJsonBytesReceived=").append(format(totalJsonBytesReceived)).append(" bytes\n");
+			appendCompressionStatistics(sb, indent);
+			appendOperationStatistics(sb, indent);
+			sb.append(indent).append("localProcessing={").append(localProcessingStatistics).append("}\n");
+			sb.append(indent).append("sendData={").append(sendDataStatistics).append("}\n");
+			sb.append(indent).append("remoteProcessing={").append(remoteProcessingStatistics).append("}\n");
+			sb.append(indent).append("remoteProcessingRate=").append(format(remoteProcessingRate)).append(" queries/sec\n");
+			sb.append(indent).append("keyLatency={").append(keyLatencyStatistics).append("}\n");
+			sb.append(indent).append("rangeLatency={").append(rangeLatencyStatistics).append("}\n");
+			sb.append(indent).append("reduceLatency={").append(reduceLatencyStatistics).append("}\n");
+			sb.append(indent).append("staleKeyLatency={").append(staleKeyLatencyStatistics).append("}\n");
+			sb.append(indent).append("rows=").append(format(numRows));
+			appendNodeStatistics(sb, indent);
 			return sb.toString();
 		}
 	}
 
-	private static long getTimeTaken(
+	private static long getTimeTaken(ParsedArguments parsedArguments,
 			List<? extends AbstractConnectionStatistics> allConnectionStatistics) {
+		if (parsedArguments.durationSecs > 0) {
+			// Operations completed after the duration elapsed are excluded.
+			return TimeUnit.SECONDS.toMillis(parsedArguments.durationSecs);
+		}
 		// The time taken is the maximum time taken by any connection.
 		long maxTimeTaken = 0;
 		for (AbstractConnectionStatistics connectionStatistics : allConnectionStatistics) {
@@ -210,6 +547,60 @@ public abstract class BenchmarkResults {
 		return SampleStatistics.statisticsForPopulation(values);
 	}
 	
+	private static List<NodeStatistics> getAllNodeStatistics(ParsedArguments parsedArguments,
+			List<? extends AbstractConnectionStatistics> allConnectionStatistics) {
+		// Group the connections by node, in the order that nodes were first selected.
+		LinkedHashMap<DatabaseNode, List<AbstractConnectionStatistics>> connectionStatisticsByNode =
+				new LinkedHashMap<DatabaseNode, List<AbstractConnectionStatistics>>();
+		for (AbstractConnectionStatistics connectionStatistics : allConnectionStatistics) {
+			List<AbstractConnectionStatistics> nodeConnectionStatistics =
+					connectionStatisticsByNode.get(connectionStatistics.getDatabaseNode());
+			if (nodeConnectionStatistics == null) {
+				nodeConnectionStatistics = new ArrayList<AbstractConnectionStatistics>();
+				connectionStatisticsByNode.put(connectionStatistics.getDatabaseNode(), nodeConnectionStatistics);
+			}
+			nodeConnectionStatistics.add(connectionStatistics);
+		}
+		
+		List<NodeStatistics> allNodeStatistics = new ArrayList<NodeStatistics>(connectionStatisticsByNode.size());
+		for (List<AbstractConnectionStatistics> nodeConnectionStatistics : connectionStatisticsByNode.values()) {
+			DatabaseNode databaseNode = nodeConnectionStatistics.get(0).getDatabaseNode();
+			long timeTaken = getTimeTaken(parsedArguments, nodeConnectionStatistics);
+			LatencyHistogram histogram = new LatencyHistogram();
+			for (AbstractConnectionStatistics connectionStatistics : nodeConnectionStatistics) {
+				connectionStatistics.addLatencies(histogram);
+			}
+			double throughput = MILLIS_PER_SEC * histogram.getTotalCount() / timeTaken;
+			allNodeStatistics.add(new NodeStatistics(databaseNode.getName(), nodeConnectionStatistics.size(),
+					throughput, LatencyStatistics.statisticsForHistogram(histogram)));
+		}
+		return allNodeStatistics;
+	}
+	
+	private static LatencyStatistics getCrudLatencyStatistics(
+			List<CrudConnectionStatistics> allConnectionStatistics, CrudOperations.Type type) {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (CrudConnectionStatistics connectionStatistics : allConnectionStatistics) {
+			histogram.add(connectionStatistics.getLatencyHistogram(type));
+		}
+		return LatencyStatistics.statisticsForHistogram(histogram);
+	}
+	
+	private static LatencyStatistics getViewLatencyStatistics(
+			List<ViewConnectionStatistics> allConnectionStatistics, ViewQueries.Type type) {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (ViewConnectionStatistics connectionStatistics : allConnectionStatistics) {
+			histogram.add(connectionStatistics.getLatencyHistogram(type));
+		}
+		return LatencyStatistics.statisticsForHistogram(histogram);
+	}
+	
+	private static long getNumCompletedOperations(
+			CrudConnectionStatistics connectionStatistics, CrudOperations.Type type) {
+		// Every completed operation records its latency.
+		return connectionStatistics.getLatencyHistogram(type).getTotalCount();
+	}
+	
 	/**
 	 * Returns benchmark results for the connection statistics for bulk inserts.
 	 * 
@@ -219,7 +610,7 @@ public abstract class BenchmarkResults {
 	public static BulkInsertBenchmarkResults getBulkInsertResults(
 			ParsedArguments parsedArguments,
 			List<BulkInsertConnectionStatistics> allConnectionStatistics) {
-		long timeTaken = getTimeTaken(allConnectionStatistics);
+		long timeTaken = getTimeTaken(parsedArguments, allConnectionStatistics);
 		long totalJsonBytesSent = getTotalJsonBytesSent(allConnectionStatistics);
 		long totalJsonBytesReceived = getTotalJsonBytesReceived(allConnectionStatistics);
 		
@@ -240,42 +631,110 @@ public abstract class BenchmarkResults {
 			values[i] = connectionStatistics.getReceivedDataTimeMillis();
 		}
 		SampleStatistics receiveDataStatistics = SampleStatistics.statisticsForPopulation(values);
+		// Get statistics for the latency of each bulk insert.
+		LatencyHistogram latencyHistogram = new LatencyHistogram();
+		for (BulkInsertConnectionStatistics connectionStatistics : allConnectionStatistics) {
+			latencyHistogram.add(connectionStatistics.getLatencyHistogram());
+		}
+		LatencyStatistics latencyStatistics = LatencyStatistics.statisticsForHistogram(latencyHistogram);
 
-		// Calculate the rate of documents inserted per second.
-		long numBulkInsertedDocs = (parsedArguments.numDocumentsPerBulkInsert *
-				parsedArguments.numBulkInsertOperations);
+		// Calculate the rate of documents submitted and accepted per second.
 		double remoteProcessingRate = 0;
 		double localInsertRate = 0;
+		double acceptedRemoteProcessingRate = 0;
+		double acceptedLocalInsertRate = 0;
+		long numSubmittedDocuments = 0;
+		long numAcceptedDocuments = 0;
+		TreeMap<String, Long> numRejectedDocuments = new TreeMap<String, Long>();
 		for (BulkInsertConnectionStatistics connectionStatistics : allConnectionStatistics) {
+			// Exclude bulk inserts completed during the warm-up.
+			long numBulkInsertedDocs = connectionStatistics.getNumSubmittedDocuments();
+			long numAcceptedDocs = connectionStatistics.getNumAcceptedDocuments();
 			remoteProcessingRate += (MILLIS_PER_SEC * numBulkInsertedDocs /
 					connectionStatistics.getRemoteProcessingTimeMillis());
+			acceptedRemoteProcessingRate += (MILLIS_PER_SEC * numAcceptedDocs /
+					connectionStatistics.getRemoteProcessingTimeMillis());
 			long nonLocalProcessingTime = connectionStatistics.getSendDataTimeMillis() +
 					connectionStatistics.getRemoteProcessingTimeMillis() +
 					connectionStatistics.getReceivedDataTimeMillis();
 			localInsertRate += (MILLIS_PER_SEC * numBulkInsertedDocs / nonLocalProcessingTime);
+			acceptedLocalInsertRate += (MILLIS_PER_SEC * numAcceptedDocs / nonLocalProcessingTime);
+			
+			numSubmittedDocuments += numBulkInsertedDocs;
+			numAcceptedDocuments += numAcceptedDocs;
+			for (Map.Entry<String, Long> entry : connectionStatistics.getNumRejectedDocuments().entrySet()) {
+				Long numRejected = numRejectedDocuments.get(entry.getKey());
+				numRejectedDocuments.put(entry.getKey(),
+						(numRejected == null) ? entry.getValue() : (numRejected + entry.getValue()));
+			}
+		}
+		
+		// Combine the curves explored by connections that adapted their bulk inserts.
+		TreeMap<Integer, BatchSizeSample> allSamples = new TreeMap<Integer, BatchSizeSample>();
+		List<Integer> bestBatchSizes = new ArrayList<Integer>();
+		int numConvergedConnections = 0;
+		for (BulkInsertConnectionStatistics connectionStatistics : allConnectionStatistics) {
+			BulkInsertBatchSizer batchSizer = connectionStatistics.getBatchSizer();
+			if (batchSizer == null) {
+				continue;
+			}
+			for (Map.Entry<Integer, BatchSizeSample> entry : batchSizer.getAllSamples().entrySet()) {
+				BatchSizeSample sample = allSamples.get(entry.getKey());
+				if (sample == null) {
+					sample = new BatchSizeSample();
+					allSamples.put(entry.getKey(), sample);
+				}
+				sample.add(entry.getValue());
+			}
+			bestBatchSizes.add(batchSizer.getBestBatchSize());
+			if (batchSizer.isConverged()) {
+				numConvergedConnections++;
+			}
 		}
+		List<BatchSizeStatistics> allBatchSizeStatistics = new ArrayList<BatchSizeStatistics>(allSamples.size());
+		for (Map.Entry<Integer, BatchSizeSample> entry : allSamples.entrySet()) {
+			BatchSizeSample sample = entry.getValue();
+			allBatchSizeStatistics.add(new BatchSizeStatistics(entry.getKey(), sample.getNumBulkInserts(),
+					NANOS_PER_SEC * sample.getNumDocuments() / sample.getRemoteProcessingTime()));
+		}
+		// The best number of documents is the median of the best of each connection.
+		Collections.sort(bestBatchSizes);
+		int bestDocumentsPerBulkInsert = bestBatchSizes.isEmpty() ? 0 :
+				bestBatchSizes.get(bestBatchSizes.size() / 2);
 		
 		return new BulkInsertBenchmarkResults(timeTaken,
 				totalJsonBytesSent,
 				totalJsonBytesReceived,
+				allConnectionStatistics,
+				getAllNodeStatistics(parsedArguments, allConnectionStatistics),
 				localProcessingStatistics,
 				sendDataStatistics,
 				remoteProcessingStatistics,
 				receiveDataStatistics,
+				latencyStatistics,
 				remoteProcessingRate,
-				localInsertRate);
+				localInsertRate,
+				numSubmittedDocuments,
+				numAcceptedDocuments,
+				numRejectedDocuments,
+				acceptedRemoteProcessingRate,
+				acceptedLocalInsertRate,
+				bestDocumentsPerBulkInsert,
+				numConvergedConnections,
+				bestBatchSizes.size(),
+				allBatchSizeStatistics);
 	}
 	
 	/**
 	 * Returns benchmark results for the connection statistics for CRUD operations.
 	 * 
+	 * @param parsedArguments the parsed command line arguments
 	 * @param allConnectionStatistics the CRUD connection statistics
 	 * @return the benchmark results
 	 */
 	public static CrudBenchmarkResults getCrudResults(
-			int numConnections, CrudOperations.CrudOperationCounts operationCounts,
-			List<CrudConnectionStatistics> allConnectionStatistics) {
-		long timeTaken = getTimeTaken(allConnectionStatistics);
+			ParsedArguments parsedArguments, List<CrudConnectionStatistics> allConnectionStatistics) {
+		long timeTaken = getTimeTaken(parsedArguments, allConnectionStatistics);
 		long totalJsonBytesSent = getTotalJsonBytesSent(allConnectionStatistics);
 		long totalJsonBytesReceived = getTotalJsonBytesReceived(allConnectionStatistics);
 		
@@ -308,45 +767,186 @@ public abstract class BenchmarkResults {
 			values[i] = connectionStatistics.getRemoteDeleteProcessingTimeMillis();
 		}
 		SampleStatistics remoteDeleteProcessingStatistics = SampleStatistics.statisticsForPopulation(values);
+		// Get statistics for remote processing of batch read operations.
+		for (int i = 0; i < allConnectionStatistics.size(); ++i) {
+			CrudConnectionStatistics connectionStatistics = allConnectionStatistics.get(i);
+			values[i] = connectionStatistics.getRemoteBatchReadProcessingTimeMillis();
+		}
+		SampleStatistics remoteBatchReadProcessingStatistics = SampleStatistics.statisticsForPopulation(values);
+		// Get statistics for waiting on scheduled operations.
+		for (int i = 0; i < allConnectionStatistics.size(); ++i) {
+			CrudConnectionStatistics connectionStatistics = allConnectionStatistics.get(i);
+			values[i] = connectionStatistics.getIdleTimeMillis();
+		}
+		SampleStatistics idleStatistics = SampleStatistics.statisticsForPopulation(values);
 
-		// Calculate the rate of documents created per second.
+		// Calculate the rate of documents created per second. Operations completed
+		// during the warm-up are excluded from the counts.
 		double createRate = 0;
 		for (CrudConnectionStatistics connectionStatistics : allConnectionStatistics) {
-			createRate += (operationCounts.numCreateOperations /
+			createRate += (getNumCompletedOperations(connectionStatistics, CrudOperations.Type.CREATE) /
 					(connectionStatistics.getRemoteCreateProcessingTimeMillis() / MILLIS_PER_SEC));
 		}
 		// Calculate the rate of documents read per second.
 		double readRate = 0;
 		for (CrudConnectionStatistics connectionStatistics : allConnectionStatistics) {
-			readRate += (operationCounts.numReadOperations /
+			readRate += (getNumCompletedOperations(connectionStatistics, CrudOperations.Type.READ) /
 					(connectionStatistics.getRemoteReadProcessingTimeMillis() / MILLIS_PER_SEC));
 		}
 		// Calculate the rate of documents updated per second.
 		double updateRate = 0;
 		for (CrudConnectionStatistics connectionStatistics : allConnectionStatistics) {
-			updateRate += (operationCounts.numUpdateOperations /
+			updateRate += (getNumCompletedOperations(connectionStatistics, CrudOperations.Type.UPDATE) /
 					(connectionStatistics.getRemoteUpdateProcessingTimeMillis() / MILLIS_PER_SEC));
 		}
 		// Calculate the rate of documents deleted per second.
 		double deleteRate = 0;
 		for (CrudConnectionStatistics connectionStatistics : allConnectionStatistics) {
-			deleteRate += (operationCounts.numDeleteOperations /
+			deleteRate += (getNumCompletedOperations(connectionStatistics, CrudOperations.Type.DELETE) /
 					(connectionStatistics.getRemoteDeleteProcessingTimeMillis() / MILLIS_PER_SEC));
 		}
+		// Calculate the rate of documents found by batch reads per second, instead of batches.
+		double batchReadRate = 0;
+		long numBatchReadDocuments = 0;
+		for (CrudConnectionStatistics connectionStatistics : allConnectionStatistics) {
+			if (connectionStatistics.getRemoteBatchReadProcessingTimeMillis() == 0) {
+				// Batch reads are disabled by default, so do not divide by zero.
+				continue;
+			}
+			batchReadRate += (connectionStatistics.getNumBatchReadDocuments() /
+					(connectionStatistics.getRemoteBatchReadProcessingTimeMillis() / MILLIS_PER_SEC));
+			numBatchReadDocuments += connectionStatistics.getNumBatchReadDocuments();
+		}
+		
+		// Get statistics for the latency of each operation.
+		LatencyStatistics createLatencyStatistics = getCrudLatencyStatistics(
+				allConnectionStatistics, CrudOperations.Type.CREATE);
+		LatencyStatistics readLatencyStatistics = getCrudLatencyStatistics(
+				allConnectionStatistics, CrudOperations.Type.READ);
+		LatencyStatistics updateLatencyStatistics = getCrudLatencyStatistics(
+				allConnectionStatistics, CrudOperations.Type.UPDATE);
+		LatencyStatistics deleteLatencyStatistics = getCrudLatencyStatistics(
+				allConnectionStatistics, CrudOperations.Type.DELETE);
+		LatencyStatistics batchReadLatencyStatistics = getCrudLatencyStatistics(
+				allConnectionStatistics, CrudOperations.Type.BATCH_READ);
 		
 		return new CrudBenchmarkResults(timeTaken,
 				totalJsonBytesSent,
 				totalJsonBytesReceived,
+				allConnectionStatistics,
+				getAllNodeStatistics(parsedArguments, allConnectionStatistics),
 				localProcessingStatistics,
 				sendDataStatistics,
 				remoteCreateProcessingStatistics,
 				remoteReadProcessingStatistics,
 				remoteUpdateProcessingStatistics,
 				remoteDeleteProcessingStatistics,
+				remoteBatchReadProcessingStatistics,
+				idleStatistics,
 				createRate,
 				readRate,
 				updateRate,
-				deleteRate);
+				deleteRate,
+				batchReadRate,
+				createLatencyStatistics,
+				readLatencyStatistics,
+				updateLatencyStatistics,
+				deleteLatencyStatistics,
+				batchReadLatencyStatistics,
+				numBatchReadDocuments);
+	}
+	
+	/**
+	 * Returns benchmark results for the connection statistics for installing a
+	 * design document and building its index.
+	 * 
+	 * @param parsedArguments the parsed command line arguments
+	 * @param allConnectionStatistics the view connection statistics
+	 * @return the benchmark results
+	 */
+	public static ViewIndexBenchmarkResults getViewIndexResults(
+			ParsedArguments parsedArguments, List<ViewConnectionStatistics> allConnectionStatistics) {
+		// The index is built once, so this step is never shortened by a duration.
+		long timeTaken = 0;
+		for (ViewConnectionStatistics connectionStatistics : allConnectionStatistics) {
+			timeTaken = Math.max(timeTaken, connectionStatistics.getTotalTimeMillis());
+		}
+		long totalJsonBytesSent = getTotalJsonBytesSent(allConnectionStatistics);
+		long totalJsonBytesReceived = getTotalJsonBytesReceived(allConnectionStatistics);
+		
+		// Only the connection that installed the design document built its index.
+		long indexBuildTime = 0;
+		long numIndexedRows = 0;
+		for (ViewConnectionStatistics connectionStatistics : allConnectionStatistics) {
+			if (connectionStatistics.hasBuiltIndex()) {
+				indexBuildTime = connectionStatistics.getIndexBuildTime();
+				numIndexedRows = connectionStatistics.getNumIndexedRows();
+			}
+		}
+		double indexRate = numIndexedRows / (indexBuildTime / NANOS_PER_SEC);
+		
+		return new ViewIndexBenchmarkResults(timeTaken,
+				totalJsonBytesSent,
+				totalJsonBytesReceived,
+				allConnectionStatistics,
+				getAllNodeStatistics(parsedArguments, allConnectionStatistics),
+				getViewLatencyStatistics(allConnectionStatistics, ViewQueries.Type.INSTALL),
+				indexBuildTime,
+				numIndexedRows,
+				indexRate);
+	}
+	
+	/**
+	 * Returns benchmark results for the connection statistics for view queries.
+	 * 
+	 * @param parsedArguments the parsed command line arguments
+	 * @param allConnectionStatistics the view connection statistics
+	 * @return the benchmark results
+	 */
+	public static ViewQueryBenchmarkResults getViewQueryResults(
+			ParsedArguments parsedArguments, List<ViewConnectionStatistics> allConnectionStatistics) {
+		long timeTaken = getTimeTaken(parsedArguments, allConnectionStatistics);
+		long totalJsonBytesSent = getTotalJsonBytesSent(allConnectionStatistics);
+		long totalJsonBytesReceived = getTotalJsonBytesReceived(allConnectionStatistics);
+		
+		long[] values = new long[allConnectionStatistics.size()];
+		// Get statistics for local processing.
+		SampleStatistics localProcessingStatistics = getLocalProcessingStatistics(allConnectionStatistics);
+		// Get statistics for sending data.
+		SampleStatistics sendDataStatistics = getSendDataStatistics(allConnectionStatistics);
+		// Get statistics for remote processing.
+		for (int i = 0; i < allConnectionStatistics.size(); ++i) {
+			ViewConnectionStatistics connectionStatistics = allConnectionStatistics.get(i);
+			values[i] = connectionStatistics.getRemoteProcessingTimeMillis();
+		}
+		SampleStatistics remoteProcessingStatistics = SampleStatistics.statisticsForPopulation(values);
+		
+		// Calculate the rate of queries per second. Queries completed during the
+		// warm-up are excluded from the counts.
+		double remoteProcessingRate = 0;
+		long numRows = 0;
+		for (ViewConnectionStatistics connectionStatistics : allConnectionStatistics) {
+			LatencyHistogram histogram = new LatencyHistogram();
+			connectionStatistics.addLatencies(histogram);
+			remoteProcessingRate += (histogram.getTotalCount() /
+					(connectionStatistics.getRemoteProcessingTimeMillis() / MILLIS_PER_SEC));
+			numRows += connectionStatistics.getNumRows();
+		}
+		
+		return new ViewQueryBenchmarkResults(timeTaken,
+				totalJsonBytesSent,
+				totalJsonBytesReceived,
+				allConnectionStatistics,
+				getAllNodeStatistics(parsedArguments, allConnectionStatistics),
+				localProcessingStatistics,
+				sendDataStatistics,
+				remoteProcessingStatistics,
+				remoteProcessingRate,
+				getViewLatencyStatistics(allConnectionStatistics, ViewQueries.Type.KEY),
+				getViewLatencyStatistics(allConnectionStatistics, ViewQueries.Type.RANGE),
+				getViewLatencyStatistics(allConnectionStatistics, ViewQueries.Type.REDUCE),
+				getViewLatencyStatistics(allConnectionStatistics, ViewQueries.Type.STALE_KEY),
+				numRows);
 	}
 	
 	/**
@@ -420,4 +1020,105 @@ public abstract class BenchmarkResults {
 			return sb.toString();
 		}
 	}
+	
+	/**
+	 * The throughput and latencies of the requests sent to one database node.
+	 */
+	public static final class NodeStatistics {
+		public final String node;
+		public final int numConnections;
+		public final double throughput;
+		public final LatencyStatistics latencyStatistics;
+		
+		public NodeStatistics(String node, int numConnections, double throughput,
+				LatencyStatistics latencyStatistics) {
+			this.node = node;
+			this.numConnections = numConnections;
+			this.throughput = throughput;
+			this.latencyStatistics = latencyStatistics;
+		}
+		
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("connections=").append(format(numConnections)).append(", ");
+			sb.append("throughput=").append(format(throughput)).append(" requests/sec, ");
+			sb.append("latency={").append(latencyStatistics).append("}");
+			return sb.toString();
+		}
+	}
+	
+	/**
+	 * The rate of remote processing of the bulk inserts with one number of documents.
+	 */
+	public static final class BatchSizeStatistics {
+		public final int numDocumentsPerBulkInsert;
+		public final int numBulkInserts;
+		public final double remoteProcessingRate;
+		
+		public BatchSizeStatistics(int numDocumentsPerBulkInsert, int numBulkInserts,
+				double remoteProcessingRate) {
+			this.numDocumentsPerBulkInsert = numDocumentsPerBulkInsert;
+			this.numBulkInserts = numBulkInserts;
+			this.remoteProcessingRate = remoteProcessingRate;
+		}
+		
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("bulkInserts=").append(format(numBulkInserts)).append(", ");
+			sb.append("remoteProcessingRate=").append(format(remoteProcessingRate)).append(" docs/sec per connection");
+			return sb.toString();
+		}
+	}
+	
+	/**
+	 * Percentiles of the latencies of individual operations.
+	 */
+	public static final class LatencyStatistics {
+		private static final double MICROS_PER_MILLI = 1000.0;
+		
+		public final long count;
+		public final double mean;
+		public final double p50;
+		public final double p90;
+		public final double p99;
+		public final double p999;
+		public final double p9999;
+		public final double max;
+		
+		public LatencyStatistics(long count, double mean, double p50, double p90,
+				double p99, double p999, double p9999, double max) {
+			this.count = count;
+			this.mean = mean;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.p999 = p999;
+			this.p9999 = p9999;
+			this.max = max;
+		}
+		
+		private static LatencyStatistics statisticsForHistogram(LatencyHistogram histogram) {
+			return new LatencyStatistics(histogram.getTotalCount(),
+					histogram.getMean(),
+					histogram.getValueAtPercentile(50.0),
+					histogram.getValueAtPercentile(90.0),
+					histogram.getValueAtPercentile(99.0),
+					histogram.getValueAtPercentile(99.9),
+					histogram.getValueAtPercentile(99.99),
+					histogram.getMax());
+		}
+		
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("count=").append(format(count)).append(", ");
+			sb.append("mean=").append(format(mean / MICROS_PER_MILLI)).append(" ms, ");
+			sb.append("p50=").append(format(p50 / MICROS_PER_MILLI)).append(" ms, ");
+			sb.append("p90=").append(format(p90 / MICROS_PER_MILLI)).append(" ms, ");
+			sb.append("p99=").append(format(p99 / MICROS_PER_MILLI)).append(" ms, ");
+			sb.append("p99.9=").append(format(p999 / MICROS_PER_MILLI)).append(" ms, ");
+			sb.append("p99.99=").append(format(p9999 / MICROS_PER_MILLI)).append(" ms, ");
+			sb.append("max=").append(format(max / MICROS_PER_MILLI)).append(" ms");
+			return sb.toString();
+		}
+	}
 }
@@ -0,0 +1,124 @@
+package co.adhoclabs.ironcushion;
+
+import java.io.Reader;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * A {@link Reader} that decodes the UTF-8 bytes of a {@link ChannelBuffer}
+ * without copying them into a {@link String} first. Unlike wrapping the buffer
+ * in an {@link java.io.InputStreamReader}, a reader can be reset to read another
+ * buffer, so that one reader is reused for every response of a connection.
+ * Malformed bytes are decoded as the replacement character {@code U+FFFD}.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class ChannelBufferReader extends Reader {
+	private static final char REPLACEMENT_CHAR = '\uFFFD';
+
+	private ChannelBuffer buffer;
+	private int index;
+	private int endIndex;
+	// The low surrogate of a supplementary character that did not fit in the last read.
+	private char pendingChar;
+
+	public ChannelBufferReader() {
+		reset(null);
+	}
+
+	/**
+	 * Resets this reader to read the readable bytes of the given buffer, which are
+	 * not consumed.
+	 *
+	 * @param buffer the buffer to read, or {@code null} to release the last buffer
+	 */
+	public void reset(ChannelBuffer buffer) {
+		this.buffer = buffer;
+		this.index = (buffer != null) ? buffer.readerIndex() : 0;
+		this.endIndex = (buffer != null) ? buffer.writerIndex() : 0;
+		this.pendingChar = 0;
+	}
+
+	private int getContinuationBits() {
+		if (index == endIndex) {
+			return -1;
+		}
+		int b = buffer.getByte(index);
+		if ((b & 0xc0) != 0x80) {
+			return -1;
+		}
+		index++;
+		return b & 0x3f;
+	}
+
+	private int decodeCodePoint() {
+		int b = buffer.getByte(index++) & 0xff;
+		int codePoint;
+		int numContinuationBytes;
+		int minCodePoint;
+		if (b < 0x80) {
+			return b;
+		} else if ((b & 0xe0) == 0xc0) {
+			codePoint = b & 0x1f;
+			numContinuationBytes = 1;
+			minCodePoint = 0x80;
+		} else if ((b & 0xf0) == 0xe0) {
+			codePoint = b & 0x0f;
+			numContinuationBytes = 2;
+			minCodePoint = 0x800;
+		} else if ((b & 0xf8) == 0xf0) {
+			codePoint = b & 0x07;
+			numContinuationBytes = 3;
+			minCodePoint = 0x10000;
+		} else {
+			return REPLACEMENT_CHAR;
+		}
+		for (int i = 0; i < numContinuationBytes; ++i) {
+			int bits = getContinuationBits();
+			if (bits < 0) {
+				return REPLACEMENT_CHAR;
+			}
+			codePoint = (codePoint << 6) | bits;
+		}
+		if ((codePoint < minCodePoint) || (codePoint > Character.MAX_CODE_POINT) ||
+				((codePoint >= Character.MIN_SURROGATE) && (codePoint <= Character.MAX_SURROGATE))) {
+			return REPLACEMENT_CHAR;
+		}
+		return codePoint;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		int numChars = 0;
+		if (pendingChar != 0) {
+			cbuf[off + numChars++] = pendingChar;
+			pendingChar = 0;
+		}
+		while ((numChars < len) && (index < endIndex)) {
+			int codePoint = decodeCodePoint();
+			if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				cbuf[off + numChars++] = (char) codePoint;
+				continue;
+			}
+			// Write the supplementary character as a surrogate pair.
+			int offset = codePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+			char highSurrogate = (char) (Character.MIN_HIGH_SURROGATE + (offset >>> 10));
+			char lowSurrogate = (char) (Character.MIN_LOW_SURROGATE + (offset & 0x3ff));
+			cbuf[off + numChars++] = highSurrogate;
+			if (numChars < len) {
+				cbuf[off + numChars++] = lowSurrogate;
+			} else {
+				pendingChar = lowSurrogate;
+			}
+		}
+		return (numChars > 0) ? numChars : -1;
+	}
+
+	@Override
+	public void close() {
+		reset(null);
+	}
+}
@@ -0,0 +1,122 @@
+package co.adhoclabs.ironcushion;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+/**
+ * Compresses the bodies of requests, and records their compressed sizes and the
+ * time spent compressing them. Each thread reuses its own {@link Deflater}, so
+ * that the memory used does not grow with the number of connections.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class ContentCompressor {
+	/**
+	 * An enumeration over all supported content encodings.
+	 */
+	public enum Encoding {
+		GZIP,
+		DEFLATE;
+
+		/**
+		 * @return the value of this encoding in the {@code Content-Encoding} header
+		 */
+		public String getName() {
+			return name().toLowerCase();
+		}
+	}
+
+	private static final byte[] GZIP_HEADER = {
+		0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+	};
+
+	private final Encoding encoding;
+	private final ThreadLocal<Deflater> deflaters;
+	private final ThreadLocal<CRC32> checksums;
+
+	public ContentCompressor(final Encoding encoding) {
+		this.encoding = encoding;
+		this.deflaters = new ThreadLocal<Deflater>() {
+			@Override
+			protected Deflater initialValue() {
+				// The gzip header and trailer are written around raw deflate data.
+				return new Deflater(Deflater.DEFAULT_COMPRESSION, encoding == Encoding.GZIP);
+			}
+		};
+		this.checksums = new ThreadLocal<CRC32>() {
+			@Override
+			protected CRC32 initialValue() {
+				return new CRC32();
+			}
+		};
+	}
+
+	/**
+	 * @return the encoding of compressed bodies
+	 */
+	public Encoding getEncoding() {
+		return encoding;
+	}
+
+	private static void writeIntLittleEndian(ChannelBuffer buffer, long value) {
+		buffer.writeByte((int) value);
+		buffer.writeByte((int) (value >>> 8));
+		buffer.writeByte((int) (value >>> 16));
+		buffer.writeByte((int) (value >>> 24));
+	}
+
+	/**
+	 * Returns the compressed readable bytes of the given buffer, which are not
+	 * consumed. The sizes before and after compressing and the time spent
+	 * compressing are recorded in the given statistics.
+	 *
+	 * @param content the body of a request
+	 * @param connectionStatistics the statistics of the connection sending the request
+	 * @return the compressed body
+	 */
+	public ChannelBuffer compress(ChannelBuffer content, AbstractConnectionStatistics connectionStatistics) {
+		long startTime = System.nanoTime();
+		int length = content.readableBytes();
+		byte[] input = null;
+		int inputOffset = 0;
+		if (content.hasArray()) {
+			input = content.array();
+			inputOffset = content.arrayOffset() + content.readerIndex();
+		} else {
+			// Direct and composite buffers must be copied for the deflater.
+			input = new byte[length];
+			content.getBytes(content.readerIndex(), input);
+		}
+
+		ChannelBuffer compressed = ChannelBuffers.dynamicBuffer(Math.max(64, length / 4));
+		CRC32 checksum = null;
+		if (encoding == Encoding.GZIP) {
+			compressed.writeBytes(GZIP_HEADER);
+			checksum = checksums.get();
+			checksum.reset();
+			checksum.update(input, inputOffset, length);
+		}
+		Deflater deflater = deflaters.get();
+		deflater.reset();
+		deflater.setInput(input, inputOffset, length);
+		deflater.finish();
+		while (!deflater.finished()) {
+			// Deflate directly into the array of the buffer.
+			compressed.ensureWritableBytes(Math.max(64, length / 8));
+			int numBytes = deflater.deflate(compressed.array(),
+					compressed.arrayOffset() + compressed.writerIndex(), compressed.writableBytes());
+			compressed.writerIndex(compressed.writerIndex() + numBytes);
+		}
+		if (checksum != null) {
+			writeIntLittleEndian(compressed, checksum.getValue());
+			writeIntLittleEndian(compressed, length);
+		}
+
+		connectionStatistics.compressedJsonBytes(length, compressed.readableBytes(),
+				System.nanoTime() - startTime);
+		return compressed;
+	}
+}
@@ -0,0 +1,100 @@
+package co.adhoclabs.ironcushion;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A node of the database that connections can be established to.
+ * 
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class DatabaseNode {
+	private final String name;
+	private final InetSocketAddress address;
+	private final int weight;
+	
+	private final AtomicInteger numOpenConnections;
+	private final AtomicInteger numOutstandingRequests;
+	
+	/**
+	 * @param name the name of the node in results
+	 * @param address the address of the node
+	 * @param weight the relative share of connections if selecting nodes by weight
+	 */
+	public DatabaseNode(String name, InetSocketAddress address, int weight) {
+		this.name = name;
+		this.address = address;
+		this.weight = weight;
+		
+		this.numOpenConnections = new AtomicInteger();
+		this.numOutstandingRequests = new AtomicInteger();
+	}
+	
+	/**
+	 * @return the name of the node in results
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the address of the node
+	 */
+	public InetSocketAddress getAddress() {
+		return address;
+	}
+	
+	/**
+	 * @return the relative share of connections if selecting nodes by weight
+	 */
+	public int getWeight() {
+		return weight;
+	}
+	
+	/**
+	 * Called when a connection to this node is opened.
+	 */
+	public void openedConnection() {
+		numOpenConnections.incrementAndGet();
+	}
+	
+	/**
+	 * Called when a connection to this node is closed.
+	 */
+	public void closedConnection() {
+		numOpenConnections.decrementAndGet();
+	}
+	
+	/**
+	 * @return the number of connections to this node that are open
+	 */
+	public int getNumOpenConnections() {
+		return numOpenConnections.get();
+	}
+	
+	/**
+	 * Called when a request is sent to this node.
+	 */
+	public void sentRequest() {
+		numOutstandingRequests.incrementAndGet();
+	}
+	
+	/**
+	 * Called when a response is received from this node.
+	 */
+	public void receivedResponse() {
+		numOutstandingRequests.decrementAndGet();
+	}
+	
+	/**
+	 * @return the number of requests sent to this node that have not received responses
+	 */
+	public int getNumOutstandingRequests() {
+		return numOutstandingRequests.get();
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+}
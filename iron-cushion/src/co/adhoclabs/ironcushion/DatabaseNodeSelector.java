@@ -0,0 +1,130 @@
+package co.adhoclabs.ironcushion;
+
+import java.util.List;
+
+/**
+ * Selects the {@link DatabaseNode} that each new connection is established to.
+ * A connection sends all of its requests to the same node.
+ * 
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public abstract class DatabaseNodeSelector {
+	/**
+	 * An enumeration over all ways of selecting nodes.
+	 */
+	public enum Strategy {
+		ROUND_ROBIN,
+		WEIGHTED,
+		LEAST_OUTSTANDING,
+	}
+	
+	protected final List<DatabaseNode> databaseNodes;
+	
+	private DatabaseNodeSelector(List<DatabaseNode> databaseNodes) {
+		this.databaseNodes = databaseNodes;
+	}
+	
+	/**
+	 * @return all nodes that can be selected
+	 */
+	public List<DatabaseNode> getDatabaseNodes() {
+		return databaseNodes;
+	}
+	
+	/**
+	 * @return the node to establish the next connection to
+	 */
+	public abstract DatabaseNode selectNode();
+	
+	private static final class RoundRobinDatabaseNodeSelector extends DatabaseNodeSelector {
+		private int nextIndex;
+		
+		private RoundRobinDatabaseNodeSelector(List<DatabaseNode> databaseNodes) {
+			super(databaseNodes);
+			
+			nextIndex = 0;
+		}
+		
+		@Override
+		public DatabaseNode selectNode() {
+			DatabaseNode databaseNode = databaseNodes.get(nextIndex);
+			nextIndex = (nextIndex + 1) % databaseNodes.size();
+			return databaseNode;
+		}
+	}
+	
+	private static final class WeightedDatabaseNodeSelector extends DatabaseNodeSelector {
+		private final int totalWeight;
+		private final int[] currentWeights;
+		
+		private WeightedDatabaseNodeSelector(List<DatabaseNode> databaseNodes) {
+			super(databaseNodes);
+			
+			int totalWeight = 0;
+			for (DatabaseNode databaseNode : databaseNodes) {
+				totalWeight += databaseNode.getWeight();
+			}
+			this.totalWeight = totalWeight;
+			this.currentWeights = new int[databaseNodes.size()];
+		}
+		
+		@Override
+		public DatabaseNode selectNode() {
+			// Interleave the nodes instead of selecting each heavier node many times in a row.
+			int selectedIndex = 0;
+			for (int i = 0; i < currentWeights.length; ++i) {
+				currentWeights[i] += databaseNodes.get(i).getWeight();
+				if (currentWeights[i] > currentWeights[selectedIndex]) {
+					selectedIndex = i;
+				}
+			}
+			currentWeights[selectedIndex] -= totalWeight;
+			return databaseNodes.get(selectedIndex);
+		}
+	}
+	
+	private static final class LeastOutstandingDatabaseNodeSelector extends DatabaseNodeSelector {
+		private LeastOutstandingDatabaseNodeSelector(List<DatabaseNode> databaseNodes) {
+			super(databaseNodes);
+		}
+		
+		@Override
+		public DatabaseNode selectNode() {
+			DatabaseNode selectedNode = null;
+			int minOutstandingRequests = Integer.MAX_VALUE;
+			int minOpenConnections = Integer.MAX_VALUE;
+			for (DatabaseNode databaseNode : databaseNodes) {
+				int numOutstandingRequests = databaseNode.getNumOutstandingRequests();
+				int numOpenConnections = databaseNode.getNumOpenConnections();
+				// Break ties by selecting the node with the fewest open connections.
+				if ((numOutstandingRequests < minOutstandingRequests) ||
+						((numOutstandingRequests == minOutstandingRequests) &&
+								(numOpenConnections < minOpenConnections))) {
+					selectedNode = databaseNode;
+					minOutstandingRequests = numOutstandingRequests;
+					minOpenConnections = numOpenConnections;
+				}
+			}
+			return selectedNode;
+		}
+	}
+	
+	/**
+	 * Returns a {@link DatabaseNodeSelector} using the given strategy.
+	 * 
+	 * @param strategy the way to select nodes
+	 * @param databaseNodes the nodes to select from
+	 * @return the selector
+	 */
+	public static DatabaseNodeSelector create(Strategy strategy, List<DatabaseNode> databaseNodes) {
+		switch (strategy) {
+		case WEIGHTED:
+			return new WeightedDatabaseNodeSelector(databaseNodes);
+		case LEAST_OUTSTANDING:
+			return new LeastOutstandingDatabaseNodeSelector(databaseNodes);
+		case ROUND_ROBIN:
+		default:
+			return new RoundRobinDatabaseNodeSelector(databaseNodes);
+		}
+	}
+}
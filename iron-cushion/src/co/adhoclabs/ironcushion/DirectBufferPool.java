@@ -0,0 +1,207 @@
+package co.adhoclabs.ironcushion;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Formatter;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+/**
+ * A pool of direct {@link ChannelBuffer} instances for the bodies of requests, so
+ * that sending a request neither creates garbage on the Java heap nor copies the
+ * body into a direct buffer owned by Netty. Buffers are allocated with a capacity
+ * that is a power of two, and a buffer that is released is reused by the next
+ * request for a body of the same size.
+ * 
+ * The direct memory of all buffers is limited by a budget. If a buffer cannot be
+ * allocated within the budget, then free buffers of other sizes are discarded.
+ * The budget is soft, as the direct memory of a discarded buffer is freed only
+ * once it is garbage collected, and so until then the direct memory in use may
+ * exceed the budget by the bytes discarded.
+ * If all buffers are in use, then no buffer is returned, and the caller either
+ * defers generating bodies until one is released or uses a buffer on the heap.
+ * This pool never waits, as the worker threads that release its buffers may
+ * themselves be waiting for bodies to be generated.
+ * 
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class DirectBufferPool {
+	private static final int MIN_BUFFER_SIZE = 4096;
+	
+	private final long maxBytes;
+	// The following fields are guarded by this pool.
+	private final Map<Integer, List<ChannelBuffer>> freeBuffersBySize;
+	private final Set<ChannelBuffer> usedBuffers;
+	private long numAllocatedBytes;
+	private long numUsedBytes;
+	private long peakUsedBytes;
+	private long numDiscardedBytes;
+	private long numAcquiredBuffers;
+	private long numReusedBuffers;
+	private long numUnavailableBuffers;
+	private long numDeferrals;
+	
+	/**
+	 * Creates a pool whose buffers use at most the given number of bytes.
+	 * 
+	 * @param maxBytes the budget of direct memory for all buffers
+	 */
+	public DirectBufferPool(long maxBytes) {
+		this.maxBytes = maxBytes;
+		this.freeBuffersBySize = new TreeMap<Integer, List<ChannelBuffer>>();
+		this.usedBuffers = Collections.newSetFromMap(new IdentityHashMap<ChannelBuffer, Boolean>());
+		this.numAllocatedBytes = 0;
+		this.numUsedBytes = 0;
+		
+		reset();
+	}
+	
+	/**
+	 * Resets the counts of buffers at the start of a step. The peak number of bytes
+	 * in use starts from the number of bytes still in use.
+	 */
+	public synchronized void reset() {
+		peakUsedBytes = numUsedBytes;
+		numDiscardedBytes = 0;
+		numAcquiredBuffers = 0;
+		numReusedBuffers = 0;
+		numUnavailableBuffers = 0;
+		numDeferrals = 0;
+	}
+	
+	private static int getBufferSize(int numBytes) {
+		if (numBytes <= MIN_BUFFER_SIZE) {
+			return MIN_BUFFER_SIZE;
+		}
+		int bufferSize = Integer.highestOneBit(numBytes);
+		return (bufferSize == numBytes) ? bufferSize : (bufferSize << 1);
+	}
+	
+	private boolean discardFreeBuffers(long numBytes) {
+		// Direct memory is freed once the discarded buffers are garbage collected.
+		Iterator<List<ChannelBuffer>> freeBuffersIterator = freeBuffersBySize.values().iterator();
+		while (freeBuffersIterator.hasNext() && (numAllocatedBytes + numBytes > maxBytes)) {
+			List<ChannelBuffer> freeBuffers = freeBuffersIterator.next();
+			while (!freeBuffers.isEmpty() && (numAllocatedBytes + numBytes > maxBytes)) {
+				ChannelBuffer freeBuffer = freeBuffers.remove(freeBuffers.size() - 1);
+				numAllocatedBytes -= freeBuffer.capacity();
+				numDiscardedBytes += freeBuffer.capacity();
+			}
+		}
+		return (numAllocatedBytes + numBytes <= maxBytes);
+	}
+	
+	private ChannelBuffer useBuffer(ChannelBuffer buffer) {
+		usedBuffers.add(buffer);
+		numUsedBytes += buffer.capacity();
+		peakUsedBytes = Math.max(peakUsedBytes, numUsedBytes);
+		buffer.clear();
+		return buffer;
+	}
+	
+	/**
+	 * Returns an empty direct buffer with a capacity of at least the given number of
+	 * bytes, which must be released by {@link #release(ChannelBuffer)} once it is
+	 * written.
+	 * 
+	 * @param numBytes the number of bytes to write to the buffer
+	 * @return the buffer, or {@code null} if all buffers are in use and no buffer
+	 *         can be allocated within the budget
+	 */
+	public synchronized ChannelBuffer acquire(int numBytes) {
+		int bufferSize = getBufferSize(numBytes);
+		List<ChannelBuffer> freeBuffers = freeBuffersBySize.get(bufferSize);
+		if ((freeBuffers != null) && !freeBuffers.isEmpty()) {
+			numAcquiredBuffers++;
+			numReusedBuffers++;
+			return useBuffer(freeBuffers.remove(freeBuffers.size() - 1));
+		}
+		if ((bufferSize <= maxBytes) && discardFreeBuffers(bufferSize)) {
+			numAcquiredBuffers++;
+			numAllocatedBytes += bufferSize;
+			return useBuffer(ChannelBuffers.wrappedBuffer(ByteBuffer.allocateDirect(bufferSize)));
+		}
+		numUnavailableBuffers++;
+		return null;
+	}
+	
+	/**
+	 * Returns a direct buffer containing the readable bytes of the given buffer,
+	 * which are not consumed. If the given buffer is already direct, or if no
+	 * direct buffer is available, then the given buffer is returned.
+	 * 
+	 * @param buffer the buffer to copy
+	 * @return the direct buffer, or the given buffer
+	 */
+	public ChannelBuffer copy(ChannelBuffer buffer) {
+		if (buffer.isDirect()) {
+			return buffer;
+		}
+		ChannelBuffer directBuffer = acquire(buffer.readableBytes());
+		if (directBuffer == null) {
+			return buffer;
+		}
+		directBuffer.writeBytes(buffer, buffer.readerIndex(), buffer.readableBytes());
+		return directBuffer;
+	}
+	
+	/**
+	 * Returns the given buffer to the pool, if it was returned by
+	 * {@link #acquire(int)} and not yet released. Any other buffer is
+	 * ignored.
+	 * 
+	 * @param buffer the buffer to release
+	 */
+	public synchronized void release(ChannelBuffer buffer) {
+		if (!usedBuffers.remove(buffer)) {
+			return;
+		}
+		numUsedBytes -= buffer.capacity();
+		List<ChannelBuffer> freeBuffers = freeBuffersBySize.get(buffer.capacity());
+		if (freeBuffers == null) {
+			freeBuffers = new ArrayList<ChannelBuffer>();
+			freeBuffersBySize.put(buffer.capacity(), freeBuffers);
+		}
+		freeBuffers.add(buffer);
+	}
+	
+	/**
+	 * Records that a body was generated ahead of time but not copied into a buffer,
+	 * and so generating further bodies was deferred until a buffer is released.
+	 */
+	public synchronized void deferred() {
+		numDeferrals++;
+	}
+	
+	@Override
+	public String toString() {
+		return toString("");
+	}
+	
+	public synchronized String toString(String indent) {
+		StringBuilder sb = new StringBuilder();
+		Formatter formatter = new Formatter(sb);
+		sb.append(indent).append("buffers={");
+		formatter.format("acquired=%,d, ", numAcquiredBuffers);
+		formatter.format("reused=%,d (%.1f%%), ", numReusedBuffers,
+				(numAcquiredBuffers > 0) ? ((100.0 * numReusedBuffers) / numAcquiredBuffers) : 0.0);
+		formatter.format("unavailable=%,d, ", numUnavailableBuffers);
+		formatter.format("deferred=%,d", numDeferrals);
+		sb.append("}\n");
+		sb.append(indent).append("bytes={");
+		formatter.format("peakUsed=%,d, ", peakUsedBytes);
+		formatter.format("allocated=%,d, ", numAllocatedBytes);
+		formatter.format("discarded=%,d, ", numDiscardedBytes);
+		formatter.format("budget=%,d", maxBytes);
+		sb.append('}');
+		return sb.toString();
+	}
+}
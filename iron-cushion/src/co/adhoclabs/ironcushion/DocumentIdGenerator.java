@@ -0,0 +1,291 @@
+package co.adhoclabs.ironcushion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.util.CharsetUtil;
+
+/**
+ * Generates the identifier of each document from its number. Documents are
+ * numbered as they are bulk inserted and created by every connection, and each
+ * strategy writes the identifier of the same number the same way every time, so
+ * that a document can be read by its number. A {@link Writer} writes identifiers
+ * directly to a {@link ChannelBuffer} without allocating any objects.
+ * 
+ * If identifiers are assigned by the server, then the generator is a
+ * {@link ServerAssigned} instead, documents are written without an identifier,
+ * and the identifiers in the responses to bulk inserts are recorded for each
+ * connection.
+ * 
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public abstract class DocumentIdGenerator {
+	/**
+	 * An enumeration over all ways of generating identifiers.
+	 */
+	public enum Strategy {
+		DECIMAL,
+		PADDED,
+		UUID4,
+		UUID7,
+		PARTITIONED,
+		SERVER,
+	}
+	
+	/**
+	 * The number of characters in the longest identifier written by any strategy.
+	 */
+	public static final int MAX_ID_LENGTH = 36;
+	
+	private static final int NUM_PADDED_DIGITS = 10;
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(CharsetUtil.US_ASCII);
+	
+	private DocumentIdGenerator() {
+	}
+	
+	/**
+	 * @return {@code true} if this is a {@link ServerAssigned}, and so documents are
+	 *         written without identifiers
+	 */
+	public abstract boolean isAssignedByServer();
+	
+	/**
+	 * Returns the identifier of a document bulk inserted by the given connection.
+	 * 
+	 * @param connectionNum the number of the connection
+	 * @param bulkInsertedDocumentNum the number of the document among those bulk
+	 *        inserted by the connection
+	 * @param documentNum the number of the document among those of all connections
+	 * @param idBuffer the buffer reused by the caller to write the identifier to
+	 * @return the identifier of the document, or {@code null} if unknown
+	 */
+	public abstract String getBulkInsertedId(int connectionNum, int bulkInsertedDocumentNum,
+			int documentNum, ChannelBuffer idBuffer);
+	
+	/**
+	 * Returns a buffer for the callers of {@link Writer#getId(int, ChannelBuffer)}
+	 * to reuse, which has the capacity of the longest identifier.
+	 * 
+	 * @return the buffer
+	 */
+	public static ChannelBuffer newIdBuffer() {
+		return ChannelBuffers.buffer(MAX_ID_LENGTH);
+	}
+	
+	/**
+	 * A {@link DocumentIdGenerator} that writes the identifier of each document.
+	 */
+	public static abstract class Writer extends DocumentIdGenerator {
+		private Writer() {
+		}
+		
+		/**
+		 * Writes the identifier of the document with the given number.
+		 * 
+		 * @param documentNum the number of the document
+		 * @param buffer the buffer to write the identifier to
+		 */
+		public abstract void writeId(int documentNum, ChannelBuffer buffer);
+		
+		/**
+		 * Returns the identifier of the document with the given number. It is
+		 * written to the given buffer, so only the returned {@link String} is
+		 * allocated.
+		 * 
+		 * @param documentNum the number of the document
+		 * @param idBuffer the buffer returned by {@link #newIdBuffer()}, which is cleared
+		 * @return the identifier of the document
+		 */
+		public String getId(int documentNum, ChannelBuffer idBuffer) {
+			idBuffer.clear();
+			writeId(documentNum, idBuffer);
+			return new String(idBuffer.array(), idBuffer.arrayOffset(), idBuffer.writerIndex(),
+					CharsetUtil.US_ASCII);
+		}
+		
+		@Override
+		public boolean isAssignedByServer() {
+			return false;
+		}
+		
+		@Override
+		public String getBulkInsertedId(int connectionNum, int bulkInsertedDocumentNum,
+				int documentNum, ChannelBuffer idBuffer) {
+			return getId(documentNum, idBuffer);
+		}
+	}
+	
+	private static void writeDigits(ChannelBuffer buffer, int value, int numDigits) {
+		int divisor = 1;
+		for (int i = 1; i < numDigits; ++i) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			buffer.writeByte('0' + ((value / divisor) % 10));
+		}
+	}
+	
+	private static void writeHex(ChannelBuffer buffer, long value, int fromDigit, int toDigit) {
+		for (int i = fromDigit; i < toDigit; ++i) {
+			buffer.writeByte(HEX_DIGITS[(int) (value >>> (60 - (4 * i))) & 0xf]);
+		}
+	}
+	
+	private static void writeUuid(ChannelBuffer buffer, long high, long low) {
+		// Write the canonical form of 8-4-4-4-12 lowercase hexadecimal digits.
+		writeHex(buffer, high, 0, 8);
+		buffer.writeByte('-');
+		writeHex(buffer, high, 8, 12);
+		buffer.writeByte('-');
+		writeHex(buffer, high, 12, 16);
+		buffer.writeByte('-');
+		writeHex(buffer, low, 0, 4);
+		buffer.writeByte('-');
+		writeHex(buffer, low, 4, 16);
+	}
+	
+	/**
+	 * Returns the bits that SplitMix64 generates from the given value, so that
+	 * consecutive values produce uncorrelated bits.
+	 */
+	private static long mix(long value) {
+		value += 0x9e3779b97f4a7c15L;
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+	
+	private static final class DecimalDocumentIdGenerator extends Writer {
+		@Override
+		public void writeId(int documentNum, ChannelBuffer buffer) {
+			DocumentSchema.writeDecimal(buffer, documentNum);
+		}
+	}
+	
+	private static final class PaddedDocumentIdGenerator extends Writer {
+		@Override
+		public void writeId(int documentNum, ChannelBuffer buffer) {
+			// Pad with zeroes so that identifiers sort in numeric order.
+			writeDigits(buffer, documentNum, NUM_PADDED_DIGITS);
+		}
+	}
+	
+	private static final class Uuid4DocumentIdGenerator extends Writer {
+		@Override
+		public void writeId(int documentNum, ChannelBuffer buffer) {
+			// The random bits are derived from the number, so that it can be read again.
+			long high = mix(2L * documentNum);
+			long low = mix((2L * documentNum) + 1);
+			high = (high & ~0xf000L) | 0x4000L;
+			low = (low & 0x3fffffffffffffffL) | 0x8000000000000000L;
+			writeUuid(buffer, high, low);
+		}
+	}
+	
+	private static final class Uuid7DocumentIdGenerator extends Writer {
+		private final long timestamp;
+		
+		private Uuid7DocumentIdGenerator(long timestamp) {
+			this.timestamp = timestamp;
+		}
+		
+		@Override
+		public void writeId(int documentNum, ChannelBuffer buffer) {
+			// Follow the timestamp with the number as a counter, then random bits.
+			long high = (timestamp << 16) | 0x7000L | (documentNum >>> 19);
+			long low = 0x8000000000000000L | ((long) (documentNum & 0x7ffff) << 43) |
+					(mix(documentNum) & 0x7ffffffffffL);
+			writeUuid(buffer, high, low);
+		}
+	}
+	
+	private static final class PartitionedDocumentIdGenerator extends Writer {
+		private final int numPartitions;
+		
+		private PartitionedDocumentIdGenerator(int numPartitions) {
+			this.numPartitions = numPartitions;
+		}
+		
+		@Override
+		public void writeId(int documentNum, ChannelBuffer buffer) {
+			// Consecutive documents are in different partitions.
+			DocumentSchema.writeDecimal(buffer, documentNum % numPartitions);
+			buffer.writeByte(':');
+			writeDigits(buffer, documentNum, NUM_PADDED_DIGITS);
+		}
+	}
+	
+	/**
+	 * A {@link DocumentIdGenerator} for identifiers that are assigned by the server,
+	 * which records the identifiers of the documents bulk inserted by each
+	 * connection.
+	 */
+	public static final class ServerAssigned extends DocumentIdGenerator {
+		private final List<List<String>> allBulkInsertedIds;
+		
+		private ServerAssigned(int numConnections) {
+			allBulkInsertedIds = new ArrayList<List<String>>(numConnections);
+			for (int i = 0; i < numConnections; ++i) {
+				allBulkInsertedIds.add(new ArrayList<String>());
+			}
+		}
+		
+		@Override
+		public boolean isAssignedByServer() {
+			return true;
+		}
+		
+		/**
+		 * Records the identifier that the server assigned to the next document bulk
+		 * inserted by the given connection.
+		 * 
+		 * @param connectionNum the number of the connection
+		 * @param documentId the identifier of the document
+		 */
+		public void assignedBulkInsertedId(int connectionNum, String documentId) {
+			// Each connection only records its own identifiers.
+			allBulkInsertedIds.get(connectionNum).add(documentId);
+		}
+		
+		@Override
+		public String getBulkInsertedId(int connectionNum, int bulkInsertedDocumentNum,
+				int documentNum, ChannelBuffer idBuffer) {
+			List<String> bulkInsertedIds = allBulkInsertedIds.get(connectionNum);
+			if (bulkInsertedIds.isEmpty()) {
+				return null;
+			}
+			return bulkInsertedIds.get(bulkInsertedDocumentNum % bulkInsertedIds.size());
+		}
+	}
+	
+	/**
+	 * Returns the {@link DocumentIdGenerator} for the given strategy.
+	 * 
+	 * @param strategy the way of generating identifiers
+	 * @param numConnections the number of connections
+	 * @param numPartitions the number of partitions, if the strategy is
+	 *        {@link Strategy#PARTITIONED}
+	 * @return the generator of identifiers
+	 */
+	public static DocumentIdGenerator create(Strategy strategy, int numConnections, int numPartitions) {
+		switch (strategy) {
+		case DECIMAL:
+			return new DecimalDocumentIdGenerator();
+		case PADDED:
+			return new PaddedDocumentIdGenerator();
+		case UUID4:
+			return new Uuid4DocumentIdGenerator();
+		case UUID7:
+			return new Uuid7DocumentIdGenerator(System.currentTimeMillis());
+		case PARTITIONED:
+			return new PartitionedDocumentIdGenerator(numPartitions);
+		case SERVER:
+			return new ServerAssigned(numConnections);
+		default:
+			break;
+		}
+		return null;
+	}
+}
@@ -14,8 +14,12 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.util.CharsetUtil;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.w3c.dom.Document;
@@ -67,9 +71,25 @@ public class DocumentSchema {
 		}
 		
 		private final List<Entry> entries;
+		private final Value[] values;
+		private final byte[][] names;
+		private final int[] writeOrder;
 		
+		@SuppressWarnings("unchecked")
 		private ObjectValue(List<Entry> entries) {
 			this.entries = entries;
+			
+			values = new Value[entries.size()];
+			names = new byte[entries.size()][];
+			JSONObject indexes = new JSONObject();
+			int index = 0;
+			for (Entry entry : entries) {
+				values[index] = entry.value;
+				names[index] = getNameBytes(entry.name);
+				indexes.put(entry.name, index);
+				index++;
+			}
+			writeOrder = getWriteOrder(indexes);
 		}
 		
 		public Type getType() {
@@ -234,10 +254,48 @@ public class DocumentSchema {
 		return null;
 	}
 	
+	private static final String ID_NAME = "_id";
+	private static final int ID_INDEX = -1;
+	private static final byte[] ID_NAME_BYTES = getNameBytes(ID_NAME);
+	private static final byte[] TRUE_BYTES = "true".getBytes(CharsetUtil.US_ASCII);
+	private static final byte[] FALSE_BYTES = "false".getBytes(CharsetUtil.US_ASCII);
+	private static final byte[] NULL_BYTES = "null".getBytes(CharsetUtil.US_ASCII);
+	
+	/**
+	 * Returns the JSON of the given name followed by a colon, as written by
+	 * {@link JSONObject}.
+	 */
+	private static byte[] getNameBytes(String name) {
+		return ('"' + JSONValue.escape(String.valueOf(name)) + "\":").getBytes(CharsetUtil.UTF_8);
+	}
+	
+	/**
+	 * Given a {@link JSONObject} mapping each name to the index of its entry,
+	 * returns the indexes in the order that the {@link JSONObject} writes them.
+	 */
+	private static int[] getWriteOrder(JSONObject indexes) {
+		int[] writeOrder = new int[indexes.size()];
+		int i = 0;
+		for (Object index : indexes.values()) {
+			writeOrder[i++] = (Integer) index;
+		}
+		return writeOrder;
+	}
+	
 	private final ObjectValue root;
+	private final int[] documentWriteOrder;
 	
+	@SuppressWarnings("unchecked")
 	private DocumentSchema(ObjectValue root) {
 		this.root = root;
+		
+		// The identifier is written among the other entries of a new document.
+		JSONObject indexes = new JSONObject();
+		for (int i = 0; i < root.values.length; ++i) {
+			indexes.put(root.entries.get(i).name, i);
+		}
+		indexes.put(ID_NAME, ID_INDEX);
+		documentWriteOrder = getWriteOrder(indexes);
 	}
 	
 	/**
@@ -447,6 +505,271 @@ public class DocumentSchema {
 		return getObject(root, generator);
 	}
 	
+	/**
+	 * Returns a new writer of documents that conform to the schema.
+	 * 
+	 * @param documentIdGenerator the generator of the identifier of each document
+	 * @return the writer of documents
+	 */
+	public DocumentWriter newDocumentWriter(DocumentIdGenerator documentIdGenerator) {
+		return new DocumentWriter(documentIdGenerator);
+	}
+	
+	/**
+	 * Writes the JSON of new documents that conform to the schema directly to a
+	 * {@link ChannelBuffer}. The bytes written are the same as those of the
+	 * {@link JSONObject} returned by {@link DocumentSchema#getNewDocument(ValueGenerator)}
+	 * with its identifier assigned, but no objects are created for the values. If
+	 * identifiers are assigned by the server, then no identifier is written. A
+	 * writer can only be used by one thread at a time.
+	 */
+	public final class DocumentWriter {
+		// Values are generated in the order of the schema, but written in the order
+		// of JSONObject, so each object stages its values in a buffer for its depth.
+		private final List<ChannelBuffer> valueBuffers;
+		private final List<int[]> valueOffsets;
+		// The writer of identifiers, or null if they are assigned by the server.
+		private final DocumentIdGenerator.Writer idWriter;
+		private int idIndex;
+		private int idLength;
+		
+		private DocumentWriter(DocumentIdGenerator documentIdGenerator) {
+			valueBuffers = new ArrayList<ChannelBuffer>();
+			valueOffsets = new ArrayList<int[]>();
+			this.idWriter = documentIdGenerator.isAssignedByServer() ?
+					null : (DocumentIdGenerator.Writer) documentIdGenerator;
+			idIndex = -1;
+			idLength = 0;
+		}
+		
+		/**
+		 * Writes a new document that conforms to the schema.
+		 * 
+		 * @param generator the generator for values in the document
+		 * @param documentNum the number of the document, from which its identifier is generated
+		 * @param buffer the buffer to write the JSON of the document to
+		 */
+		public void writeNewDocument(ValueGenerator generator, int documentNum, ChannelBuffer buffer) {
+			writeObject(root, documentWriteOrder, documentNum, generator, buffer, 0);
+		}
+		
+		/**
+		 * @return the index in the buffer of the first character of the identifier
+		 *         written by the last call to {@link #writeNewDocument}, or {@code -1}
+		 *         if identifiers are assigned by the server
+		 */
+		public int getIdIndex() {
+			return idIndex;
+		}
+		
+		/**
+		 * @return the number of characters in the identifier written by the last call
+		 *         to {@link #writeNewDocument}
+		 */
+		public int getIdLength() {
+			return idLength;
+		}
+		
+		private void writeObject(ObjectValue value, int[] writeOrder, int documentNum,
+				ValueGenerator generator, ChannelBuffer buffer, int depth) {
+			if (depth == valueBuffers.size()) {
+				valueBuffers.add(ChannelBuffers.dynamicBuffer());
+				valueOffsets.add(new int[value.values.length + 1]);
+			}
+			ChannelBuffer valueBuffer = valueBuffers.get(depth);
+			int[] offsets = valueOffsets.get(depth);
+			if (offsets.length <= value.values.length) {
+				offsets = new int[value.values.length + 1];
+				valueOffsets.set(depth, offsets);
+			}
+			
+			// Generate the values in the same order as getNewDocument.
+			valueBuffer.clear();
+			for (int i = 0; i < value.values.length; ++i) {
+				offsets[i] = valueBuffer.writerIndex();
+				writeValue(value.values[i], generator, valueBuffer, depth + 1);
+			}
+			offsets[value.values.length] = valueBuffer.writerIndex();
+			
+			buffer.writeByte('{');
+			boolean first = true;
+			for (int i = 0; i < writeOrder.length; ++i) {
+				int index = writeOrder[i];
+				if ((index == ID_INDEX) && (idWriter == null)) {
+					continue;
+				}
+				if (!first) {
+					buffer.writeByte(',');
+				}
+				first = false;
+				if (index == ID_INDEX) {
+					buffer.writeBytes(ID_NAME_BYTES);
+					buffer.writeByte('"');
+					idIndex = buffer.writerIndex();
+					idWriter.writeId(documentNum, buffer);
+					idLength = buffer.writerIndex() - idIndex;
+					buffer.writeByte('"');
+				} else {
+					buffer.writeBytes(value.names[index]);
+					buffer.writeBytes(valueBuffer, offsets[index], offsets[index + 1] - offsets[index]);
+				}
+			}
+			buffer.writeByte('}');
+		}
+		
+		private void writeValue(Value value, ValueGenerator generator, ChannelBuffer buffer, int depth) {
+			switch (value.getType()) {
+			case ARRAY:
+				buffer.writeByte('[');
+				int index = 0;
+				for (Value element : ((ArrayValue) value).elements) {
+					if (index++ > 0) {
+						buffer.writeByte(',');
+					}
+					writeValue(element, generator, buffer, depth);
+				}
+				buffer.writeByte(']');
+				break;
+			case OBJECT:
+				ObjectValue objectValue = (ObjectValue) value;
+				writeObject(objectValue, objectValue.writeOrder, 0, generator, buffer, depth);
+				break;
+			case STRING:
+				generator.writeNextString(buffer);
+				break;
+			case BOOLEAN:
+				buffer.writeBytes(generator.nextBoolean() ? TRUE_BYTES : FALSE_BYTES);
+				break;
+			case INTEGER:
+				writeDecimal(buffer, generator.nextInt());
+				break;
+			case FLOAT:
+				// Reproducing the digits of Float.toString is not worth avoiding a String.
+				String floatString = Float.toString(generator.nextFloat());
+				for (int i = 0; i < floatString.length(); ++i) {
+					buffer.writeByte(floatString.charAt(i));
+				}
+				break;
+			case NULL:
+				buffer.writeBytes(NULL_BYTES);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Writes the decimal digits of the given value, as written by {@link JSONObject}.
+	 * 
+	 * @param buffer the buffer to write the digits to
+	 * @param value the value to write
+	 */
+	public static void writeDecimal(ChannelBuffer buffer, int value) {
+		long remaining = value;
+		if (remaining < 0) {
+			buffer.writeByte('-');
+			remaining = -remaining;
+		}
+		long divisor = 1;
+		while (divisor <= remaining / 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			buffer.writeByte((int) ('0' + ((remaining / divisor) % 10)));
+		}
+	}
+	
+	/**
+	 * A field of documents that conform to the schema whose value is a string,
+	 * boolean, integer, or float, and so can be emitted as the key of a view. A
+	 * field belongs to the document or to an object nested in it, but not to an array.
+	 */
+	public final class Field {
+		private final List<String> names;
+		private final Value value;
+		
+		private Field(List<String> names, Value value) {
+			this.names = names;
+			this.value = value;
+		}
+		
+		/**
+		 * @return the names of the members containing the field, starting with the
+		 *         member of the document
+		 */
+		public List<String> getNames() {
+			return names;
+		}
+		
+		/**
+		 * @return the names of the members containing the field, separated by periods
+		 */
+		public String getPath() {
+			StringBuilder sb = new StringBuilder();
+			for (String name : names) {
+				if (sb.length() > 0) {
+					sb.append('.');
+				}
+				sb.append(name);
+			}
+			return sb.toString();
+		}
+		
+		/**
+		 * @return {@code true} if the value of the field is a boolean
+		 */
+		public boolean isBoolean() {
+			return value.getType() == Value.Type.BOOLEAN;
+		}
+		
+		/**
+		 * Returns a new value of the field, as would be generated for a new document.
+		 * 
+		 * @param generator the generator for the value
+		 * @return the value
+		 */
+		public Object getNewValue(ValueGenerator generator) {
+			return getObject(value, generator);
+		}
+		
+		public String toString() {
+			return getPath() + ": " + value;
+		}
+	}
+	
+	private void addFields(ObjectValue value, List<String> names, List<Field> fields) {
+		for (ObjectValue.Entry entry : value.entries) {
+			List<String> entryNames = new ArrayList<String>(names);
+			entryNames.add(entry.name);
+			switch (entry.value.getType()) {
+			case OBJECT:
+				addFields((ObjectValue) entry.value, entryNames, fields);
+				break;
+			case STRING:
+			case BOOLEAN:
+			case INTEGER:
+			case FLOAT:
+				fields.add(new Field(entryNames, entry.value));
+				break;
+			default:
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the fields of documents that can be emitted as the keys of a view, in
+	 * the order of the schema.
+	 * 
+	 * @return the fields, which may be empty
+	 */
+	public List<Field> getFields() {
+		List<Field> fields = new ArrayList<Field>();
+		addFields(root, new ArrayList<String>(), fields);
+		return fields;
+	}
+	
 	/**
 	 * Replaces a randomly chosen value in the given JSON.
 	 * 
@@ -0,0 +1,164 @@
+package co.adhoclabs.ironcushion;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.channel.ChannelHandler.Sharable;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+
+/**
+ * Statistics about the threads that perform networking during one step of the
+ * benchmark, namely how many channels each worker thread serves and how much of
+ * the step it spent running on a CPU. The same threads serve every step.
+ * 
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class EventLoopStatistics {
+	private static final double NANOS_PER_SEC = 1000000000.0;
+	
+	private final NamedThreadFactory bossThreadFactory;
+	private final NamedThreadFactory workerThreadFactory;
+	private final ConcurrentMap<Thread, AtomicInteger> numChannelsByThread;
+	private final ChannelCountingHandler channelCountingHandler;
+	
+	private long startTime;
+	private long[] workerStartCpuTimes;
+	private long elapsedTime;
+	private int[] workerNumChannels;
+	private long[] workerCpuTimes;
+	
+	public EventLoopStatistics() {
+		bossThreadFactory = new NamedThreadFactory("iron-cushion-boss");
+		workerThreadFactory = new NamedThreadFactory("iron-cushion-worker");
+		numChannelsByThread = new ConcurrentHashMap<Thread, AtomicInteger>();
+		channelCountingHandler = new ChannelCountingHandler();
+	}
+	
+	/**
+	 * The {@link ChannelUpstreamHandler} that records which worker thread serves
+	 * each open channel.
+	 */
+	@Sharable
+	private final class ChannelCountingHandler extends SimpleChannelUpstreamHandler {
+		private AtomicInteger getNumChannels(Thread thread) {
+			AtomicInteger numChannels = numChannelsByThread.get(thread);
+			if (numChannels == null) {
+				numChannels = new AtomicInteger();
+				AtomicInteger existingNumChannels = numChannelsByThread.putIfAbsent(thread, numChannels);
+				if (existingNumChannels != null) {
+					numChannels = existingNumChannels;
+				}
+			}
+			return numChannels;
+		}
+		
+		@Override
+		public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+			getNumChannels(Thread.currentThread()).incrementAndGet();
+			
+			super.channelConnected(ctx, e);
+		}
+		
+		@Override
+		public void channelDisconnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+			getNumChannels(Thread.currentThread()).decrementAndGet();
+			
+			super.channelDisconnected(ctx, e);
+		}
+	}
+	
+	/**
+	 * @return the factory for boss threads, which establish connections
+	 */
+	public ThreadFactory getBossThreadFactory() {
+		return bossThreadFactory;
+	}
+	
+	/**
+	 * @return the factory for worker threads, which perform all reads and writes
+	 */
+	public ThreadFactory getWorkerThreadFactory() {
+		return workerThreadFactory;
+	}
+	
+	/**
+	 * @return the handler to add to every pipeline so that channels are counted
+	 */
+	public ChannelUpstreamHandler getChannelCountingHandler() {
+		return channelCountingHandler;
+	}
+	
+	private static long[] getCpuTimes(List<Thread> threads) {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		long[] cpuTimes = new long[threads.size()];
+		for (int i = 0; i < cpuTimes.length; ++i) {
+			cpuTimes[i] = threadMXBean.isThreadCpuTimeSupported() ?
+					threadMXBean.getThreadCpuTime(threads.get(i).getId()) : -1;
+		}
+		return cpuTimes;
+	}
+	
+	/**
+	 * Records the CPU time of each worker thread at the start of a step.
+	 */
+	public void start() {
+		startTime = System.nanoTime();
+		workerStartCpuTimes = getCpuTimes(workerThreadFactory.getThreads());
+	}
+	
+	/**
+	 * Records the CPU time of each worker thread during the step, and the number of
+	 * channels that each serves at its end. This must be called before the threads
+	 * are released.
+	 */
+	public void stop() {
+		elapsedTime = System.nanoTime() - startTime;
+		
+		List<Thread> workerThreads = workerThreadFactory.getThreads();
+		workerNumChannels = new int[workerThreads.size()];
+		workerCpuTimes = getCpuTimes(workerThreads);
+		for (int i = 0; i < workerCpuTimes.length; ++i) {
+			AtomicInteger numChannels = numChannelsByThread.get(workerThreads.get(i));
+			workerNumChannels[i] = (numChannels != null) ? numChannels.get() : 0;
+			if ((i < workerStartCpuTimes.length) && (workerCpuTimes[i] >= 0)) {
+				// Exclude the CPU time of any earlier steps.
+				workerCpuTimes[i] -= workerStartCpuTimes[i];
+			}
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return toString("");
+	}
+	
+	public String toString(String indent) {
+		StringBuilder sb = new StringBuilder();
+		Formatter formatter = new Formatter(sb);
+		List<Thread> workerThreads = workerThreadFactory.getThreads();
+		for (int i = 0; i < workerCpuTimes.length; ++i) {
+			if (i > 0) {
+				sb.append('\n');
+			}
+			sb.append(indent).append(workerThreads.get(i).getName()).append("={");
+			formatter.format("channels=%,d, ", workerNumChannels[i]);
+			if (workerCpuTimes[i] >= 0) {
+				formatter.format("busy=%,.3f secs, ", workerCpuTimes[i] / NANOS_PER_SEC);
+				formatter.format("utilization=%.1f%%", (100.0 * workerCpuTimes[i]) / elapsedTime);
+			} else {
+				sb.append("busy=unknown");
+			}
+			sb.append('}');
+		}
+		return sb.toString();
+	}
+}
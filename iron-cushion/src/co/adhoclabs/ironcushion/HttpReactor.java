@@ -1,11 +1,25 @@
 package co.adhoclabs.ironcushion;
 
-import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelState;
+import org.jboss.netty.channel.UpstreamChannelStateEvent;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.ThreadNameDeterminer;
+import org.jboss.netty.util.ThreadRenamingRunnable;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
 
 import co.adhoclabs.ironcushion.bulkinsert.BulkInsertConnectionStatistics;
 import co.adhoclabs.ironcushion.bulkinsert.BulkInsertDocumentGenerator;
@@ -13,6 +27,9 @@ import co.adhoclabs.ironcushion.bulkinsert.BulkInsertPipelineFactory;
 import co.adhoclabs.ironcushion.crud.CrudConnectionStatistics;
 import co.adhoclabs.ironcushion.crud.CrudOperations;
 import co.adhoclabs.ironcushion.crud.CrudPipelineFactory;
+import co.adhoclabs.ironcushion.view.ViewConnectionStatistics;
+import co.adhoclabs.ironcushion.view.ViewPipelineFactory;
+import co.adhoclabs.ironcushion.view.ViewQueries;
 
 /**
  * The networking engine that asynchronously executes HTTP requests.
@@ -21,55 +38,304 @@ import co.adhoclabs.ironcushion.crud.CrudPipelineFactory;
  */
 public class HttpReactor {
 	private final int numConnections;
-	private final InetSocketAddress databaseAddress;
+	private final DatabaseNodeSelector databaseNodeSelector;
+	private final int numBossThreads;
+	private final int numWorkerThreads;
+	private final long connectInterval;
+	private final long warmUpTime;
+	private final long durationTime;
+	private final int maxReconnects;
+	private final long minReconnectBackoffTime;
+	private final long maxReconnectBackoffTime;
+	private final ContentCompressor contentCompressor;
+	private final DirectBufferPool directBufferPool;
+	private final HashedWheelTimer timer;
+	private final EventLoopStatistics eventLoopStatistics;
+	private final ClientBootstrap clientBootstrap;
+	private final ChannelGroup allChannels;
+	private final AtomicReferenceArray<Channel> channels;
+	private final DatabaseNode[] databaseNodes;
 	
-	public HttpReactor(int numConnections, InetSocketAddress databaseAddress) {
-		this.numConnections = numConnections;
-		this.databaseAddress = databaseAddress;
+	static {
+		// Keep the names given by our thread factories instead of those chosen by Netty.
+		ThreadRenamingRunnable.setThreadNameDeterminer(ThreadNameDeterminer.CURRENT);
 	}
 	
-	private void run(AbstractBenchmarkPipelineFactory channelPipelineFactory)
+	/**
+	 * Creates a reactor. If a ramp-up is specified by the arguments, then connections
+	 * are established at an even rate instead of all at once. If a duration is
+	 * specified, then connections stop sending operations once it has elapsed after
+	 * the warm-up. Channels that remain open after one step are reused by the next.
+	 * If compression is specified, then the bodies of requests are compressed, and
+	 * compressed responses are accepted. If a direct buffer pool is specified, then
+	 * bulk inserts are sent from its buffers.
+	 * 
+	 * @param parsedArguments the parsed command line arguments
+	 * @param databaseNodeSelector selects the database node of each connection
+	 */
+	public HttpReactor(ParsedArguments parsedArguments, DatabaseNodeSelector databaseNodeSelector) {
+		this.numConnections = parsedArguments.numConnections;
+		this.databaseNodeSelector = databaseNodeSelector;
+		this.numBossThreads = parsedArguments.numBossThreads;
+		this.numWorkerThreads = (parsedArguments.numWorkerThreads > 0) ?
+				parsedArguments.numWorkerThreads : (2 * Runtime.getRuntime().availableProcessors());
+		if (parsedArguments.rampUpConnectionsPerSec > 0) {
+			this.connectInterval = 1000000000L / parsedArguments.rampUpConnectionsPerSec;
+		} else {
+			this.connectInterval = (1000000000L * parsedArguments.rampUpSecs) / numConnections;
+		}
+		this.warmUpTime = TimeUnit.SECONDS.toNanos(parsedArguments.warmUpSecs);
+		this.durationTime = TimeUnit.SECONDS.toNanos(parsedArguments.durationSecs);
+		this.maxReconnects = parsedArguments.maxReconnects;
+		this.minReconnectBackoffTime = TimeUnit.MILLISECONDS.toNanos(parsedArguments.reconnectBackoffMillis);
+		this.maxReconnectBackoffTime = TimeUnit.MILLISECONDS.toNanos(parsedArguments.maxReconnectBackoffMillis);
+		this.contentCompressor = (parsedArguments.compression != null) ?
+				new ContentCompressor(parsedArguments.compression) : null;
+		this.directBufferPool = (parsedArguments.directBufferPoolMegabytes > 0) ?
+				new DirectBufferPool(parsedArguments.directBufferPoolMegabytes * 1024L * 1024L) : null;
+		// The timer thread only starts if operations are scheduled.
+		this.timer = new HashedWheelTimer(new NamedThreadFactory("iron-cushion-timer"),
+				1, TimeUnit.MILLISECONDS);
+		// The same threads and channels are used by every step.
+		this.eventLoopStatistics = new EventLoopStatistics();
+		this.clientBootstrap = new ClientBootstrap(
+				new NioClientSocketChannelFactory(
+					Executors.newCachedThreadPool(eventLoopStatistics.getBossThreadFactory()),
+					Executors.newCachedThreadPool(eventLoopStatistics.getWorkerThreadFactory()),
+					numBossThreads, numWorkerThreads));
+		this.allChannels = new DefaultChannelGroup("iron-cushion");
+		this.channels = new AtomicReferenceArray<Channel>(numConnections);
+		this.databaseNodes = new DatabaseNode[numConnections];
+	}
+	
+	private void connect(AbstractBenchmarkPipelineFactory channelPipelineFactory,
+			int connectionNum, final DatabaseNode databaseNode) throws Exception {
+		ChannelPipeline pipeline = channelPipelineFactory.getPipeline(connectionNum);
+		pipeline.addFirst("eventLoopStatistics", eventLoopStatistics.getChannelCountingHandler());
+		Channel channel = clientBootstrap.getFactory().newChannel(pipeline);
+		channels.set(connectionNum, channel);
+		allChannels.add(channel);
+		databaseNode.openedConnection();
+		channel.getCloseFuture().addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture channelFuture) throws Exception {
+				databaseNode.closedConnection();
+			}
+		});
+		channel.connect(databaseNode.getAddress());
+	}
+	
+	private void reuse(AbstractBenchmarkPipelineFactory channelPipelineFactory,
+			int connectionNum, Channel channel) throws Exception {
+		// Replace the handler of the previous step with the handler of this step.
+		AbstractBenchmarkHandler handler = channelPipelineFactory.getHandler(connectionNum);
+		ChannelPipeline pipeline = channel.getPipeline();
+		String handlerName = pipeline.getContext(AbstractBenchmarkHandler.class).getName();
+		pipeline.replace(AbstractBenchmarkHandler.class, handlerName, handler);
+		// The handler starts as if the channel were just connected.
+		handler.handleUpstream(pipeline.getContext(handler), new UpstreamChannelStateEvent(
+				channel, ChannelState.CONNECTED, channel.getRemoteAddress()));
+	}
+	
+	private void run(final AbstractBenchmarkPipelineFactory channelPipelineFactory)
+			throws BenchmarkException {
+		run(channelPipelineFactory, true);
+	}
+	
+	private void run(final AbstractBenchmarkPipelineFactory channelPipelineFactory, boolean timed)
 			throws BenchmarkException {
 		try {
-			// Create the connections to the server.
-			ClientBootstrap clientBootstrap = new ClientBootstrap(
-					new NioClientSocketChannelFactory(
-						Executors.newCachedThreadPool(),
-						Executors.newCachedThreadPool()));
-			clientBootstrap.setPipelineFactory(channelPipelineFactory);
+			eventLoopStatistics.start();
+			channelPipelineFactory.setReconnector(new Reconnector(
+					maxReconnects, minReconnectBackoffTime, maxReconnectBackoffTime) {
+				@Override
+				protected void connect(final int connectionNum, final DatabaseNode databaseNode, long delay) {
+					timer.newTimeout(new TimerTask() {
+						@Override
+						public void run(Timeout timeout) throws Exception {
+							HttpReactor.this.connect(channelPipelineFactory, connectionNum, databaseNode);
+						}
+					}, delay, TimeUnit.NANOSECONDS);
+				}
+			});
+			long connectStartTime = System.nanoTime();
+			// A step that is not timed performs all of its operations, including during the warm-up.
+			if (timed && (warmUpTime > 0)) {
+				for (AbstractConnectionStatistics connectionStatistics :
+						channelPipelineFactory.getAllConnectionStatistics()) {
+					connectionStatistics.startWarmUp(connectStartTime + warmUpTime);
+				}
+			}
+			if (timed && (durationTime > 0)) {
+				for (AbstractConnectionStatistics connectionStatistics :
+						channelPipelineFactory.getAllConnectionStatistics()) {
+					connectionStatistics.setDeadline(connectStartTime + warmUpTime + durationTime);
+				}
+			}
 			for (int i = 0; i < numConnections; ++i) {
-				clientBootstrap.connect(databaseAddress);
+				// Wait until this connection is scheduled to be established.
+				long delay = (connectStartTime + (i * connectInterval)) - System.nanoTime();
+				if (delay > 0) {
+					TimeUnit.NANOSECONDS.sleep(delay);
+				}
+				if (databaseNodes[i] == null) {
+					// Each connection sends all requests of every step to the same node.
+					databaseNodes[i] = databaseNodeSelector.selectNode();
+				}
+				channelPipelineFactory.getAllConnectionStatistics().get(i).setDatabaseNode(databaseNodes[i]);
+				Channel channel = channels.get(i);
+				if ((channel != null) && channel.isConnected()) {
+					reuse(channelPipelineFactory, i, channel);
+				} else {
+					connect(channelPipelineFactory, i, databaseNodes[i]);
+				}
 			}
 			
 			// Wait for all connections to complete their tasks.
 			channelPipelineFactory.getCountDownLatch().await();
-			// Shut down executor threads to exit.
-			clientBootstrap.releaseExternalResources();
-		} catch (InterruptedException e) {
+			// Discard the statistics of connections that finished during the warm-up.
+			for (AbstractConnectionStatistics connectionStatistics :
+					channelPipelineFactory.getAllConnectionStatistics()) {
+				connectionStatistics.endWarmUp();
+			}
+			eventLoopStatistics.stop();
+		} catch (Exception e) {
 			throw new BenchmarkException(e);
 		}
 	}
 	
+	/**
+	 * @return the statistics of the threads used by the last benchmark step
+	 */
+	public EventLoopStatistics getEventLoopStatistics() {
+		return eventLoopStatistics;
+	}
+	
+	/**
+	 * @return the pool of direct buffers for bulk inserts, or {@code null} if bulk
+	 *         inserts are sent from buffers on the heap
+	 */
+	public DirectBufferPool getDirectBufferPool() {
+		return directBufferPool;
+	}
+	
+	/**
+	 * Performs bulk inserts of the documents generated by the given generators. If
+	 * {@code numDocumentsPerChunk} is greater than {@code 0}, then each bulk insert is
+	 * sent using chunked transfer encoding while its documents are generated. If
+	 * {@code maxDocumentsPerInsert} is greater than {@code 0}, then each connection
+	 * adapts the number of documents in its bulk inserts to maximize its insert rate.
+	 * If {@code revisionRegistry} is not {@code null}, then the revisions of the
+	 * inserted documents are recorded by it.
+	 * 
+	 * @param allBulkInsertDocumentGenerators the generator of documents for each connection
+	 * @param bulkInsertPath the path of bulk inserts
+	 * @param numDocumentsPerChunk the number of documents in each chunk, or {@code 0}
+	 * @param numDocumentsPerInsert the number of documents in each bulk insert of the generators
+	 * @param maxDocumentsPerInsert the largest number of documents in an adapted bulk insert, or {@code 0}
+	 * @param documentIdGenerator the generator of the identifier of each document
+	 * @param revisionRegistry the registry of revisions of all documents, or {@code null}
+	 * @return the statistics for each connection
+	 * @throws BenchmarkException if interrupted while waiting for connections to finish
+	 */
 	public List<BulkInsertConnectionStatistics> performBulkInserts(
 			List<BulkInsertDocumentGenerator> allBulkInsertDocumentGenerators,
-			String bulkInsertPath) throws BenchmarkException {
+			String bulkInsertPath, int numDocumentsPerChunk, int numDocumentsPerInsert,
+			int maxDocumentsPerInsert, DocumentIdGenerator documentIdGenerator,
+			RevisionRegistry revisionRegistry) throws BenchmarkException {
 		// Run the bulk inserts.
+		if (directBufferPool != null) {
+			directBufferPool.reset();
+		}
 		BulkInsertPipelineFactory bulkInsertPipelineFactory = new BulkInsertPipelineFactory(
-				numConnections, allBulkInsertDocumentGenerators, bulkInsertPath);
+				numConnections, allBulkInsertDocumentGenerators, bulkInsertPath, numDocumentsPerChunk,
+				numDocumentsPerInsert, maxDocumentsPerInsert, contentCompressor, directBufferPool,
+				documentIdGenerator, revisionRegistry);
 		run(bulkInsertPipelineFactory);
 		
 		// Return the times for each connection.
 		return bulkInsertPipelineFactory.getAllConnectionStatistics();
 	}
 	
+	/**
+	 * Performs the given CRUD operations. If {@code targetOpsPerSec} is greater than
+	 * {@code 0}, then operations are sent at that rate across all connections
+	 * regardless of how quickly responses are received. Otherwise each connection
+	 * sends its next operation once its pipeline has room.
+	 * 
+	 * @param allCrudOperations the CRUD operations for each connection
+	 * @param crudPath the path of the database
+	 * @param pipelineDepth the maximum number of operations awaiting responses on a connection
+	 * @param targetOpsPerSec the rate at which to send operations, or {@code 0}
+	 * @return the statistics for each connection
+	 * @throws BenchmarkException if interrupted while waiting for connections to finish
+	 */
 	public List<CrudConnectionStatistics> performCrudOperations(List<CrudOperations> allCrudOperations,
-			String crudPath) throws BenchmarkException {
+			String crudPath, int pipelineDepth, int targetOpsPerSec) throws BenchmarkException {
+		long operationInterval = 0;
+		if (targetOpsPerSec > 0) {
+			// Each connection sends its share of the target rate.
+			operationInterval = Math.max(1, (1000000000L * numConnections) / targetOpsPerSec);
+		}
+		
 		// Run the CRUD operations.
 		CrudPipelineFactory crudPipelineFactory = new CrudPipelineFactory(
-				numConnections, allCrudOperations, crudPath);
+				numConnections, allCrudOperations, crudPath, pipelineDepth, timer, operationInterval,
+				contentCompressor);
 		run(crudPipelineFactory);
 		
 		// Return the times for each connection.
 		return crudPipelineFactory.getAllConnectionStatistics();
 	}
+	
+	/**
+	 * Installs the design document whose views are queried, and builds its index
+	 * over the documents in the database. Unlike other steps, this step is neither
+	 * shortened by a duration nor discarded by a warm-up, since it is only performed
+	 * once.
+	 * 
+	 * @param allViewQueries the queries that install and build the design document for each connection
+	 * @param databasePath the path of the database
+	 * @return the statistics for each connection
+	 * @throws BenchmarkException if interrupted while waiting for connections to finish
+	 */
+	public List<ViewConnectionStatistics> buildViewIndex(List<ViewQueries> allViewQueries,
+			String databasePath) throws BenchmarkException {
+		// Install the design document and build its index.
+		ViewPipelineFactory viewPipelineFactory = new ViewPipelineFactory(
+				numConnections, allViewQueries, databasePath, contentCompressor);
+		run(viewPipelineFactory, false);
+		
+		// Return the times for each connection.
+		return viewPipelineFactory.getAllConnectionStatistics();
+	}
+	
+	/**
+	 * Performs the given view queries. Each connection sends its next query once the
+	 * response to its last query is received.
+	 * 
+	 * @param allViewQueries the view queries for each connection
+	 * @param databasePath the path of the database
+	 * @return the statistics for each connection
+	 * @throws BenchmarkException if interrupted while waiting for connections to finish
+	 */
+	public List<ViewConnectionStatistics> performViewQueries(List<ViewQueries> allViewQueries,
+			String databasePath) throws BenchmarkException {
+		// Run the view queries.
+		ViewPipelineFactory viewPipelineFactory = new ViewPipelineFactory(
+				numConnections, allViewQueries, databasePath, contentCompressor);
+		run(viewPipelineFactory);
+		
+		// Return the times for each connection.
+		return viewPipelineFactory.getAllConnectionStatistics();
+	}
+	
+	/**
+	 * Closes all channels, and stops the threads used by every step.
+	 */
+	public void shutdown() {
+		allChannels.close().awaitUninterruptibly();
+		clientBootstrap.releaseExternalResources();
+		timer.stop();
+	}
 }
@@ -0,0 +1,151 @@
+package co.adhoclabs.ironcushion;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.util.CharsetUtil;
+
+/**
+ * Encodes HTTP requests that share a method, a path prefix, and all headers
+ * except {@code Content-Length}. The constant parts of each request are encoded
+ * once, so that encoding a request only writes the end of its path and the
+ * length of its content.
+ * 
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class HttpRequestTemplate {
+	private static final byte[] REVISION_QUERY = toBytes("?rev=");
+	private static final byte[] CRLF = toBytes("\r\n");
+	
+	private final byte[] requestLinePrefix;
+	private final byte[] headers;
+	
+	/**
+	 * Creates a template for requests with the given method and path prefix. If
+	 * {@code hasContent} is {@code true}, then each request has a body and a
+	 * {@code Content-Length} header.
+	 * 
+	 * @param method the method of each request
+	 * @param pathPrefix the start of the path of each request
+	 * @param hasContent whether each request has a body
+	 */
+	public HttpRequestTemplate(HttpMethod method, String pathPrefix, boolean hasContent) {
+		this(method, pathPrefix, hasContent, null);
+	}
+	
+	/**
+	 * Creates a template for requests with the given method and path prefix. If
+	 * {@code encoding} is not {@code null}, then each request accepts a response
+	 * with that encoding, and any body must be compressed with that encoding.
+	 * 
+	 * @param method the method of each request
+	 * @param pathPrefix the start of the path of each request
+	 * @param hasContent whether each request has a body
+	 * @param encoding the encoding of bodies, or {@code null} if not compressed
+	 */
+	public HttpRequestTemplate(HttpMethod method, String pathPrefix, boolean hasContent,
+			ContentCompressor.Encoding encoding) {
+		this(method, pathPrefix, encoding,
+				hasContent ? (HttpHeaders.Names.CONTENT_LENGTH + ": ") : "");
+	}
+	
+	private HttpRequestTemplate(HttpMethod method, String pathPrefix, ContentCompressor.Encoding encoding,
+			String lastHeader) {
+		requestLinePrefix = toBytes(method.getName() + " " + pathPrefix);
+		
+		StringBuilder sb = new StringBuilder();
+		sb.append(' ').append(HttpVersion.HTTP_1_1.getText()).append("\r\n");
+		sb.append(HttpHeaders.Names.CONNECTION).append(": ").append(HttpHeaders.Values.KEEP_ALIVE).append("\r\n");
+		if (encoding != null) {
+			sb.append(HttpHeaders.Names.ACCEPT_ENCODING).append(": ").append(encoding.getName()).append("\r\n");
+			if (lastHeader.length() > 0) {
+				sb.append(HttpHeaders.Names.CONTENT_ENCODING).append(": ").append(encoding.getName()).append("\r\n");
+			}
+		}
+		sb.append(HttpHeaders.Names.CONTENT_TYPE).append(": ").append("application/json").append("\r\n");
+		sb.append(lastHeader);
+		headers = toBytes(sb.toString());
+	}
+	
+	/**
+	 * Returns a template for requests with the given method and path prefix, and
+	 * with a body sent using chunked transfer encoding. Passing {@code null} content
+	 * to {@link #encode(String, String, ChannelBuffer)} returns only the headers,
+	 * which must be followed by the chunks.
+	 * 
+	 * @param method the method of each request
+	 * @param pathPrefix the start of the path of each request
+	 * @return the template
+	 */
+	public static HttpRequestTemplate chunked(HttpMethod method, String pathPrefix) {
+		return new HttpRequestTemplate(method, pathPrefix, null,
+				HttpHeaders.Names.TRANSFER_ENCODING + ": " + HttpHeaders.Values.CHUNKED + "\r\n");
+	}
+	
+	private static byte[] toBytes(String s) {
+		return s.getBytes(CharsetUtil.US_ASCII);
+	}
+	
+	private static void writeAscii(ChannelBuffer buffer, String s) {
+		// Document identifiers and revisions contain only ASCII characters.
+		for (int i = 0; i < s.length(); ++i) {
+			buffer.writeByte(s.charAt(i));
+		}
+	}
+	
+	/**
+	 * Returns an encoded request. The returned buffer shares the given content
+	 * instead of copying it.
+	 * 
+	 * @param pathSuffix the end of the path, or {@code null} if the path is the prefix
+	 * @param revision the value of the {@code rev} query parameter, or {@code null} if none
+	 * @param content the body of the request, or {@code null} if the request has no body
+	 * @return the buffer containing the request
+	 */
+	public ChannelBuffer encode(String pathSuffix, String revision, ChannelBuffer content) {
+		if (content == null) {
+			return encodeHeaders(pathSuffix, revision, -1);
+		}
+		return ChannelBuffers.wrappedBuffer(
+				encodeHeaders(pathSuffix, revision, content.readableBytes()), content);
+	}
+	
+	/**
+	 * Returns the encoded headers of a request, which must be followed by its body
+	 * if it has one. Writing a direct body separately from its headers allows it to
+	 * be sent without copying it.
+	 * 
+	 * @param pathSuffix the end of the path, or {@code null} if the path is the prefix
+	 * @param revision the value of the {@code rev} query parameter, or {@code null} if none
+	 * @param contentLength the length of the body, or {@code -1} if the request has no body
+	 * @return the buffer containing the headers
+	 */
+	public ChannelBuffer encodeHeaders(String pathSuffix, String revision, int contentLength) {
+		int length = requestLinePrefix.length + headers.length + 16;
+		if (pathSuffix != null) {
+			length += pathSuffix.length();
+		}
+		if (revision != null) {
+			length += REVISION_QUERY.length + revision.length();
+		}
+		ChannelBuffer header = ChannelBuffers.buffer(length);
+		
+		header.writeBytes(requestLinePrefix);
+		if (pathSuffix != null) {
+			writeAscii(header, pathSuffix);
+		}
+		if (revision != null) {
+			header.writeBytes(REVISION_QUERY);
+			writeAscii(header, revision);
+		}
+		header.writeBytes(headers);
+		if (contentLength >= 0) {
+			DocumentSchema.writeDecimal(header, contentLength);
+			header.writeBytes(CRLF);
+		}
+		header.writeBytes(CRLF);
+		return header;
+	}
+}
@@ -0,0 +1,145 @@
+package co.adhoclabs.ironcushion;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of latencies with buckets whose widths grow exponentially, so that
+ * every recorded value is within 2% of the value it is counted as. Recording a
+ * value never allocates memory.
+ * 
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class LatencyHistogram {
+	/**
+	 * Each bucket is split into {@code 2^SUB_BUCKET_MAGNITUDE} sub-buckets. The
+	 * lower half of each bucket after the first overlaps the previous bucket.
+	 */
+	private static final int SUB_BUCKET_MAGNITUDE = 7;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_MAGNITUDE;
+	private static final int SUB_BUCKET_HALF_COUNT_MAGNITUDE = SUB_BUCKET_MAGNITUDE - 1;
+	private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+	private static final long SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+	/**
+	 * Values are recorded in microseconds, and values greater than about 71 minutes
+	 * are recorded as 71 minutes.
+	 */
+	private static final long MAX_VALUE = (1L << 32) - 1;
+	private static final int NUM_BUCKETS = 32 - SUB_BUCKET_MAGNITUDE + 1;
+	private static final int NUM_COUNTS = (NUM_BUCKETS + 1) * SUB_BUCKET_HALF_COUNT;
+	
+	private static final long NANOS_PER_MICRO = 1000;
+	
+	private final long[] counts;
+	private long totalCount;
+	private long totalValue;
+	private long maxValue;
+	
+	public LatencyHistogram() {
+		counts = new long[NUM_COUNTS];
+		totalCount = 0;
+		totalValue = 0;
+		maxValue = 0;
+	}
+	
+	private static int getCountsIndex(long value) {
+		int bucketIndex = (64 - SUB_BUCKET_MAGNITUDE) - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+		int subBucketIndex = (int) (value >>> bucketIndex);
+		int bucketBaseIndex = (bucketIndex + 1) << SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+		return bucketBaseIndex + (subBucketIndex - SUB_BUCKET_HALF_COUNT);
+	}
+	
+	private static long getHighestValueAtIndex(int countsIndex) {
+		int bucketIndex = (countsIndex >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1;
+		long subBucketIndex = (countsIndex & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+		if (bucketIndex < 0) {
+			subBucketIndex -= SUB_BUCKET_HALF_COUNT;
+			bucketIndex = 0;
+		}
+		long lowestValue = subBucketIndex << bucketIndex;
+		return lowestValue + (1L << bucketIndex) - 1;
+	}
+	
+	/**
+	 * Records the given latency.
+	 * 
+	 * @param elapsedTime the latency in nanoseconds
+	 */
+	public void record(long elapsedTime) {
+		long value = Math.min(Math.max(elapsedTime / NANOS_PER_MICRO, 0), MAX_VALUE);
+		counts[getCountsIndex(value)]++;
+		totalCount++;
+		totalValue += value;
+		if (value > maxValue) {
+			maxValue = value;
+		}
+	}
+	
+	/**
+	 * Adds all latencies recorded by the given histogram to this histogram.
+	 * 
+	 * @param histogram the histogram to add
+	 */
+	public void add(LatencyHistogram histogram) {
+		for (int i = 0; i < NUM_COUNTS; ++i) {
+			counts[i] += histogram.counts[i];
+		}
+		totalCount += histogram.totalCount;
+		totalValue += histogram.totalValue;
+		if (histogram.maxValue > maxValue) {
+			maxValue = histogram.maxValue;
+		}
+	}
+	
+	/**
+	 * Discards all recorded latencies.
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		totalValue = 0;
+		maxValue = 0;
+	}
+	
+	/**
+	 * @return the number of latencies recorded
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+	
+	/**
+	 * @return the mean latency in microseconds
+	 */
+	public double getMean() {
+		return (totalCount > 0) ? ((double) totalValue) / totalCount : 0;
+	}
+	
+	/**
+	 * @return the maximum latency in microseconds
+	 */
+	public long getMax() {
+		return maxValue;
+	}
+	
+	/**
+	 * Returns the latency that the given percentage of recorded latencies are less
+	 * than or equal to.
+	 * 
+	 * @param percentile the percentage, between {@code 0} and {@code 100}
+	 * @return the latency in microseconds
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		long countAtPercentile = Math.max(1, (long) Math.ceil((percentile / 100.0) * totalCount));
+		long runningCount = 0;
+		for (int i = 0; i < NUM_COUNTS; ++i) {
+			runningCount += counts[i];
+			if (runningCount >= countAtPercentile) {
+				return Math.min(getHighestValueAtIndex(i), maxValue);
+			}
+		}
+		return maxValue;
+	}
+}
@@ -0,0 +1,38 @@
+package co.adhoclabs.ironcushion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link ThreadFactory} that numbers the names of the threads it creates, and
+ * remembers them so that they can be inspected later.
+ * 
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class NamedThreadFactory implements ThreadFactory {
+	private final String namePrefix;
+	private final List<Thread> threads;
+	
+	/**
+	 * @param namePrefix the prefix of each thread name, which is followed by its number
+	 */
+	public NamedThreadFactory(String namePrefix) {
+		this.namePrefix = namePrefix;
+		this.threads = new ArrayList<Thread>();
+	}
+	
+	@Override
+	public synchronized Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, namePrefix + "-" + (threads.size() + 1));
+		threads.add(thread);
+		return thread;
+	}
+	
+	/**
+	 * @return all threads created so far, in the order they were created
+	 */
+	public synchronized List<Thread> getThreads() {
+		return new ArrayList<Thread>(threads);
+	}
+}
@@ -1,6 +1,11 @@
 package co.adhoclabs.ironcushion;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import co.adhoclabs.ironcushion.crud.CrudOperations;
+import co.adhoclabs.ironcushion.crud.KeyChooser;
 
 /**
  * The parsed and validated command line arguments.
@@ -9,9 +14,18 @@ import java.io.File;
  */
 public class ParsedArguments {
 	/**
-	 * The address of the database.
+	 * The addresses of the database nodes.
+	 */
+	public final List<String> databaseAddresses;
+	/**
+	 * The relative share of connections to each database node, or {@code null} if
+	 * not selecting nodes by weight.
+	 */
+	public final List<Integer> databaseWeights;
+	/**
+	 * How the database node for each connection is selected.
 	 */
-	public final String databaseAddress;
+	public final DatabaseNodeSelector.Strategy nodeSelection;
 	/**
 	 * The name of the database.
 	 */
@@ -24,6 +38,52 @@ public class ParsedArguments {
 	 * The seed for the random number generator, or {@code null} if not provided.
 	 */
 	public final Integer seed;
+	/**
+	 * The number of threads that establish connections.
+	 */
+	public final int numBossThreads;
+	/**
+	 * The number of threads that perform reads and writes on connections, or
+	 * {@code 0} to use twice the number of available processors.
+	 */
+	public final int numWorkerThreads;
+	/**
+	 * The rate at which connections are established, or {@code 0} if not limited.
+	 */
+	public final int rampUpConnectionsPerSec;
+	/**
+	 * The number of seconds over which connections are established at an even rate,
+	 * or {@code 0} if not limited.
+	 */
+	public final int rampUpSecs;
+	/**
+	 * The number of seconds at the start of each step whose completed operations are
+	 * excluded from the results.
+	 */
+	public final int warmUpSecs;
+	/**
+	 * The number of seconds after the warm-up that each step runs for, or {@code 0}
+	 * if each step performs a fixed number of operations.
+	 */
+	public final int durationSecs;
+	/**
+	 * The maximum number of consecutive times a failed connection is re-established.
+	 */
+	public final int maxReconnects;
+	/**
+	 * The number of milliseconds to wait before re-establishing a connection after
+	 * its first consecutive failure, which doubles after each consecutive failure.
+	 */
+	public final int reconnectBackoffMillis;
+	/**
+	 * The maximum number of milliseconds to wait before re-establishing a connection.
+	 */
+	public final int maxReconnectBackoffMillis;
+	/**
+	 * The encoding that compresses the bodies of requests and responses, or {@code null}
+	 * if they are not compressed.
+	 */
+	public final ContentCompressor.Encoding compression;
 	
 	/**
 	 * The number of documents in each bulk insert operation.
@@ -33,6 +93,52 @@ public class ParsedArguments {
 	 * The number of bulk insert operations performed by each connection.
 	 */
 	public final int numBulkInsertOperations;
+	/**
+	 * The number of documents in each chunk of a bulk insert sent with chunked transfer
+	 * encoding, or {@code 0} if each bulk insert is sent whole.
+	 */
+	public final int numDocumentsPerBulkInsertChunk;
+	/**
+	 * The maximum number of bulk inserts that each connection has generated by other
+	 * threads ahead of sending them, or {@code 0} if each bulk insert is generated
+	 * by the connection as it is sent.
+	 */
+	public final int numBulkInsertsProducedAhead;
+	/**
+	 * The file to write the bulk inserts of every connection to instead of running the
+	 * benchmark, or {@code null} if the benchmark is run.
+	 */
+	public final File generateCorpusFile;
+	/**
+	 * The file to replay bulk inserts from instead of generating them, or {@code null}
+	 * if bulk inserts are generated.
+	 */
+	public final File corpusFile;
+	/**
+	 * The largest number of documents in a bulk insert if each connection adapts the number
+	 * of documents in its bulk inserts to maximize its insert rate, or {@code 0} if every
+	 * bulk insert contains {@code numDocumentsPerBulkInsert} documents.
+	 */
+	public final int maxDocumentsPerBulkInsert;
+	/**
+	 * The number of bulk inserts generated once and shared by all connections, with the identifiers
+	 * of their documents replaced, or {@code 0} if each connection generates its own bulk inserts.
+	 */
+	public final int numBulkInsertTemplates;
+	/**
+	 * The number of megabytes of direct memory for the pool of buffers containing bulk inserts,
+	 * or {@code 0} if bulk inserts are sent from buffers on the heap. This budget is soft, as
+	 * buffers discarded by the pool are freed only once they are garbage collected.
+	 */
+	public final int directBufferPoolMegabytes;
+	/**
+	 * How the identifier of each bulk inserted and created document is generated.
+	 */
+	public final DocumentIdGenerator.Strategy documentIdStrategy;
+	/**
+	 * The number of partitions that identifiers are spread across if the strategy is partitioned.
+	 */
+	public final int numDocumentIdPartitions;
 	
 	/**
 	 * The number of CRUD operations by each connection after bulk inserting finishes.
@@ -54,6 +160,79 @@ public class ParsedArguments {
 	 * The relative weight of delete operations to other operations.
 	 */
 	public final int deleteWeight;
+	/**
+	 * The relative weight of batch read operations to other operations.
+	 */
+	public final int batchReadWeight;
+	/**
+	 * The maximum number of CRUD operations sent by a connection before receiving their responses.
+	 */
+	public final int crudPipelineDepth;
+	/**
+	 * The rate at which all connections collectively send CRUD operations, or {@code 0}
+	 * if each connection sends its next operation once it has room to.
+	 */
+	public final int targetOpsPerSec;
+	/**
+	 * How documents bulk inserted by all connections are chosen to be read, or sequential if each
+	 * connection reads the documents it created or bulk inserted in order.
+	 */
+	public final KeyChooser.Distribution crudKeyDistribution;
+	/**
+	 * The skew of the zipfian and latest distributions, where larger values choose fewer documents.
+	 */
+	public final double zipfianTheta;
+	/**
+	 * The percentage of documents chosen from the hot set by the hotspot distribution.
+	 */
+	public final int hotspotOperationsPercent;
+	/**
+	 * The percentage of bulk inserted documents in the hot set of the hotspot distribution.
+	 */
+	public final int hotspotKeysPercent;
+	/**
+	 * Where update and delete operations get the revisions of documents, or read if each connection
+	 * modifies the document that it created or read just before.
+	 */
+	public final RevisionRegistry.Source revisionSource;
+	/**
+	 * How batch read operations fetch documents, either all_docs or bulk_get.
+	 */
+	public final CrudOperations.BatchReadMethod batchReadMethod;
+	/**
+	 * The number of documents fetched by each batch read operation.
+	 */
+	public final int numDocumentsPerBatchRead;
+	/**
+	 * The number of view queries by each connection after the index of the design document
+	 * is built, or {@code 0} if views are not queried.
+	 */
+	public final int numViewQueries;
+	/**
+	 * The relative weight of key lookup view queries to other view queries.
+	 */
+	public final int keyQueryWeight;
+	/**
+	 * The relative weight of range view queries to other view queries.
+	 */
+	public final int rangeQueryWeight;
+	/**
+	 * The relative weight of grouped reduce view queries to other view queries.
+	 */
+	public final int reduceQueryWeight;
+	/**
+	 * The relative weight of key lookup view queries that do not update the index to other
+	 * view queries.
+	 */
+	public final int staleKeyQueryWeight;
+	/**
+	 * The largest number of document fields indexed by views.
+	 */
+	public final int numViewFields;
+	/**
+	 * The largest number of rows returned by each view query.
+	 */
+	public final int viewQueryLimit;
 	
 	/**
 	 * The JSON file containing field names in documents and their respective types,
@@ -69,47 +248,161 @@ public class ParsedArguments {
 	/**
 	 * Use {@link #parseArguments(String[])} below.
 	 */
-	private ParsedArguments(String databaseAddress,
+	private ParsedArguments(List<String> databaseAddresses,
+			List<Integer> databaseWeights,
+			DatabaseNodeSelector.Strategy nodeSelection,
 			String databaseName,
 			int numConnections,
 			Integer seed,
+			int numBossThreads,
+			int numWorkerThreads,
+			int rampUpConnectionsPerSec,
+			int rampUpSecs,
+			int warmUpSecs,
+			int durationSecs,
+			int maxReconnects,
+			int reconnectBackoffMillis,
+			int maxReconnectBackoffMillis,
+			ContentCompressor.Encoding compression,
 			int numDocumentsPerBulkInsert,
 			int numBulkInsertOperations,
+			int numDocumentsPerBulkInsertChunk,
+			int numBulkInsertsProducedAhead,
+			File generateCorpusFile,
+			File corpusFile,
+			int maxDocumentsPerBulkInsert,
+			int numBulkInsertTemplates,
+			int directBufferPoolMegabytes,
+			DocumentIdGenerator.Strategy documentIdStrategy,
+			int numDocumentIdPartitions,
 			int numCrudOperations,
 			int createWeight,
 			int readWeight,
 			int updateWeight,
 			int deleteWeight,
+			int batchReadWeight,
+			int crudPipelineDepth,
+			int targetOpsPerSec,
+			KeyChooser.Distribution crudKeyDistribution,
+			double zipfianTheta,
+			int hotspotOperationsPercent,
+			int hotspotKeysPercent,
+			RevisionRegistry.Source revisionSource,
+			CrudOperations.BatchReadMethod batchReadMethod,
+			int numDocumentsPerBatchRead,
+			int numViewQueries,
+			int keyQueryWeight,
+			int rangeQueryWeight,
+			int reduceQueryWeight,
+			int staleKeyQueryWeight,
+			int numViewFields,
+			int viewQueryLimit,
 			File jsonDocumentSchemaFile,
 			File xmlDocumentSchemaFile) {
-		this.databaseAddress = databaseAddress;
+		this.databaseAddresses = databaseAddresses;
+		this.databaseWeights = databaseWeights;
+		this.nodeSelection = nodeSelection;
 		this.databaseName = databaseName;
 		this.numConnections = numConnections;
 		this.seed = seed;
+		this.numBossThreads = numBossThreads;
+		this.numWorkerThreads = numWorkerThreads;
+		this.rampUpConnectionsPerSec = rampUpConnectionsPerSec;
+		this.rampUpSecs = rampUpSecs;
+		this.warmUpSecs = warmUpSecs;
+		this.durationSecs = durationSecs;
+		this.maxReconnects = maxReconnects;
+		this.reconnectBackoffMillis = reconnectBackoffMillis;
+		this.maxReconnectBackoffMillis = maxReconnectBackoffMillis;
+		this.compression = compression;
 		this.numDocumentsPerBulkInsert = numDocumentsPerBulkInsert;
 		this.numBulkInsertOperations = numBulkInsertOperations;
+		this.numDocumentsPerBulkInsertChunk = numDocumentsPerBulkInsertChunk;
+		this.numBulkInsertsProducedAhead = numBulkInsertsProducedAhead;
+		this.generateCorpusFile = generateCorpusFile;
+		this.corpusFile = corpusFile;
+		this.maxDocumentsPerBulkInsert = maxDocumentsPerBulkInsert;
+		this.numBulkInsertTemplates = numBulkInsertTemplates;
+		this.directBufferPoolMegabytes = directBufferPoolMegabytes;
+		this.documentIdStrategy = documentIdStrategy;
+		this.numDocumentIdPartitions = numDocumentIdPartitions;
 		this.numCrudOperations = numCrudOperations;
 		this.createWeight = createWeight;
 		this.readWeight = readWeight;
 		this.updateWeight = updateWeight;
 		this.deleteWeight = deleteWeight;
+		this.batchReadWeight = batchReadWeight;
+		this.crudPipelineDepth = crudPipelineDepth;
+		this.targetOpsPerSec = targetOpsPerSec;
+		this.crudKeyDistribution = crudKeyDistribution;
+		this.zipfianTheta = zipfianTheta;
+		this.hotspotOperationsPercent = hotspotOperationsPercent;
+		this.hotspotKeysPercent = hotspotKeysPercent;
+		this.revisionSource = revisionSource;
+		this.batchReadMethod = batchReadMethod;
+		this.numDocumentsPerBatchRead = numDocumentsPerBatchRead;
+		this.numViewQueries = numViewQueries;
+		this.keyQueryWeight = keyQueryWeight;
+		this.rangeQueryWeight = rangeQueryWeight;
+		this.reduceQueryWeight = reduceQueryWeight;
+		this.staleKeyQueryWeight = staleKeyQueryWeight;
+		this.numViewFields = numViewFields;
+		this.viewQueryLimit = viewQueryLimit;
 		this.jsonDocumentSchemaFile = jsonDocumentSchemaFile;
 		this.xmlDocumentSchemaFile = xmlDocumentSchemaFile;
 	}
 
 	private static final String DATABASE_ADDRESS_PREFIX = "--database_address=";
+	private static final String DATABASE_WEIGHTS_PREFIX = "--database_weights=";
+	private static final String NODE_SELECTION_PREFIX = "--node_selection=";
 	private static final String DATABASE_NAME_PREFIX = "--database_name=";
 	private static final String NUM_CONNECTIONS_PREFIX = "--num_connections=";
 	private static final String SEED_PREFIX = "--seed=";
+	private static final String NUM_BOSS_THREADS_PREFIX = "--num_boss_threads=";
+	private static final String NUM_WORKER_THREADS_PREFIX = "--num_worker_threads=";
+	private static final String RAMP_UP_CONNECTIONS_PER_SEC_PREFIX = "--ramp_up_connections_per_sec=";
+	private static final String RAMP_UP_SECS_PREFIX = "--ramp_up_secs=";
+	private static final String WARM_UP_SECS_PREFIX = "--warm_up_secs=";
+	private static final String DURATION_SECS_PREFIX = "--duration_secs=";
+	private static final String MAX_RECONNECTS_PREFIX = "--max_reconnects=";
+	private static final String RECONNECT_BACKOFF_MILLIS_PREFIX = "--reconnect_backoff_millis=";
+	private static final String MAX_RECONNECT_BACKOFF_MILLIS_PREFIX = "--max_reconnect_backoff_millis=";
+	private static final String COMPRESSION_PREFIX = "--compression=";
 
 	private static final String NUM_DOCUMENTS_PER_BULK_INSERT_PREFIX = "--num_documents_per_bulk_insert=";
 	private static final String NUM_BULK_INSERT_OPERATIONS_PREFIX = "--num_bulk_insert_operations=";
+	private static final String NUM_DOCUMENTS_PER_BULK_INSERT_CHUNK_PREFIX = "--num_documents_per_bulk_insert_chunk=";
+	private static final String NUM_BULK_INSERTS_PRODUCED_AHEAD_PREFIX = "--num_bulk_inserts_produced_ahead=";
+	private static final String GENERATE_CORPUS_FILENAME_PREFIX = "--generate_corpus_filename=";
+	private static final String CORPUS_FILENAME_PREFIX = "--corpus_filename=";
+	private static final String MAX_DOCUMENTS_PER_BULK_INSERT_PREFIX = "--max_documents_per_bulk_insert=";
+	private static final String NUM_BULK_INSERT_TEMPLATES_PREFIX = "--num_bulk_insert_templates=";
+	private static final String DIRECT_BUFFER_POOL_MEGABYTES_PREFIX = "--direct_buffer_pool_mb=";
+	private static final String DOCUMENT_ID_STRATEGY_PREFIX = "--document_id_strategy=";
+	private static final String NUM_DOCUMENT_ID_PARTITIONS_PREFIX = "--num_document_id_partitions=";
 	
 	private static final String NUM_CRUD_OPERATIONS_PREFIX = "--num_crud_operations=";
 	private static final String CREATE_WEIGHT_PREFIX = "--create_weight=";
 	private static final String READ_WEIGHT_PREFIX = "--read_weight=";
 	private static final String UPDATE_WEIGHT_PREFIX = "--update_weight=";
 	private static final String DELETE_WEIGHT_PREFIX = "--delete_weight=";
+	private static final String BATCH_READ_WEIGHT_PREFIX = "--batch_read_weight=";
+	private static final String CRUD_PIPELINE_DEPTH_PREFIX = "--crud_pipeline_depth=";
+	private static final String TARGET_OPS_PER_SEC_PREFIX = "--target_ops_per_sec=";
+	private static final String CRUD_KEY_DISTRIBUTION_PREFIX = "--crud_key_distribution=";
+	private static final String ZIPFIAN_THETA_PREFIX = "--zipfian_theta=";
+	private static final String HOTSPOT_OPERATIONS_PERCENT_PREFIX = "--hotspot_operations_percent=";
+	private static final String HOTSPOT_KEYS_PERCENT_PREFIX = "--hotspot_keys_percent=";
+	private static final String REVISION_SOURCE_PREFIX = "--revision_source=";
+	private static final String BATCH_READ_METHOD_PREFIX = "--batch_read_method=";
+	private static final String NUM_DOCUMENTS_PER_BATCH_READ_PREFIX = "--num_documents_per_batch_read=";
+	private static final String NUM_VIEW_QUERIES_PREFIX = "--num_view_queries=";
+	private static final String KEY_QUERY_WEIGHT_PREFIX = "--key_query_weight=";
+	private static final String RANGE_QUERY_WEIGHT_PREFIX = "--range_query_weight=";
+	private static final String REDUCE_QUERY_WEIGHT_PREFIX = "--reduce_query_weight=";
+	private static final String STALE_KEY_QUERY_WEIGHT_PREFIX = "--stale_key_query_weight=";
+	private static final String NUM_VIEW_FIELDS_PREFIX = "--num_view_fields=";
+	private static final String VIEW_QUERY_LIMIT_PREFIX = "--view_query_limit=";
 
 	private static final String JSON_DOCUMENT_SCHEMA_FILENAME_PREFIX = "--json_document_schema_filename=";
 	private static final String XML_DOCUMENT_SCHEMA_FILENAME_PREFIX = "--xml_document_schema_filename=";
@@ -123,34 +416,146 @@ public class ParsedArguments {
 		return Integer.valueOf(value).intValue();
 	}
 	
+	private static double doubleValueForArgument(String arg, String argumentPrefix) {
+		String value = valueForArgument(arg, argumentPrefix);
+		return Double.valueOf(value).doubleValue();
+	}
+	
+	private static List<String> listValueForArgument(String arg, String argumentPrefix) {
+		String value = valueForArgument(arg, argumentPrefix);
+		List<String> values = new ArrayList<String>();
+		for (String element : value.split(",")) {
+			values.add(element.trim());
+		}
+		return values;
+	}
+	
 	public static ParsedArguments parseArguments(String[] args) {
-		String databaseAddress = null;
+		List<String> databaseAddresses = null;
+		List<Integer> databaseWeights = null;
+		DatabaseNodeSelector.Strategy nodeSelection = DatabaseNodeSelector.Strategy.ROUND_ROBIN;
 		String databaseName = null;
 		int numConnections = 1;
 		Integer seed = null;
+		int numBossThreads = 1;
+		int numWorkerThreads = 0;
+		int rampUpConnectionsPerSec = 0;
+		int rampUpSecs = 0;
+		int warmUpSecs = 0;
+		int durationSecs = 0;
+		int maxReconnects = 5;
+		int reconnectBackoffMillis = 100;
+		int maxReconnectBackoffMillis = 10000;
+		ContentCompressor.Encoding compression = null;
 		int numDocumentsPerBulkInsert = 0;
 		int numBulkInsertOperations = 0;
+		int numDocumentsPerBulkInsertChunk = 0;
+		int numBulkInsertsProducedAhead = 0;
+		File generateCorpusFile = null;
+		File corpusFile = null;
+		int maxDocumentsPerBulkInsert = 0;
+		int numBulkInsertTemplates = 0;
+		int directBufferPoolMegabytes = 0;
+		DocumentIdGenerator.Strategy documentIdStrategy = DocumentIdGenerator.Strategy.DECIMAL;
+		int numDocumentIdPartitions = 16;
 		int numCrudOperations = 0;
 		int createWeight = 0;
 		int readWeight = 0;
 		int updateWeight = 0;
 		int deleteWeight = 0;
+		int batchReadWeight = 0;
+		int crudPipelineDepth = 1;
+		int targetOpsPerSec = 0;
+		KeyChooser.Distribution crudKeyDistribution = KeyChooser.Distribution.SEQUENTIAL;
+		double zipfianTheta = 0.99;
+		int hotspotOperationsPercent = 80;
+		int hotspotKeysPercent = 20;
+		RevisionRegistry.Source revisionSource = RevisionRegistry.Source.READ;
+		CrudOperations.BatchReadMethod batchReadMethod = CrudOperations.BatchReadMethod.ALL_DOCS;
+		int numDocumentsPerBatchRead = 10;
+		int numViewQueries = 0;
+		int keyQueryWeight = 1;
+		int rangeQueryWeight = 1;
+		int reduceQueryWeight = 1;
+		int staleKeyQueryWeight = 1;
+		int numViewFields = 3;
+		int viewQueryLimit = 10;
 		String jsonDocumentSchemaFilename = null;
 		String xmlDocumentSchemaFilename = null;
 		
 		for (String arg : args) {
 			if (arg.startsWith(DATABASE_ADDRESS_PREFIX)) {
-				databaseAddress = valueForArgument(arg, DATABASE_ADDRESS_PREFIX);
+				databaseAddresses = listValueForArgument(arg, DATABASE_ADDRESS_PREFIX);
+			} else if (arg.startsWith(DATABASE_WEIGHTS_PREFIX)) {
+				databaseWeights = new ArrayList<Integer>();
+				for (String databaseWeight : listValueForArgument(arg, DATABASE_WEIGHTS_PREFIX)) {
+					databaseWeights.add(Integer.valueOf(databaseWeight));
+				}
+			} else if (arg.startsWith(NODE_SELECTION_PREFIX)) {
+				String value = valueForArgument(arg, NODE_SELECTION_PREFIX);
+				try {
+					nodeSelection = DatabaseNodeSelector.Strategy.valueOf(value.toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unrecognized value --node_selection: " + value);
+				}
 			} else if (arg.startsWith(DATABASE_NAME_PREFIX)) {
 				databaseName = valueForArgument(arg, DATABASE_NAME_PREFIX);
 			} else if (arg.startsWith(NUM_CONNECTIONS_PREFIX)) {
 				numConnections = intValueForArgument(arg, NUM_CONNECTIONS_PREFIX);
 			} else if (arg.startsWith(SEED_PREFIX)) {
 				seed = Integer.valueOf(valueForArgument(arg, SEED_PREFIX));
+			} else if (arg.startsWith(NUM_BOSS_THREADS_PREFIX)) {
+				numBossThreads = intValueForArgument(arg, NUM_BOSS_THREADS_PREFIX);
+			} else if (arg.startsWith(NUM_WORKER_THREADS_PREFIX)) {
+				numWorkerThreads = intValueForArgument(arg, NUM_WORKER_THREADS_PREFIX);
+			} else if (arg.startsWith(RAMP_UP_CONNECTIONS_PER_SEC_PREFIX)) {
+				rampUpConnectionsPerSec = intValueForArgument(arg, RAMP_UP_CONNECTIONS_PER_SEC_PREFIX);
+			} else if (arg.startsWith(RAMP_UP_SECS_PREFIX)) {
+				rampUpSecs = intValueForArgument(arg, RAMP_UP_SECS_PREFIX);
+			} else if (arg.startsWith(WARM_UP_SECS_PREFIX)) {
+				warmUpSecs = intValueForArgument(arg, WARM_UP_SECS_PREFIX);
+			} else if (arg.startsWith(DURATION_SECS_PREFIX)) {
+				durationSecs = intValueForArgument(arg, DURATION_SECS_PREFIX);
+			} else if (arg.startsWith(MAX_RECONNECTS_PREFIX)) {
+				maxReconnects = intValueForArgument(arg, MAX_RECONNECTS_PREFIX);
+			} else if (arg.startsWith(RECONNECT_BACKOFF_MILLIS_PREFIX)) {
+				reconnectBackoffMillis = intValueForArgument(arg, RECONNECT_BACKOFF_MILLIS_PREFIX);
+			} else if (arg.startsWith(MAX_RECONNECT_BACKOFF_MILLIS_PREFIX)) {
+				maxReconnectBackoffMillis = intValueForArgument(arg, MAX_RECONNECT_BACKOFF_MILLIS_PREFIX);
+			} else if (arg.startsWith(COMPRESSION_PREFIX)) {
+				String value = valueForArgument(arg, COMPRESSION_PREFIX);
+				try {
+					compression = ContentCompressor.Encoding.valueOf(value.toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unrecognized value --compression: " + value);
+				}
 			} else if (arg.startsWith(NUM_DOCUMENTS_PER_BULK_INSERT_PREFIX)) {
 				numDocumentsPerBulkInsert = intValueForArgument(arg, NUM_DOCUMENTS_PER_BULK_INSERT_PREFIX);
 			} else if (arg.startsWith(NUM_BULK_INSERT_OPERATIONS_PREFIX)) {
 				numBulkInsertOperations = intValueForArgument(arg, NUM_BULK_INSERT_OPERATIONS_PREFIX);
+			} else if (arg.startsWith(NUM_DOCUMENTS_PER_BULK_INSERT_CHUNK_PREFIX)) {
+				numDocumentsPerBulkInsertChunk = intValueForArgument(arg, NUM_DOCUMENTS_PER_BULK_INSERT_CHUNK_PREFIX);
+			} else if (arg.startsWith(NUM_BULK_INSERTS_PRODUCED_AHEAD_PREFIX)) {
+				numBulkInsertsProducedAhead = intValueForArgument(arg, NUM_BULK_INSERTS_PRODUCED_AHEAD_PREFIX);
+			} else if (arg.startsWith(GENERATE_CORPUS_FILENAME_PREFIX)) {
+				generateCorpusFile = new File(valueForArgument(arg, GENERATE_CORPUS_FILENAME_PREFIX));
+			} else if (arg.startsWith(CORPUS_FILENAME_PREFIX)) {
+				corpusFile = new File(valueForArgument(arg, CORPUS_FILENAME_PREFIX));
+			} else if (arg.startsWith(MAX_DOCUMENTS_PER_BULK_INSERT_PREFIX)) {
+				maxDocumentsPerBulkInsert = intValueForArgument(arg, MAX_DOCUMENTS_PER_BULK_INSERT_PREFIX);
+			} else if (arg.startsWith(NUM_BULK_INSERT_TEMPLATES_PREFIX)) {
+				numBulkInsertTemplates = intValueForArgument(arg, NUM_BULK_INSERT_TEMPLATES_PREFIX);
+			} else if (arg.startsWith(DIRECT_BUFFER_POOL_MEGABYTES_PREFIX)) {
+				directBufferPoolMegabytes = intValueForArgument(arg, DIRECT_BUFFER_POOL_MEGABYTES_PREFIX);
+			} else if (arg.startsWith(DOCUMENT_ID_STRATEGY_PREFIX)) {
+				String value = valueForArgument(arg, DOCUMENT_ID_STRATEGY_PREFIX);
+				try {
+					documentIdStrategy = DocumentIdGenerator.Strategy.valueOf(value.toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unrecognized value --document_id_strategy: " + value);
+				}
+			} else if (arg.startsWith(NUM_DOCUMENT_ID_PARTITIONS_PREFIX)) {
+				numDocumentIdPartitions = intValueForArgument(arg, NUM_DOCUMENT_ID_PARTITIONS_PREFIX);
 			} else if (arg.startsWith(NUM_CRUD_OPERATIONS_PREFIX)) {
 				numCrudOperations = intValueForArgument(arg, NUM_CRUD_OPERATIONS_PREFIX);
 			} else if (arg.startsWith(CREATE_WEIGHT_PREFIX)) {
@@ -161,6 +566,55 @@ public class ParsedArguments {
 				updateWeight = intValueForArgument(arg, UPDATE_WEIGHT_PREFIX);
 			} else if (arg.startsWith(DELETE_WEIGHT_PREFIX)) {
 				deleteWeight = intValueForArgument(arg, DELETE_WEIGHT_PREFIX);
+			} else if (arg.startsWith(BATCH_READ_WEIGHT_PREFIX)) {
+				batchReadWeight = intValueForArgument(arg, BATCH_READ_WEIGHT_PREFIX);
+			} else if (arg.startsWith(CRUD_PIPELINE_DEPTH_PREFIX)) {
+				crudPipelineDepth = intValueForArgument(arg, CRUD_PIPELINE_DEPTH_PREFIX);
+			} else if (arg.startsWith(TARGET_OPS_PER_SEC_PREFIX)) {
+				targetOpsPerSec = intValueForArgument(arg, TARGET_OPS_PER_SEC_PREFIX);
+			} else if (arg.startsWith(CRUD_KEY_DISTRIBUTION_PREFIX)) {
+				String value = valueForArgument(arg, CRUD_KEY_DISTRIBUTION_PREFIX);
+				try {
+					crudKeyDistribution = KeyChooser.Distribution.valueOf(value.toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unrecognized value --crud_key_distribution: " + value);
+				}
+			} else if (arg.startsWith(ZIPFIAN_THETA_PREFIX)) {
+				zipfianTheta = doubleValueForArgument(arg, ZIPFIAN_THETA_PREFIX);
+			} else if (arg.startsWith(HOTSPOT_OPERATIONS_PERCENT_PREFIX)) {
+				hotspotOperationsPercent = intValueForArgument(arg, HOTSPOT_OPERATIONS_PERCENT_PREFIX);
+			} else if (arg.startsWith(HOTSPOT_KEYS_PERCENT_PREFIX)) {
+				hotspotKeysPercent = intValueForArgument(arg, HOTSPOT_KEYS_PERCENT_PREFIX);
+			} else if (arg.startsWith(REVISION_SOURCE_PREFIX)) {
+				String value = valueForArgument(arg, REVISION_SOURCE_PREFIX);
+				try {
+					revisionSource = RevisionRegistry.Source.valueOf(value.toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unrecognized value --revision_source: " + value);
+				}
+			} else if (arg.startsWith(BATCH_READ_METHOD_PREFIX)) {
+				String value = valueForArgument(arg, BATCH_READ_METHOD_PREFIX);
+				try {
+					batchReadMethod = CrudOperations.BatchReadMethod.valueOf(value.toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unrecognized value --batch_read_method: " + value);
+				}
+			} else if (arg.startsWith(NUM_DOCUMENTS_PER_BATCH_READ_PREFIX)) {
+				numDocumentsPerBatchRead = intValueForArgument(arg, NUM_DOCUMENTS_PER_BATCH_READ_PREFIX);
+			} else if (arg.startsWith(NUM_VIEW_QUERIES_PREFIX)) {
+				numViewQueries = intValueForArgument(arg, NUM_VIEW_QUERIES_PREFIX);
+			} else if (arg.startsWith(KEY_QUERY_WEIGHT_PREFIX)) {
+				keyQueryWeight = intValueForArgument(arg, KEY_QUERY_WEIGHT_PREFIX);
+			} else if (arg.startsWith(RANGE_QUERY_WEIGHT_PREFIX)) {
+				rangeQueryWeight = intValueForArgument(arg, RANGE_QUERY_WEIGHT_PREFIX);
+			} else if (arg.startsWith(REDUCE_QUERY_WEIGHT_PREFIX)) {
+				reduceQueryWeight = intValueForArgument(arg, REDUCE_QUERY_WEIGHT_PREFIX);
+			} else if (arg.startsWith(STALE_KEY_QUERY_WEIGHT_PREFIX)) {
+				staleKeyQueryWeight = intValueForArgument(arg, STALE_KEY_QUERY_WEIGHT_PREFIX);
+			} else if (arg.startsWith(NUM_VIEW_FIELDS_PREFIX)) {
+				numViewFields = intValueForArgument(arg, NUM_VIEW_FIELDS_PREFIX);
+			} else if (arg.startsWith(VIEW_QUERY_LIMIT_PREFIX)) {
+				viewQueryLimit = intValueForArgument(arg, VIEW_QUERY_LIMIT_PREFIX);
 			} else if (arg.startsWith(JSON_DOCUMENT_SCHEMA_FILENAME_PREFIX)) {
 				jsonDocumentSchemaFilename = valueForArgument(arg, JSON_DOCUMENT_SCHEMA_FILENAME_PREFIX);
 			} else if (arg.startsWith(XML_DOCUMENT_SCHEMA_FILENAME_PREFIX)) {
@@ -171,21 +625,146 @@ public class ParsedArguments {
 		}
 		
 		// Validate the arguments.
-		if ((databaseAddress == null) || databaseAddress.isEmpty()) {
+		if (generateCorpusFile != null) {
+			// Generating a corpus does not connect to a database.
+		} else if (databaseAddresses == null) {
 			throw new IllegalArgumentException("Value --database_address must be provided");
+		} else {
+			for (String databaseAddress : databaseAddresses) {
+				if (databaseAddress.isEmpty()) {
+					throw new IllegalArgumentException("Value --database_address must not contain empty addresses");
+				}
+			}
+		}
+		if (nodeSelection == DatabaseNodeSelector.Strategy.WEIGHTED) {
+			if (databaseWeights == null) {
+				throw new IllegalArgumentException("Value --database_weights must be provided if --node_selection=weighted");
+			}
+			if (databaseWeights.size() != databaseAddresses.size()) {
+				throw new IllegalArgumentException("Value --database_weights must have one weight per database address");
+			}
+			for (int databaseWeight : databaseWeights) {
+				if (databaseWeight <= 0) {
+					throw new IllegalArgumentException("Value --database_weights must contain weights > 0");
+				}
+			}
+		} else if (databaseWeights != null) {
+			throw new IllegalArgumentException("Value --database_weights requires --node_selection=weighted");
 		}
-		if ((databaseName == null) || databaseName.isEmpty()) {
+		if ((generateCorpusFile == null) && ((databaseName == null) || databaseName.isEmpty())) {
 			throw new IllegalArgumentException("Value --database_name must be provided");
 		}
 		if (numConnections <= 0) {
 			throw new IllegalArgumentException("Value --num_connections must be > 0");
 		}
+		if (numBossThreads <= 0) {
+			throw new IllegalArgumentException("Value --num_boss_threads must be > 0");
+		}
+		if (numWorkerThreads < 0) {
+			throw new IllegalArgumentException("Value --num_worker_threads must be >= 0");
+		}
+		if (rampUpConnectionsPerSec < 0) {
+			throw new IllegalArgumentException("Value --ramp_up_connections_per_sec must be >= 0");
+		}
+		if (rampUpSecs < 0) {
+			throw new IllegalArgumentException("Value --ramp_up_secs must be >= 0");
+		}
+		if ((rampUpConnectionsPerSec > 0) && (rampUpSecs > 0)) {
+			throw new IllegalArgumentException(
+					"Only one of value --ramp_up_connections_per_sec or --ramp_up_secs can be provided");
+		}
+		if (warmUpSecs < 0) {
+			throw new IllegalArgumentException("Value --warm_up_secs must be >= 0");
+		}
+		if (durationSecs < 0) {
+			throw new IllegalArgumentException("Value --duration_secs must be >= 0");
+		}
+		if (maxReconnects < 0) {
+			throw new IllegalArgumentException("Value --max_reconnects must be >= 0");
+		}
+		if (reconnectBackoffMillis < 0) {
+			throw new IllegalArgumentException("Value --reconnect_backoff_millis must be >= 0");
+		}
+		if (maxReconnectBackoffMillis < reconnectBackoffMillis) {
+			throw new IllegalArgumentException(
+					"Value --max_reconnect_backoff_millis must be >= --reconnect_backoff_millis");
+		}
 		if (numDocumentsPerBulkInsert < 0) {
 			throw new IllegalArgumentException("Value --num_documents_per_bulk_insert must be >= 0");
 		}
 		if (numBulkInsertOperations < 0) {
 			throw new IllegalArgumentException("Value --num_bulk_insert_operations must be >= 0");
 		}
+		if (numDocumentsPerBulkInsertChunk < 0) {
+			throw new IllegalArgumentException("Value --num_documents_per_bulk_insert_chunk must be >= 0");
+		}
+		if (numBulkInsertsProducedAhead < 0) {
+			throw new IllegalArgumentException("Value --num_bulk_inserts_produced_ahead must be >= 0");
+		}
+		if ((numDocumentsPerBulkInsertChunk > 0) && (numBulkInsertsProducedAhead > 0)) {
+			throw new IllegalArgumentException(
+					"Only one of value --num_documents_per_bulk_insert_chunk or --num_bulk_inserts_produced_ahead can be provided");
+		}
+		if ((generateCorpusFile != null) && (durationSecs > 0)) {
+			throw new IllegalArgumentException(
+					"Only one of value --generate_corpus_filename or --duration_secs can be provided");
+		}
+		if (corpusFile != null) {
+			if (!corpusFile.exists()) {
+				throw new IllegalArgumentException("Filename --corpus_filename does not exist");
+			}
+			if ((generateCorpusFile != null) || (durationSecs > 0) ||
+					(numDocumentsPerBulkInsertChunk > 0) || (numBulkInsertsProducedAhead > 0)) {
+				throw new IllegalArgumentException(
+						"Value --corpus_filename cannot be combined with --generate_corpus_filename, --duration_secs, " +
+						"--num_documents_per_bulk_insert_chunk, or --num_bulk_inserts_produced_ahead");
+			}
+		}
+		if (maxDocumentsPerBulkInsert < 0) {
+			throw new IllegalArgumentException("Value --max_documents_per_bulk_insert must be >= 0");
+		}
+		if (maxDocumentsPerBulkInsert > 0) {
+			if (maxDocumentsPerBulkInsert < numDocumentsPerBulkInsert) {
+				throw new IllegalArgumentException(
+						"Value --max_documents_per_bulk_insert must be >= --num_documents_per_bulk_insert");
+			}
+			if ((generateCorpusFile != null) || (corpusFile != null) || (durationSecs > 0) ||
+					(numDocumentsPerBulkInsertChunk > 0) || (numBulkInsertsProducedAhead > 0)) {
+				throw new IllegalArgumentException(
+						"Value --max_documents_per_bulk_insert cannot be combined with --generate_corpus_filename, " +
+						"--corpus_filename, --duration_secs, --num_documents_per_bulk_insert_chunk, or " +
+						"--num_bulk_inserts_produced_ahead");
+			}
+		}
+		if (numBulkInsertTemplates < 0) {
+			throw new IllegalArgumentException("Value --num_bulk_insert_templates must be >= 0");
+		}
+		if ((numBulkInsertTemplates > 0) && ((corpusFile != null) || (durationSecs > 0) ||
+				(numDocumentsPerBulkInsertChunk > 0) || (maxDocumentsPerBulkInsert > 0))) {
+			throw new IllegalArgumentException(
+					"Value --num_bulk_insert_templates cannot be combined with --corpus_filename, --duration_secs, " +
+					"--num_documents_per_bulk_insert_chunk, or --max_documents_per_bulk_insert");
+		}
+		if (directBufferPoolMegabytes < 0) {
+			throw new IllegalArgumentException("Value --direct_buffer_pool_mb must be >= 0");
+		}
+		if ((directBufferPoolMegabytes > 0) && (numDocumentsPerBulkInsertChunk > 0)) {
+			throw new IllegalArgumentException(
+					"Only one of value --direct_buffer_pool_mb or --num_documents_per_bulk_insert_chunk can be provided");
+		}
+		if (numDocumentIdPartitions <= 0) {
+			throw new IllegalArgumentException("Value --num_document_id_partitions must be > 0");
+		}
+		if ((documentIdStrategy == DocumentIdGenerator.Strategy.UUID7) &&
+				((generateCorpusFile != null) || (corpusFile != null))) {
+			throw new IllegalArgumentException(
+					"Value --document_id_strategy=uuid7 cannot be combined with --generate_corpus_filename " +
+					"or --corpus_filename");
+		}
+		if ((compression != null) && (numDocumentsPerBulkInsertChunk > 0)) {
+			throw new IllegalArgumentException(
+					"Only one of value --compression or --num_documents_per_bulk_insert_chunk can be provided");
+		}
 		if (numCrudOperations < 0) {
 			throw new IllegalArgumentException("Value --num_crud_operations must be >= 0");
 		}
@@ -201,8 +780,34 @@ public class ParsedArguments {
 		if (deleteWeight < 0) {
 			throw new IllegalArgumentException("Value --delete_weight must be >= 0");
 		}
+		if (batchReadWeight < 0) {
+			throw new IllegalArgumentException("Value --batch_read_weight must be >= 0");
+		}
+		if (crudPipelineDepth <= 0) {
+			throw new IllegalArgumentException("Value --crud_pipeline_depth must be > 0");
+		}
+		if (targetOpsPerSec < 0) {
+			throw new IllegalArgumentException("Value --target_ops_per_sec must be >= 0");
+		}
+		if ((zipfianTheta <= 0) || (zipfianTheta >= 1)) {
+			throw new IllegalArgumentException("Value --zipfian_theta must be > 0 and < 1");
+		}
+		if ((hotspotOperationsPercent < 0) || (hotspotOperationsPercent > 100)) {
+			throw new IllegalArgumentException("Value --hotspot_operations_percent must be >= 0 and <= 100");
+		}
+		if ((hotspotKeysPercent <= 0) || (hotspotKeysPercent > 100)) {
+			throw new IllegalArgumentException("Value --hotspot_keys_percent must be > 0 and <= 100");
+		}
+		if ((revisionSource == RevisionRegistry.Source.SHARED) &&
+				(crudKeyDistribution == KeyChooser.Distribution.SEQUENTIAL)) {
+			throw new IllegalArgumentException(
+					"Value --revision_source=shared requires a --crud_key_distribution other than sequential");
+		}
+		if (numDocumentsPerBatchRead <= 0) {
+			throw new IllegalArgumentException("Value --num_documents_per_batch_read must be > 0");
+		}
 		if (numCrudOperations > 0) {
-			int totalWeight = createWeight + readWeight + updateWeight + deleteWeight;
+			int totalWeight = createWeight + readWeight + updateWeight + deleteWeight + batchReadWeight;
 			if (totalWeight == 0) {
 				throw new IllegalArgumentException("Sum of weights must be > 0");
 			}
@@ -214,6 +819,31 @@ public class ParsedArguments {
 				throw new IllegalArgumentException("createWeight + readWeight must be > 0 if updateWeight > 0");
 			}
 		}
+		if (numViewQueries < 0) {
+			throw new IllegalArgumentException("Value --num_view_queries must be >= 0");
+		}
+		if (keyQueryWeight < 0) {
+			throw new IllegalArgumentException("Value --key_query_weight must be >= 0");
+		}
+		if (rangeQueryWeight < 0) {
+			throw new IllegalArgumentException("Value --range_query_weight must be >= 0");
+		}
+		if (reduceQueryWeight < 0) {
+			throw new IllegalArgumentException("Value --reduce_query_weight must be >= 0");
+		}
+		if (staleKeyQueryWeight < 0) {
+			throw new IllegalArgumentException("Value --stale_key_query_weight must be >= 0");
+		}
+		if (numViewFields <= 0) {
+			throw new IllegalArgumentException("Value --num_view_fields must be > 0");
+		}
+		if (viewQueryLimit <= 0) {
+			throw new IllegalArgumentException("Value --view_query_limit must be > 0");
+		}
+		if ((numViewQueries > 0) &&
+				(keyQueryWeight + rangeQueryWeight + reduceQueryWeight + staleKeyQueryWeight == 0)) {
+			throw new IllegalArgumentException("Sum of view query weights must be > 0");
+		}
 		if ((jsonDocumentSchemaFilename == null) == (xmlDocumentSchemaFilename == null)) {
 			throw new IllegalArgumentException(
 					"Either value --json_document_schema_filename or --xml_document_schema_filename must be provided");
@@ -234,17 +864,55 @@ public class ParsedArguments {
 			}
 		}
 		
-		return new ParsedArguments(databaseAddress,
+		return new ParsedArguments(databaseAddresses,
+				databaseWeights,
+				nodeSelection,
 				databaseName,
 				numConnections,
 				seed,
+				numBossThreads,
+				numWorkerThreads,
+				rampUpConnectionsPerSec,
+				rampUpSecs,
+				warmUpSecs,
+				durationSecs,
+				maxReconnects,
+				reconnectBackoffMillis,
+				maxReconnectBackoffMillis,
+				compression,
 				numDocumentsPerBulkInsert,
 				numBulkInsertOperations,
+				numDocumentsPerBulkInsertChunk,
+				numBulkInsertsProducedAhead,
+				generateCorpusFile,
+				corpusFile,
+				maxDocumentsPerBulkInsert,
+				numBulkInsertTemplates,
+				directBufferPoolMegabytes,
+				documentIdStrategy,
+				numDocumentIdPartitions,
 				numCrudOperations,
 				createWeight,
 				readWeight,
 				updateWeight,
 				deleteWeight,
+				batchReadWeight,
+				crudPipelineDepth,
+				targetOpsPerSec,
+				crudKeyDistribution,
+				zipfianTheta,
+				hotspotOperationsPercent,
+				hotspotKeysPercent,
+				revisionSource,
+				batchReadMethod,
+				numDocumentsPerBatchRead,
+				numViewQueries,
+				keyQueryWeight,
+				rangeQueryWeight,
+				reduceQueryWeight,
+				staleKeyQueryWeight,
+				numViewFields,
+				viewQueryLimit,
 				jsonDocumentSchemaFile,
 				xmlDocumentSchemaFile);
 	}
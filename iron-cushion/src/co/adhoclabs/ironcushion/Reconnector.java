@@ -0,0 +1,57 @@
+package co.adhoclabs.ironcushion;
+
+/**
+ * Re-establishes connections that failed before completing their operations,
+ * waiting exponentially longer after each consecutive failure.
+ * 
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public abstract class Reconnector {
+	private final int maxReconnects;
+	private final long minBackoffTime;
+	private final long maxBackoffTime;
+	
+	/**
+	 * @param maxReconnects the maximum number of consecutive failures to reconnect after
+	 * @param minBackoffTime the number of nanoseconds to wait after the first failure
+	 * @param maxBackoffTime the maximum number of nanoseconds to wait after any failure
+	 */
+	protected Reconnector(int maxReconnects, long minBackoffTime, long maxBackoffTime) {
+		this.maxReconnects = maxReconnects;
+		this.minBackoffTime = minBackoffTime;
+		this.maxBackoffTime = maxBackoffTime;
+	}
+	
+	/**
+	 * Schedules re-establishing the given connection, unless it has failed too
+	 * many consecutive times.
+	 * 
+	 * @param connectionNum the number of the connection
+	 * @param databaseNode the database node to connect to
+	 * @param numConsecutiveFailures the number of times the connection failed since
+	 *        it last received a response
+	 * @return {@code true} if reconnecting, or {@code false} if the connection
+	 *         should give up
+	 */
+	public boolean reconnect(int connectionNum, DatabaseNode databaseNode, int numConsecutiveFailures) {
+		if (numConsecutiveFailures > maxReconnects) {
+			return false;
+		}
+		// Double the backoff after each consecutive failure.
+		long backoffTime = minBackoffTime;
+		for (int i = 1; (i < numConsecutiveFailures) && (backoffTime < maxBackoffTime); ++i) {
+			backoffTime *= 2;
+		}
+		connect(connectionNum, databaseNode, Math.min(backoffTime, maxBackoffTime));
+		return true;
+	}
+	
+	/**
+	 * Establishes a new channel for the given connection after the given delay.
+	 * 
+	 * @param connectionNum the number of the connection
+	 * @param databaseNode the database node to connect to
+	 * @param delay the number of nanoseconds to wait before connecting
+	 */
+	protected abstract void connect(int connectionNum, DatabaseNode databaseNode, long delay);
+}
@@ -0,0 +1,229 @@
+package co.adhoclabs.ironcushion;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jboss.netty.util.CharsetUtil;
+
+/**
+ * Records the latest revision of every bulk inserted document, and is shared by
+ * all connections, so that any connection can update or delete any document
+ * without first reading it. Documents are numbered as keys in the order that all
+ * connections bulk inserted them, and so the registry is an array indexed by key
+ * instead of a map. The array is divided into segments that are allocated as keys
+ * are recorded, so that its size need not be known in advance.
+ * 
+ * Each revision is stored as an array of bytes. A revision of the form
+ * {@code <generation>-<32 hexadecimal digits>} that CouchDB returns is packed into
+ * {@code 21} bytes, and any other revision is stored as its ASCII characters. A
+ * revision is only replaced by a revision with a greater generation, using
+ * compare-and-set instead of locks, so that a response received late never
+ * replaces the revision of a later update or deletion.
+ * 
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class RevisionRegistry {
+	/**
+	 * An enumeration over all sources of the revisions of updated or deleted documents.
+	 */
+	public enum Source {
+		READ,
+		SHARED,
+	}
+	
+	private static final int SEGMENT_BITS = 16;
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+	private static final int MAX_NUM_SEGMENTS = 1 << (31 - SEGMENT_BITS);
+	
+	// The flags in the first byte of each revision.
+	private static final byte PACKED_FLAG = 0x01;
+	private static final byte DELETED_FLAG = 0x02;
+	private static final int NUM_DIGEST_BYTES = 16;
+	private static final int NUM_PACKED_BYTES = 1 + 4 + NUM_DIGEST_BYTES;
+	private static final int MAX_GENERATION_DIGITS = 9;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	
+	private final int numConnections;
+	private final int numDocumentsPerBulkInsert;
+	private final AtomicReferenceArray<AtomicReferenceArray<byte[]>> segments;
+	private final AtomicInteger numRevisions;
+	
+	/**
+	 * Creates an empty registry.
+	 * 
+	 * @param numConnections the number of connections that bulk insert documents
+	 * @param numDocumentsPerBulkInsert the number of documents in each bulk insert
+	 */
+	public RevisionRegistry(int numConnections, int numDocumentsPerBulkInsert) {
+		this.numConnections = numConnections;
+		this.numDocumentsPerBulkInsert = numDocumentsPerBulkInsert;
+		this.segments = new AtomicReferenceArray<AtomicReferenceArray<byte[]>>(MAX_NUM_SEGMENTS);
+		this.numRevisions = new AtomicInteger();
+	}
+	
+	/**
+	 * Returns the key of a document bulk inserted by the given connection. Keys
+	 * interleave the bulk inserts of all connections, in the order they were sent.
+	 * 
+	 * @param connectionNum the number of the connection
+	 * @param bulkInsertedDocumentNum the number of the document among those bulk
+	 *        inserted by the connection
+	 * @return the key of the document
+	 */
+	public int getKey(int connectionNum, int bulkInsertedDocumentNum) {
+		int insertOperation = bulkInsertedDocumentNum / numDocumentsPerBulkInsert;
+		return (((insertOperation * numConnections) + connectionNum) * numDocumentsPerBulkInsert) +
+				(bulkInsertedDocumentNum % numDocumentsPerBulkInsert);
+	}
+	
+	private AtomicReferenceArray<byte[]> getSegment(int key, boolean allocate) {
+		int segmentNum = key >>> SEGMENT_BITS;
+		AtomicReferenceArray<byte[]> segment = segments.get(segmentNum);
+		if ((segment == null) && allocate) {
+			// If another connection allocates the segment first, then use its segment.
+			segments.compareAndSet(segmentNum, null, new AtomicReferenceArray<byte[]>(SEGMENT_SIZE));
+			segment = segments.get(segmentNum);
+		}
+		return segment;
+	}
+	
+	private static int getHexValue(char c) {
+		if ((c >= '0') && (c <= '9')) {
+			return c - '0';
+		} else if ((c >= 'a') && (c <= 'f')) {
+			return 10 + (c - 'a');
+		}
+		return -1;
+	}
+	
+	private static byte[] encode(String revision, boolean deleted) {
+		byte flags = deleted ? DELETED_FLAG : 0;
+		int separatorIndex = revision.indexOf('-');
+		if ((separatorIndex > 0) && (separatorIndex <= MAX_GENERATION_DIGITS) &&
+				(revision.length() == separatorIndex + 1 + (2 * NUM_DIGEST_BYTES))) {
+			byte[] bytes = new byte[NUM_PACKED_BYTES];
+			bytes[0] = (byte) (flags | PACKED_FLAG);
+			int generation = 0;
+			for (int i = 0; (i < separatorIndex) && (generation >= 0); ++i) {
+				char c = revision.charAt(i);
+				generation = ((c >= '0') && (c <= '9')) ? ((10 * generation) + (c - '0')) : -1;
+			}
+			bytes[1] = (byte) (generation >>> 24);
+			bytes[2] = (byte) (generation >>> 16);
+			bytes[3] = (byte) (generation >>> 8);
+			bytes[4] = (byte) generation;
+			boolean isHex = (generation >= 0);
+			for (int i = 0, j = separatorIndex + 1; isHex && (i < NUM_DIGEST_BYTES); ++i, j += 2) {
+				int high = getHexValue(revision.charAt(j));
+				int low = getHexValue(revision.charAt(j + 1));
+				isHex = (high >= 0) && (low >= 0);
+				bytes[5 + i] = (byte) ((high << 4) | low);
+			}
+			if (isHex) {
+				return bytes;
+			}
+		}
+		// Store any other revision as its characters.
+		byte[] characters = revision.getBytes(CharsetUtil.US_ASCII);
+		byte[] bytes = new byte[1 + characters.length];
+		bytes[0] = flags;
+		System.arraycopy(characters, 0, bytes, 1, characters.length);
+		return bytes;
+	}
+	
+	private static String decode(byte[] bytes) {
+		if ((bytes[0] & PACKED_FLAG) == 0) {
+			return new String(bytes, 1, bytes.length - 1, CharsetUtil.US_ASCII);
+		}
+		StringBuilder sb = new StringBuilder(MAX_GENERATION_DIGITS + 1 + (2 * NUM_DIGEST_BYTES));
+		sb.append(getGeneration(bytes)).append('-');
+		for (int i = 5; i < NUM_PACKED_BYTES; ++i) {
+			sb.append(HEX_DIGITS[(bytes[i] >>> 4) & 0xf]).append(HEX_DIGITS[bytes[i] & 0xf]);
+		}
+		return sb.toString();
+	}
+	
+	private static int getGeneration(byte[] bytes) {
+		if ((bytes[0] & PACKED_FLAG) != 0) {
+			return ((bytes[1] & 0xff) << 24) | ((bytes[2] & 0xff) << 16) |
+					((bytes[3] & 0xff) << 8) | (bytes[4] & 0xff);
+		}
+		// Parse the digits before the separator, if any.
+		int generation = 0;
+		for (int i = 1; (i < bytes.length) && (i <= MAX_GENERATION_DIGITS); ++i) {
+			if ((bytes[i] < '0') || (bytes[i] > '9')) {
+				break;
+			}
+			generation = (10 * generation) + (bytes[i] - '0');
+		}
+		return generation;
+	}
+	
+	private void put(int key, byte[] bytes) {
+		AtomicReferenceArray<byte[]> segment = getSegment(key, true);
+		int index = key & (SEGMENT_SIZE - 1);
+		int generation = getGeneration(bytes);
+		while (true) {
+			byte[] currentBytes = segment.get(index);
+			if ((currentBytes != null) && (getGeneration(currentBytes) >= generation)) {
+				// The document was already updated or deleted by a later revision.
+				return;
+			}
+			if (segment.compareAndSet(index, currentBytes, bytes)) {
+				if (currentBytes == null) {
+					numRevisions.incrementAndGet();
+				}
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Records the revision of the document with the given key, if it is later than
+	 * the revision already recorded.
+	 * 
+	 * @param key the key of the document
+	 * @param revision the revision of the document
+	 */
+	public void putRevision(int key, String revision) {
+		if (revision != null) {
+			put(key, encode(revision, false));
+		}
+	}
+	
+	/**
+	 * Records that the document with the given key was deleted, if the revision of
+	 * its deletion is later than the revision already recorded.
+	 * 
+	 * @param key the key of the document
+	 * @param revision the revision of the deletion
+	 */
+	public void deletedRevision(int key, String revision) {
+		if (revision != null) {
+			put(key, encode(revision, true));
+		}
+	}
+	
+	/**
+	 * Returns the latest revision of the document with the given key.
+	 * 
+	 * @param key the key of the document
+	 * @return the revision, or {@code null} if the revision is unknown or the
+	 *         document was deleted
+	 */
+	public String getRevision(int key) {
+		AtomicReferenceArray<byte[]> segment = getSegment(key, false);
+		byte[] bytes = (segment != null) ? segment.get(key & (SEGMENT_SIZE - 1)) : null;
+		if ((bytes == null) || ((bytes[0] & DELETED_FLAG) != 0)) {
+			return null;
+		}
+		return decode(bytes);
+	}
+	
+	/**
+	 * @return the number of documents whose revision is recorded
+	 */
+	public int getNumRevisions() {
+		return numRevisions.get();
+	}
+}
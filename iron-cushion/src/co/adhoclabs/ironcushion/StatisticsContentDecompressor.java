@@ -0,0 +1,64 @@
+package co.adhoclabs.ironcushion;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.compression.ZlibDecoder;
+import org.jboss.netty.handler.codec.compression.ZlibWrapper;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.http.HttpContentDecompressor;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+
+/**
+ * An {@link HttpContentDecompressor} that records the sizes of compressed
+ * responses before and after decompressing them, and the time spent decompressing
+ * them, in the statistics of the {@link AbstractBenchmarkHandler} of its pipeline.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class StatisticsContentDecompressor extends HttpContentDecompressor {
+	private AbstractConnectionStatistics connectionStatistics;
+
+	@Override
+	public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+		// The pipeline is reused by each step, so find the handler of the current step.
+		AbstractBenchmarkHandler handler = ctx.getPipeline().get(AbstractBenchmarkHandler.class);
+		connectionStatistics = handler.getConnectionStatistics();
+		super.messageReceived(ctx, e);
+	}
+
+	@Override
+	protected DecoderEmbedder<ChannelBuffer> newContentDecoder(String contentEncoding) throws Exception {
+		if (HttpHeaders.Values.GZIP.equalsIgnoreCase(contentEncoding) ||
+				"x-gzip".equalsIgnoreCase(contentEncoding)) {
+			return new DecoderEmbedder<ChannelBuffer>(new StatisticsZlibDecoder(ZlibWrapper.GZIP));
+		} else if (HttpHeaders.Values.DEFLATE.equalsIgnoreCase(contentEncoding) ||
+				"x-deflate".equalsIgnoreCase(contentEncoding)) {
+			// Some servers send raw deflate data instead of the zlib format.
+			return new DecoderEmbedder<ChannelBuffer>(new StatisticsZlibDecoder(ZlibWrapper.ZLIB_OR_NONE));
+		}
+		// Any other encoding is passed through.
+		return null;
+	}
+
+	/**
+	 * The {@link ZlibDecoder} that records each part of a response it decompresses.
+	 */
+	private final class StatisticsZlibDecoder extends ZlibDecoder {
+		private StatisticsZlibDecoder(ZlibWrapper wrapper) {
+			super(wrapper);
+		}
+
+		@Override
+		protected Object decode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
+			long startTime = System.nanoTime();
+			int numCompressedBytes = ((ChannelBuffer) msg).readableBytes();
+			Object decoded = super.decode(ctx, channel, msg);
+			int numBytes = (decoded instanceof ChannelBuffer) ? ((ChannelBuffer) decoded).readableBytes() : 0;
+			connectionStatistics.decompressedJsonBytes(numCompressedBytes, numBytes,
+					System.nanoTime() - startTime);
+			return decoded;
+		}
+	}
+}
@@ -6,11 +6,11 @@ package co.adhoclabs.ironcushion;
  * @author Michael Parker (michael.g.parker@gmail.com)
  */
 public class Timer {
-	private long totalTimeMillis;
+	private long totalTime;
 	private long startTime;
 	
 	public Timer() {
-		totalTimeMillis = 0;
+		totalTime = 0;
 		startTime = 0;
 	}
 
@@ -19,12 +19,33 @@ public class Timer {
 	}
 	
 	public void stop() {
-		long elapsedTime = System.nanoTime() - startTime;
-		// Convert to milliseconds.
-		totalTimeMillis += (elapsedTime / 1000000);
+		totalTime += (System.nanoTime() - startTime);
+	}
+	
+	/**
+	 * Adds time measured elsewhere to this timer.
+	 * 
+	 * @param elapsedTime the number of nanoseconds to add
+	 */
+	public void add(long elapsedTime) {
+		totalTime += elapsedTime;
+	}
+	
+	/**
+	 * Discards all time measured before the given time. If this timer is running,
+	 * it continues running as if started at the later of that time and its start.
+	 * 
+	 * @param resetTime the time returned by {@link System#nanoTime()} to reset to
+	 */
+	public void reset(long resetTime) {
+		totalTime = 0;
+		if (startTime < resetTime) {
+			startTime = resetTime;
+		}
 	}
 	
 	public long getTotalTimeMillis() {
-		return totalTimeMillis;
+		// Convert to milliseconds.
+		return totalTime / 1000000;
 	}
 }
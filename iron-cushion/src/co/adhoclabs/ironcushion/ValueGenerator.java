@@ -2,6 +2,10 @@ package co.adhoclabs.ironcushion;
 
 import java.util.Random;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.util.CharsetUtil;
+import org.json.simple.JSONValue;
+
 /**
  * Generates values for documents created by a {@link DocumentSchema}.
  * 
@@ -115,6 +119,13 @@ public class ValueGenerator {
 		return next(24) / ((float) (1 << 24));
 	}
 
+	/**
+	 * @return the next {@code double} value
+	 */
+	public double nextDouble() {
+		return ((((long) next(26)) << 27) + next(27)) / ((double) (1L << 53));
+	}
+
 	/**
 	 * @return the next {@link String}, which consists of anywhere from 1 to 5
 	 *         words, inclusive
@@ -131,6 +142,39 @@ public class ValueGenerator {
 		return wordJoiner.toString();
 	}
 
+	/**
+	 * Writes the next {@link String} as JSON to the given buffer, without creating
+	 * it. This advances the generator exactly as {@link #nextString()} does.
+	 * 
+	 * @param buffer
+	 *            the buffer to write the escaped and UTF-8 encoded string to
+	 */
+	public void writeNextString(ChannelBuffer buffer) {
+		buffer.writeByte('"');
+		int numWords = 1 + nextInt(4);
+		for (int i = 0; i < numWords; ++i) {
+			int wordIndex = nextInt(NUM_WORDS);
+			String word = words[wordIndex];
+			if (i != 0) {
+				buffer.writeByte(' ');
+			}
+			writeEscaped(buffer, word);
+		}
+		buffer.writeByte('"');
+	}
+
+	private static void writeEscaped(ChannelBuffer buffer, String word) {
+		for (int i = 0; i < word.length(); ++i) {
+			char ch = word.charAt(i);
+			if ((ch < 0x20) || (ch > 0x7E) || (ch == '"') || (ch == '\\') || (ch == '/')) {
+				// Escape and encode the rest of the word like JSONValue does.
+				buffer.writeBytes(JSONValue.escape(word.substring(i)).getBytes(CharsetUtil.UTF_8));
+				return;
+			}
+			buffer.writeByte(ch);
+		}
+	}
+
 	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789!?";
 	private static final int ALPHABET_SIZE = ALPHABET.length();
 	private static final int NUM_WORDS = 4096;
@@ -0,0 +1,192 @@
+package co.adhoclabs.ironcushion.bulkinsert;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Chooses the number of documents in each bulk insert of one connection by
+ * hill-climbing on the rate at which the database processes documents. Each size
+ * is used for several bulk inserts. If the rate is higher than that of the best
+ * size so far, then the next size continues in the same direction. Otherwise the
+ * search reverses direction from the best size, and the step between sizes
+ * shrinks. Once the step is too small to change the size, the best size is used
+ * for all remaining bulk inserts.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class BulkInsertBatchSizer {
+	private static final int NUM_BULK_INSERTS_PER_SIZE = 3;
+	private static final double INITIAL_STEP = 2.0;
+	private static final double MIN_STEP = 1.1;
+
+	private final int maxBatchSize;
+	private final SortedMap<Integer, BatchSizeSample> allSamples;
+
+	private int batchSize;
+	private int bestBatchSize;
+	private double bestRate;
+	private double step;
+	private boolean increasing;
+	private boolean converged;
+	private BatchSizeSample currentSample;
+
+	/**
+	 * Creates a sizer that starts with the given number of documents per bulk insert.
+	 *
+	 * @param initialBatchSize the number of documents in the first bulk inserts
+	 * @param maxBatchSize the largest number of documents in a bulk insert
+	 */
+	public BulkInsertBatchSizer(int initialBatchSize, int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+		this.allSamples = new TreeMap<Integer, BatchSizeSample>();
+
+		this.batchSize = Math.max(1, Math.min(initialBatchSize, maxBatchSize));
+		this.bestBatchSize = batchSize;
+		this.bestRate = 0;
+		this.step = INITIAL_STEP;
+		this.increasing = true;
+		this.converged = false;
+		this.currentSample = new BatchSizeSample();
+	}
+
+	/**
+	 * The bulk inserts completed with one number of documents.
+	 */
+	public static final class BatchSizeSample {
+		private int numBulkInserts;
+		private long numDocuments;
+		private long remoteProcessingTime;
+
+		private void add(int numDocuments, long remoteProcessingTime) {
+			this.numBulkInserts++;
+			this.numDocuments += numDocuments;
+			this.remoteProcessingTime += remoteProcessingTime;
+		}
+
+		/**
+		 * Adds the bulk inserts of the given sample to this sample.
+		 *
+		 * @param sample the sample to add
+		 */
+		public void add(BatchSizeSample sample) {
+			this.numBulkInserts += sample.numBulkInserts;
+			this.numDocuments += sample.numDocuments;
+			this.remoteProcessingTime += sample.remoteProcessingTime;
+		}
+
+		/**
+		 * @return the number of bulk inserts completed
+		 */
+		public int getNumBulkInserts() {
+			return numBulkInserts;
+		}
+
+		/**
+		 * @return the number of documents in all bulk inserts completed
+		 */
+		public long getNumDocuments() {
+			return numDocuments;
+		}
+
+		/**
+		 * @return the number of nanoseconds spent on remote processing of all bulk
+		 *         inserts completed
+		 */
+		public long getRemoteProcessingTime() {
+			return remoteProcessingTime;
+		}
+
+		private double getRate() {
+			return ((double) numDocuments) / remoteProcessingTime;
+		}
+	}
+
+	/**
+	 * @return the number of documents in the next bulk insert
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @return the number of documents per bulk insert with the highest rate so far
+	 */
+	public int getBestBatchSize() {
+		return bestBatchSize;
+	}
+
+	/**
+	 * @return {@code true} if the search has ended, and every remaining bulk insert
+	 *         contains the number of documents returned by {@link #getBestBatchSize()}
+	 */
+	public boolean isConverged() {
+		return converged;
+	}
+
+	/**
+	 * @return the bulk inserts completed with each number of documents
+	 */
+	public SortedMap<Integer, BatchSizeSample> getAllSamples() {
+		return Collections.unmodifiableSortedMap(allSamples);
+	}
+
+	/**
+	 * Records a completed bulk insert, and chooses the number of documents in the
+	 * next bulk insert if enough bulk inserts were completed with the current number.
+	 *
+	 * @param numDocuments the number of documents in the bulk insert
+	 * @param remoteProcessingTime the number of nanoseconds spent on remote processing
+	 */
+	public void completedBulkInsert(int numDocuments, long remoteProcessingTime) {
+		if (remoteProcessingTime <= 0) {
+			// The response arrived before the send completed, so the time is unknown.
+			return;
+		}
+		BatchSizeSample sample = allSamples.get(numDocuments);
+		if (sample == null) {
+			sample = new BatchSizeSample();
+			allSamples.put(numDocuments, sample);
+		}
+		sample.add(numDocuments, remoteProcessingTime);
+
+		if (converged || (numDocuments != batchSize)) {
+			// The last bulk insert may contain only the remaining documents.
+			return;
+		}
+		currentSample.add(numDocuments, remoteProcessingTime);
+		if (currentSample.numBulkInserts < NUM_BULK_INSERTS_PER_SIZE) {
+			return;
+		}
+
+		double rate = currentSample.getRate();
+		currentSample = new BatchSizeSample();
+		if (rate > bestRate) {
+			// Continue in the same direction from this size.
+			bestRate = rate;
+			bestBatchSize = batchSize;
+		} else {
+			// Search in the other direction from the best size with a smaller step.
+			increasing = !increasing;
+			step = Math.sqrt(step);
+		}
+		chooseNextBatchSize();
+	}
+
+	private void chooseNextBatchSize() {
+		while (step >= MIN_STEP) {
+			int nextBatchSize = increasing ?
+					(int) Math.ceil(bestBatchSize * step) : (int) (bestBatchSize / step);
+			nextBatchSize = Math.max(1, Math.min(nextBatchSize, maxBatchSize));
+			if (nextBatchSize != bestBatchSize) {
+				batchSize = nextBatchSize;
+				return;
+			}
+			// The best size is at a bound, so search in the other direction.
+			increasing = !increasing;
+			step = Math.sqrt(step);
+		}
+		converged = true;
+		batchSize = bestBatchSize;
+	}
+}
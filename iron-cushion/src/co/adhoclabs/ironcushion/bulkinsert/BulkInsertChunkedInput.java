@@ -0,0 +1,113 @@
+package co.adhoclabs.ironcushion.bulkinsert;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.stream.ChunkedInput;
+import org.jboss.netty.handler.stream.ChunkedWriteHandler;
+import org.jboss.netty.util.CharsetUtil;
+
+import co.adhoclabs.ironcushion.DocumentSchema.DocumentWriter;
+import co.adhoclabs.ironcushion.ValueGenerator;
+
+/**
+ * A {@link ChunkedInput} that generates the documents of one bulk insert as they
+ * are sent using chunked transfer encoding. The {@link ChunkedWriteHandler} asks
+ * for the next chunk only when the channel is writable, so only a few chunks are
+ * in memory at once, and documents are generated while earlier chunks are sent.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class BulkInsertChunkedInput implements ChunkedInput {
+	private static final byte[] CRLF = "\r\n".getBytes(CharsetUtil.US_ASCII);
+	private static final byte[] CRLF_AND_LAST_CHUNK = "\r\n0\r\n\r\n".getBytes(CharsetUtil.US_ASCII);
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final DocumentWriter documentWriter;
+	private final ValueGenerator valueGenerator;
+	private final int firstDocumentId;
+	private final int numDocuments;
+	private final int numDocumentsPerChunk;
+
+	private int numDocumentsWritten;
+	private boolean endOfInput;
+	private int numJsonBytes;
+	private int lastChunkSize;
+
+	BulkInsertChunkedInput(DocumentWriter documentWriter, ValueGenerator valueGenerator,
+			int firstDocumentId, int numDocuments, int numDocumentsPerChunk) {
+		this.documentWriter = documentWriter;
+		this.valueGenerator = valueGenerator;
+		this.firstDocumentId = firstDocumentId;
+		this.numDocuments = numDocuments;
+		this.numDocumentsPerChunk = numDocumentsPerChunk;
+
+		this.numDocumentsWritten = 0;
+		this.endOfInput = false;
+		this.numJsonBytes = 0;
+		this.lastChunkSize = 256;
+	}
+
+	/**
+	 * @return the number of bytes of JSON in the chunks generated so far
+	 */
+	public int getNumJsonBytes() {
+		return numJsonBytes;
+	}
+
+	@Override
+	public boolean hasNextChunk() {
+		return !endOfInput;
+	}
+
+	@Override
+	public Object nextChunk() {
+		if (endOfInput) {
+			return null;
+		}
+
+		// The chunk contains the same JSON as the next documents returned by getBuffer.
+		ChannelBuffer data = ChannelBuffers.dynamicBuffer(lastChunkSize);
+		if (numDocumentsWritten == 0) {
+			data.writeBytes(BulkInsertDocumentGenerator.DOCUMENTS_PREFIX);
+		}
+		int lastDocument = Math.min(numDocumentsWritten + numDocumentsPerChunk, numDocuments);
+		for (; numDocumentsWritten < lastDocument; ++numDocumentsWritten) {
+			if (numDocumentsWritten > 0) {
+				data.writeByte(',');
+			}
+			documentWriter.writeNewDocument(valueGenerator, firstDocumentId + numDocumentsWritten, data);
+		}
+		if (numDocumentsWritten == numDocuments) {
+			data.writeBytes(BulkInsertDocumentGenerator.DOCUMENTS_SUFFIX);
+			endOfInput = true;
+		}
+		lastChunkSize = data.readableBytes();
+		numJsonBytes += data.readableBytes();
+
+		// Prefix the data with its size, and follow it with the last chunk if done.
+		ChannelBuffer chunkSize = ChannelBuffers.buffer(10);
+		writeHex(chunkSize, data.readableBytes());
+		chunkSize.writeBytes(CRLF);
+		return ChannelBuffers.wrappedBuffer(chunkSize, data,
+				ChannelBuffers.wrappedBuffer(endOfInput ? CRLF_AND_LAST_CHUNK : CRLF));
+	}
+
+	private static void writeHex(ChannelBuffer buffer, int value) {
+		int shift = 28;
+		while ((shift > 0) && ((value >>> shift) == 0)) {
+			shift -= 4;
+		}
+		for (; shift >= 0; shift -= 4) {
+			buffer.writeByte(HEX_DIGITS[(value >>> shift) & 0xf]);
+		}
+	}
+
+	@Override
+	public boolean isEndOfInput() {
+		return endOfInput;
+	}
+
+	@Override
+	public void close() {
+	}
+}
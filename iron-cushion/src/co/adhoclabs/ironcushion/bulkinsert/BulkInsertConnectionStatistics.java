@@ -1,6 +1,10 @@
 package co.adhoclabs.ironcushion.bulkinsert;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 import co.adhoclabs.ironcushion.AbstractConnectionStatistics;
+import co.adhoclabs.ironcushion.LatencyHistogram;
 import co.adhoclabs.ironcushion.Timer;
 
 /**
@@ -11,11 +15,32 @@ import co.adhoclabs.ironcushion.Timer;
 public class BulkInsertConnectionStatistics extends AbstractConnectionStatistics {
 	private final Timer remoteProcessingTimer;
 	private final Timer receiveDataTimer;
+	private final LatencyHistogram latencyHistogram;
+	private final BulkInsertBatchSizer batchSizer;
+	private final Map<String, Long> numRejectedDocuments;
+	private long numSubmittedDocuments;
+	private long numAcceptedDocuments;
 
 	public BulkInsertConnectionStatistics() {
+		this(null);
+	}
+	
+	/**
+	 * Creates statistics for a connection whose number of documents in each bulk
+	 * insert is chosen by the given sizer.
+	 * 
+	 * @param batchSizer the sizer, or {@code null} if each bulk insert contains the
+	 *        same number of documents
+	 */
+	public BulkInsertConnectionStatistics(BulkInsertBatchSizer batchSizer) {
 		super();
 		remoteProcessingTimer = new Timer();
 		receiveDataTimer = new Timer();
+		latencyHistogram = new LatencyHistogram();
+		this.batchSizer = batchSizer;
+		numRejectedDocuments = new TreeMap<String, Long>();
+		numSubmittedDocuments = 0;
+		numAcceptedDocuments = 0;
 	}
 	
 	/**
@@ -26,6 +51,7 @@ public class BulkInsertConnectionStatistics extends AbstractConnectionStatistics
 		SEND_DATA,
 		REMOTE_PROCESSING,
 		RECEIVE_DATA,
+		RECONNECT,
 	}
 	
 	private RunningConnectionTimer runningTimer;
@@ -56,6 +82,9 @@ public class BulkInsertConnectionStatistics extends AbstractConnectionStatistics
 			case RECEIVE_DATA:
 				receiveDataTimer.stop();
 				return;
+			case RECONNECT:
+				reconnectTimer.stop();
+				return;
 			default:
 				break;
 			}
@@ -120,10 +149,101 @@ public class BulkInsertConnectionStatistics extends AbstractConnectionStatistics
 		return receiveDataTimer.getTotalTimeMillis();
 	}
 	
+	/**
+	 * Records the time between sending a bulk insert and receiving all of its response.
+	 * 
+	 * @param elapsedTime the number of nanoseconds elapsed
+	 */
+	public void recordLatency(long elapsedTime) {
+		latencyHistogram.record(elapsedTime);
+	}
+	
+	/**
+	 * @return the histogram of times between sending bulk inserts and receiving all
+	 *         of their responses
+	 */
+	public LatencyHistogram getLatencyHistogram() {
+		return latencyHistogram;
+	}
+	
+	/**
+	 * Records the documents of a completed bulk insert, and how many of them the
+	 * database accepted and rejected.
+	 * 
+	 * @param numDocuments the number of documents in the bulk insert
+	 * @param responseParser the parser of the response to the bulk insert
+	 */
+	public void completedDocuments(int numDocuments, BulkInsertResponseParser responseParser) {
+		numSubmittedDocuments += numDocuments;
+		numAcceptedDocuments += responseParser.getNumAcceptedDocuments();
+		for (Map.Entry<String, Integer> entry : responseParser.getNumRejectedDocuments().entrySet()) {
+			Long numRejected = numRejectedDocuments.get(entry.getKey());
+			numRejectedDocuments.put(entry.getKey(),
+					(numRejected == null) ? entry.getValue() : (numRejected + entry.getValue()));
+		}
+	}
+	
+	/**
+	 * @return the number of documents in completed bulk inserts
+	 */
+	public long getNumSubmittedDocuments() {
+		return numSubmittedDocuments;
+	}
+	
+	/**
+	 * @return the number of documents accepted by the database in completed bulk inserts
+	 */
+	public long getNumAcceptedDocuments() {
+		return numAcceptedDocuments;
+	}
+	
+	/**
+	 * @return the number of documents rejected by the database in completed bulk
+	 *         inserts, by the type of error
+	 */
+	public Map<String, Long> getNumRejectedDocuments() {
+		return numRejectedDocuments;
+	}
+	
+	/**
+	 * @return the sizer that chose the number of documents in each bulk insert, or
+	 *         {@code null} if each bulk insert contained the same number of documents
+	 */
+	public BulkInsertBatchSizer getBatchSizer() {
+		return batchSizer;
+	}
+	
+	@Override
+	public void startReconnect() {
+		if (runningTimer == RunningConnectionTimer.RECONNECT) {
+			return;
+		}
+		stop();
+		reconnectTimer.start();
+		runningTimer = RunningConnectionTimer.RECONNECT;
+	}
+	
+	@Override
+	public void addLatencies(LatencyHistogram histogram) {
+		histogram.add(latencyHistogram);
+	}
+	
+	@Override
+	protected void reset(long resetTime) {
+		super.reset(resetTime);
+		remoteProcessingTimer.reset(resetTime);
+		receiveDataTimer.reset(resetTime);
+		latencyHistogram.reset();
+		numRejectedDocuments.clear();
+		numSubmittedDocuments = 0;
+		numAcceptedDocuments = 0;
+	}
+	
 	@Override
 	public long getTotalTimeMillis() {
 		return (localProcessingTimer.getTotalTimeMillis() +
 				sendDataTimer.getTotalTimeMillis() +
+				reconnectTimer.getTotalTimeMillis() +
 				remoteProcessingTimer.getTotalTimeMillis() +
 				receiveDataTimer.getTotalTimeMillis());
 	}
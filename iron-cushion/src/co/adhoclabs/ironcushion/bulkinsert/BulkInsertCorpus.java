@@ -0,0 +1,191 @@
+package co.adhoclabs.ironcushion.bulkinsert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import co.adhoclabs.ironcushion.BenchmarkException;
+
+/**
+ * A file containing the bulk inserts of every connection, so that they can be
+ * replayed instead of generated. The file starts with a header of four
+ * {@code int} values: a magic number, the number of connections, the number of
+ * bulk inserts per connection, and the number of documents per bulk insert. An
+ * index of {@code long} offsets follows, one for the start of each bulk insert in
+ * connection order and one for the end of the last. The bulk inserts follow the
+ * index.
+ *
+ * When replayed, the bulk inserts of each connection are memory-mapped, so that
+ * they are sent from the page cache without being copied into the Java heap.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class BulkInsertCorpus {
+	private static final int MAGIC = 0x49434331;
+	private static final int HEADER_SIZE = 16;
+
+	private final int numConnections;
+	private final int numBulkInsertOperations;
+	private final int numDocumentsPerBulkInsert;
+	private final List<List<ChannelBuffer>> allInsertBuffers;
+
+	private BulkInsertCorpus(int numConnections, int numBulkInsertOperations,
+			int numDocumentsPerBulkInsert, List<List<ChannelBuffer>> allInsertBuffers) {
+		this.numConnections = numConnections;
+		this.numBulkInsertOperations = numBulkInsertOperations;
+		this.numDocumentsPerBulkInsert = numDocumentsPerBulkInsert;
+		this.allInsertBuffers = allInsertBuffers;
+	}
+
+	private static void writeFully(FileChannel fileChannel, ByteBuffer byteBuffer) throws IOException {
+		while (byteBuffer.hasRemaining()) {
+			fileChannel.write(byteBuffer);
+		}
+	}
+
+	/**
+	 * Writes all bulk inserts returned by the given generators to a corpus file.
+	 *
+	 * @param corpusFile the file to write
+	 * @param allBulkInsertDocumentGenerators the generator of documents for each connection
+	 * @param numDocumentsPerBulkInsert the number of documents in each bulk insert
+	 * @throws BenchmarkException if the file could not be written
+	 */
+	public static void write(File corpusFile, List<BulkInsertDocumentGenerator> allBulkInsertDocumentGenerators,
+			int numDocumentsPerBulkInsert) throws BenchmarkException {
+		int numConnections = allBulkInsertDocumentGenerators.size();
+		int numBulkInsertOperations = allBulkInsertDocumentGenerators.get(0).size();
+		int numInsertBuffers = numConnections * numBulkInsertOperations;
+		try {
+			RandomAccessFile file = new RandomAccessFile(corpusFile, "rw");
+			try {
+				file.setLength(0);
+				FileChannel fileChannel = file.getChannel();
+
+				// Write the bulk inserts after the header and index, recording their offsets.
+				ByteBuffer index = ByteBuffer.allocate(8 * (numInsertBuffers + 1));
+				long offset = HEADER_SIZE + index.capacity();
+				fileChannel.position(offset);
+				for (BulkInsertDocumentGenerator bulkInsertDocumentGenerator : allBulkInsertDocumentGenerators) {
+					for (int i = 0; i < numBulkInsertOperations; ++i) {
+						index.putLong(offset);
+						ChannelBuffer insertBuffer = bulkInsertDocumentGenerator.getBuffer(i);
+						writeFully(fileChannel, insertBuffer.toByteBuffer());
+						offset += insertBuffer.readableBytes();
+					}
+				}
+				index.putLong(offset);
+
+				// Write the header and index.
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC);
+				header.putInt(numConnections);
+				header.putInt(numBulkInsertOperations);
+				header.putInt(numDocumentsPerBulkInsert);
+				header.flip();
+				index.flip();
+				fileChannel.position(0);
+				writeFully(fileChannel, header);
+				writeFully(fileChannel, index);
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			throw new BenchmarkException(e);
+		}
+	}
+
+	/**
+	 * Opens a corpus file and memory-maps the bulk inserts of each connection.
+	 *
+	 * @param corpusFile the file to read
+	 * @return the corpus
+	 * @throws BenchmarkException if the file could not be read or is not a corpus
+	 */
+	public static BulkInsertCorpus open(File corpusFile) throws BenchmarkException {
+		try {
+			RandomAccessFile file = new RandomAccessFile(corpusFile, "r");
+			try {
+				FileChannel fileChannel = file.getChannel();
+				ByteBuffer header = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+				if (header.getInt() != MAGIC) {
+					throw new BenchmarkException("File " + corpusFile + " is not a corpus");
+				}
+				int numConnections = header.getInt();
+				int numBulkInsertOperations = header.getInt();
+				int numDocumentsPerBulkInsert = header.getInt();
+				int numInsertBuffers = numConnections * numBulkInsertOperations;
+				ByteBuffer index = fileChannel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE, 8 * (numInsertBuffers + 1));
+
+				List<List<ChannelBuffer>> allInsertBuffers = new ArrayList<List<ChannelBuffer>>(numConnections);
+				for (int i = 0; i < numConnections; ++i) {
+					long[] offsets = new long[numBulkInsertOperations + 1];
+					for (int j = 0; j <= numBulkInsertOperations; ++j) {
+						offsets[j] = index.getLong(8 * ((i * numBulkInsertOperations) + j));
+					}
+					long size = offsets[numBulkInsertOperations] - offsets[0];
+					if (size > Integer.MAX_VALUE) {
+						throw new BenchmarkException("Bulk inserts of connection " + i + " exceed 2GB");
+					}
+					// The mapping remains valid after the file is closed.
+					MappedByteBuffer mappedBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY,
+							offsets[0], size);
+					ChannelBuffer connectionBuffer = ChannelBuffers.wrappedBuffer(mappedBuffer);
+					List<ChannelBuffer> insertBuffers = new ArrayList<ChannelBuffer>(numBulkInsertOperations);
+					for (int j = 0; j < numBulkInsertOperations; ++j) {
+						insertBuffers.add(connectionBuffer.slice(
+								(int) (offsets[j] - offsets[0]), (int) (offsets[j + 1] - offsets[j])));
+					}
+					allInsertBuffers.add(insertBuffers);
+				}
+				return new BulkInsertCorpus(numConnections, numBulkInsertOperations,
+						numDocumentsPerBulkInsert, allInsertBuffers);
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			throw new BenchmarkException(e);
+		}
+	}
+
+	/**
+	 * @return the number of connections that the corpus contains bulk inserts for
+	 */
+	public int getNumConnections() {
+		return numConnections;
+	}
+
+	/**
+	 * @return the number of bulk inserts for each connection
+	 */
+	public int getNumBulkInsertOperations() {
+		return numBulkInsertOperations;
+	}
+
+	/**
+	 * @return the number of documents in each bulk insert
+	 */
+	public int getNumDocumentsPerBulkInsert() {
+		return numDocumentsPerBulkInsert;
+	}
+
+	/**
+	 * Returns a {@link BulkInsertDocumentGenerator} that replays the bulk inserts of
+	 * the given connection.
+	 *
+	 * @param connectionNum the number of the connection
+	 * @return the generator of the bulk inserts
+	 */
+	public BulkInsertDocumentGenerator getGenerator(int connectionNum) {
+		return BulkInsertDocumentGenerator.replayed(allInsertBuffers.get(connectionNum));
+	}
+}
@@ -1,27 +1,74 @@
 package co.adhoclabs.ironcushion.bulkinsert;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.util.CharsetUtil;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 
+import co.adhoclabs.ironcushion.DirectBufferPool;
+import co.adhoclabs.ironcushion.DocumentIdGenerator;
 import co.adhoclabs.ironcushion.DocumentSchema;
+import co.adhoclabs.ironcushion.DocumentSchema.DocumentWriter;
 import co.adhoclabs.ironcushion.ValueGenerator;
 
 /**
  * Generates {@link ChannelBuffer} instances containing JSON documents to be
- * inserted in bulk by one connection.
+ * inserted in bulk by one connection. A buffer generated on-demand is reused by
+ * the next call to {@link #getBuffer(int)}, and so must be sent before then.
  * 
  * @author Michael Parker (michael.g.parker@gmail.com)
  */
 public abstract class BulkInsertDocumentGenerator {
+	static final byte[] DOCUMENTS_PREFIX = "{\"docs\":[".getBytes(CharsetUtil.US_ASCII);
+	static final byte[] DOCUMENTS_SUFFIX = "]}".getBytes(CharsetUtil.US_ASCII);
+	
 	private BulkInsertDocumentGenerator() {
 	}
 
+	/**
+	 * Implemented by a {@link BulkInsertDocumentGenerator} that can generate the
+	 * documents of each bulk insert as they are sent using chunked transfer
+	 * encoding.
+	 */
+	public interface Chunked {
+		/**
+		 * Returns a {@link BulkInsertChunkedInput} that generates the documents
+		 * returned by {@link BulkInsertDocumentGenerator#getBuffer(int)} as they are
+		 * sent using chunked transfer encoding.
+		 * 
+		 * @param insertOperation
+		 *            the index of the bulk insert operation, greater than {@code 0}
+		 *            but less than the value returned by
+		 *            {@link BulkInsertDocumentGenerator#size()}
+		 * @param numDocumentsPerChunk
+		 *            the number of documents in each chunk
+		 * @return the chunked input generating the documents
+		 */
+		BulkInsertChunkedInput getChunkedInput(int insertOperation, int numDocumentsPerChunk);
+	}
+
+	/**
+	 * Implemented by a {@link BulkInsertDocumentGenerator} that can generate bulk
+	 * inserts with any number of documents.
+	 */
+	public interface Resizable {
+		/**
+		 * Returns a generated {@link ChannelBuffer} containing the given number of
+		 * documents, starting at the given document. Documents are numbered across
+		 * all bulk inserts, and so these may span the documents returned by several
+		 * calls to {@link BulkInsertDocumentGenerator#getBuffer(int)}. Documents must be requested in order.
+		 * 
+		 * @param documentNum
+		 *            the number of the first document
+		 * @param numDocuments
+		 *            the number of documents
+		 * @return the generated buffer containing the documents
+		 */
+		ChannelBuffer getDocumentsBuffer(int documentNum, int numDocuments);
+	}
+
 	/**
 	 * Returns a generated {@link ChannelBuffer} containing documents to be bulk
 	 * inserted.
@@ -33,53 +80,87 @@ public abstract class BulkInsertDocumentGenerator {
 	 */
 	public abstract ChannelBuffer getBuffer(int insertOperation);
 
+	/**
+	 * Returns whether the {@link ChannelBuffer} returned by {@link #getBuffer(int)}
+	 * for the given bulk insert operation is ready. If not, then the given
+	 * callback is run by the thread that makes it ready, and
+	 * {@link #getBuffer(int)} must not be called until then.
+	 * 
+	 * @param insertOperation
+	 *            the index of the bulk insert operation
+	 * @param readyCallback
+	 *            the callback to run once the buffer is ready
+	 * @return {@code true} if the buffer is ready, or {@code false} if the
+	 *         callback will be run once it is
+	 */
+	public boolean isBufferReady(int insertOperation, Runnable readyCallback) {
+		return true;
+	}
+
+	/**
+	 * Writes the documents returned by {@link #getBuffer(int)} to the given
+	 * buffer instead of one owned by this generator.
+	 * 
+	 * @param insertOperation
+	 *            the index of the bulk insert operation
+	 * @param buffer
+	 *            the buffer to write the documents to
+	 * @return the given buffer
+	 */
+	abstract ChannelBuffer writeBuffer(int insertOperation, ChannelBuffer buffer);
+
 	/**
 	 * Returns number of {@link ChannelBuffer} instances generated.
 	 * 
-	 * @return the number of buffers to return
+	 * @return the number of buffers to return, or {@link Integer#MAX_VALUE} if
+	 *         buffers are generated until the benchmark step ends
 	 */
 	public abstract int size();
+	
+	/**
+	 * Returns the number of {@link ChannelBuffer} instances returned by
+	 * {@link #getBuffer(int)}, which is less than {@link #size()} only if the
+	 * benchmark step ended first.
+	 * 
+	 * @return the number of buffers returned
+	 */
+	public int getNumReturnedBuffers() {
+		return size();
+	}
 
-	@SuppressWarnings("unchecked")
-	protected ChannelBuffer getNewBuffer(int numDocumentsPerInsert,
-			DocumentSchema schema, ValueGenerator valueGenerator,
+	protected ChannelBuffer getNewBuffer(ChannelBuffer buffer, int numDocumentsPerInsert,
+			DocumentWriter documentWriter, ValueGenerator valueGenerator,
 			int firstDocumentId) {
-		JSONArray documents = new JSONArray(numDocumentsPerInsert);
+		// Write the same JSON as a JSONObject containing a JSONArray of the documents.
+		buffer.clear();
+		buffer.writeBytes(DOCUMENTS_PREFIX);
 		for (int j = 0, nextDocumentId = firstDocumentId; j < numDocumentsPerInsert; ++j, ++nextDocumentId) {
-			JSONObject document = schema.getNewDocument(valueGenerator);
-			document.put("_id", String.valueOf(nextDocumentId));
-			documents.add(document);
+			if (j > 0) {
+				buffer.writeByte(',');
+			}
+			documentWriter.writeNewDocument(valueGenerator, nextDocumentId, buffer);
 		}
-
-		JSONObject json = new JSONObject();
-		json.put("docs", documents);
-		ChannelBuffer buffer = ChannelBuffers.copiedBuffer(json.toString(),
-				CharsetUtil.UTF_8);
+		buffer.writeBytes(DOCUMENTS_SUFFIX);
 		return buffer;
 	}
 
-	private static final class PreComputedBulkInsertDocumentGenerator extends
+	private static final class ReplayedBulkInsertDocumentGenerator extends
 			BulkInsertDocumentGenerator {
 		private final List<ChannelBuffer> insertBuffers;
 
-		private PreComputedBulkInsertDocumentGenerator(DocumentSchema schema,
-				ValueGenerator valueGenerator, int connectionNum,
-				int numDocumentsPerInsert, int numInsertOperations) {
-			int numInsertedDocuments = numDocumentsPerInsert
-					* numInsertOperations;
-			int firstDocumentId = connectionNum * numInsertedDocuments;
-
-			insertBuffers = new ArrayList<ChannelBuffer>(numInsertOperations);
-			for (int i = 0; i < numInsertOperations; ++i) {
-				insertBuffers.add(getNewBuffer(numDocumentsPerInsert, schema,
-						valueGenerator, firstDocumentId));
-				firstDocumentId += numDocumentsPerInsert;
-			}
-			
+		private ReplayedBulkInsertDocumentGenerator(List<ChannelBuffer> insertBuffers) {
+			this.insertBuffers = insertBuffers;
 		}
 
 		public ChannelBuffer getBuffer(int insertOperation) {
-			return insertBuffers.get(insertOperation);
+			// Each bulk insert has its own indexes, as it may be sent again.
+			return insertBuffers.get(insertOperation).duplicate();
+		}
+
+		ChannelBuffer writeBuffer(int insertOperation, ChannelBuffer buffer) {
+			ChannelBuffer insertBuffer = insertBuffers.get(insertOperation);
+			buffer.writeBytes(insertBuffer, insertBuffer.readerIndex(), insertBuffer.readableBytes());
+			return buffer;
 		}
 
 		public int size() {
@@ -88,37 +169,87 @@ public abstract class BulkInsertDocumentGenerator {
 	}
 
 	/**
-	 * Returns a {@link BulkInsertDocumentGenerator} implementation where all
-	 * returned {@link ChannelBuffer} instances are pre-computed.
+	 * Returns a {@link BulkInsertDocumentGenerator} implementation that returns
+	 * the given {@link ChannelBuffer} instances, such as those read from a
+	 * {@link BulkInsertCorpus}.
 	 * 
-	 * @param schema
-	 * @param valueGenerator
+	 * @param insertBuffers
+	 * @return the generator of the given documents
+	 */
+	public static BulkInsertDocumentGenerator replayed(List<ChannelBuffer> insertBuffers) {
+		return new ReplayedBulkInsertDocumentGenerator(insertBuffers);
+	}
+
+	private static final class TemplatedBulkInsertDocumentGenerator extends
+			BulkInsertDocumentGenerator {
+		private final BulkInsertTemplatePool templatePool;
+		private final int numDocumentsPerInsert;
+		private final int numInsertOperations;
+		private final int firstInsertOperation;
+		private final int firstDocumentId;
+
+		private TemplatedBulkInsertDocumentGenerator(BulkInsertTemplatePool templatePool,
+				int connectionNum, int numDocumentsPerInsert, int numInsertOperations) {
+			this.templatePool = templatePool;
+			this.numDocumentsPerInsert = numDocumentsPerInsert;
+			this.numInsertOperations = numInsertOperations;
+
+			// Number the bulk inserts of all connections, so that they cycle through the templates.
+			firstInsertOperation = connectionNum * numInsertOperations;
+			firstDocumentId = firstInsertOperation * numDocumentsPerInsert;
+		}
+
+		private int getTemplateNum(int insertOperation) {
+			return (firstInsertOperation + insertOperation) % templatePool.getNumTemplates();
+		}
+
+		public ChannelBuffer getBuffer(int insertOperation) {
+			return templatePool.getBuffer(getTemplateNum(insertOperation),
+					firstDocumentId + (insertOperation * numDocumentsPerInsert));
+		}
+
+		ChannelBuffer writeBuffer(int insertOperation, ChannelBuffer buffer) {
+			return templatePool.writeBuffer(getTemplateNum(insertOperation),
+					firstDocumentId + (insertOperation * numDocumentsPerInsert), buffer);
+		}
+
+		public int size() {
+			return numInsertOperations;
+		}
+	}
+
+	/**
+	 * Returns a {@link BulkInsertDocumentGenerator} implementation that returns
+	 * the templates of the given {@link BulkInsertTemplatePool}, with the same
+	 * document numbers as the implementation returned by {@link #onDemand}.
+	 * 
+	 * @param templatePool
 	 * @param connectionNum
 	 * @param numDocumentsPerInsert
 	 * @param numInsertOperations
-	 * @return the generator of pre-computed documents
+	 * @return the generator of documents from templates
 	 */
-	public static BulkInsertDocumentGenerator preComputed(
-			DocumentSchema schema, ValueGenerator valueGenerator,
-			int connectionNum, int numDocumentsPerInsert,
-			int numInsertOperations) {
-		return new PreComputedBulkInsertDocumentGenerator(schema, valueGenerator,
-				connectionNum, numDocumentsPerInsert, numInsertOperations);
+	static BulkInsertDocumentGenerator templated(BulkInsertTemplatePool templatePool,
+			int connectionNum, int numDocumentsPerInsert, int numInsertOperations) {
+		return new TemplatedBulkInsertDocumentGenerator(templatePool, connectionNum,
+				numDocumentsPerInsert, numInsertOperations);
 	}
 
 	private static final class OnDemandBulkInsertDocumentGenerator extends
-			BulkInsertDocumentGenerator {
-		private final DocumentSchema schema;
+			BulkInsertDocumentGenerator implements Chunked, Resizable {
+		private final DocumentWriter documentWriter;
 		private final ValueGenerator valueGenerator;
+		private final ChannelBuffer buffer;
 		private final int numDocumentsPerInsert;
 		private final int numInsertOperations;
 		private int firstDocumentId;
 
 		private OnDemandBulkInsertDocumentGenerator(DocumentSchema schema,
-				ValueGenerator valueGenerator, int connectionNum,
-				int numDocumentsPerInsert, int numInsertOperations) {
-			this.schema = schema;
+				DocumentIdGenerator documentIdGenerator, ValueGenerator valueGenerator,
+				int connectionNum, int numDocumentsPerInsert, int numInsertOperations) {
+			this.documentWriter = schema.newDocumentWriter(documentIdGenerator);
 			this.valueGenerator = valueGenerator;
+			this.buffer = ChannelBuffers.dynamicBuffer();
 			this.numDocumentsPerInsert = numDocumentsPerInsert;
 			this.numInsertOperations = numInsertOperations;
 
@@ -128,10 +259,26 @@ public abstract class BulkInsertDocumentGenerator {
 		}
 
 		public ChannelBuffer getBuffer(int insertOperation) {
-			return getNewBuffer(numDocumentsPerInsert, schema, valueGenerator,
+			return writeBuffer(insertOperation, buffer);
+		}
+
+		ChannelBuffer writeBuffer(int insertOperation, ChannelBuffer buffer) {
+			return getNewBuffer(buffer, numDocumentsPerInsert, documentWriter, valueGenerator,
 					firstDocumentId + (insertOperation * numDocumentsPerInsert));
 		}
 
+		public BulkInsertChunkedInput getChunkedInput(int insertOperation,
+				int numDocumentsPerChunk) {
+			return new BulkInsertChunkedInput(documentWriter, valueGenerator,
+					firstDocumentId + (insertOperation * numDocumentsPerInsert),
+					numDocumentsPerInsert, numDocumentsPerChunk);
+		}
+
+		public ChannelBuffer getDocumentsBuffer(int documentNum, int numDocuments) {
+			return getNewBuffer(buffer, numDocuments, documentWriter, valueGenerator,
+					firstDocumentId + documentNum);
+		}
+
 		public int size() {
 			return numInsertOperations;
 		}
@@ -142,6 +289,7 @@ public abstract class BulkInsertDocumentGenerator {
 	 * returned {@link ChannelBuffer} instances are generated on-demand.
 	 * 
 	 * @param schema
+	 * @param documentIdGenerator
 	 * @param valueGenerator
 	 * @param connectionNum
 	 * @param numDocumentsPerInsert
@@ -149,9 +297,300 @@ public abstract class BulkInsertDocumentGenerator {
 	 * @return an on-demand generator of documents
 	 */
 	public static BulkInsertDocumentGenerator onDemand(DocumentSchema schema,
-			ValueGenerator valueGenerator, int connectionNum,
-			int numDocumentsPerInsert, int numInsertOperations) {
-		return new OnDemandBulkInsertDocumentGenerator(schema, valueGenerator,
+			DocumentIdGenerator documentIdGenerator, ValueGenerator valueGenerator,
+			int connectionNum, int numDocumentsPerInsert, int numInsertOperations) {
+		return new OnDemandBulkInsertDocumentGenerator(schema, documentIdGenerator, valueGenerator,
 				connectionNum, numDocumentsPerInsert, numInsertOperations);
 	}
-}
+
+	private static final class UnboundedBulkInsertDocumentGenerator extends
+			BulkInsertDocumentGenerator implements Chunked {
+		private final DocumentWriter documentWriter;
+		private final ValueGenerator valueGenerator;
+		private final ChannelBuffer buffer;
+		private final int connectionNum;
+		private final int numConnections;
+		private final int numDocumentsPerInsert;
+		private int numReturnedBuffers;
+
+		private UnboundedBulkInsertDocumentGenerator(DocumentSchema schema,
+				DocumentIdGenerator documentIdGenerator, ValueGenerator valueGenerator,
+				int connectionNum, int numConnections, int numDocumentsPerInsert) {
+			this.documentWriter = schema.newDocumentWriter(documentIdGenerator);
+			this.valueGenerator = valueGenerator;
+			this.buffer = ChannelBuffers.dynamicBuffer();
+			this.connectionNum = connectionNum;
+			this.numConnections = numConnections;
+			this.numDocumentsPerInsert = numDocumentsPerInsert;
+			this.numReturnedBuffers = 0;
+		}
+
+		private int getFirstDocumentId(int insertOperation) {
+			numReturnedBuffers = Math.max(numReturnedBuffers, insertOperation + 1);
+			// Interleave the bulk inserts of all connections, as their number is not known.
+			return ((insertOperation * numConnections) + connectionNum) *
+					numDocumentsPerInsert;
+		}
+
+		public ChannelBuffer getBuffer(int insertOperation) {
+			return writeBuffer(insertOperation, buffer);
+		}
+
+		ChannelBuffer writeBuffer(int insertOperation, ChannelBuffer buffer) {
+			return getNewBuffer(buffer, numDocumentsPerInsert, documentWriter, valueGenerator,
+					getFirstDocumentId(insertOperation));
+		}
+
+		public BulkInsertChunkedInput getChunkedInput(int insertOperation,
+				int numDocumentsPerChunk) {
+			return new BulkInsertChunkedInput(documentWriter, valueGenerator,
+					getFirstDocumentId(insertOperation), numDocumentsPerInsert,
+					numDocumentsPerChunk);
+		}
+
+		public int size() {
+			return (numDocumentsPerInsert > 0) ? Integer.MAX_VALUE : 0;
+		}
+		
+		@Override
+		public int getNumReturnedBuffers() {
+			return numReturnedBuffers;
+		}
+	}
+
+	/**
+	 * Returns a {@link BulkInsertDocumentGenerator} implementation where
+	 * {@link ChannelBuffer} instances are generated on-demand until the benchmark
+	 * step ends. The documents of bulk insert {@code i} by connection {@code c}
+	 * start at number {@code ((i * numConnections) + c) * numDocumentsPerInsert}.
+	 * 
+	 * @param schema
+	 * @param documentIdGenerator
+	 * @param valueGenerator
+	 * @param connectionNum
+	 * @param numConnections
+	 * @param numDocumentsPerInsert
+	 * @return an unbounded on-demand generator of documents
+	 */
+	public static BulkInsertDocumentGenerator unbounded(DocumentSchema schema,
+			DocumentIdGenerator documentIdGenerator, ValueGenerator valueGenerator,
+			int connectionNum, int numConnections, int numDocumentsPerInsert) {
+		return new UnboundedBulkInsertDocumentGenerator(schema, documentIdGenerator, valueGenerator,
+				connectionNum, numConnections, numDocumentsPerInsert);
+	}
+
+	private static final class AheadOfTimeBulkInsertDocumentGenerator extends
+			BulkInsertDocumentGenerator {
+		private final BulkInsertDocumentGenerator generator;
+		private final Executor producers;
+		private final DirectBufferPool directBufferPool;
+		private final ChannelBuffer[] producedBuffers;
+		private final ProduceTask produceTask;
+		// The following fields are guarded by this generator.
+		private int numProducedBuffers;
+		private int numRequestedBuffers;
+		private int numReturnedBuffers;
+		private boolean producing;
+		private RuntimeException failure;
+		private Runnable readyCallback;
+
+		private AheadOfTimeBulkInsertDocumentGenerator(
+				BulkInsertDocumentGenerator generator, Executor producers,
+				int numBuffersAhead, DirectBufferPool directBufferPool) {
+			this.generator = generator;
+			this.producers = producers;
+			this.directBufferPool = directBufferPool;
+			this.producedBuffers = new ChannelBuffer[numBuffersAhead];
+			this.produceTask = new ProduceTask();
+			this.numProducedBuffers = 0;
+			this.numReturnedBuffers = 0;
+			this.producing = false;
+			this.failure = null;
+			this.readyCallback = null;
+
+			// Start producing before the benchmark step starts.
+			requestBuffers();
+		}
+
+		/**
+		 * Produces buffers in order until the requested number is reached, so that
+		 * documents are generated from the same sequence of values as on-demand.
+		 */
+		private final class ProduceTask implements Runnable {
+			private int lastBufferSize = 256;
+			// Bulk inserts are generated in this buffer and then copied into the pool.
+			private ChannelBuffer heapBuffer = null;
+			// The bulk insert generated but not yet copied, if the pool had no buffer.
+			private ChannelBuffer pendingBuffer = null;
+
+			private ChannelBuffer produceBuffer(int insertOperation) {
+				if (directBufferPool == null) {
+					return generator.writeBuffer(insertOperation,
+							ChannelBuffers.dynamicBuffer(lastBufferSize));
+				}
+				if (pendingBuffer != null) {
+					return pendingBuffer;
+				}
+				if (heapBuffer == null) {
+					heapBuffer = ChannelBuffers.dynamicBuffer(lastBufferSize);
+				}
+				heapBuffer.clear();
+				return generator.writeBuffer(insertOperation, heapBuffer);
+			}
+
+			@Override
+			public void run() {
+				AheadOfTimeBulkInsertDocumentGenerator outer = AheadOfTimeBulkInsertDocumentGenerator.this;
+				while (!Thread.currentThread().isInterrupted()) {
+					int insertOperation;
+					synchronized (outer) {
+						if (numProducedBuffers == numRequestedBuffers) {
+							producing = false;
+							return;
+						}
+						insertOperation = numProducedBuffers;
+					}
+
+					ChannelBuffer buffer = null;
+					try {
+						buffer = produceBuffer(insertOperation);
+					} catch (RuntimeException e) {
+						Runnable callback;
+						synchronized (outer) {
+							failure = e;
+							producing = false;
+							callback = takeReadyCallback();
+						}
+						if (callback != null) {
+							// Let the connection fail upon getting the bulk insert.
+							callback.run();
+						}
+						return;
+					}
+					lastBufferSize = buffer.readableBytes();
+
+					if (directBufferPool != null) {
+						ChannelBuffer directBuffer = directBufferPool.copy(buffer);
+						if (directBuffer == buffer) {
+							synchronized (outer) {
+								if (insertOperation > numReturnedBuffers) {
+									// Resume once the connection sends an earlier bulk insert and releases its buffer.
+									pendingBuffer = buffer;
+									directBufferPool.deferred();
+									producing = false;
+									return;
+								}
+							}
+							// The connection is waiting for this bulk insert, so send it from the heap.
+							heapBuffer = null;
+						}
+						pendingBuffer = null;
+						buffer = directBuffer;
+					}
+
+					Runnable callback;
+					synchronized (outer) {
+						producedBuffers[insertOperation % producedBuffers.length] = buffer;
+						numProducedBuffers++;
+						callback = takeReadyCallback();
+					}
+					if (callback != null) {
+						// Send the bulk insert that the connection is waiting for from this thread.
+						callback.run();
+					}
+				}
+				synchronized (outer) {
+					producing = false;
+				}
+			}
+		}
+
+		private Runnable takeReadyCallback() {
+			if ((numProducedBuffers <= numReturnedBuffers) && (failure == null)) {
+				return null;
+			}
+			Runnable callback = readyCallback;
+			readyCallback = null;
+			return callback;
+		}
+
+		private synchronized void requestBuffers() {
+			// Produce no more than the given number of buffers ahead of those returned.
+			numRequestedBuffers = (int) Math.min(
+					(long) numReturnedBuffers + producedBuffers.length, generator.size());
+			if (!producing && (numProducedBuffers < numRequestedBuffers) && (failure == null)) {
+				producing = true;
+				producers.execute(produceTask);
+			}
+		}
+
+		public synchronized ChannelBuffer getBuffer(int insertOperation) {
+			if (insertOperation != numReturnedBuffers) {
+				throw new IllegalStateException("Expected bulk insert " + numReturnedBuffers +
+						" but was " + insertOperation);
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			if (numProducedBuffers <= insertOperation) {
+				throw new IllegalStateException("Bulk insert " + insertOperation +
+						" was not produced yet");
+			}
+
+			int index = insertOperation % producedBuffers.length;
+			ChannelBuffer buffer = producedBuffers[index];
+			producedBuffers[index] = null;
+			numReturnedBuffers++;
+			requestBuffers();
+			return buffer;
+		}
+
+		@Override
+		public synchronized boolean isBufferReady(int insertOperation, Runnable readyCallback) {
+			if ((numProducedBuffers > insertOperation) || (failure != null)) {
+				return true;
+			}
+			// Never block the calling thread, which sends bulk inserts for many connections.
+			this.readyCallback = readyCallback;
+			return false;
+		}
+
+		ChannelBuffer writeBuffer(int insertOperation, ChannelBuffer buffer) {
+			ChannelBuffer insertBuffer = getBuffer(insertOperation);
+			buffer.writeBytes(insertBuffer, insertBuffer.readerIndex(), insertBuffer.readableBytes());
+			return buffer;
+		}
+
+		public int size() {
+			return generator.size();
+		}
+
+		@Override
+		public synchronized int getNumReturnedBuffers() {
+			return numReturnedBuffers;
+		}
+	}
+
+	/**
+	 * Returns a {@link BulkInsertDocumentGenerator} implementation where the
+	 * {@link ChannelBuffer} instances of the given generator are produced by the
+	 * given executor ahead of when they are returned. At most
+	 * {@code numBuffersAhead} buffers are produced but not yet returned, and
+	 * buffers must be returned in order. A buffer that is not produced yet must be
+	 * awaited using {@link #isBufferReady(int, Runnable)}. If {@code directBufferPool} is not
+	 * {@code null}, then buffers are copied into its direct buffers, and if it has
+	 * none available, then no more buffers are produced until the next is returned.
+	 * 
+	 * @param generator
+	 * @param producers
+	 * @param numBuffersAhead
+	 * @param directBufferPool
+	 * @return a generator of documents produced ahead of time
+	 */
+	public static BulkInsertDocumentGenerator aheadOfTime(
+			BulkInsertDocumentGenerator generator, Executor producers,
+			int numBuffersAhead, DirectBufferPool directBufferPool) {
+		return new AheadOfTimeBulkInsertDocumentGenerator(generator, producers,
+				numBuffersAhead, directBufferPool);
+	}
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package co.adhoclabs.ironcushion.bulkinsert;
 
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -11,15 +12,18 @@ import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
-import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
 import org.jboss.netty.handler.codec.http.HttpChunk;
-import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
-import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponse;
-import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.stream.ChunkedWriteHandler;
 
 import co.adhoclabs.ironcushion.AbstractBenchmarkHandler;
+import co.adhoclabs.ironcushion.ContentCompressor;
+import co.adhoclabs.ironcushion.DirectBufferPool;
+import co.adhoclabs.ironcushion.DocumentIdGenerator;
+import co.adhoclabs.ironcushion.HttpRequestTemplate;
+import co.adhoclabs.ironcushion.Reconnector;
+import co.adhoclabs.ironcushion.RevisionRegistry;
 import co.adhoclabs.ironcushion.bulkinsert.BulkInsertConnectionStatistics.RunningConnectionTimer;
 
 /**
@@ -31,26 +35,114 @@ import co.adhoclabs.ironcushion.bulkinsert.BulkInsertConnectionStatistics.Runnin
 public class BulkInsertHandler extends AbstractBenchmarkHandler {
 	private final BulkInsertConnectionStatistics connectionStatistics;
 	private final BulkInsertDocumentGenerator bulkInsertDocumentGenerator;
-	private final String bulkInsertPath;
+	private final BulkInsertDocumentGenerator.Chunked chunkedDocumentGenerator;
+	private final BulkInsertDocumentGenerator.Resizable resizableDocumentGenerator;
+	private final int numDocumentsPerChunk;
+	private final BulkInsertBatchSizer batchSizer;
+	private final int numDocuments;
+	private final ContentCompressor contentCompressor;
+	private final DirectBufferPool directBufferPool;
+	private final DocumentIdGenerator documentIdGenerator;
+	private final RevisionRegistry revisionRegistry;
+	private final HttpRequestTemplate bulkInsertRequestTemplate;
 	
 	private final SendDataChannelFuture sendDataChannelFuture;
+	private final BufferReadyCallback bufferReadyCallback;
+	private final BulkInsertResponseParser responseParser;
 	
+	private BulkInsertChunkedInput chunkedInput;
+	private ChannelBuffer pooledBuffer;
+	// The channel waiting for the next bulk insert to be produced ahead of time.
+	private Channel waitingChannel;
 	private int insertOperationsCompleted;
+	private int numDocumentsSent;
+	private int numDocumentsInInsert;
+	// The number of the first document of the bulk insert among those of this connection.
+	private int firstDocumentNumInInsert;
+	private boolean awaitingResponse;
+	private long insertStartTime;
+	private long sendDataEndTime;
+	private long remoteProcessingTime;
 	private boolean readingChunks;
+	private boolean responseFailed;
 	private int numJsonBytesReceived;
 	
-	public BulkInsertHandler(BulkInsertConnectionStatistics connectionStatistics,
+	/**
+	 * Creates a handler that performs bulk inserts. If {@code numDocumentsPerChunk} is
+	 * greater than {@code 0}, then each bulk insert is sent using chunked transfer
+	 * encoding as its documents are generated, the generator must be
+	 * {@link BulkInsertDocumentGenerator.Chunked}, and the pipeline must contain a
+	 * {@link ChunkedWriteHandler}. Otherwise each bulk insert is generated and then
+	 * sent whole. If {@code batchSizer} is not {@code null}, then it chooses the
+	 * number of documents in each bulk insert, the generator must be
+	 * {@link BulkInsertDocumentGenerator.Resizable}, and the same total number of
+	 * documents is inserted as by bulk inserts of {@code numDocumentsPerInsert}. If
+	 * {@code contentCompressor} is not {@code null}, then each bulk insert is
+	 * compressed before it is sent. If {@code directBufferPool} is not {@code null},
+	 * then each bulk insert is sent from one of its buffers if one is available. If
+	 * identifiers are assigned by the server, then the identifiers of the accepted
+	 * documents are recorded by {@code documentIdGenerator}. If {@code revisionRegistry}
+	 * is not {@code null}, then the revisions of the accepted documents are recorded
+	 * by it.
+	 * 
+	 * @param connectionNum the number of this connection
+	 * @param connectionStatistics the statistics for this connection
+	 * @param bulkInsertDocumentGenerator the generator of documents to bulk insert
+	 * @param bulkInsertPath the path of bulk inserts
+	 * @param numDocumentsPerChunk the number of documents in each chunk, or {@code 0}
+	 * @param numDocumentsPerInsert the number of documents in each bulk insert of the generator
+	 * @param batchSizer chooses the number of documents in each bulk insert, or {@code null}
+	 * @param contentCompressor compresses each bulk insert, or {@code null}
+	 * @param directBufferPool the pool of buffers to send bulk inserts from, or {@code null}
+	 * @param documentIdGenerator the generator of the identifier of each document
+	 * @param revisionRegistry the registry of revisions of all documents, or {@code null}
+	 * @param reconnector the reconnector if this connection fails
+	 * @param countDownLatch the latch to count down once all bulk inserts are performed
+	 */
+	public BulkInsertHandler(int connectionNum, BulkInsertConnectionStatistics connectionStatistics,
 			BulkInsertDocumentGenerator bulkInsertDocumentGenerator, String bulkInsertPath,
-			CountDownLatch countDownLatch) {
-		super(countDownLatch);
+			int numDocumentsPerChunk, int numDocumentsPerInsert, BulkInsertBatchSizer batchSizer,
+			ContentCompressor contentCompressor, DirectBufferPool directBufferPool,
+			DocumentIdGenerator documentIdGenerator, RevisionRegistry revisionRegistry,
+			Reconnector reconnector, CountDownLatch countDownLatch) {
+		super(connectionNum, reconnector, countDownLatch);
 		
 		this.connectionStatistics = connectionStatistics;
 		this.bulkInsertDocumentGenerator = bulkInsertDocumentGenerator;
-		this.bulkInsertPath = bulkInsertPath;
+		if ((numDocumentsPerChunk > 0) &&
+				!(bulkInsertDocumentGenerator instanceof BulkInsertDocumentGenerator.Chunked)) {
+			throw new IllegalArgumentException("Bulk inserts of this generator cannot be chunked");
+		}
+		this.chunkedDocumentGenerator = (numDocumentsPerChunk > 0) ?
+				(BulkInsertDocumentGenerator.Chunked) bulkInsertDocumentGenerator : null;
+		if ((batchSizer != null) &&
+				!(bulkInsertDocumentGenerator instanceof BulkInsertDocumentGenerator.Resizable)) {
+			throw new IllegalArgumentException("Bulk inserts of this generator cannot be resized");
+		}
+		this.resizableDocumentGenerator = (batchSizer != null) ?
+				(BulkInsertDocumentGenerator.Resizable) bulkInsertDocumentGenerator : null;
+		this.numDocumentsPerChunk = numDocumentsPerChunk;
+		this.batchSizer = batchSizer;
+		this.numDocuments = (batchSizer != null) ?
+				(numDocumentsPerInsert * bulkInsertDocumentGenerator.size()) : 0;
+		this.contentCompressor = contentCompressor;
+		this.directBufferPool = directBufferPool;
+		this.documentIdGenerator = documentIdGenerator;
+		this.revisionRegistry = revisionRegistry;
+		this.bulkInsertRequestTemplate = (numDocumentsPerChunk > 0) ?
+				HttpRequestTemplate.chunked(HttpMethod.POST, bulkInsertPath) :
+				new HttpRequestTemplate(HttpMethod.POST, bulkInsertPath, true,
+						(contentCompressor != null) ? contentCompressor.getEncoding() : null);
 		
 		this.sendDataChannelFuture = new SendDataChannelFuture();
+		this.bufferReadyCallback = new BufferReadyCallback();
+		this.responseParser = new BulkInsertResponseParser(
+				documentIdGenerator.isAssignedByServer(), (revisionRegistry != null));
 		
 		this.insertOperationsCompleted = 0;
+		this.numDocumentsSent = 0;
+		this.numDocumentsInInsert = numDocumentsPerInsert;
+		this.awaitingResponse = false;
 	}
 
 	/**
@@ -59,76 +151,252 @@ public class BulkInsertHandler extends AbstractBenchmarkHandler {
 	private final class SendDataChannelFuture implements ChannelFutureListener {
 		@Override
 		public void operationComplete(ChannelFuture channelFuture) throws Exception {
-			// Guard against starting RECEIVE_DATA before this listener runs. 
-			if (connectionStatistics.getRunningConnectionTimer() == RunningConnectionTimer.SEND_DATA) {
-				connectionStatistics.startRemoteProcessing();
+			// A bulk insert produced ahead of time is written by the producer thread.
+			synchronized (BulkInsertHandler.this) {
+				if (chunkedInput != null) {
+					// The size of a chunked bulk insert is known once it is sent.
+					connectionStatistics.sentJsonBytes(chunkedInput.getNumJsonBytes());
+					chunkedInput = null;
+				}
+				if (pooledBuffer != null) {
+					// The bulk insert was written, so its buffer can be reused.
+					directBufferPool.release(pooledBuffer);
+					pooledBuffer = null;
+				}
+				// Guard against starting RECEIVE_DATA before this listener runs. 
+				if (connectionStatistics.getRunningConnectionTimer() == RunningConnectionTimer.SEND_DATA) {
+					sendDataEndTime = System.nanoTime();
+					connectionStatistics.startRemoteProcessing();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The callback run by the producer once the bulk insert that a channel is
+	 * waiting for is produced ahead of time.
+	 */
+	private final class BufferReadyCallback implements Runnable {
+		@Override
+		public void run() {
+			synchronized (BulkInsertHandler.this) {
+				Channel channel = waitingChannel;
+				waitingChannel = null;
+				if ((channel == null) || !channel.isConnected() || isFinished()) {
+					// The channel closed while waiting, and a new one will resume.
+					return;
+				}
+				try {
+					writeNextBulkInsertOrFinish(channel);
+				} catch (RuntimeException e) {
+					System.err.println("Connection " + connectionNum + " failed: " + e);
+					channel.close();
+				}
 			}
 		}
 	}
 	
-	private void writeNextBulkInsertOrClose(Channel channel) {
-		if (insertOperationsCompleted < bulkInsertDocumentGenerator.size()) {
+	private void writeNextBulkInsertOrFinish(Channel channel) {
+		if (hasRemainingOperations()) {
 			// Perform the next bulk insert operation.
 			writeNextBulkInsert(channel);
 		} else {
 			// There are no more bulk insert operations to perform.
-			close(channel);
+			finish();
 		}
 	}
 	
 	private void writeNextBulkInsert(Channel channel) {
+		if (numDocumentsPerChunk > 0) {
+			writeNextChunkedBulkInsert(channel);
+			return;
+		}
+		
 		connectionStatistics.startLocalProcessing();
-		HttpRequest request = new DefaultHttpRequest(
-				HttpVersion.HTTP_1_1, HttpMethod.POST, bulkInsertPath);
-		ChannelBuffer insertBuffer = bulkInsertDocumentGenerator.getBuffer(insertOperationsCompleted);
-		// Assign the headers.
-		request.setHeader(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
-		// request.setHeader(HttpHeaders.Names.ACCEPT_ENCODING, HttpHeaders.Values.GZIP);
-		request.setHeader(HttpHeaders.Names.CONTENT_TYPE, "application/json");
-		request.setHeader(HttpHeaders.Names.CONTENT_LENGTH, insertBuffer.readableBytes());
-		// Assign the body.
-		request.setContent(insertBuffer);
+		ChannelBuffer insertBuffer = null;
+		if (batchSizer != null) {
+			// Insert the next documents using the number chosen by the sizer.
+			numDocumentsInInsert = Math.min(batchSizer.getBatchSize(), numDocuments - numDocumentsSent);
+			firstDocumentNumInInsert = numDocumentsSent;
+			insertBuffer = resizableDocumentGenerator.getDocumentsBuffer(numDocumentsSent, numDocumentsInInsert);
+			numDocumentsSent += numDocumentsInInsert;
+		} else {
+			if (!bulkInsertDocumentGenerator.isBufferReady(insertOperationsCompleted, bufferReadyCallback)) {
+				// Send the bulk insert once it is produced instead of blocking the event loop.
+				waitingChannel = channel;
+				return;
+			}
+			insertBuffer = bulkInsertDocumentGenerator.getBuffer(insertOperationsCompleted);
+			firstDocumentNumInInsert = insertOperationsCompleted * numDocumentsInInsert;
+		}
 		connectionStatistics.sentJsonBytes(insertBuffer.readableBytes());
+		if (contentCompressor != null) {
+			ChannelBuffer uncompressedBuffer = insertBuffer;
+			insertBuffer = contentCompressor.compress(insertBuffer, connectionStatistics);
+			if (directBufferPool != null) {
+				// The buffer may have been produced ahead of time from the pool.
+				directBufferPool.release(uncompressedBuffer);
+			}
+		}
+		if (directBufferPool != null) {
+			// If no buffer is available, then the bulk insert is sent from the heap.
+			insertBuffer = directBufferPool.copy(insertBuffer);
+			pooledBuffer = insertBuffer;
+		}
+		
+		connectionStatistics.startSendData();
+		insertStartTime = System.nanoTime();
+		connectionStatistics.getDatabaseNode().sentRequest();
+		awaitingResponse = true;
+		ChannelFuture channelFuture = null;
+		if (insertBuffer.isDirect()) {
+			// Write a direct buffer separately so that it is sent without being copied.
+			channel.write(bulkInsertRequestTemplate.encodeHeaders(null, null, insertBuffer.readableBytes()));
+			channelFuture = channel.write(insertBuffer);
+		} else {
+			channelFuture = channel.write(bulkInsertRequestTemplate.encode(null, null, insertBuffer));
+		}
+		channelFuture.addListener(sendDataChannelFuture);
+		insertOperationsCompleted++;
+	}
+	
+	private void writeNextChunkedBulkInsert(Channel channel) {
+		// Documents are generated while sending, so that time is included in sendData.
+		chunkedInput = chunkedDocumentGenerator.getChunkedInput(
+				insertOperationsCompleted, numDocumentsPerChunk);
+		firstDocumentNumInInsert = insertOperationsCompleted * numDocumentsInInsert;
 		
 		connectionStatistics.startSendData();
-		ChannelFuture channelFuture = channel.write(request);
+		insertStartTime = System.nanoTime();
+		connectionStatistics.getDatabaseNode().sentRequest();
+		awaitingResponse = true;
+		channel.write(bulkInsertRequestTemplate.encode(null, null, null));
+		ChannelFuture channelFuture = channel.write(chunkedInput);
 		channelFuture.addListener(sendDataChannelFuture);
 		insertOperationsCompleted++;
 	}
 	
+	private void receivedBulkInsertResponse(Channel channel) {
+		long receivedTime = System.nanoTime();
+		connectionStatistics.getDatabaseNode().receivedResponse();
+		awaitingResponse = false;
+		receivedResponse();
+		if (documentIdGenerator.isAssignedByServer()) {
+			// Record the identifiers even if late, as the documents were inserted.
+			for (String documentId : responseParser.getAcceptedIds()) {
+				((DocumentIdGenerator.ServerAssigned) documentIdGenerator).assignedBulkInsertedId(
+						connectionNum, documentId);
+			}
+		}
+		if (revisionRegistry != null) {
+			List<String> revisions = responseParser.getRevisions();
+			for (int i = 0; i < revisions.size(); ++i) {
+				revisionRegistry.putRevision(
+						revisionRegistry.getKey(connectionNum, firstDocumentNumInInsert + i), revisions.get(i));
+			}
+		}
+		if (connectionStatistics.isPastDeadline(receivedTime)) {
+			// Exclude a bulk insert that completed after the benchmark step ended.
+		} else if (responseFailed) {
+			connectionStatistics.failedOperations(1);
+		} else {
+			connectionStatistics.recordLatency(receivedTime - insertStartTime);
+			connectionStatistics.completedDocuments(numDocumentsInInsert, responseParser);
+			if (batchSizer != null) {
+				batchSizer.completedBulkInsert(numDocumentsInInsert, remoteProcessingTime);
+			}
+		}
+		writeNextBulkInsertOrFinish(channel);
+	}
+	
+	@Override
+	protected BulkInsertConnectionStatistics getConnectionStatistics() {
+		return connectionStatistics;
+	}
+	
 	@Override
-	public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) {
-		// Immediately perform the first bulk insert upon connecting.
-		writeNextBulkInsert(e.getChannel());
+	protected void failSentOperations() {
+		if (awaitingResponse) {
+			connectionStatistics.getDatabaseNode().receivedResponse();
+			connectionStatistics.failedOperations(1);
+			awaitingResponse = false;
+		}
+		readingChunks = false;
 	}
 	
 	@Override
-	public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+	protected boolean hasRemainingOperations() {
+		boolean hasRemainingInserts = (batchSizer != null) ? (numDocumentsSent < numDocuments) :
+				(insertOperationsCompleted < bulkInsertDocumentGenerator.size());
+		return hasRemainingInserts && !connectionStatistics.isPastDeadline(System.nanoTime());
+	}
+	
+	@Override
+	protected void failRemainingOperations() {
+		if (batchSizer != null) {
+			// Count the bulk inserts that would remain using the current number of documents.
+			int batchSize = batchSizer.getBatchSize();
+			connectionStatistics.failedOperations(
+					(numDocuments - numDocumentsSent + batchSize - 1) / batchSize);
+			numDocumentsSent = numDocuments;
+			return;
+		}
+		if (!connectionStatistics.hasDeadline()) {
+			connectionStatistics.failedOperations(
+					bulkInsertDocumentGenerator.size() - insertOperationsCompleted);
+		}
+		insertOperationsCompleted = bulkInsertDocumentGenerator.size();
+	}
+	
+	@Override
+	public synchronized void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+		waitingChannel = null;
+		super.channelClosed(ctx, e);
+	}
+	
+	@Override
+	public synchronized void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) {
+		// Immediately perform the next bulk insert upon connecting.
+		writeNextBulkInsertOrFinish(e.getChannel());
+	}
+	
+	@Override
+	public synchronized void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+		if (!readingChunks) {
+			// The remote processing ends when the response starts to arrive.
+			remoteProcessingTime = (sendDataEndTime > insertStartTime) ?
+					(System.nanoTime() - sendDataEndTime) : 0;
+		}
+		connectionStatistics.endWarmUpIfElapsed();
 		connectionStatistics.startReceiveData();
 		
 		Channel channel = e.getChannel();
 		if (!readingChunks) {
 			HttpResponse response = (HttpResponse) e.getMessage();
+			// Any status other than 2xx means that the bulk insert failed.
+			responseFailed = (response.getStatus().getCode() / 100) != 2;
+			// Count the documents accepted and rejected as the response is received.
+			responseParser.reset();
 			
 			if (response.isChunked()) {
 				numJsonBytesReceived = 0;
 				readingChunks = true;
 			} else {
 				ChannelBuffer content = response.getContent();
-				if (content.readable()) {
-					connectionStatistics.receivedJsonBytes(content.readableBytes());
-					writeNextBulkInsertOrClose(channel);
-				}
+				connectionStatistics.receivedJsonBytes(content.readableBytes());
+				responseParser.parse(content);
+				receivedBulkInsertResponse(channel);
 			}
 		} else {
 			HttpChunk chunk = (HttpChunk) e.getMessage();
 			if (chunk.isLast()) {
 				connectionStatistics.receivedJsonBytes(numJsonBytesReceived);
 				readingChunks = false;
-				writeNextBulkInsertOrClose(channel);
+				receivedBulkInsertResponse(channel);
 			} else {
 				ChannelBuffer content = chunk.getContent();
 				numJsonBytesReceived += content.readableBytes();
+				responseParser.parse(content);
 			}
 		}
 	}
@@ -6,9 +6,15 @@ import java.util.List;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.Channels;
-import org.jboss.netty.handler.codec.http.HttpClientCodec;
+import org.jboss.netty.handler.codec.http.HttpResponseDecoder;
+import org.jboss.netty.handler.stream.ChunkedWriteHandler;
 
 import co.adhoclabs.ironcushion.AbstractBenchmarkPipelineFactory;
+import co.adhoclabs.ironcushion.ContentCompressor;
+import co.adhoclabs.ironcushion.DirectBufferPool;
+import co.adhoclabs.ironcushion.DocumentIdGenerator;
+import co.adhoclabs.ironcushion.RevisionRegistry;
+import co.adhoclabs.ironcushion.StatisticsContentDecompressor;
 
 /**
  * The {@link ChannelPipelineFactory} for connections that perform bulk inserts.
@@ -19,39 +25,81 @@ public class BulkInsertPipelineFactory extends AbstractBenchmarkPipelineFactory
 	private final List<BulkInsertConnectionStatistics> allConnectionStatistics;
 	private final List<BulkInsertDocumentGenerator> allBulkInsertDocumentGenerators;
 	private final String bulkInsertPath;
-	
-	private int connectionNum;
+	private final int numDocumentsPerChunk;
+	private final int numDocumentsPerInsert;
+	private final ContentCompressor contentCompressor;
+	private final DirectBufferPool directBufferPool;
+	private final DocumentIdGenerator documentIdGenerator;
+	private final RevisionRegistry revisionRegistry;
+	private final List<BulkInsertHandler> allHandlers;
 	
 	public BulkInsertPipelineFactory(int numConnections,
-			List<BulkInsertDocumentGenerator> allBulkInsertDocumentGenerators, String bulkInsertPath) {
+			List<BulkInsertDocumentGenerator> allBulkInsertDocumentGenerators, String bulkInsertPath,
+			int numDocumentsPerChunk, int numDocumentsPerInsert, int maxDocumentsPerInsert,
+			ContentCompressor contentCompressor, DirectBufferPool directBufferPool,
+			DocumentIdGenerator documentIdGenerator, RevisionRegistry revisionRegistry) {
 		super(numConnections);
 		
 		this.allConnectionStatistics = new ArrayList<BulkInsertConnectionStatistics>();
 		for (int i = 0; i < numConnections; ++i) {
-			allConnectionStatistics.add(new BulkInsertConnectionStatistics());
+			BulkInsertBatchSizer batchSizer = (maxDocumentsPerInsert > 0) ?
+					new BulkInsertBatchSizer(numDocumentsPerInsert, maxDocumentsPerInsert) : null;
+			allConnectionStatistics.add(new BulkInsertConnectionStatistics(batchSizer));
 		}
 		this.allBulkInsertDocumentGenerators = allBulkInsertDocumentGenerators;
 		this.bulkInsertPath = bulkInsertPath;
-		
-		connectionNum = 0;
+		this.numDocumentsPerChunk = numDocumentsPerChunk;
+		this.numDocumentsPerInsert = numDocumentsPerInsert;
+		this.contentCompressor = contentCompressor;
+		this.directBufferPool = directBufferPool;
+		this.documentIdGenerator = documentIdGenerator;
+		this.revisionRegistry = revisionRegistry;
+		this.allHandlers = new ArrayList<BulkInsertHandler>(numConnections);
+		for (int i = 0; i < numConnections; ++i) {
+			allHandlers.add(null);
+		}
 	}
 
 	/**
 	 * @return the {@link BulkInsertConnectionStatistics} used by connections
 	 */
+	@Override
 	public List<BulkInsertConnectionStatistics> getAllConnectionStatistics() {
 		return allConnectionStatistics;
 	}
 	
 	@Override
-	public ChannelPipeline getPipeline() throws Exception {
-		BulkInsertConnectionStatistics connectionStatistics = allConnectionStatistics.get(connectionNum);
-		BulkInsertDocumentGenerator documentGenerator = allBulkInsertDocumentGenerators.get(connectionNum);
-		connectionNum++;
-		return Channels.pipeline(
-				new HttpClientCodec(),
-				// new HttpContentDecompressor(),
-				new BulkInsertHandler(connectionStatistics, documentGenerator, bulkInsertPath, countDownLatch)
+	public BulkInsertHandler getHandler(int connectionNum) {
+		BulkInsertHandler handler = allHandlers.get(connectionNum);
+		if (handler == null) {
+			BulkInsertConnectionStatistics connectionStatistics = allConnectionStatistics.get(connectionNum);
+			BulkInsertDocumentGenerator documentGenerator = allBulkInsertDocumentGenerators.get(connectionNum);
+			handler = new BulkInsertHandler(connectionNum, connectionStatistics, documentGenerator,
+					bulkInsertPath, numDocumentsPerChunk, numDocumentsPerInsert,
+					connectionStatistics.getBatchSizer(), contentCompressor, directBufferPool,
+					documentIdGenerator, revisionRegistry, reconnector, countDownLatch);
+			allHandlers.set(connectionNum, handler);
+		}
+		return handler;
+	}
+	
+	@Override
+	public ChannelPipeline getPipeline(int connectionNum) throws Exception {
+		ChannelPipeline pipeline = Channels.pipeline(
+				// Requests are encoded by the handler.
+				new HttpResponseDecoder(),
+				getHandler(connectionNum)
 				);
+		if (contentCompressor != null) {
+			// Decompress responses before they reach the handler.
+			pipeline.addBefore(pipeline.getContext(BulkInsertHandler.class).getName(),
+					"decompressor", new StatisticsContentDecompressor());
+		}
+		if (numDocumentsPerChunk > 0) {
+			// Write the chunks of each bulk insert as the channel becomes writable.
+			pipeline.addBefore(pipeline.getContext(BulkInsertHandler.class).getName(),
+					"chunkedWriter", new ChunkedWriteHandler());
+		}
+		return pipeline;
 	}
 }
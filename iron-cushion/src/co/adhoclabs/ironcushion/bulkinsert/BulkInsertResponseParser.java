@@ -0,0 +1,219 @@
+package co.adhoclabs.ironcushion.bulkinsert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+
+/**
+ * Counts the documents accepted and rejected by the response to a bulk insert,
+ * which is an array containing an object for each document. An object with an
+ * {@code error} member is a rejected document, and the value of that member is
+ * the type of error, such as {@code conflict} or {@code forbidden}. Any other
+ * object is an accepted document.
+ *
+ * The response is parsed as each {@link HttpChunk} is received, without
+ * buffering it or building its objects. Only the names of members of each object
+ * and the value of its {@code error} member are kept, and if the identifiers or
+ * revisions of documents are kept, then the value of its {@code id} or {@code rev}
+ * member.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class BulkInsertResponseParser {
+	private static final String ERROR_NAME = "error";
+	private static final String ID_NAME = "id";
+	private static final String REVISION_NAME = "rev";
+
+	private final boolean keepsAcceptedIds;
+	private final boolean keepsRevisions;
+	private final Map<String, Integer> numRejectedDocuments;
+	private final List<String> acceptedIds;
+	private final List<String> revisions;
+	private final StringBuilder string;
+
+	private int numAcceptedDocuments;
+	private int depth;
+	private boolean inString;
+	private boolean escaped;
+	private boolean inValue;
+	private String name;
+	private String errorType;
+	private String id;
+	private String revision;
+
+	/**
+	 * Creates a parser of responses to bulk inserts.
+	 *
+	 * @param keepsAcceptedIds whether the identifiers of accepted documents are kept
+	 * @param keepsRevisions whether the revisions of all documents are kept
+	 */
+	public BulkInsertResponseParser(boolean keepsAcceptedIds, boolean keepsRevisions) {
+		this.keepsAcceptedIds = keepsAcceptedIds;
+		this.keepsRevisions = keepsRevisions;
+		this.numRejectedDocuments = new TreeMap<String, Integer>();
+		this.acceptedIds = new ArrayList<String>();
+		this.revisions = new ArrayList<String>();
+		this.string = new StringBuilder();
+
+		reset();
+	}
+
+	/**
+	 * Prepares to parse a new response, discarding the counts of the last one.
+	 */
+	public void reset() {
+		numRejectedDocuments.clear();
+		acceptedIds.clear();
+		revisions.clear();
+		numAcceptedDocuments = 0;
+		depth = 0;
+		inString = false;
+		escaped = false;
+		inValue = false;
+		name = null;
+		errorType = null;
+		id = null;
+		revision = null;
+	}
+
+	/**
+	 * @return the number of documents accepted by the response parsed so far
+	 */
+	public int getNumAcceptedDocuments() {
+		return numAcceptedDocuments;
+	}
+
+	/**
+	 * @return the number of documents rejected by the response parsed so far, by
+	 *         the type of error
+	 */
+	public Map<String, Integer> getNumRejectedDocuments() {
+		return numRejectedDocuments;
+	}
+
+	/**
+	 * @return the identifiers of the documents accepted by the response parsed so
+	 *         far, in order, if they are kept
+	 */
+	public List<String> getAcceptedIds() {
+		return acceptedIds;
+	}
+
+	/**
+	 * @return the revision of each document in the response parsed so far, in order,
+	 *         or {@code null} for a rejected document, if they are kept
+	 */
+	public List<String> getRevisions() {
+		return revisions;
+	}
+
+	private boolean keepsValue() {
+		return ERROR_NAME.equals(name) || (keepsAcceptedIds && ID_NAME.equals(name)) ||
+				(keepsRevisions && REVISION_NAME.equals(name));
+	}
+
+	/**
+	 * Parses the next part of the response. The readable bytes of the buffer are
+	 * parsed but not consumed.
+	 *
+	 * @param buffer the next part of the response
+	 */
+	public void parse(ChannelBuffer buffer) {
+		for (int i = buffer.readerIndex(); i < buffer.writerIndex(); ++i) {
+			char c = (char) (buffer.getByte(i) & 0xff);
+			if (inString) {
+				parseString(c);
+				continue;
+			}
+
+			switch (c) {
+			case '"':
+				inString = true;
+				string.setLength(0);
+				break;
+			case '[':
+			case '{':
+				depth++;
+				break;
+			case ']':
+			case '}':
+				depth--;
+				if (depth == 1) {
+					// Finished the object for a document.
+					endDocument();
+				}
+				break;
+			case ':':
+				if (depth == 2) {
+					inValue = true;
+				}
+				break;
+			case ',':
+				if (depth == 2) {
+					inValue = false;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private void parseString(char c) {
+		if (escaped) {
+			escaped = false;
+		} else if (c == '\\') {
+			escaped = true;
+			return;
+		} else if (c == '"') {
+			inString = false;
+			endString();
+			return;
+		}
+		if (depth == 2) {
+			// Keep only the names of members and the values of errors, identifiers, and revisions.
+			if (!inValue || keepsValue()) {
+				string.append(c);
+			}
+		}
+	}
+
+	private void endString() {
+		if (depth != 2) {
+			return;
+		}
+		if (!inValue) {
+			name = string.toString();
+		} else if (ERROR_NAME.equals(name)) {
+			errorType = string.toString();
+		} else if (keepsAcceptedIds && ID_NAME.equals(name)) {
+			id = string.toString();
+		} else if (keepsRevisions && REVISION_NAME.equals(name)) {
+			revision = string.toString();
+		}
+	}
+
+	private void endDocument() {
+		if (keepsRevisions) {
+			revisions.add((errorType == null) ? revision : null);
+		}
+		if (errorType != null) {
+			Integer numDocuments = numRejectedDocuments.get(errorType);
+			numRejectedDocuments.put(errorType, (numDocuments == null) ? 1 : (numDocuments + 1));
+		} else {
+			numAcceptedDocuments++;
+			if (keepsAcceptedIds && (id != null)) {
+				acceptedIds.add(id);
+			}
+		}
+		inValue = false;
+		name = null;
+		errorType = null;
+		id = null;
+		revision = null;
+	}
+}
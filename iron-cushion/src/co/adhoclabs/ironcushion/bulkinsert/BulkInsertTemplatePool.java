@@ -0,0 +1,157 @@
+package co.adhoclabs.ironcushion.bulkinsert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import co.adhoclabs.ironcushion.DocumentIdGenerator;
+import co.adhoclabs.ironcushion.DocumentSchema;
+import co.adhoclabs.ironcushion.DocumentSchema.DocumentWriter;
+import co.adhoclabs.ironcushion.ValueGenerator;
+
+/**
+ * A small pool of bulk inserts that are generated once and shared by every
+ * connection, so that pre-computed bulk inserts use memory that does not grow
+ * with the number of connections or bulk inserts. The documents of each template
+ * are written with the identifier of document {@code 0}, and the index of each
+ * identifier is recorded. A bulk insert is then a composite {@link ChannelBuffer}
+ * of slices of its template between these indexes and of the identifiers of its
+ * documents, and so the bytes of the template are shared instead of copied. If
+ * identifiers are assigned by the server, then each bulk insert is its template.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class BulkInsertTemplatePool {
+	// The writer of identifiers, or null if they are assigned by the server.
+	private final DocumentIdGenerator.Writer idWriter;
+	private final int numDocumentsPerInsert;
+	private final List<ChannelBuffer> templateBuffers;
+	private final List<int[]> allIdIndexes;
+	// The number of characters in the identifier of each document of a template.
+	private final int templateIdLength;
+	private final long numTemplateBytes;
+
+	/**
+	 * Generates the templates of the pool.
+	 *
+	 * @param schema the schema of the documents
+	 * @param documentIdGenerator the generator of the identifier of each document
+	 * @param valueGenerator the generator for values in the documents
+	 * @param numTemplates the number of templates to generate
+	 * @param numDocumentsPerInsert the number of documents in each template
+	 */
+	public BulkInsertTemplatePool(DocumentSchema schema, DocumentIdGenerator documentIdGenerator,
+			ValueGenerator valueGenerator, int numTemplates, int numDocumentsPerInsert) {
+		this.idWriter = documentIdGenerator.isAssignedByServer() ?
+				null : (DocumentIdGenerator.Writer) documentIdGenerator;
+		this.numDocumentsPerInsert = numDocumentsPerInsert;
+		this.templateBuffers = new ArrayList<ChannelBuffer>(numTemplates);
+		this.allIdIndexes = new ArrayList<int[]>(numTemplates);
+
+		DocumentWriter documentWriter = schema.newDocumentWriter(documentIdGenerator);
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		long numTemplateBytes = 0;
+		for (int i = 0; i < numTemplates; ++i) {
+			int[] idIndexes = new int[numDocumentsPerInsert];
+			buffer.clear();
+			buffer.writeBytes(BulkInsertDocumentGenerator.DOCUMENTS_PREFIX);
+			for (int j = 0; j < numDocumentsPerInsert; ++j) {
+				if (j > 0) {
+					buffer.writeByte(',');
+				}
+				documentWriter.writeNewDocument(valueGenerator, 0, buffer);
+				idIndexes[j] = documentWriter.getIdIndex();
+			}
+			buffer.writeBytes(BulkInsertDocumentGenerator.DOCUMENTS_SUFFIX);
+
+			// Copy the template so that it does not keep the excess capacity of the buffer.
+			templateBuffers.add(ChannelBuffers.copiedBuffer(buffer));
+			allIdIndexes.add(idIndexes);
+			numTemplateBytes += buffer.readableBytes();
+		}
+		this.templateIdLength = documentWriter.getIdLength();
+		this.numTemplateBytes = numTemplateBytes;
+	}
+
+	/**
+	 * @return the number of templates in the pool
+	 */
+	public int getNumTemplates() {
+		return templateBuffers.size();
+	}
+
+	/**
+	 * @return the number of bytes in all templates of the pool
+	 */
+	public long getNumTemplateBytes() {
+		return numTemplateBytes;
+	}
+
+	/**
+	 * Returns a {@link ChannelBuffer} that shares the bytes of the given template,
+	 * but where the documents are numbered consecutively from the given number.
+	 *
+	 * @param templateNum the number of the template
+	 * @param firstDocumentNum the number of the first document
+	 * @return the buffer containing the documents
+	 */
+	public ChannelBuffer getBuffer(int templateNum, int firstDocumentNum) {
+		ChannelBuffer templateBuffer = templateBuffers.get(templateNum);
+		if (idWriter == null) {
+			// Each bulk insert has its own indexes, as it may be sent again.
+			return templateBuffer.duplicate();
+		}
+		int[] idIndexes = allIdIndexes.get(templateNum);
+		// Each bulk insert has its own identifiers, as it may be sent after the next is created.
+		ChannelBuffer idBuffer = ChannelBuffers.buffer(numDocumentsPerInsert * DocumentIdGenerator.MAX_ID_LENGTH);
+		ChannelBuffer[] components = new ChannelBuffer[(2 * numDocumentsPerInsert) + 1];
+		int templateIndex = 0;
+		for (int i = 0; i < numDocumentsPerInsert; ++i) {
+			components[2 * i] = templateBuffer.slice(templateIndex, idIndexes[i] - templateIndex);
+			int idIndex = idBuffer.writerIndex();
+			idWriter.writeId(firstDocumentNum + i, idBuffer);
+			components[(2 * i) + 1] = idBuffer.slice(idIndex, idBuffer.writerIndex() - idIndex);
+			templateIndex = idIndexes[i] + templateIdLength;
+		}
+		components[2 * numDocumentsPerInsert] = templateBuffer.slice(
+				templateIndex, templateBuffer.capacity() - templateIndex);
+		return ChannelBuffers.wrappedBuffer(components);
+	}
+
+	/**
+	 * Writes the documents returned by {@link #getBuffer(int, int)} to the given
+	 * buffer.
+	 *
+	 * @param templateNum the number of the template
+	 * @param firstDocumentNum the number of the first document
+	 * @param buffer the buffer to write the documents to
+	 * @return the given buffer
+	 */
+	public ChannelBuffer writeBuffer(int templateNum, int firstDocumentNum, ChannelBuffer buffer) {
+		ChannelBuffer templateBuffer = templateBuffers.get(templateNum);
+		int[] idIndexes = allIdIndexes.get(templateNum);
+		int templateIndex = 0;
+		for (int i = 0; (idWriter != null) && (i < numDocumentsPerInsert); ++i) {
+			buffer.writeBytes(templateBuffer, templateIndex, idIndexes[i] - templateIndex);
+			idWriter.writeId(firstDocumentNum + i, buffer);
+			templateIndex = idIndexes[i] + templateIdLength;
+		}
+		buffer.writeBytes(templateBuffer, templateIndex, templateBuffer.capacity() - templateIndex);
+		return buffer;
+	}
+
+	/**
+	 * Returns a {@link BulkInsertDocumentGenerator} that returns the bulk inserts
+	 * of the given connection from the templates of this pool.
+	 *
+	 * @param connectionNum the number of the connection
+	 * @param numInsertOperations the number of bulk inserts of each connection
+	 * @return the generator of the bulk inserts
+	 */
+	public BulkInsertDocumentGenerator getGenerator(int connectionNum, int numInsertOperations) {
+		return BulkInsertDocumentGenerator.templated(this, connectionNum,
+				numDocumentsPerInsert, numInsertOperations);
+	}
+}
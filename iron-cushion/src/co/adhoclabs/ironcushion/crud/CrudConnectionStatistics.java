@@ -1,6 +1,7 @@
 package co.adhoclabs.ironcushion.crud;
 
 import co.adhoclabs.ironcushion.AbstractConnectionStatistics;
+import co.adhoclabs.ironcushion.LatencyHistogram;
 import co.adhoclabs.ironcushion.Timer;
 
 /**
@@ -13,6 +14,10 @@ public class CrudConnectionStatistics extends AbstractConnectionStatistics {
 	private final Timer remoteReadProcessingTimer;
 	private final Timer remoteUpdateProcessingTimer;
 	private final Timer remoteDeleteProcessingTimer;
+	private final Timer remoteBatchReadProcessingTimer;
+	private final Timer idleTimer;
+	private final LatencyHistogram[] latencyHistograms;
+	private long numBatchReadDocuments;
 	
 	public CrudConnectionStatistics() {
 		super();
@@ -20,6 +25,12 @@ public class CrudConnectionStatistics extends AbstractConnectionStatistics {
 		remoteReadProcessingTimer = new Timer();
 		remoteUpdateProcessingTimer = new Timer();
 		remoteDeleteProcessingTimer = new Timer();
+		remoteBatchReadProcessingTimer = new Timer();
+		idleTimer = new Timer();
+		latencyHistograms = new LatencyHistogram[CrudOperations.Type.values().length];
+		for (int i = 0; i < latencyHistograms.length; ++i) {
+			latencyHistograms[i] = new LatencyHistogram();
+		}
 	}
 	
 	/**
@@ -32,6 +43,9 @@ public class CrudConnectionStatistics extends AbstractConnectionStatistics {
 		REMOTE_READ_PROCESSING,
 		REMOTE_UPDATE_PROCESSING,
 		REMOTE_DELETE_PROCESSING,
+		REMOTE_BATCH_READ_PROCESSING,
+		IDLE,
+		RECONNECT,
 	}
 	
 	private RunningConnectionTimer runningTimer;
@@ -68,6 +82,15 @@ public class CrudConnectionStatistics extends AbstractConnectionStatistics {
 			case REMOTE_DELETE_PROCESSING:
 				remoteDeleteProcessingTimer.stop();
 				break;
+			case REMOTE_BATCH_READ_PROCESSING:
+				remoteBatchReadProcessingTimer.stop();
+				break;
+			case IDLE:
+				idleTimer.stop();
+				break;
+			case RECONNECT:
+				reconnectTimer.stop();
+				break;
 			default:
 				break;
 			}
@@ -170,13 +193,149 @@ public class CrudConnectionStatistics extends AbstractConnectionStatistics {
 		return remoteDeleteProcessingTimer.getTotalTimeMillis();
 	}
 	
+	/**
+	 * Starts the timer for remote processing of batch read operations.
+	 */
+	public void startRemoteBatchReadProcessing() {
+		if (runningTimer == RunningConnectionTimer.REMOTE_BATCH_READ_PROCESSING) {
+			return;
+		}
+		stop();
+		remoteBatchReadProcessingTimer.start();
+		runningTimer = RunningConnectionTimer.REMOTE_BATCH_READ_PROCESSING;
+	}
+	
+	/**
+	 * @return the number of milliseconds spent on remote processing of batch read operations
+	 */
+	public long getRemoteBatchReadProcessingTimeMillis() {
+		return remoteBatchReadProcessingTimer.getTotalTimeMillis();
+	}
+	
+	/**
+	 * Records that a batch read operation found the given number of documents.
+	 * 
+	 * @param numDocuments the number of documents found
+	 */
+	public void batchReadDocuments(int numDocuments) {
+		numBatchReadDocuments += numDocuments;
+	}
+	
+	/**
+	 * @return the number of documents found by batch read operations
+	 */
+	public long getNumBatchReadDocuments() {
+		return numBatchReadDocuments;
+	}
+	
+	/**
+	 * Starts the timer for waiting until the next operation is scheduled to start.
+	 */
+	public void startIdle() {
+		if (runningTimer == RunningConnectionTimer.IDLE) {
+			return;
+		}
+		stop();
+		idleTimer.start();
+		runningTimer = RunningConnectionTimer.IDLE;
+	}
+	
+	/**
+	 * @return the number of milliseconds spent waiting until the next operation is scheduled
+	 */
+	public long getIdleTimeMillis() {
+		return idleTimer.getTotalTimeMillis();
+	}
+	
+	/**
+	 * Starts the timer for remote processing of the given type of operation.
+	 * 
+	 * @param type the type of operation
+	 */
+	public void startRemoteProcessing(CrudOperations.Type type) {
+		switch (type) {
+		case CREATE:
+			startRemoteCreateProcessing();
+			break;
+		case READ:
+			startRemoteReadProcessing();
+			break;
+		case UPDATE:
+			startRemoteUpdateProcessing();
+			break;
+		case DELETE:
+			startRemoteDeleteProcessing();
+			break;
+		case BATCH_READ:
+			startRemoteBatchReadProcessing();
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * Records the time between sending an operation and receiving its response. Unlike
+	 * the remote processing times, these times overlap if operations are pipelined.
+	 * 
+	 * @param type the type of operation
+	 * @param elapsedTime the number of nanoseconds elapsed
+	 */
+	public void recordLatency(CrudOperations.Type type, long elapsedTime) {
+		latencyHistograms[type.ordinal()].record(elapsedTime);
+	}
+	
+	/**
+	 * @param type the type of operation
+	 * @return the histogram of times between sending operations of the given type
+	 *         and receiving their responses
+	 */
+	public LatencyHistogram getLatencyHistogram(CrudOperations.Type type) {
+		return latencyHistograms[type.ordinal()];
+	}
+	
+	@Override
+	public void startReconnect() {
+		if (runningTimer == RunningConnectionTimer.RECONNECT) {
+			return;
+		}
+		stop();
+		reconnectTimer.start();
+		runningTimer = RunningConnectionTimer.RECONNECT;
+	}
+	
+	@Override
+	public void addLatencies(LatencyHistogram histogram) {
+		for (LatencyHistogram latencyHistogram : latencyHistograms) {
+			histogram.add(latencyHistogram);
+		}
+	}
+	
+	@Override
+	protected void reset(long resetTime) {
+		super.reset(resetTime);
+		remoteCreateProcessingTimer.reset(resetTime);
+		remoteReadProcessingTimer.reset(resetTime);
+		remoteUpdateProcessingTimer.reset(resetTime);
+		remoteDeleteProcessingTimer.reset(resetTime);
+		remoteBatchReadProcessingTimer.reset(resetTime);
+		idleTimer.reset(resetTime);
+		for (LatencyHistogram latencyHistogram : latencyHistograms) {
+			latencyHistogram.reset();
+		}
+		numBatchReadDocuments = 0;
+	}
+	
 	@Override
 	public long getTotalTimeMillis() {
 		return (localProcessingTimer.getTotalTimeMillis() +
 				sendDataTimer.getTotalTimeMillis() +
+				reconnectTimer.getTotalTimeMillis() +
 				remoteCreateProcessingTimer.getTotalTimeMillis() +
 				remoteReadProcessingTimer.getTotalTimeMillis() +
 				remoteUpdateProcessingTimer.getTotalTimeMillis() +
-				remoteDeleteProcessingTimer.getTotalTimeMillis());
+				remoteDeleteProcessingTimer.getTotalTimeMillis() +
+				remoteBatchReadProcessingTimer.getTotalTimeMillis() +
+				idleTimer.getTotalTimeMillis());
 	}
 }
@@ -1,6 +1,10 @@
 package co.adhoclabs.ironcushion.crud;
 
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -12,19 +16,23 @@ import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
-import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpChunk;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
-import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponse;
-import org.jboss.netty.handler.codec.http.HttpVersion;
 import org.jboss.netty.util.CharsetUtil;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 import co.adhoclabs.ironcushion.AbstractBenchmarkHandler;
 import co.adhoclabs.ironcushion.BenchmarkException;
+import co.adhoclabs.ironcushion.ContentCompressor;
+import co.adhoclabs.ironcushion.HttpRequestTemplate;
+import co.adhoclabs.ironcushion.Reconnector;
+import co.adhoclabs.ironcushion.RevisionRegistry;
 import co.adhoclabs.ironcushion.crud.CrudConnectionStatistics.RunningConnectionTimer;
 
 /**
@@ -36,245 +44,606 @@ import co.adhoclabs.ironcushion.crud.CrudConnectionStatistics.RunningConnectionT
 public class CrudHandler extends AbstractBenchmarkHandler {
 	private final CrudConnectionStatistics connectionStatistics;
 	private final CrudOperations crudOperations;
-	private final String crudPath;
+	private final HttpRequestTemplate putRequestTemplate;
+	private final HttpRequestTemplate postRequestTemplate;
+	private final HttpRequestTemplate getRequestTemplate;
+	private final HttpRequestTemplate deleteRequestTemplate;
+	private final HttpRequestTemplate batchReadRequestTemplate;
+	private final ContentCompressor contentCompressor;
+	private final int pipelineDepth;
+	private final Timer timer;
+	private final long operationInterval;
 	
-	private final SendCreateDataChannelFuture sendCreateDataChannelFuture;
-	private final SendReadDataChannelFuture sendReadDataChannelFuture;
-	private final SendUpdateDataChannelFuture sendUpdateDataChannelFuture;
-	private final SendDeleteDataChannelFuture sendDeleteDataChannelFuture;
+	private final SendDataChannelFuture sendDataChannelFuture;
+	private final ScheduleTimerTask scheduleTimerTask;
+	private final Queue<PendingOperation> pendingOperations;
+	private final CrudResponseParser responseParser;
 	
+	private Channel channel;
 	private JSONObject document;
-	private int crudOperationsCompleted;
+	// A chunked response, such as that of a batch read, whose chunks are combined.
+	private HttpResponse chunkedResponse;
+	private ChannelBuffer chunkedContent;
+	private boolean scheduleStarted;
+	private long scheduleStartTime;
+	private Timeout scheduleTimeout;
+	private int crudOperationsDue;
+	private int crudOperationsStarted;
 	
-	public CrudHandler(CrudConnectionStatistics connectionStatistics,
-			CrudOperations crudOperations, String crudPath, CountDownLatch countDownLatch) {
-		super(countDownLatch);
+	/**
+	 * Creates a handler that performs CRUD operations. If {@code operationInterval} is
+	 * {@code 0}, then each operation is sent once the pipeline has room. Otherwise
+	 * operations are scheduled to start {@code operationInterval} nanoseconds apart
+	 * using the given timer, regardless of how quickly responses are received. If
+	 * {@code contentCompressor} is not {@code null}, then the body of each create and
+	 * update operation is compressed before it is sent.
+	 * 
+	 * @param connectionNum the number of this connection
+	 * @param connectionStatistics the statistics for this connection
+	 * @param crudOperations the CRUD operations to perform
+	 * @param crudPath the path of the database
+	 * @param pipelineDepth the maximum number of operations awaiting responses
+	 * @param timer the timer that schedules operations, or {@code null} if not scheduled
+	 * @param operationInterval the number of nanoseconds between scheduled operations
+	 * @param contentCompressor compresses the body of each operation, or {@code null}
+	 * @param reconnector the reconnector if this connection fails
+	 * @param countDownLatch the latch to count down once all operations are performed
+	 */
+	public CrudHandler(int connectionNum, CrudConnectionStatistics connectionStatistics,
+			CrudOperations crudOperations, String crudPath, int pipelineDepth,
+			Timer timer, long operationInterval, ContentCompressor contentCompressor,
+			Reconnector reconnector, CountDownLatch countDownLatch) {
+		super(connectionNum, reconnector, countDownLatch);
 		
 		this.connectionStatistics = connectionStatistics;
 		this.crudOperations = crudOperations;
-		this.crudPath = crudPath;
+		// Each path is the path of the database followed by the document identifier.
+		String documentPathPrefix = crudPath + "/";
+		ContentCompressor.Encoding encoding = (contentCompressor != null) ? contentCompressor.getEncoding() : null;
+		this.putRequestTemplate = new HttpRequestTemplate(HttpMethod.PUT, documentPathPrefix, true, encoding);
+		// A document whose identifier is assigned by the server is posted to the database.
+		this.postRequestTemplate = new HttpRequestTemplate(HttpMethod.POST, crudPath, true, encoding);
+		this.getRequestTemplate = new HttpRequestTemplate(HttpMethod.GET, documentPathPrefix, false, encoding);
+		this.deleteRequestTemplate = new HttpRequestTemplate(HttpMethod.DELETE, documentPathPrefix, false, encoding);
+		this.batchReadRequestTemplate = new HttpRequestTemplate(HttpMethod.POST,
+				(crudOperations.getBatchReadMethod() == CrudOperations.BatchReadMethod.BULK_GET) ?
+						crudPath + "/_bulk_get" : crudPath + "/_all_docs?include_docs=true",
+				true, encoding);
+		this.contentCompressor = contentCompressor;
+		this.pipelineDepth = pipelineDepth;
+		this.timer = timer;
+		this.operationInterval = operationInterval;
 		
-		this.sendCreateDataChannelFuture = new SendCreateDataChannelFuture();
-		this.sendReadDataChannelFuture = new SendReadDataChannelFuture();
-		this.sendUpdateDataChannelFuture = new SendUpdateDataChannelFuture();
-		this.sendDeleteDataChannelFuture = new SendDeleteDataChannelFuture();
+		this.sendDataChannelFuture = new SendDataChannelFuture();
+		this.scheduleTimerTask = new ScheduleTimerTask();
+		this.pendingOperations = new LinkedList<PendingOperation>();
+		this.responseParser = new CrudResponseParser();
 		
-		this.crudOperationsCompleted = 0;
+		this.scheduleStarted = false;
+		this.crudOperationsDue = 0;
+		this.crudOperationsStarted = 0;
 	}
 	
 	/**
-	 * The The {@link ChannelFutureListener} called after a create operation is sent.
+	 * A CRUD operation that was sent but whose response has not been received.
+	 * Responses arrive in the order that operations were sent.
 	 */
-	private final class SendCreateDataChannelFuture implements ChannelFutureListener {
-		@Override
-		public void operationComplete(ChannelFuture channelFuture) throws Exception {
-			// Guard against starting RECEIVE_DATA before this listener runs. 
-			if (connectionStatistics.getRunningConnectionTimer() == RunningConnectionTimer.SEND_DATA) {
-				connectionStatistics.startRemoteCreateProcessing();
-			}
+	private static final class PendingOperation {
+		private final int operationIndex;
+		private final CrudOperations.Type type;
+		private final JSONObject document;
+		// The key of the chosen document, or -1 if not chosen.
+		private final int key;
+		private final long startTime;
+		
+		private PendingOperation(int operationIndex, CrudOperations.Type type,
+				JSONObject document, int key, long startTime) {
+			this.operationIndex = operationIndex;
+			this.type = type;
+			this.document = document;
+			this.key = key;
+			this.startTime = startTime;
 		}
 	}
 	
 	/**
-	 * The The {@link ChannelFutureListener} called after a read operation is sent.
+	 * The {@link ChannelFutureListener} called after an operation is sent.
 	 */
-	private final class SendReadDataChannelFuture implements ChannelFutureListener {
+	private final class SendDataChannelFuture implements ChannelFutureListener {
 		@Override
 		public void operationComplete(ChannelFuture channelFuture) throws Exception {
-			// Guard against starting RECEIVE_DATA before this listener runs. 
-			if (connectionStatistics.getRunningConnectionTimer() == RunningConnectionTimer.SEND_DATA) {
-				connectionStatistics.startRemoteReadProcessing();
+			synchronized (CrudHandler.this) {
+				// Guard against starting REMOTE_*_PROCESSING after a response is received.
+				if (connectionStatistics.getRunningConnectionTimer() == RunningConnectionTimer.SEND_DATA) {
+					startWaiting();
+				}
 			}
 		}
 	}
 	
 	/**
-	 * The The {@link ChannelFutureListener} called after an update operation is sent.
+	 * The {@link TimerTask} that sends operations whose scheduled start time has passed.
 	 */
-	private final class SendUpdateDataChannelFuture implements ChannelFutureListener {
+	private final class ScheduleTimerTask implements TimerTask {
 		@Override
-		public void operationComplete(ChannelFuture channelFuture) throws Exception {
-			// Guard against starting RECEIVE_DATA before this listener runs. 
-			if (connectionStatistics.getRunningConnectionTimer() == RunningConnectionTimer.SEND_DATA) {
-				connectionStatistics.startRemoteUpdateProcessing();
+		public void run(Timeout timeout) throws Exception {
+			synchronized (CrudHandler.this) {
+				performDueOperations();
 			}
 		}
 	}
 	
-	/**
-	 * The The {@link ChannelFutureListener} called after a delete operation is sent.
-	 */
-	private final class SendDeleteDataChannelFuture implements ChannelFutureListener {
-		@Override
-		public void operationComplete(ChannelFuture channelFuture) throws Exception {
-			// Guard against starting RECEIVE_DATA before this listener runs. 
-			if (connectionStatistics.getRunningConnectionTimer() == RunningConnectionTimer.SEND_DATA) {
-				connectionStatistics.startRemoteDeleteProcessing();
-			}
+	private void startWaiting() {
+		PendingOperation oldestOperation = pendingOperations.peek();
+		if (oldestOperation != null) {
+			// The response to the oldest operation is received first.
+			connectionStatistics.startRemoteProcessing(oldestOperation.type);
+		} else {
+			// Wait until the next operation is scheduled to start.
+			connectionStatistics.startIdle();
 		}
 	}
 	
-	private String getDocumentPath(String documentId) {
-		// TODO: Optimize this.
-		StringBuilder sb = new StringBuilder();
-		sb.append(crudPath);
-		sb.append('/').append(documentId);
-		return sb.toString();
+	private long getScheduledStartTime(int operationIndex) {
+		return scheduleStartTime + (operationIndex * operationInterval);
+	}
+	
+	private void cancelSchedule() {
+		if (scheduleTimeout != null) {
+			scheduleTimeout.cancel();
+			scheduleTimeout = null;
+		}
 	}
 	
-	private String getDocumentDeletePath(String documentId, String revision) {
-		// TODO: Optimize this.
-		StringBuilder sb = new StringBuilder();
-		sb.append(crudPath);
-		sb.append('/').append(documentId);
-		sb.append("?rev=").append(revision);
-		return sb.toString();
+	private void performDueOperations() {
+		if (!channel.isConnected() || isFinished()) {
+			return;
+		}
+		
+		// Allow sending all operations whose scheduled start time has passed.
+		long elapsedTime = System.nanoTime() - scheduleStartTime;
+		crudOperationsDue = (int) Math.min(crudOperations.size(), 1 + (elapsedTime / operationInterval));
+		performNextOperationsOrFinish(channel);
+		
+		// The number of operations is unbounded in duration mode, so also stop at the deadline.
+		if (!isFinished() && hasRemainingOperations() && (crudOperationsDue < crudOperations.size())) {
+			// Wake up when the next operation is scheduled to start.
+			long delay = getScheduledStartTime(crudOperationsDue) - System.nanoTime();
+			scheduleTimeout = timer.newTimeout(scheduleTimerTask, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+		}
 	}
 	
-	private void performOperation(Channel channel,
-			String documentPath, HttpMethod method, ChannelBuffer contentBuffer,
-			ChannelFutureListener channelFutureListener) {
-		HttpRequest request = new DefaultHttpRequest(
-				HttpVersion.HTTP_1_1, method, documentPath);
-		// Assign the headers.
-		request.setHeader(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
-		// request.setHeader(HttpHeaders.Names.ACCEPT_ENCODING, HttpHeaders.Values.GZIP);
-		request.setHeader(HttpHeaders.Names.CONTENT_TYPE, "application/json");
+	private void performOperation(Channel channel, CrudOperations.Type type, JSONObject document,
+			int key, HttpRequestTemplate requestTemplate, String documentId, String revision,
+			ChannelBuffer contentBuffer) {
 		if (contentBuffer != null) {
-			request.setHeader(HttpHeaders.Names.CONTENT_LENGTH, contentBuffer.readableBytes());
-			// Assign the body if present.
-			request.setContent(contentBuffer);
 			connectionStatistics.sentJsonBytes(contentBuffer.readableBytes());
+			if (contentCompressor != null) {
+				contentBuffer = contentCompressor.compress(contentBuffer, connectionStatistics);
+			}
 		}
+		ChannelBuffer requestBuffer = requestTemplate.encode(documentId, revision, contentBuffer);
+		// If scheduled, measure latency from when the operation should have started.
+		long startTime = (operationInterval > 0) ?
+				getScheduledStartTime(crudOperationsStarted) : System.nanoTime();
+		pendingOperations.add(new PendingOperation(crudOperationsStarted, type, document, key, startTime));
 		
 		connectionStatistics.startSendData();
-		ChannelFuture channelFuture = channel.write(request);
-		channelFuture.addListener(channelFutureListener);
+		connectionStatistics.getDatabaseNode().sentRequest();
+		ChannelFuture channelFuture = channel.write(requestBuffer);
+		channelFuture.addListener(sendDataChannelFuture);
 	}
 	
 	@SuppressWarnings("unchecked")
 	private void performCreateOperation(Channel channel) {
-		document = crudOperations.getNewDocumentWithoutId();
-		String documentId = String.valueOf(crudOperations.getNextCreateId());
-		document.put("_id", documentId);
-		String documentPath = getDocumentPath(documentId);
+		JSONObject newDocument = crudOperations.getNewDocumentWithoutId();
+		String documentId = crudOperations.getNextCreateId();
+		if (documentId != null) {
+			newDocument.put("_id", documentId);
+		}
 		ChannelBuffer insertBuffer = ChannelBuffers.copiedBuffer(
-				document.toString(), CharsetUtil.UTF_8);
-		performOperation(channel, documentPath, HttpMethod.PUT, insertBuffer, sendCreateDataChannelFuture);
+				newDocument.toString(), CharsetUtil.UTF_8);
+		performOperation(channel, CrudOperations.Type.CREATE, newDocument, -1,
+				(documentId != null) ? putRequestTemplate : postRequestTemplate,
+				documentId, null, insertBuffer);
 	}
 	
-	private void performReadOperation(Channel channel) {
-		document = null;
-		String documentId = String.valueOf(crudOperations.getNextReadId());
-		String documentPath = getDocumentPath(documentId);
-		performOperation(channel, documentPath, HttpMethod.GET, null, sendReadDataChannelFuture);
+	private void performReadOperation(Channel channel, String documentId, int key) {
+		performOperation(channel, CrudOperations.Type.READ, null, key,
+				getRequestTemplate, documentId, null, null);
 	}
 	
 	private void performUpdateOperation(Channel channel) {
 		String documentId = (String) document.get("_id");
-		String documentPath = getDocumentPath(documentId);
 		crudOperations.updateDocument(document);
 		ChannelBuffer updateBuffer = ChannelBuffers.copiedBuffer(
 				document.toString(), CharsetUtil.UTF_8);
-		performOperation(channel, documentPath, HttpMethod.PUT, updateBuffer, sendUpdateDataChannelFuture);
+		performOperation(channel, CrudOperations.Type.UPDATE, document, -1,
+				putRequestTemplate, documentId, null, updateBuffer);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void performSharedUpdateOperation(Channel channel, String documentId, int key,
+			String revision) {
+		// Replace the document without reading it first.
+		JSONObject newDocument = crudOperations.getNewDocumentWithoutId();
+		newDocument.put("_id", documentId);
+		if (revision != null) {
+			newDocument.put("_rev", revision);
+		}
+		ChannelBuffer updateBuffer = ChannelBuffers.copiedBuffer(
+				newDocument.toString(), CharsetUtil.UTF_8);
+		performOperation(channel, CrudOperations.Type.UPDATE, newDocument, key,
+				putRequestTemplate, documentId, null, updateBuffer);
 	}
 	
 	private void performDeleteOperation(Channel channel) {
 		String documentId = (String) document.get("_id");
 		String revision = (String) document.get("_rev");
-		String documentPath = getDocumentDeletePath(documentId, revision);
-		performOperation(channel, documentPath, HttpMethod.DELETE, null, sendDeleteDataChannelFuture);
+		performOperation(channel, CrudOperations.Type.DELETE, document, -1,
+				deleteRequestTemplate, documentId, revision, null);
+	}
+	
+	private void performSharedDeleteOperation(Channel channel, String documentId, int key,
+			String revision) {
+		performOperation(channel, CrudOperations.Type.DELETE, null, key,
+				deleteRequestTemplate, documentId, revision, null);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void performBatchReadOperation(Channel channel, List<String> documentIds) {
+		JSONObject request = new JSONObject();
+		if (crudOperations.getBatchReadMethod() == CrudOperations.BatchReadMethod.BULK_GET) {
+			// Request the latest revision of each document.
+			JSONArray docs = new JSONArray();
+			for (String documentId : documentIds) {
+				JSONObject doc = new JSONObject();
+				doc.put("id", documentId);
+				docs.add(doc);
+			}
+			request.put("docs", docs);
+		} else {
+			JSONArray keys = new JSONArray();
+			keys.addAll(documentIds);
+			request.put("keys", keys);
+		}
+		ChannelBuffer batchReadBuffer = ChannelBuffers.copiedBuffer(
+				request.toString(), CharsetUtil.UTF_8);
+		performOperation(channel, CrudOperations.Type.BATCH_READ, null, -1,
+				batchReadRequestTemplate, null, null, batchReadBuffer);
+	}
+	
+	private void skipNextOperation() {
+		// An earlier operation failed, so the document to modify or read is unknown.
+		connectionStatistics.failedOperations(1);
+		crudOperations.startedOperation(crudOperationsStarted);
+		crudOperations.completedOperation(crudOperationsStarted, false);
+		crudOperationsStarted++;
 	}
 	
 	private void performNextOperation(Channel channel) {
 		connectionStatistics.startLocalProcessing();
 
-		switch (crudOperations.getOperation(crudOperationsCompleted)) {
+		CrudOperations.Type type = crudOperations.getOperation(crudOperationsStarted);
+		boolean chosen = crudOperations.isChosenOperation(crudOperationsStarted);
+		if (!chosen && (document == null) &&
+				((type == CrudOperations.Type.UPDATE) || (type == CrudOperations.Type.DELETE))) {
+			skipNextOperation();
+			return;
+		}
+		if (type == CrudOperations.Type.BATCH_READ) {
+			List<String> documentIds = crudOperations.getNextBatchReadIds();
+			if (documentIds.isEmpty()) {
+				// The server did not assign an identifier to any document.
+				skipNextOperation();
+			} else {
+				performBatchReadOperation(channel, documentIds);
+				crudOperations.startedOperation(crudOperationsStarted);
+				crudOperationsStarted++;
+			}
+			return;
+		}
+		int key = -1;
+		String documentId = null;
+		String revision = null;
+		if (chosen) {
+			key = crudOperations.chooseKey();
+			documentId = crudOperations.getChosenDocumentId(key);
+			RevisionRegistry revisionRegistry = crudOperations.getRevisionRegistry();
+			if ((revisionRegistry != null) && (type != CrudOperations.Type.READ)) {
+				// Modify the latest revision, which may have been recorded by any connection.
+				revision = revisionRegistry.getRevision(key);
+			}
+		} else if (type == CrudOperations.Type.READ) {
+			documentId = crudOperations.getNextReadId();
+		}
+		if ((documentId == null) && (chosen || (type == CrudOperations.Type.READ))) {
+			// Do not modify a document that was read earlier instead.
+			document = null;
+			skipNextOperation();
+			return;
+		}
+		if (chosen && (type == CrudOperations.Type.DELETE) && (revision == null)) {
+			// The document was already deleted, or its revision is unknown.
+			skipNextOperation();
+			return;
+		}
+		switch (type) {
 		case CREATE:
 			performCreateOperation(channel);
 			break;
 		case READ:
-			performReadOperation(channel);
+			performReadOperation(channel, documentId, key);
 			break;
 		case UPDATE:
-			performUpdateOperation(channel);
+			if (chosen) {
+				// If the document was deleted, then it is created again without a revision.
+				performSharedUpdateOperation(channel, documentId, key, revision);
+			} else {
+				performUpdateOperation(channel);
+			}
 			break;
 		case DELETE:
-			performDeleteOperation(channel);
+			if (chosen) {
+				performSharedDeleteOperation(channel, documentId, key, revision);
+			} else {
+				performDeleteOperation(channel);
+			}
 			break;
 		default:
 			break;
 		}
+		crudOperations.startedOperation(crudOperationsStarted);
+		crudOperationsStarted++;
+	}
+	
+	private boolean canPerformNextOperation() {
+		if (!hasRemainingOperations() || (pendingOperations.size() == pipelineDepth)) {
+			return false;
+		}
+		if ((operationInterval > 0) && (crudOperationsStarted == crudOperationsDue)) {
+			// The next operation is not yet scheduled to start.
+			return false;
+		}
+		switch (crudOperations.getOperation(crudOperationsStarted)) {
+		case UPDATE:
+		case DELETE:
+			// Wait for all responses so that the document to modify is known, unless it is chosen.
+			return pendingOperations.isEmpty() || crudOperations.isChosenOperation(crudOperationsStarted);
+		default:
+			return true;
+		}
 	}
 	
-	private void performNextOperationOrClose(Channel channel) {
-		if (crudOperationsCompleted < crudOperations.size()) {
-			// Perform the next CRUD operation.
+	private void performNextOperationsOrFinish(Channel channel) {
+		// Fill the pipeline with the next CRUD operations.
+		while (canPerformNextOperation()) {
 			performNextOperation(channel);
-		} else {
+		}
+		if (pendingOperations.isEmpty() && !hasRemainingOperations()) {
 			// There are no more CRUD operations to perform.
-			close(channel);
+			finish();
+			return;
+		}
+		if (connectionStatistics.getRunningConnectionTimer() == RunningConnectionTimer.LOCAL_PROCESSING) {
+			// No operation was sent, so wait for the next response or scheduled operation.
+			startWaiting();
 		}
 	}
 	
 	@SuppressWarnings("unchecked")
-	private void receivedCreateResponse(JSONObject json) {
-		document.put("_rev", json.get("rev"));
+	private void receivedCreateResponse(JSONObject createdDocument, ChannelBuffer content)
+			throws BenchmarkException {
+		responseParser.parseIdAndRevision(content, "id", "rev");
+		if (!createdDocument.containsKey("_id")) {
+			// The identifier was assigned by the server.
+			createdDocument.put("_id", responseParser.getId());
+			crudOperations.assignedDocumentId(responseParser.getId());
+		}
+		createdDocument.put("_rev", responseParser.getRevision());
+		document = createdDocument;
 	}
 	
-	private void receivedReadResponse(JSONObject json) {
-		document = json;
+	@SuppressWarnings("unchecked")
+	private void receivedReadResponse(int operationIndex, int key, ChannelBuffer content)
+			throws BenchmarkException {
+		RevisionRegistry revisionRegistry = crudOperations.getRevisionRegistry();
+		if (revisionRegistry != null) {
+			// No operation modifies the document read, but any can modify its latest revision.
+			responseParser.parseIdAndRevision(content, "_id", "_rev");
+			revisionRegistry.putRevision(key, responseParser.getRevision());
+			document = null;
+			return;
+		}
+		// Only the next operation can modify the document, as any other replaces it first.
+		CrudOperations.Type nextType = crudOperations.getNextUnbatchedOperation(operationIndex);
+		if (nextType == CrudOperations.Type.UPDATE) {
+			document = responseParser.parseDocument(content);
+		} else if (nextType == CrudOperations.Type.DELETE) {
+			// Deleting the document only requires its identifier and revision.
+			responseParser.parseIdAndRevision(content, "_id", "_rev");
+			document = new JSONObject();
+			document.put("_id", responseParser.getId());
+			document.put("_rev", responseParser.getRevision());
+		} else {
+			document = null;
+		}
 	}
 	
 	@SuppressWarnings("unchecked")
-	private void receivedUpdateRepsonse(JSONObject json) {
-		document.put("_rev", json.get("rev"));
+	private void receivedUpdateRepsonse(JSONObject updatedDocument, int key, ChannelBuffer content)
+			throws BenchmarkException {
+		responseParser.parseIdAndRevision(content, "id", "rev");
+		updatedDocument.put("_rev", responseParser.getRevision());
+		if (key >= 0) {
+			crudOperations.getRevisionRegistry().putRevision(key, responseParser.getRevision());
+		}
 	}
 	
-	private JSONObject getJsonReply(HttpResponse response) throws BenchmarkException {
-		if (response.isChunked()) {
-			throw new BenchmarkException("CRUD response is chunked");
+	private void receivedDeleteResponse(int key, ChannelBuffer content) throws BenchmarkException {
+		if (key >= 0) {
+			// Record the deletion so that no connection deletes the document again.
+			responseParser.parseIdAndRevision(content, "id", "rev");
+			crudOperations.getRevisionRegistry().deletedRevision(key, responseParser.getRevision());
 		}
+	}
+	
+	private void receivedBatchReadResponse(ChannelBuffer content) throws BenchmarkException {
+		int numDocuments;
+		if (crudOperations.getBatchReadMethod() == CrudOperations.BatchReadMethod.BULK_GET) {
+			// Each document is in {"results":[{"docs":[{"ok":{...}}]}]}.
+			numDocuments = responseParser.parseNumDocuments(content, "ok", 5);
+		} else {
+			// Each document is in {"rows":[{"doc":{...}}]}, and is null if deleted.
+			numDocuments = responseParser.parseNumDocuments(content, "doc", 3);
+		}
+		connectionStatistics.batchReadDocuments(numDocuments);
+	}
+	
+	private ChannelBuffer getJsonContent(HttpResponse response) {
 		ChannelBuffer content = response.getContent();
 		connectionStatistics.receivedJsonBytes(content.readableBytes());
-		String json = content.toString(CharsetUtil.UTF_8);
-		try {
-			return (JSONObject) new JSONParser().parse(json);
-		} catch (ParseException e) {
-			throw new BenchmarkException(e);
-		}
+		return content;
 	}
 	
-	public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-		// TODO: Method performNextOperation already does this.
+	@Override
+	public synchronized void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+		HttpResponse response;
+		if (chunkedResponse == null) {
+			response = (HttpResponse) e.getMessage();
+			if (response.isChunked()) {
+				// Handle the response once all of its chunks are received.
+				chunkedResponse = response;
+				chunkedContent = ChannelBuffers.dynamicBuffer();
+				return;
+			}
+		} else {
+			HttpChunk chunk = (HttpChunk) e.getMessage();
+			if (!chunk.isLast()) {
+				chunkedContent.writeBytes(chunk.getContent());
+				return;
+			}
+			response = chunkedResponse;
+			// The response is not chunked only if it has no Transfer-Encoding header.
+			response.removeHeader(HttpHeaders.Names.TRANSFER_ENCODING);
+			response.setChunked(false);
+			response.setContent(chunkedContent);
+			chunkedResponse = null;
+			chunkedContent = null;
+		}
+		
+		long receivedTime = System.nanoTime();
+		connectionStatistics.endWarmUpIfElapsed();
 		connectionStatistics.startLocalProcessing();
 		
 		Channel channel = e.getChannel();
-		HttpResponse response = (HttpResponse) e.getMessage();
-		JSONObject json = getJsonReply(response);
-		
-		switch (crudOperations.getOperation(crudOperationsCompleted)) {
-		case CREATE:
-			receivedCreateResponse(json);
-			break;
-		case READ:
-			receivedReadResponse(json);
-			break;
-		case UPDATE:
-			receivedUpdateRepsonse(json);
-			break;
-		default:
-			break;
+		PendingOperation pendingOperation = pendingOperations.remove();
+		connectionStatistics.getDatabaseNode().receivedResponse();
+		receivedResponse();
+		boolean succeeded = (response.getStatus().getCode() / 100) == 2;
+		if (connectionStatistics.isPastDeadline(receivedTime)) {
+			// Exclude an operation that completed after the benchmark step ended.
+			connectionStatistics.receivedJsonBytes(response.getContent().readableBytes());
+			document = null;
+		} else if (!succeeded) {
+			// The operation failed, so any document it would modify is unknown.
+			connectionStatistics.receivedJsonBytes(response.getContent().readableBytes());
+			connectionStatistics.failedOperations(1);
+			document = null;
+		} else {
+			connectionStatistics.recordLatency(pendingOperation.type, receivedTime - pendingOperation.startTime);
+			ChannelBuffer content = getJsonContent(response);
+			
+			switch (pendingOperation.type) {
+			case CREATE:
+				receivedCreateResponse(pendingOperation.document, content);
+				break;
+			case READ:
+				receivedReadResponse(pendingOperation.operationIndex, pendingOperation.key, content);
+				break;
+			case UPDATE:
+				receivedUpdateRepsonse(pendingOperation.document, pendingOperation.key, content);
+				break;
+			case DELETE:
+				receivedDeleteResponse(pendingOperation.key, content);
+				break;
+			case BATCH_READ:
+				receivedBatchReadResponse(content);
+				break;
+			default:
+				break;
+			}
 		}
-		crudOperations.completedOperation(crudOperationsCompleted);
+		crudOperations.completedOperation(pendingOperation.operationIndex, succeeded);
 		
-		crudOperationsCompleted++;
-		performNextOperationOrClose(channel);
+		performNextOperationsOrFinish(channel);
+	}
+	
+	@Override
+	protected CrudConnectionStatistics getConnectionStatistics() {
+		return connectionStatistics;
+	}
+	
+	@Override
+	protected void failSentOperations() {
+		chunkedResponse = null;
+		chunkedContent = null;
+		for (PendingOperation pendingOperation : pendingOperations) {
+			connectionStatistics.getDatabaseNode().receivedResponse();
+			// No document was created, so later READ operations do not read it.
+			crudOperations.completedOperation(pendingOperation.operationIndex, false);
+		}
+		if (!pendingOperations.isEmpty()) {
+			connectionStatistics.failedOperations(pendingOperations.size());
+			pendingOperations.clear();
+			document = null;
+		}
+	}
+	
+	@Override
+	protected boolean hasRemainingOperations() {
+		return (crudOperationsStarted < crudOperations.size()) &&
+				!connectionStatistics.isPastDeadline(System.nanoTime());
+	}
+	
+	@Override
+	protected void failRemainingOperations() {
+		if (!connectionStatistics.hasDeadline()) {
+			connectionStatistics.failedOperations(crudOperations.size() - crudOperationsStarted);
+		}
+		crudOperationsStarted = crudOperations.size();
+	}
+	
+	@Override
+	protected void finish() {
+		// The channel remains open for the next step, so stop sending scheduled operations.
+		cancelSchedule();
+		super.finish();
+	}
+	
+	@Override
+	public synchronized void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+		// Any reconnected channel continues the schedule.
+		cancelSchedule();
+		super.channelClosed(ctx, e);
 	}
 	
 	@Override
-	public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) {
-		// Immediately perform the first CRUD operation upon connecting.
-		performNextOperation(e.getChannel());
+	public synchronized void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) {
+		channel = e.getChannel();
+		if (operationInterval > 0) {
+			if (!scheduleStarted) {
+				// Schedule all operations relative to when the connection was first established.
+				scheduleStartTime = System.nanoTime();
+				scheduleStarted = true;
+			} else {
+				// Continue the schedule of the failed channel on this channel.
+				cancelSchedule();
+			}
+			performDueOperations();
+		} else {
+			// Immediately perform the next CRUD operations upon connecting.
+			performNextOperationsOrFinish(channel);
+		}
 	}
 }
@@ -1,17 +1,38 @@
 package co.adhoclabs.ironcushion.crud;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
 
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.json.simple.JSONObject;
 
+import co.adhoclabs.ironcushion.DocumentIdGenerator;
 import co.adhoclabs.ironcushion.DocumentSchema;
 import co.adhoclabs.ironcushion.ParsedArguments;
+import co.adhoclabs.ironcushion.RevisionRegistry;
 import co.adhoclabs.ironcushion.ValueGenerator;
 
 /**
  * Specifies the CRUD operations to be performed by one connection, and maintains the document
- * identifiers to use for each operation.
+ * identifiers to use for each operation. The identifier of each created document is read only
+ * once its CREATE operation succeeds, and if identifiers are assigned by the server, then it is
+ * recorded once its response is received.
+ * 
+ * If a {@link KeyChooser} is given, then each READ operation that is not followed by a DELETE
+ * operation reads a document chosen from those bulk inserted by all connections. A document that
+ * is deleted is still read sequentially from those created or bulk inserted by this connection,
+ * so that no document is deleted twice.
+ * 
+ * If a {@link RevisionRegistry} is also given, then every READ, UPDATE, and DELETE operation
+ * chooses its document, and an UPDATE or DELETE operation uses the latest revision recorded by
+ * any connection instead of the revision returned by the operation before it.
+ * 
+ * A BATCH_READ operation reads several documents with one request, and neither reads nor modifies
+ * the document of the operations around it. Its documents are chosen by the {@link KeyChooser} if
+ * given, and otherwise are read in order from those bulk inserted by this connection.
  * 
  * @author Michael Parker (michael.g.parker@gmail.com)
  */
@@ -23,7 +44,16 @@ public class CrudOperations {
 		CREATE,
 		READ,
 		UPDATE,
-		DELETE
+		DELETE,
+		BATCH_READ
+	}
+	
+	/**
+	 * An enumeration over all requests that read several documents at once.
+	 */
+	public enum BatchReadMethod {
+		ALL_DOCS,
+		BULK_GET,
 	}
 	
 	/**
@@ -34,14 +64,17 @@ public class CrudOperations {
 		public final int numReadOperations;
 		public final int numUpdateOperations;
 		public final int numDeleteOperations;
+		public final int numBatchReadOperations;
 		public final int numOperations;
 		
 		private CrudOperationCounts(int numCreateOperations, int numReadOperations,
-				int numUpdateOperations, int numDeleteOperations, int numOperations) {
+				int numUpdateOperations, int numDeleteOperations, int numBatchReadOperations,
+				int numOperations) {
 			this.numCreateOperations = numCreateOperations;
 			this.numReadOperations = numReadOperations;
 			this.numUpdateOperations = numUpdateOperations;
 			this.numDeleteOperations = numDeleteOperations;
+			this.numBatchReadOperations = numBatchReadOperations;
 			this.numOperations = numOperations;
 		}
 	}
@@ -56,43 +89,99 @@ public class CrudOperations {
 		double totalWeight = parsedArguments.createWeight +
 				parsedArguments.readWeight +
 				parsedArguments.updateWeight +
-				parsedArguments.deleteWeight;
+				parsedArguments.deleteWeight +
+				parsedArguments.batchReadWeight;
 		double createPercentage = parsedArguments.createWeight / totalWeight;
 		double readPercentage = parsedArguments.readWeight / totalWeight;
 		double deletePercentage = parsedArguments.deleteWeight / totalWeight;
+		double batchReadPercentage = parsedArguments.batchReadWeight / totalWeight;
 		// Equal CREATE, READ, and DELETE weights translate to equal numbers of operations. 
 		int numCreateOperations = (int) (createPercentage * parsedArguments.numCrudOperations);
 		int numReadOperations = (int) (readPercentage * parsedArguments.numCrudOperations);
 		int numDeleteOperations = (int) (deletePercentage * parsedArguments.numCrudOperations);
+		int numBatchReadOperations = (int) (batchReadPercentage * parsedArguments.numCrudOperations);
 		// The number of UPDATE operations may be subject to rounding.
 		int numUpdateOperations = parsedArguments.numCrudOperations -
-				(numCreateOperations + numReadOperations + numDeleteOperations);
+				(numCreateOperations + numReadOperations + numDeleteOperations + numBatchReadOperations);
 		
 		return new CrudOperationCounts(
 				numCreateOperations, numReadOperations, numUpdateOperations, numDeleteOperations,
-				parsedArguments.numCrudOperations);
+				numBatchReadOperations, parsedArguments.numCrudOperations);
 	}
 	
 	private final Type[] operations;
+	private final boolean unbounded;
+	// Whether the READ operation at each index is for a document that is then deleted.
+	private final boolean[] readsDeletedDocument;
 	
 	private final DocumentSchema documentSchema;
+	private final DocumentIdGenerator documentIdGenerator;
+	// The writer of identifiers, or null if they are assigned by the server.
+	private final DocumentIdGenerator.Writer idWriter;
+	// Identifiers are written here before they are returned, so that no buffer is allocated.
+	private final ChannelBuffer idBuffer;
 	private final ValueGenerator valueGenerator;
+	private final int connectionNum;
+	private final int numConnections;
+	private final KeyChooser keyChooser;
+	private final RevisionRegistry revisionRegistry;
+	private final BatchReadMethod batchReadMethod;
+	private final int numDocumentsPerBatchRead;
+	
+	private final int firstBulkInsertedDocumentId;
+	private final int numBulkInsertedDocuments;
+	private final int numDocumentsPerBulkInsert;
+	private final int bulkInsertIdStride;
+	private final int firstCreateDocumentId;
+	private final int createIdStride;
 	
-	private int nextCreateDocumentId;
-	private int nextReadBulkInsertedDocumentId;
-	private int nextReadCreatedDocumentId;
+	// Documents are numbered in the order this connection creates or reads them.
+	private int nextCreateDocumentNum;
+	private int nextCompletedCreateDocumentNum;
+	private int nextReadBulkInsertedDocumentNum;
+	private int nextBatchReadDocumentNum;
+	// The identifiers of successfully created documents that are not yet read or deleted.
+	private final Queue<String> readableCreatedDocumentIds;
+	private String assignedDocumentId;
 	
-	private CrudOperations(Type[] operations,
-			DocumentSchema documentSchema, ValueGenerator valueGenerator,
-			int firstBulkInsertedDocumentId, int firstCreateDocumentId) {
+	private CrudOperations(Type[] operations, boolean unbounded,
+			DocumentSchema documentSchema, DocumentIdGenerator documentIdGenerator,
+			ValueGenerator valueGenerator, int connectionNum, int numConnections,
+			KeyChooser keyChooser, RevisionRegistry revisionRegistry,
+			BatchReadMethod batchReadMethod, int numDocumentsPerBatchRead,
+			int firstBulkInsertedDocumentId, int numBulkInsertedDocuments,
+			int numDocumentsPerBulkInsert, int bulkInsertIdStride,
+			int firstCreateDocumentId, int createIdStride) {
 		this.operations = operations;
+		this.unbounded = unbounded;
+		this.readsDeletedDocument = getReadsDeletedDocument(operations);
 		
 		this.documentSchema = documentSchema;
+		this.documentIdGenerator = documentIdGenerator;
+		this.idWriter = documentIdGenerator.isAssignedByServer() ?
+				null : (DocumentIdGenerator.Writer) documentIdGenerator;
+		this.idBuffer = DocumentIdGenerator.newIdBuffer();
 		this.valueGenerator = valueGenerator;
+		this.connectionNum = connectionNum;
+		this.numConnections = numConnections;
+		this.keyChooser = keyChooser;
+		this.revisionRegistry = revisionRegistry;
+		this.batchReadMethod = batchReadMethod;
+		this.numDocumentsPerBatchRead = numDocumentsPerBatchRead;
+		
+		this.firstBulkInsertedDocumentId = firstBulkInsertedDocumentId;
+		this.numBulkInsertedDocuments = numBulkInsertedDocuments;
+		this.numDocumentsPerBulkInsert = numDocumentsPerBulkInsert;
+		this.bulkInsertIdStride = bulkInsertIdStride;
+		this.firstCreateDocumentId = firstCreateDocumentId;
+		this.createIdStride = createIdStride;
 		
-		this.nextCreateDocumentId = firstCreateDocumentId;
-		this.nextReadBulkInsertedDocumentId = firstBulkInsertedDocumentId;
-		this.nextReadCreatedDocumentId = firstCreateDocumentId;
+		this.nextCreateDocumentNum = 0;
+		this.nextCompletedCreateDocumentNum = 0;
+		this.nextReadBulkInsertedDocumentNum = 0;
+		this.nextBatchReadDocumentNum = 0;
+		this.readableCreatedDocumentIds = new LinkedList<String>();
+		this.assignedDocumentId = null;
 	}
 	
 	/**
@@ -102,38 +191,88 @@ public class CrudOperations {
 	 * @return the CRUD operation
 	 */
 	public Type getOperation(int operationIndex) {
-		return operations[operationIndex];
+		// If unbounded, then repeat the operations until the benchmark step ends.
+		return operations[operationIndex % operations.length];
 	}
 	
-	private void completedCreateOperation() {
-		nextCreateDocumentId++;
+	/**
+	 * Returns the first CRUD operation after the given index that is not a BATCH_READ
+	 * operation, which is the only operation that can modify the document that the
+	 * operation at the given index created or read.
+	 * 
+	 * @param operationIndex the index of the operation
+	 * @return the next CRUD operation that is not a BATCH_READ operation, or
+	 *         {@code null} if there is none
+	 */
+	public Type getNextUnbatchedOperation(int operationIndex) {
+		for (int i = operationIndex + 1; (i < size()) && (i <= operationIndex + operations.length); ++i) {
+			Type type = getOperation(i);
+			if (type != Type.BATCH_READ) {
+				return type;
+			}
+		}
+		return null;
+	}
+	
+	private void startedCreateOperation() {
+		nextCreateDocumentNum++;
+	}
+	
+	/**
+	 * Returns whether the operation at the given index chooses a bulk inserted document
+	 * by {@link #chooseKey()}, instead of reading or modifying the document of this connection.
+	 * 
+	 * @param operationIndex the index of the operation
+	 * @return {@code true} if the operation chooses its document
+	 */
+	public boolean isChosenOperation(int operationIndex) {
+		switch (getOperation(operationIndex)) {
+		case READ:
+			// If revisions are shared, then no DELETE operation depends on a READ operation.
+			return (keyChooser != null) &&
+					((revisionRegistry != null) || !readsDeletedDocument[operationIndex % operations.length]);
+		case UPDATE:
+		case DELETE:
+			return (revisionRegistry != null);
+		default:
+			return false;
+		}
 	}
 	
-	private void completedReadOperation() {
-		if (nextReadCreatedDocumentId < nextCreateDocumentId) {
-			nextReadCreatedDocumentId++;
+	private void startedReadOperation() {
+		if (!readableCreatedDocumentIds.isEmpty()) {
+			readableCreatedDocumentIds.remove();
 		} else {
-			nextReadBulkInsertedDocumentId++;
+			nextReadBulkInsertedDocumentNum++;
 		}
 	}
 	
-	private void completedDeleteOperation() {
-		if (nextReadCreatedDocumentId < nextCreateDocumentId) {
-			// Do not attempt to read a deleted document.
-			nextReadCreatedDocumentId = nextCreateDocumentId;
+	private void startedDeleteOperation() {
+		if (revisionRegistry != null) {
+			// The deleted document was chosen, and so it was not created by this connection.
+			return;
 		}
+		// Do not attempt to read a deleted document.
+		readableCreatedDocumentIds.clear();
 	}
 	
-	public void completedOperation(int operationIndex) {
-		switch (operations[operationIndex]) {
+	/**
+	 * Advances the document identifiers after the operation at the given index is sent.
+	 * 
+	 * @param operationIndex the index of the operation sent
+	 */
+	public void startedOperation(int operationIndex) {
+		switch (getOperation(operationIndex)) {
 		case CREATE:
-			completedCreateOperation();
+			startedCreateOperation();
 			break;
 		case READ:
-			completedReadOperation();
+			if (!isChosenOperation(operationIndex)) {
+				startedReadOperation();
+			}
 			break;
 		case DELETE:
-			completedDeleteOperation();
+			startedDeleteOperation();
 			break;
 		default:
 			break;
@@ -141,9 +280,50 @@ public class CrudOperations {
 	}
 	
 	/**
-	 * @return the number of operations to perform
+	 * Records that the response for the operation at the given index was received,
+	 * or that the operation failed without a response.
+	 * 
+	 * @param operationIndex the index of the operation completed
+	 * @param succeeded {@code true} if the response had a 2xx status
+	 */
+	public void completedOperation(int operationIndex, boolean succeeded) {
+		if (getOperation(operationIndex) != Type.CREATE) {
+			return;
+		}
+		// Documents are created in the order their identifiers were assigned.
+		int createdDocumentNum = nextCompletedCreateDocumentNum++;
+		String documentId = null;
+		if (idWriter == null) {
+			// The identifier is null if the response was not parsed.
+			documentId = assignedDocumentId;
+			assignedDocumentId = null;
+		} else {
+			documentId = idWriter.getId(getCreatedDocumentId(createdDocumentNum), idBuffer);
+		}
+		if (succeeded && (documentId != null)) {
+			// Only read documents that were created.
+			readableCreatedDocumentIds.add(documentId);
+		}
+	}
+	
+	/**
+	 * Records the identifier that the server assigned to the document created by the
+	 * next operation to complete.
+	 * 
+	 * @param documentId the identifier of the created document
+	 */
+	public void assignedDocumentId(String documentId) {
+		assignedDocumentId = documentId;
+	}
+	
+	/**
+	 * @return the number of operations to perform, or {@link Integer#MAX_VALUE} if
+	 *         operations are performed until the benchmark step ends
 	 */
 	public int size() {
+		if (unbounded && (operations.length > 0)) {
+			return Integer.MAX_VALUE;
+		}
 		return operations.length;
 	}
 	
@@ -164,23 +344,132 @@ public class CrudOperations {
 	}
 	
 	/**
-	 * @return the next identifier for a CREATE operation
+	 * @return the next identifier for a CREATE operation, or {@code null} if
+	 *         identifiers are assigned by the server
+	 */
+	public String getNextCreateId() {
+		if (idWriter == null) {
+			return null;
+		}
+		return idWriter.getId(getCreatedDocumentId(nextCreateDocumentNum), idBuffer);
+	}
+	
+	/**
+	 * @return the registry of revisions shared by all connections, or {@code null} if
+	 *         revisions are not shared
+	 */
+	public RevisionRegistry getRevisionRegistry() {
+		return revisionRegistry;
+	}
+	
+	/**
+	 * @return the key of the bulk inserted document chosen by the next operation for
+	 *         which {@link #isChosenOperation(int)} is {@code true}
+	 */
+	public int chooseKey() {
+		return keyChooser.nextKey(valueGenerator);
+	}
+	
+	/**
+	 * @return how the next BATCH_READ operation fetches its documents
 	 */
-	public int getNextCreateId() {
-		return nextCreateDocumentId;
+	public BatchReadMethod getBatchReadMethod() {
+		return batchReadMethod;
 	}
 	
 	/**
-	 * @return the next identifier for a READ operation
+	 * Returns the identifiers of the documents read by the next BATCH_READ operation.
+	 * Documents are chosen if a {@link KeyChooser} is given, and otherwise are read
+	 * in order from those bulk inserted by this connection, without regard for whether
+	 * a READ or DELETE operation already read or deleted them.
+	 * 
+	 * @return the identifiers, excluding any that the server did not assign
 	 */
-	public int getNextReadId() {
-		if (nextReadCreatedDocumentId < nextCreateDocumentId) {
+	public List<String> getNextBatchReadIds() {
+		List<String> documentIds = new ArrayList<String>(numDocumentsPerBatchRead);
+		for (int i = 0; i < numDocumentsPerBatchRead; ++i) {
+			String documentId;
+			if (keyChooser != null) {
+				documentId = getChosenDocumentId(chooseKey());
+			} else {
+				documentId = documentIdGenerator.getBulkInsertedId(connectionNum, nextBatchReadDocumentNum,
+						getBulkInsertedDocumentId(nextBatchReadDocumentNum), idBuffer);
+				nextBatchReadDocumentNum++;
+			}
+			if (documentId != null) {
+				documentIds.add(documentId);
+			}
+		}
+		return documentIds;
+	}
+	
+	/**
+	 * @return the next identifier for a READ operation that does not choose its
+	 *         document, or {@code null} if the server did not assign an identifier
+	 *         to that document
+	 */
+	public String getNextReadId() {
+		if (!readableCreatedDocumentIds.isEmpty()) {
 			// Read the identifier of a document created individually.
-			return nextReadCreatedDocumentId;
+			return readableCreatedDocumentIds.peek();
 		} else {
 			// Return the identifier of a document created from a bulk insert.
-			return nextReadBulkInsertedDocumentId;
+			return documentIdGenerator.getBulkInsertedId(connectionNum, nextReadBulkInsertedDocumentNum,
+					getBulkInsertedDocumentId(nextReadBulkInsertedDocumentNum), idBuffer);
+		}
+	}
+	
+	/**
+	 * Returns the identifier of the bulk inserted document with the given key.
+	 * 
+	 * @param key the key returned by {@link #chooseKey()}
+	 * @return the identifier of the document, or {@code null} if the server did not
+	 *         assign an identifier to that document
+	 */
+	public String getChosenDocumentId(int key) {
+		// Keys are numbered in the order that all connections bulk inserted documents.
+		int insertDocumentNum = key % numDocumentsPerBulkInsert;
+		int bulkInsertConnectionNum = (key / numDocumentsPerBulkInsert) % numConnections;
+		int insertOperation = key / (numDocumentsPerBulkInsert * numConnections);
+		int bulkInsertedDocumentNum = (insertOperation * numDocumentsPerBulkInsert) + insertDocumentNum;
+		int documentId = key;
+		if (!unbounded) {
+			// Each connection bulk inserted a contiguous range of documents.
+			documentId = (bulkInsertConnectionNum * numBulkInsertedDocuments) + bulkInsertedDocumentNum;
+		}
+		return documentIdGenerator.getBulkInsertedId(bulkInsertConnectionNum, bulkInsertedDocumentNum,
+				documentId, idBuffer);
+	}
+	
+	private int getCreatedDocumentId(int documentNum) {
+		return firstCreateDocumentId + (documentNum * createIdStride);
+	}
+	
+	private int getBulkInsertedDocumentId(int documentNum) {
+		if (numBulkInsertedDocuments == 0) {
+			return firstBulkInsertedDocumentId + documentNum;
+		}
+		// Read the documents bulk inserted by this connection again after reading all of them.
+		documentNum %= numBulkInsertedDocuments;
+		int insertOperation = documentNum / numDocumentsPerBulkInsert;
+		return firstBulkInsertedDocumentId + (insertOperation * bulkInsertIdStride) +
+				(documentNum % numDocumentsPerBulkInsert);
+	}
+	
+	private static boolean[] getReadsDeletedDocument(Type[] operations) {
+		boolean[] readsDeletedDocument = new boolean[operations.length];
+		for (int i = 0; i < operations.length; ++i) {
+			if (operations[i] != Type.READ) {
+				continue;
+			}
+			// Skip any UPDATE and BATCH_READ operations, which may wrap around if operations are repeated.
+			int j = (i + 1) % operations.length;
+			while (((operations[j] == Type.UPDATE) || (operations[j] == Type.BATCH_READ)) && (j != i)) {
+				j = (j + 1) % operations.length;
+			}
+			readsDeletedDocument[i] = (operations[j] == Type.DELETE);
 		}
+		return readsDeletedDocument;
 	}
 	
 	private static void shuffle(ValueGenerator valueGenerator, List<Type> operations) {
@@ -212,6 +501,11 @@ public class CrudOperations {
 				j < createAndReadOperations.length; ++i, ++j) {
 			operations[i] = createAndReadOperations[j];
 		}
+		// Add the BATCH_READ operations, which are never paired with DELETE operations.
+		int firstBatchReadIndex = 1 + operationCounts.numUpdateOperations +
+				(createAndReadOperations.length - operationCounts.numDeleteOperations);
+		Arrays.fill(operations, firstBatchReadIndex,
+				firstBatchReadIndex + operationCounts.numBatchReadOperations, Type.BATCH_READ);
 		// Randomize the order of these operations.
 		shuffle(valueGenerator, Arrays.asList(operations).subList(1, operations.length));
 		
@@ -253,13 +547,21 @@ public class CrudOperations {
 	 * 
 	 * @param connectionNum the number of the connection
 	 * @param documentSchema the document schema
+	 * @param documentIdGenerator the generator of the identifier of each document
+	 * @param valueGenerator the generator for values in documents
 	 * @param parsedArguments the parsed command line arguments
 	 * @param crudOperationCounts the counts for all CRUD operations
+	 * @param keyChooser the chooser of bulk inserted documents to read, or {@code null}
+	 *        if documents are read sequentially
+	 * @param revisionRegistry the registry of revisions shared by all connections, or
+	 *        {@code null} if each connection modifies the documents it created or read
 	 * @return the CRUD operations to be performed
 	 */
 	public static CrudOperations createCrudOperations(int connectionNum,
-			DocumentSchema documentSchema, ValueGenerator valueGenerator,
-			ParsedArguments parsedArguments, CrudOperationCounts crudOperationCounts) {
+			DocumentSchema documentSchema, DocumentIdGenerator documentIdGenerator,
+			ValueGenerator valueGenerator, ParsedArguments parsedArguments,
+			CrudOperationCounts crudOperationCounts, KeyChooser keyChooser,
+			RevisionRegistry revisionRegistry) {
 		Type[] operations = createCrudOperations(crudOperationCounts, valueGenerator);
 		// Compute the identifier of the first document bulk inserted by this connection.
 		int nextReadBulkInsertDocumentId = connectionNum *
@@ -272,7 +574,58 @@ public class CrudOperations {
 		int nextCreateDocumentId = numBulkInsertDocuments +
 				(crudOperationCounts.numCreateOperations * connectionNum);
 		
-		return new CrudOperations(operations, documentSchema, valueGenerator,
-				nextReadBulkInsertDocumentId, nextCreateDocumentId);
+		return new CrudOperations(operations, false, documentSchema, documentIdGenerator,
+				valueGenerator, connectionNum, parsedArguments.numConnections,
+				keyChooser, revisionRegistry,
+				parsedArguments.batchReadMethod, parsedArguments.numDocumentsPerBatchRead,
+				nextReadBulkInsertDocumentId,
+				parsedArguments.numDocumentsPerBulkInsert * parsedArguments.numBulkInsertOperations,
+				parsedArguments.numDocumentsPerBulkInsert,
+				parsedArguments.numDocumentsPerBulkInsert,
+				nextCreateDocumentId, 1);
+	}
+	
+	/**
+	 * Returns the {@link CrudOperations} to be performed by a connection until the
+	 * benchmark step ends. The given operations are repeated, and the identifiers of
+	 * documents created by all connections are interleaved.
+	 * 
+	 * @param connectionNum the number of the connection
+	 * @param documentSchema the document schema
+	 * @param documentIdGenerator the generator of the identifier of each document
+	 * @param valueGenerator the generator for values in documents
+	 * @param parsedArguments the parsed command line arguments
+	 * @param crudOperationCounts the counts for the CRUD operations to repeat
+	 * @param numBulkInsertOperations the number of bulk inserts by this connection
+	 * @param maxNumBulkInsertOperations the maximum number of bulk inserts by any connection
+	 * @param keyChooser the chooser of bulk inserted documents to read, or {@code null}
+	 *        if documents are read sequentially
+	 * @param revisionRegistry the registry of revisions shared by all connections, or
+	 *        {@code null} if each connection modifies the documents it created or read
+	 * @return the CRUD operations to be performed
+	 */
+	public static CrudOperations createUnboundedCrudOperations(int connectionNum,
+			DocumentSchema documentSchema, DocumentIdGenerator documentIdGenerator,
+			ValueGenerator valueGenerator, ParsedArguments parsedArguments,
+			CrudOperationCounts crudOperationCounts,
+			int numBulkInsertOperations, int maxNumBulkInsertOperations,
+			KeyChooser keyChooser, RevisionRegistry revisionRegistry) {
+		Type[] operations = createCrudOperations(crudOperationCounts, valueGenerator);
+		// The bulk inserts of all connections were interleaved.
+		int firstBulkInsertedDocumentId = connectionNum * parsedArguments.numDocumentsPerBulkInsert;
+		int bulkInsertIdStride = parsedArguments.numConnections * parsedArguments.numDocumentsPerBulkInsert;
+		// Create documents after the last document bulk inserted by any connection.
+		int numBulkInsertDocuments = maxNumBulkInsertOperations * bulkInsertIdStride;
+		int firstCreateDocumentId = numBulkInsertDocuments + connectionNum;
+		
+		return new CrudOperations(operations, true, documentSchema, documentIdGenerator,
+				valueGenerator, connectionNum, parsedArguments.numConnections,
+				keyChooser, revisionRegistry,
+				parsedArguments.batchReadMethod, parsedArguments.numDocumentsPerBatchRead,
+				firstBulkInsertedDocumentId,
+				numBulkInsertOperations * parsedArguments.numDocumentsPerBulkInsert,
+				parsedArguments.numDocumentsPerBulkInsert,
+				bulkInsertIdStride,
+				firstCreateDocumentId, parsedArguments.numConnections);
 	}
 }
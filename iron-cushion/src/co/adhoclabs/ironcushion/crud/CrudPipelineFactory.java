@@ -6,9 +6,12 @@ import java.util.List;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.Channels;
-import org.jboss.netty.handler.codec.http.HttpClientCodec;
+import org.jboss.netty.handler.codec.http.HttpResponseDecoder;
+import org.jboss.netty.util.Timer;
 
 import co.adhoclabs.ironcushion.AbstractBenchmarkPipelineFactory;
+import co.adhoclabs.ironcushion.ContentCompressor;
+import co.adhoclabs.ironcushion.StatisticsContentDecompressor;
 
 /**
  * The {@link ChannelPipelineFactory} for connections that perform CRUD operations.
@@ -19,11 +22,15 @@ public class CrudPipelineFactory extends AbstractBenchmarkPipelineFactory {
 	private final List<CrudConnectionStatistics> allConnectionStatistics;
 	private final List<CrudOperations> allCrudOperations;
 	private final String crudPath;
-
-	private int connectionNum;
+	private final int pipelineDepth;
+	private final Timer timer;
+	private final long operationInterval;
+	private final ContentCompressor contentCompressor;
+	private final List<CrudHandler> allHandlers;
 	
 	public CrudPipelineFactory(int numConnections,
-			List<CrudOperations> allCrudOperations, String crudPath) {
+			List<CrudOperations> allCrudOperations, String crudPath, int pipelineDepth,
+			Timer timer, long operationInterval, ContentCompressor contentCompressor) {
 		super(numConnections);
 		
 		this.allConnectionStatistics = new ArrayList<CrudConnectionStatistics>(numConnections);
@@ -32,26 +39,49 @@ public class CrudPipelineFactory extends AbstractBenchmarkPipelineFactory {
 		}
 		this.allCrudOperations = allCrudOperations;
 		this.crudPath = crudPath;
-		
-		connectionNum = 0;
+		this.pipelineDepth = pipelineDepth;
+		this.timer = timer;
+		this.operationInterval = operationInterval;
+		this.contentCompressor = contentCompressor;
+		this.allHandlers = new ArrayList<CrudHandler>(numConnections);
+		for (int i = 0; i < numConnections; ++i) {
+			allHandlers.add(null);
+		}
 	}
 	
 	/**
 	 * @return the {@link CrudConnectionStatistics} used by connections
 	 */
+	@Override
 	public List<CrudConnectionStatistics> getAllConnectionStatistics() {
 		return allConnectionStatistics;
 	}
 	
 	@Override
-	public ChannelPipeline getPipeline() throws Exception {
-		CrudConnectionStatistics connectionStatistics = allConnectionStatistics.get(connectionNum);
-		CrudOperations crudOperations = allCrudOperations.get(connectionNum);
-		connectionNum++;
-		return Channels.pipeline(
-				new HttpClientCodec(),
-				// new HttpContentDecompressor(),
-				new CrudHandler(connectionStatistics, crudOperations, crudPath, countDownLatch)
+	public CrudHandler getHandler(int connectionNum) {
+		CrudHandler handler = allHandlers.get(connectionNum);
+		if (handler == null) {
+			CrudConnectionStatistics connectionStatistics = allConnectionStatistics.get(connectionNum);
+			CrudOperations crudOperations = allCrudOperations.get(connectionNum);
+			handler = new CrudHandler(connectionNum, connectionStatistics, crudOperations, crudPath,
+					pipelineDepth, timer, operationInterval, contentCompressor, reconnector, countDownLatch);
+			allHandlers.set(connectionNum, handler);
+		}
+		return handler;
+	}
+	
+	@Override
+	public ChannelPipeline getPipeline(int connectionNum) throws Exception {
+		ChannelPipeline pipeline = Channels.pipeline(
+				// Requests are encoded by the handler.
+				new HttpResponseDecoder(),
+				getHandler(connectionNum)
 				);
+		if (contentCompressor != null) {
+			// Decompress responses before they reach the handler.
+			pipeline.addBefore(pipeline.getContext(CrudHandler.class).getName(),
+					"decompressor", new StatisticsContentDecompressor());
+		}
+		return pipeline;
 	}
 }
@@ -0,0 +1,207 @@
+package co.adhoclabs.ironcushion.crud;
+
+import java.io.IOException;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import co.adhoclabs.ironcushion.BenchmarkException;
+import co.adhoclabs.ironcushion.ChannelBufferReader;
+
+/**
+ * Parses the responses to CRUD operations of one connection. Most responses are
+ * only needed for the identifier and revision of a document, and so they are
+ * streamed through a {@link ContentHandler} that keeps only those members of the
+ * top level object, and stops once it has both. The bytes of each response are
+ * read directly from its {@link ChannelBuffer}, and the same {@link JSONParser}
+ * is reused for every response. Only a document that will be updated is parsed
+ * into a {@link JSONObject}. The responses to batch reads are streamed only to
+ * count the documents found.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class CrudResponseParser implements ContentHandler {
+	private final JSONParser jsonParser;
+	private final ChannelBufferReader reader;
+
+	private String idName;
+	private String revisionName;
+	private String documentName;
+	private int documentDepth;
+	private int depth;
+	private String name;
+	private String id;
+	private String revision;
+	private int numDocuments;
+
+	public CrudResponseParser() {
+		this.jsonParser = new JSONParser();
+		this.reader = new ChannelBufferReader();
+	}
+
+	/**
+	 * Parses the identifier and revision from the readable bytes of the given
+	 * buffer, which are not consumed.
+	 *
+	 * @param content the JSON of the response
+	 * @param idName the name of the member containing the identifier
+	 * @param revisionName the name of the member containing the revision
+	 * @throws BenchmarkException if the JSON is malformed
+	 */
+	public void parseIdAndRevision(ChannelBuffer content, String idName, String revisionName)
+			throws BenchmarkException {
+		this.idName = idName;
+		this.revisionName = revisionName;
+		this.documentName = null;
+		// Only the members of the top level object are kept.
+		this.documentDepth = 1;
+		parse(content);
+	}
+
+	/**
+	 * Parses the number of documents found from the readable bytes of the given
+	 * buffer, which are not consumed. Each document is the object value of a member
+	 * with the given name, in an object nested at the given depth of objects and
+	 * arrays. A member whose value is not an object, such as {@code null} for a
+	 * document that was deleted, is not counted.
+	 *
+	 * @param content the JSON of the response
+	 * @param documentName the name of each member containing a document
+	 * @param documentDepth the depth of each object containing a document, where the
+	 *        top level object has depth {@code 1}
+	 * @return the number of documents found
+	 * @throws BenchmarkException if the JSON is malformed
+	 */
+	public int parseNumDocuments(ChannelBuffer content, String documentName, int documentDepth)
+			throws BenchmarkException {
+		this.idName = null;
+		this.revisionName = null;
+		this.documentName = documentName;
+		this.documentDepth = documentDepth;
+		numDocuments = 0;
+		parse(content);
+		return numDocuments;
+	}
+
+	private void parse(ChannelBuffer content) throws BenchmarkException {
+		depth = 0;
+		name = null;
+		id = null;
+		revision = null;
+		reader.reset(content);
+		try {
+			jsonParser.parse(reader, this);
+		} catch (IOException e) {
+			throw new BenchmarkException(e);
+		} catch (ParseException e) {
+			throw new BenchmarkException(e);
+		} finally {
+			reader.reset(null);
+		}
+	}
+
+	/**
+	 * Parses the document in the readable bytes of the given buffer, which are not
+	 * consumed.
+	 *
+	 * @param content the JSON of the document
+	 * @return the parsed document
+	 * @throws BenchmarkException if the JSON is malformed or not an object
+	 */
+	public JSONObject parseDocument(ChannelBuffer content) throws BenchmarkException {
+		reader.reset(content);
+		try {
+			Object json = jsonParser.parse(reader);
+			if (!(json instanceof JSONObject)) {
+				throw new BenchmarkException("CRUD response is not an object");
+			}
+			return (JSONObject) json;
+		} catch (IOException e) {
+			throw new BenchmarkException(e);
+		} catch (ParseException e) {
+			throw new BenchmarkException(e);
+		} finally {
+			reader.reset(null);
+		}
+	}
+
+	/**
+	 * @return the identifier parsed by the last call to {@link #parseIdAndRevision},
+	 *         or {@code null} if none
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the revision parsed by the last call to {@link #parseIdAndRevision},
+	 *         or {@code null} if none
+	 */
+	public String getRevision() {
+		return revision;
+	}
+
+	@Override
+	public void startJSON() {
+	}
+
+	@Override
+	public void endJSON() {
+	}
+
+	@Override
+	public boolean startObject() {
+		if ((name != null) && name.equals(documentName)) {
+			numDocuments++;
+		}
+		depth++;
+		return true;
+	}
+
+	@Override
+	public boolean endObject() {
+		depth--;
+		return true;
+	}
+
+	@Override
+	public boolean startObjectEntry(String key) {
+		name = (depth == documentDepth) ? key : null;
+		return true;
+	}
+
+	@Override
+	public boolean endObjectEntry() {
+		name = null;
+		return true;
+	}
+
+	@Override
+	public boolean startArray() {
+		depth++;
+		return true;
+	}
+
+	@Override
+	public boolean endArray() {
+		depth--;
+		return true;
+	}
+
+	@Override
+	public boolean primitive(Object value) {
+		if ((name == null) || (documentName != null) || !(value instanceof String)) {
+			return true;
+		}
+		if (name.equals(idName)) {
+			id = (String) value;
+		} else if (name.equals(revisionName)) {
+			revision = (String) value;
+		}
+		// Stop parsing once both values are found.
+		return (id == null) || (revision == null);
+	}
+}
@@ -0,0 +1,201 @@
+package co.adhoclabs.ironcushion.crud;
+
+import co.adhoclabs.ironcushion.ValueGenerator;
+
+/**
+ * Chooses the document read by a CRUD operation from all documents bulk inserted
+ * by every connection. Documents are numbered as keys in the order they were bulk
+ * inserted, and each key is sampled in constant time without materializing the
+ * keys. A chooser is shared by every connection, and so it has no mutable state,
+ * and each connection samples keys with its own {@link ValueGenerator}.
+ * 
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public abstract class KeyChooser {
+	/**
+	 * An enumeration over all distributions of chosen keys.
+	 */
+	public enum Distribution {
+		SEQUENTIAL,
+		UNIFORM,
+		ZIPFIAN,
+		HOTSPOT,
+		LATEST,
+	}
+	
+	// The number of terms of the zeta function that are summed exactly.
+	private static final int MAX_NUM_ZETA_TERMS = 1000000;
+	// A prime greater than any key, so that multiplying by it permutes the keys.
+	private static final long SCRAMBLE_MULTIPLIER = 2654435761L;
+	
+	protected final int numKeys;
+	
+	private KeyChooser(int numKeys) {
+		this.numKeys = numKeys;
+	}
+	
+	/**
+	 * @return the number of keys that can be chosen
+	 */
+	public int getNumKeys() {
+		return numKeys;
+	}
+	
+	/**
+	 * Chooses the next key.
+	 * 
+	 * @param valueGenerator the generator of random values of the connection
+	 * @return the key, which is {@code >= 0} and less than the number of keys
+	 */
+	public abstract int nextKey(ValueGenerator valueGenerator);
+	
+	/**
+	 * Returns the key at the given rank, so that the most frequently chosen keys are
+	 * spread across all bulk inserts instead of all being in the first.
+	 */
+	protected int scramble(int rank) {
+		return (int) ((rank * SCRAMBLE_MULTIPLIER) % numKeys);
+	}
+	
+	private static double zeta(int n, double theta) {
+		int numTerms = Math.min(n, MAX_NUM_ZETA_TERMS);
+		double sum = 0;
+		for (int i = 1; i <= numTerms; ++i) {
+			sum += 1 / Math.pow(i, theta);
+		}
+		if (numTerms < n) {
+			// Approximate the remaining terms by the integral of x^-theta around them.
+			sum += (Math.pow(n + 0.5, 1 - theta) - Math.pow(numTerms + 0.5, 1 - theta)) / (1 - theta);
+		}
+		return sum;
+	}
+	
+	/**
+	 * Chooses ranks from a Zipfian distribution using the algorithm by Gray et al. in
+	 * "Quickly Generating Billion-Record Synthetic Databases", where the rank
+	 * {@code 0} is the most frequently chosen.
+	 */
+	private static final class ZipfianRanks {
+		private final int numRanks;
+		private final double theta;
+		private final double alpha;
+		private final double zetaN;
+		private final double eta;
+		
+		private ZipfianRanks(int numRanks, double theta) {
+			this.numRanks = numRanks;
+			this.theta = theta;
+			this.alpha = 1 / (1 - theta);
+			this.zetaN = zeta(numRanks, theta);
+			double zeta2 = zeta(2, theta);
+			this.eta = (1 - Math.pow(2.0 / numRanks, 1 - theta)) / (1 - (zeta2 / zetaN));
+		}
+		
+		private int nextRank(ValueGenerator valueGenerator) {
+			double u = valueGenerator.nextDouble();
+			double uz = u * zetaN;
+			if (uz < 1) {
+				return 0;
+			} else if (uz < 1 + Math.pow(0.5, theta)) {
+				return 1;
+			}
+			int rank = (int) (numRanks * Math.pow((eta * u) - eta + 1, alpha));
+			return Math.min(rank, numRanks - 1);
+		}
+	}
+	
+	private static final class UniformKeyChooser extends KeyChooser {
+		private UniformKeyChooser(int numKeys) {
+			super(numKeys);
+		}
+		
+		@Override
+		public int nextKey(ValueGenerator valueGenerator) {
+			return valueGenerator.nextInt(numKeys);
+		}
+	}
+	
+	private static final class ZipfianKeyChooser extends KeyChooser {
+		private final ZipfianRanks zipfianRanks;
+		
+		private ZipfianKeyChooser(int numKeys, double theta) {
+			super(numKeys);
+			
+			this.zipfianRanks = new ZipfianRanks(numKeys, theta);
+		}
+		
+		@Override
+		public int nextKey(ValueGenerator valueGenerator) {
+			return scramble(zipfianRanks.nextRank(valueGenerator));
+		}
+	}
+	
+	private static final class HotspotKeyChooser extends KeyChooser {
+		private final int hotspotOperationsPercent;
+		private final int numHotKeys;
+		
+		private HotspotKeyChooser(int numKeys, int hotspotOperationsPercent, int hotspotKeysPercent) {
+			super(numKeys);
+			
+			this.hotspotOperationsPercent = hotspotOperationsPercent;
+			this.numHotKeys = Math.max(1, (int) (((long) numKeys * hotspotKeysPercent) / 100));
+		}
+		
+		@Override
+		public int nextKey(ValueGenerator valueGenerator) {
+			int rank;
+			if ((numHotKeys == numKeys) || (valueGenerator.nextInt(100) < hotspotOperationsPercent)) {
+				rank = valueGenerator.nextInt(numHotKeys);
+			} else {
+				rank = numHotKeys + valueGenerator.nextInt(numKeys - numHotKeys);
+			}
+			return scramble(rank);
+		}
+	}
+	
+	private static final class LatestKeyChooser extends KeyChooser {
+		private final ZipfianRanks zipfianRanks;
+		
+		private LatestKeyChooser(int numKeys, double theta) {
+			super(numKeys);
+			
+			this.zipfianRanks = new ZipfianRanks(numKeys, theta);
+		}
+		
+		@Override
+		public int nextKey(ValueGenerator valueGenerator) {
+			// The most recently bulk inserted documents are the most frequently chosen.
+			return numKeys - 1 - zipfianRanks.nextRank(valueGenerator);
+		}
+	}
+	
+	/**
+	 * Returns the {@link KeyChooser} for the given distribution.
+	 * 
+	 * @param distribution the distribution of chosen keys
+	 * @param numKeys the number of keys, which must be {@code > 0}
+	 * @param zipfianTheta the skew if the distribution is {@link Distribution#ZIPFIAN}
+	 *        or {@link Distribution#LATEST}
+	 * @param hotspotOperationsPercent the percentage of keys chosen from the hot set
+	 *        if the distribution is {@link Distribution#HOTSPOT}
+	 * @param hotspotKeysPercent the percentage of keys in the hot set if the
+	 *        distribution is {@link Distribution#HOTSPOT}
+	 * @return the chooser of keys, or {@code null} if documents are read sequentially
+	 */
+	public static KeyChooser create(Distribution distribution, int numKeys, double zipfianTheta,
+			int hotspotOperationsPercent, int hotspotKeysPercent) {
+		switch (distribution) {
+		case UNIFORM:
+			return new UniformKeyChooser(numKeys);
+		case ZIPFIAN:
+			return new ZipfianKeyChooser(numKeys, zipfianTheta);
+		case HOTSPOT:
+			return new HotspotKeyChooser(numKeys, hotspotOperationsPercent, hotspotKeysPercent);
+		case LATEST:
+			return new LatestKeyChooser(numKeys, zipfianTheta);
+		default:
+			break;
+		}
+		return null;
+	}
+}
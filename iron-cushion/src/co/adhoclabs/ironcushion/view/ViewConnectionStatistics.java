@@ -0,0 +1,215 @@
+package co.adhoclabs.ironcushion.view;
+
+import co.adhoclabs.ironcushion.AbstractConnectionStatistics;
+import co.adhoclabs.ironcushion.LatencyHistogram;
+import co.adhoclabs.ironcushion.Timer;
+
+/**
+ * Statistics for a connection performing view queries.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class ViewConnectionStatistics extends AbstractConnectionStatistics {
+	private final Timer remoteProcessingTimer;
+	private final LatencyHistogram[] latencyHistograms;
+	private long numRows;
+	private long indexBuildTime;
+	private long numIndexedRows;
+
+	public ViewConnectionStatistics() {
+		super();
+		remoteProcessingTimer = new Timer();
+		latencyHistograms = new LatencyHistogram[ViewQueries.Type.values().length];
+		for (int i = 0; i < latencyHistograms.length; ++i) {
+			latencyHistograms[i] = new LatencyHistogram();
+		}
+		numIndexedRows = -1;
+	}
+
+	/**
+	 * An enumeration over all timers.
+	 */
+	public enum RunningConnectionTimer {
+		LOCAL_PROCESSING,
+		SEND_DATA,
+		REMOTE_PROCESSING,
+		RECONNECT,
+	}
+
+	private RunningConnectionTimer runningTimer;
+
+	/**
+	 * @return the currently running timer
+	 */
+	public RunningConnectionTimer getRunningConnectionTimer() {
+		return runningTimer;
+	}
+
+	/**
+	 * Stops whichever timer is running.
+	 */
+	@Override
+	public void stop() {
+		if (runningTimer != null) {
+			switch (runningTimer) {
+			case LOCAL_PROCESSING:
+				localProcessingTimer.stop();
+				break;
+			case SEND_DATA:
+				sendDataTimer.stop();
+				break;
+			case REMOTE_PROCESSING:
+				remoteProcessingTimer.stop();
+				break;
+			case RECONNECT:
+				reconnectTimer.stop();
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	@Override
+	public void startLocalProcessing() {
+		if (runningTimer == RunningConnectionTimer.LOCAL_PROCESSING) {
+			return;
+		}
+		stop();
+		localProcessingTimer.start();
+		runningTimer = RunningConnectionTimer.LOCAL_PROCESSING;
+	}
+
+	@Override
+	public void startSendData() {
+		if (runningTimer == RunningConnectionTimer.SEND_DATA) {
+			return;
+		}
+		stop();
+		sendDataTimer.start();
+		runningTimer = RunningConnectionTimer.SEND_DATA;
+	}
+
+	/**
+	 * Starts the timer for remote processing of queries.
+	 */
+	public void startRemoteProcessing() {
+		if (runningTimer == RunningConnectionTimer.REMOTE_PROCESSING) {
+			return;
+		}
+		stop();
+		remoteProcessingTimer.start();
+		runningTimer = RunningConnectionTimer.REMOTE_PROCESSING;
+	}
+
+	/**
+	 * @return the number of milliseconds spent on remote processing of queries
+	 */
+	public long getRemoteProcessingTimeMillis() {
+		return remoteProcessingTimer.getTotalTimeMillis();
+	}
+
+	@Override
+	public void startReconnect() {
+		if (runningTimer == RunningConnectionTimer.RECONNECT) {
+			return;
+		}
+		stop();
+		reconnectTimer.start();
+		runningTimer = RunningConnectionTimer.RECONNECT;
+	}
+
+	/**
+	 * Records the time between sending a query and receiving its response.
+	 *
+	 * @param type the type of query
+	 * @param elapsedTime the number of nanoseconds elapsed
+	 */
+	public void recordLatency(ViewQueries.Type type, long elapsedTime) {
+		latencyHistograms[type.ordinal()].record(elapsedTime);
+	}
+
+	/**
+	 * @param type the type of query
+	 * @return the histogram of times between sending queries of the given type and
+	 *         receiving their responses
+	 */
+	public LatencyHistogram getLatencyHistogram(ViewQueries.Type type) {
+		return latencyHistograms[type.ordinal()];
+	}
+
+	/**
+	 * Records that a query returned the given number of rows.
+	 *
+	 * @param numRows the number of rows returned
+	 */
+	public void returnedRows(int numRows) {
+		this.numRows += numRows;
+	}
+
+	/**
+	 * @return the number of rows returned by queries
+	 */
+	public long getNumRows() {
+		return numRows;
+	}
+
+	/**
+	 * Records that the index of the design document was built. Unlike other
+	 * statistics, this is not discarded by a warm-up, because the index is only
+	 * built once.
+	 *
+	 * @param elapsedTime the number of nanoseconds taken to build the index
+	 * @param numIndexedRows the number of rows in the view queried to build the index
+	 */
+	public void builtIndex(long elapsedTime, long numIndexedRows) {
+		this.indexBuildTime = elapsedTime;
+		this.numIndexedRows = numIndexedRows;
+	}
+
+	/**
+	 * @return {@code true} if this connection built the index of the design document
+	 */
+	public boolean hasBuiltIndex() {
+		return numIndexedRows >= 0;
+	}
+
+	/**
+	 * @return the number of nanoseconds taken to build the index
+	 */
+	public long getIndexBuildTime() {
+		return indexBuildTime;
+	}
+
+	/**
+	 * @return the number of rows in the view queried to build the index
+	 */
+	public long getNumIndexedRows() {
+		return numIndexedRows;
+	}
+
+	@Override
+	public void addLatencies(LatencyHistogram histogram) {
+		for (LatencyHistogram latencyHistogram : latencyHistograms) {
+			histogram.add(latencyHistogram);
+		}
+	}
+
+	@Override
+	protected void reset(long resetTime) {
+		super.reset(resetTime);
+		remoteProcessingTimer.reset(resetTime);
+		for (LatencyHistogram latencyHistogram : latencyHistograms) {
+			latencyHistogram.reset();
+		}
+		numRows = 0;
+	}
+
+	@Override
+	public long getTotalTimeMillis() {
+		return (localProcessingTimer.getTotalTimeMillis() +
+				sendDataTimer.getTotalTimeMillis() +
+				reconnectTimer.getTotalTimeMillis() +
+				remoteProcessingTimer.getTotalTimeMillis());
+	}
+}
@@ -0,0 +1,165 @@
+package co.adhoclabs.ironcushion.view;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+import co.adhoclabs.ironcushion.BenchmarkException;
+import co.adhoclabs.ironcushion.DocumentSchema;
+
+/**
+ * The design document whose views are queried by the benchmark, derived from the
+ * fields of a {@link DocumentSchema}. Each indexed field has a view that emits its
+ * value as the key, for key lookups and ranges. Another view emits the values of
+ * all indexed fields as an array key, and counts its rows with the built-in
+ * {@code _count} reduce function, so that each group level groups by one more
+ * field. Boolean fields are first in the array key, so that the lowest group
+ * levels have the fewest groups.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class ViewDesign {
+	/**
+	 * The identifier of the design document.
+	 */
+	public static final String DESIGN_DOCUMENT_ID = "_design/iron-cushion";
+
+	private static final String FIELD_VIEW_PREFIX = "by_";
+	private static final String FIELDS_VIEW_NAME = "by_fields";
+
+	private final List<DocumentSchema.Field> fields;
+	private final List<String> fieldViewNames;
+	private final String fieldsViewName;
+
+	/**
+	 * Creates the design document for the given schema.
+	 *
+	 * @param schema the schema of all documents
+	 * @param maxNumFields the largest number of fields to index
+	 * @throws BenchmarkException if no field of the schema can be indexed
+	 */
+	public ViewDesign(DocumentSchema schema, int maxNumFields) throws BenchmarkException {
+		List<DocumentSchema.Field> schemaFields = schema.getFields();
+		if (schemaFields.isEmpty()) {
+			throw new BenchmarkException("Schema has no string, boolean, integer, or float field to index");
+		}
+		// Index the first fields of the schema, with the boolean fields first.
+		schemaFields = schemaFields.subList(0, Math.min(maxNumFields, schemaFields.size()));
+		fields = new ArrayList<DocumentSchema.Field>(schemaFields.size());
+		for (DocumentSchema.Field field : schemaFields) {
+			if (field.isBoolean()) {
+				fields.add(field);
+			}
+		}
+		for (DocumentSchema.Field field : schemaFields) {
+			if (!field.isBoolean()) {
+				fields.add(field);
+			}
+		}
+
+		Set<String> viewNames = new HashSet<String>();
+		fieldsViewName = FIELDS_VIEW_NAME;
+		viewNames.add(fieldsViewName);
+		fieldViewNames = new ArrayList<String>(fields.size());
+		for (DocumentSchema.Field field : fields) {
+			// Keep view names free of characters that must be escaped in a path.
+			String viewName = FIELD_VIEW_PREFIX + field.getPath().replaceAll("[^A-Za-z0-9_]", "_");
+			for (int i = 2; viewNames.contains(viewName); ++i) {
+				viewName = FIELD_VIEW_PREFIX + field.getPath().replaceAll("[^A-Za-z0-9_]", "_") + "_" + i;
+			}
+			viewNames.add(viewName);
+			fieldViewNames.add(viewName);
+		}
+	}
+
+	private static String getValueExpression(DocumentSchema.Field field) {
+		// Every document conforms to the schema, so each object containing the field exists.
+		StringBuilder sb = new StringBuilder("doc");
+		for (String name : field.getNames()) {
+			sb.append('[').append(JSONValue.toJSONString(name)).append(']');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the JSON of the design document
+	 */
+	@SuppressWarnings("unchecked")
+	public String getDesignDocument() {
+		JSONObject views = new JSONObject();
+		StringBuilder keyExpression = new StringBuilder();
+		for (int i = 0; i < fields.size(); ++i) {
+			String valueExpression = getValueExpression(fields.get(i));
+			JSONObject fieldView = new JSONObject();
+			fieldView.put("map", "function(doc) { emit(" + valueExpression + ", null); }");
+			views.put(fieldViewNames.get(i), fieldView);
+
+			if (i > 0) {
+				keyExpression.append(", ");
+			}
+			keyExpression.append(valueExpression);
+		}
+		JSONObject fieldsView = new JSONObject();
+		fieldsView.put("map", "function(doc) { emit([" + keyExpression + "], null); }");
+		fieldsView.put("reduce", "_count");
+		views.put(fieldsViewName, fieldsView);
+
+		JSONObject designDocument = new JSONObject();
+		designDocument.put("_id", DESIGN_DOCUMENT_ID);
+		designDocument.put("language", "javascript");
+		designDocument.put("views", views);
+		return designDocument.toString();
+	}
+
+	/**
+	 * @return the number of indexed fields
+	 */
+	public int getNumFields() {
+		return fields.size();
+	}
+
+	/**
+	 * @param fieldIndex the index of the field
+	 * @return the indexed field
+	 */
+	public DocumentSchema.Field getField(int fieldIndex) {
+		return fields.get(fieldIndex);
+	}
+
+	/**
+	 * @param fieldIndex the index of the field
+	 * @return the name of the view that emits the value of the field as the key
+	 */
+	public String getFieldViewName(int fieldIndex) {
+		return fieldViewNames.get(fieldIndex);
+	}
+
+	/**
+	 * @return the name of the view that emits the values of all indexed fields as
+	 *         the key, and that has a reduce function
+	 */
+	public String getFieldsViewName() {
+		return fieldsViewName;
+	}
+
+	/**
+	 * @return the number of views in the design document
+	 */
+	public int getNumViews() {
+		return fieldViewNames.size() + 1;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(DESIGN_DOCUMENT_ID).append(" with views ");
+		for (int i = 0; i < fields.size(); ++i) {
+			sb.append(fieldViewNames.get(i)).append(" (").append(fields.get(i)).append("), ");
+		}
+		sb.append(fieldsViewName).append(" (").append(fields.size()).append(" fields, _count)");
+		return sb.toString();
+	}
+}
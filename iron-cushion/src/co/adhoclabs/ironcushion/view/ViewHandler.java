@@ -0,0 +1,244 @@
+package co.adhoclabs.ironcushion.view;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.util.CharsetUtil;
+
+import co.adhoclabs.ironcushion.AbstractBenchmarkHandler;
+import co.adhoclabs.ironcushion.ContentCompressor;
+import co.adhoclabs.ironcushion.HttpRequestTemplate;
+import co.adhoclabs.ironcushion.Reconnector;
+import co.adhoclabs.ironcushion.view.ViewConnectionStatistics.RunningConnectionTimer;
+
+/**
+ * The {@link SimpleChannelUpstreamHandler} implementation for use in the view
+ * query {@link ChannelPipeline}. Each connection sends its next query once the
+ * response to its last query is received.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class ViewHandler extends AbstractBenchmarkHandler {
+	private final ViewConnectionStatistics connectionStatistics;
+	private final ViewQueries viewQueries;
+	private final HttpRequestTemplate installRequestTemplate;
+	private final HttpRequestTemplate queryRequestTemplate;
+	private final ContentCompressor contentCompressor;
+
+	private final SendDataChannelFuture sendDataChannelFuture;
+	private final ViewResponseParser responseParser;
+
+	// The query that was sent but whose response has not been received.
+	private ViewQueries.Type pendingQuery;
+	private long pendingQueryStartTime;
+	// A chunked response, such as that of most queries, whose chunks are combined.
+	private HttpResponse chunkedResponse;
+	private ChannelBuffer chunkedContent;
+	private int viewQueriesStarted;
+
+	/**
+	 * Creates a handler that performs view queries. If {@code contentCompressor} is
+	 * not {@code null}, then the design document is compressed before it is sent.
+	 *
+	 * @param connectionNum the number of this connection
+	 * @param connectionStatistics the statistics for this connection
+	 * @param viewQueries the view queries to perform
+	 * @param databasePath the path of the database
+	 * @param contentCompressor compresses the design document, or {@code null}
+	 * @param reconnector the reconnector if this connection fails
+	 * @param countDownLatch the latch to count down once all queries are performed
+	 */
+	public ViewHandler(int connectionNum, ViewConnectionStatistics connectionStatistics,
+			ViewQueries viewQueries, String databasePath, ContentCompressor contentCompressor,
+			Reconnector reconnector, CountDownLatch countDownLatch) {
+		super(connectionNum, reconnector, countDownLatch);
+
+		this.connectionStatistics = connectionStatistics;
+		this.viewQueries = viewQueries;
+		ContentCompressor.Encoding encoding = (contentCompressor != null) ? contentCompressor.getEncoding() : null;
+		this.installRequestTemplate = new HttpRequestTemplate(HttpMethod.PUT,
+				databasePath + "/" + ViewDesign.DESIGN_DOCUMENT_ID, true, encoding);
+		// Each path is the path of the views followed by the view name and query parameters.
+		this.queryRequestTemplate = new HttpRequestTemplate(HttpMethod.GET,
+				databasePath + "/" + ViewDesign.DESIGN_DOCUMENT_ID + "/_view/", false, encoding);
+		this.contentCompressor = contentCompressor;
+
+		this.sendDataChannelFuture = new SendDataChannelFuture();
+		this.responseParser = new ViewResponseParser();
+
+		this.viewQueriesStarted = 0;
+	}
+
+	/**
+	 * The {@link ChannelFutureListener} called after a query is sent.
+	 */
+	private final class SendDataChannelFuture implements ChannelFutureListener {
+		@Override
+		public void operationComplete(ChannelFuture channelFuture) throws Exception {
+			synchronized (ViewHandler.this) {
+				// Guard against starting REMOTE_PROCESSING after a response is received.
+				if (connectionStatistics.getRunningConnectionTimer() == RunningConnectionTimer.SEND_DATA) {
+					connectionStatistics.startRemoteProcessing();
+				}
+			}
+		}
+	}
+
+	private void performNextQuery(Channel channel) {
+		connectionStatistics.startLocalProcessing();
+
+		ViewQueries.Type type = viewQueries.getQuery(viewQueriesStarted);
+		ChannelBuffer requestBuffer;
+		if (type == ViewQueries.Type.INSTALL) {
+			ChannelBuffer contentBuffer = ChannelBuffers.copiedBuffer(
+					viewQueries.getViewDesign().getDesignDocument(), CharsetUtil.UTF_8);
+			connectionStatistics.sentJsonBytes(contentBuffer.readableBytes());
+			if (contentCompressor != null) {
+				contentBuffer = contentCompressor.compress(contentBuffer, connectionStatistics);
+			}
+			requestBuffer = installRequestTemplate.encode(null, null, contentBuffer);
+		} else {
+			requestBuffer = queryRequestTemplate.encode(viewQueries.getNextQuery(type), null, null);
+		}
+		pendingQuery = type;
+		pendingQueryStartTime = System.nanoTime();
+		viewQueriesStarted++;
+
+		connectionStatistics.startSendData();
+		connectionStatistics.getDatabaseNode().sentRequest();
+		ChannelFuture channelFuture = channel.write(requestBuffer);
+		channelFuture.addListener(sendDataChannelFuture);
+	}
+
+	private void performNextQueryOrFinish(Channel channel) {
+		if (!hasRemainingOperations()) {
+			// There are no more view queries to perform.
+			finish();
+			return;
+		}
+		performNextQuery(channel);
+	}
+
+	private ChannelBuffer getJsonContent(HttpResponse response) {
+		ChannelBuffer content = response.getContent();
+		connectionStatistics.receivedJsonBytes(content.readableBytes());
+		return content;
+	}
+
+	@Override
+	public synchronized void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+		HttpResponse response;
+		if (chunkedResponse == null) {
+			response = (HttpResponse) e.getMessage();
+			if (response.isChunked()) {
+				// Handle the response once all of its chunks are received.
+				chunkedResponse = response;
+				chunkedContent = ChannelBuffers.dynamicBuffer();
+				return;
+			}
+		} else {
+			HttpChunk chunk = (HttpChunk) e.getMessage();
+			if (!chunk.isLast()) {
+				chunkedContent.writeBytes(chunk.getContent());
+				return;
+			}
+			response = chunkedResponse;
+			// The response is not chunked only if it has no Transfer-Encoding header.
+			response.removeHeader(HttpHeaders.Names.TRANSFER_ENCODING);
+			response.setChunked(false);
+			response.setContent(chunkedContent);
+			chunkedResponse = null;
+			chunkedContent = null;
+		}
+
+		long receivedTime = System.nanoTime();
+		connectionStatistics.endWarmUpIfElapsed();
+		connectionStatistics.startLocalProcessing();
+
+		Channel channel = e.getChannel();
+		ViewQueries.Type type = pendingQuery;
+		pendingQuery = null;
+		connectionStatistics.getDatabaseNode().receivedResponse();
+		receivedResponse();
+		if (connectionStatistics.isPastDeadline(receivedTime)) {
+			// Exclude a query that completed after the benchmark step ended.
+			connectionStatistics.receivedJsonBytes(response.getContent().readableBytes());
+		} else if ((response.getStatus().getCode() / 100) != 2) {
+			connectionStatistics.receivedJsonBytes(response.getContent().readableBytes());
+			connectionStatistics.failedOperations(1);
+			if (type == ViewQueries.Type.INSTALL) {
+				// The index cannot be built without the design document.
+				System.err.println("Could not install " + ViewDesign.DESIGN_DOCUMENT_ID + ": " +
+						response.getStatus());
+				failRemainingOperations();
+			}
+		} else {
+			long elapsedTime = receivedTime - pendingQueryStartTime;
+			connectionStatistics.recordLatency(type, elapsedTime);
+			ChannelBuffer content = getJsonContent(response);
+			if (type == ViewQueries.Type.BUILD) {
+				responseParser.parse(content);
+				connectionStatistics.builtIndex(elapsedTime, Math.max(responseParser.getTotalRows(), 0));
+			} else if (type != ViewQueries.Type.INSTALL) {
+				responseParser.parse(content);
+				connectionStatistics.returnedRows(responseParser.getNumRows());
+			}
+		}
+
+		performNextQueryOrFinish(channel);
+	}
+
+	@Override
+	protected ViewConnectionStatistics getConnectionStatistics() {
+		return connectionStatistics;
+	}
+
+	@Override
+	protected void failSentOperations() {
+		chunkedResponse = null;
+		chunkedContent = null;
+		if (pendingQuery != null) {
+			connectionStatistics.getDatabaseNode().receivedResponse();
+			connectionStatistics.failedOperations(1);
+			pendingQuery = null;
+		}
+	}
+
+	@Override
+	protected boolean hasRemainingOperations() {
+		return (viewQueriesStarted < viewQueries.size()) &&
+				!connectionStatistics.isPastDeadline(System.nanoTime());
+	}
+
+	@Override
+	protected void failRemainingOperations() {
+		if (!connectionStatistics.hasDeadline()) {
+			connectionStatistics.failedOperations(viewQueries.size() - viewQueriesStarted);
+		}
+		viewQueriesStarted = viewQueries.size();
+	}
+
+	@Override
+	public synchronized void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+		super.channelClosed(ctx, e);
+	}
+
+	@Override
+	public synchronized void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) {
+		// Immediately perform the next view query upon connecting.
+		performNextQueryOrFinish(e.getChannel());
+	}
+}
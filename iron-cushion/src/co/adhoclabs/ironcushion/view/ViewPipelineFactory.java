@@ -0,0 +1,79 @@
+package co.adhoclabs.ironcushion.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.handler.codec.http.HttpResponseDecoder;
+
+import co.adhoclabs.ironcushion.AbstractBenchmarkPipelineFactory;
+import co.adhoclabs.ironcushion.ContentCompressor;
+import co.adhoclabs.ironcushion.StatisticsContentDecompressor;
+
+/**
+ * The {@link ChannelPipelineFactory} for connections that perform view queries.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class ViewPipelineFactory extends AbstractBenchmarkPipelineFactory {
+	private final List<ViewConnectionStatistics> allConnectionStatistics;
+	private final List<ViewQueries> allViewQueries;
+	private final String databasePath;
+	private final ContentCompressor contentCompressor;
+	private final List<ViewHandler> allHandlers;
+
+	public ViewPipelineFactory(int numConnections, List<ViewQueries> allViewQueries,
+			String databasePath, ContentCompressor contentCompressor) {
+		super(numConnections);
+
+		this.allConnectionStatistics = new ArrayList<ViewConnectionStatistics>(numConnections);
+		for (int i = 0; i < numConnections; ++i) {
+			this.allConnectionStatistics.add(new ViewConnectionStatistics());
+		}
+		this.allViewQueries = allViewQueries;
+		this.databasePath = databasePath;
+		this.contentCompressor = contentCompressor;
+		this.allHandlers = new ArrayList<ViewHandler>(numConnections);
+		for (int i = 0; i < numConnections; ++i) {
+			allHandlers.add(null);
+		}
+	}
+
+	/**
+	 * @return the {@link ViewConnectionStatistics} used by connections
+	 */
+	@Override
+	public List<ViewConnectionStatistics> getAllConnectionStatistics() {
+		return allConnectionStatistics;
+	}
+
+	@Override
+	public ViewHandler getHandler(int connectionNum) {
+		ViewHandler handler = allHandlers.get(connectionNum);
+		if (handler == null) {
+			ViewConnectionStatistics connectionStatistics = allConnectionStatistics.get(connectionNum);
+			ViewQueries viewQueries = allViewQueries.get(connectionNum);
+			handler = new ViewHandler(connectionNum, connectionStatistics, viewQueries, databasePath,
+					contentCompressor, reconnector, countDownLatch);
+			allHandlers.set(connectionNum, handler);
+		}
+		return handler;
+	}
+
+	@Override
+	public ChannelPipeline getPipeline(int connectionNum) throws Exception {
+		ChannelPipeline pipeline = Channels.pipeline(
+				// Requests are encoded by the handler.
+				new HttpResponseDecoder(),
+				getHandler(connectionNum)
+				);
+		if (contentCompressor != null) {
+			// Decompress responses before they reach the handler.
+			pipeline.addBefore(pipeline.getContext(ViewHandler.class).getName(),
+					"decompressor", new StatisticsContentDecompressor());
+		}
+		return pipeline;
+	}
+}
@@ -0,0 +1,193 @@
+package co.adhoclabs.ironcushion.view;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.simple.JSONValue;
+
+import co.adhoclabs.ironcushion.ParsedArguments;
+import co.adhoclabs.ironcushion.ValueGenerator;
+
+/**
+ * Specifies the queries of the views of a {@link ViewDesign} to be performed by one
+ * connection. The keys of each query are generated as the values of new documents
+ * are, and so a key lookup may match no rows. Every query returns at most the same
+ * number of rows, so that a range starts at its key and ends after that many rows.
+ *
+ * Before the views are queried, one connection installs the design document and
+ * then builds its index with a query that returns no rows, while the other
+ * connections have no queries.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class ViewQueries {
+	/**
+	 * An enumeration over all view queries.
+	 */
+	public enum Type {
+		/**
+		 * Installs the design document.
+		 */
+		INSTALL,
+		/**
+		 * Waits for the index of the design document to be built.
+		 */
+		BUILD,
+		/**
+		 * Looks up a key of the view of one field.
+		 */
+		KEY,
+		/**
+		 * Returns the rows of the view of one field starting at a key.
+		 */
+		RANGE,
+		/**
+		 * Counts the rows of the view of all fields, grouped by a random number of fields.
+		 */
+		REDUCE,
+		/**
+		 * Looks up a key of the view of one field with {@code update=false}, so that the
+		 * index is not brought up to date first.
+		 */
+		STALE_KEY,
+	}
+
+	private final Type[] queries;
+	private final boolean unbounded;
+	private final ViewDesign viewDesign;
+	private final ValueGenerator valueGenerator;
+	private final int limit;
+
+	private ViewQueries(Type[] queries, boolean unbounded, ViewDesign viewDesign,
+			ValueGenerator valueGenerator, int limit) {
+		this.queries = queries;
+		this.unbounded = unbounded;
+		this.viewDesign = viewDesign;
+		this.valueGenerator = valueGenerator;
+		this.limit = limit;
+	}
+
+	/**
+	 * Creates the queries that install the design document and build its index, if
+	 * the connection with the given number is the first.
+	 *
+	 * @param connectionNum the number of the connection
+	 * @param viewDesign the design document
+	 * @return the queries
+	 */
+	public static ViewQueries createIndexQueries(int connectionNum, ViewDesign viewDesign) {
+		Type[] queries = (connectionNum == 0) ? new Type[] { Type.INSTALL, Type.BUILD } : new Type[0];
+		return new ViewQueries(queries, false, viewDesign, null, 0);
+	}
+
+	private static void shuffle(ValueGenerator valueGenerator, List<Type> queries) {
+		for (int i = queries.size(); i > 1; --i) {
+			int srcIndex = valueGenerator.nextInt(i);
+			int dstIndex = i - 1;
+			queries.set(srcIndex, queries.set(dstIndex, queries.get(srcIndex)));
+		}
+	}
+
+	/**
+	 * Creates the view queries to be performed by a connection, in the proportions
+	 * given by their weights. If a duration is given, then the queries repeat until
+	 * the benchmark step ends.
+	 *
+	 * @param viewDesign the design document
+	 * @param valueGenerator the generator of keys
+	 * @param parsedArguments the parsed command line arguments
+	 * @return the queries
+	 */
+	public static ViewQueries createViewQueries(ViewDesign viewDesign, ValueGenerator valueGenerator,
+			ParsedArguments parsedArguments) {
+		double totalWeight = parsedArguments.keyQueryWeight +
+				parsedArguments.rangeQueryWeight +
+				parsedArguments.reduceQueryWeight +
+				parsedArguments.staleKeyQueryWeight;
+		int numQueries = parsedArguments.numViewQueries;
+		int numRangeQueries = (int) ((parsedArguments.rangeQueryWeight / totalWeight) * numQueries);
+		int numReduceQueries = (int) ((parsedArguments.reduceQueryWeight / totalWeight) * numQueries);
+		int numStaleKeyQueries = (int) ((parsedArguments.staleKeyQueryWeight / totalWeight) * numQueries);
+		// The number of KEY queries may be subject to rounding.
+		int numKeyQueries = numQueries - (numRangeQueries + numReduceQueries + numStaleKeyQueries);
+
+		Type[] queries = new Type[numQueries];
+		int endIndex = 0;
+		Arrays.fill(queries, endIndex, endIndex += numKeyQueries, Type.KEY);
+		Arrays.fill(queries, endIndex, endIndex += numRangeQueries, Type.RANGE);
+		Arrays.fill(queries, endIndex, endIndex += numReduceQueries, Type.REDUCE);
+		Arrays.fill(queries, endIndex, endIndex += numStaleKeyQueries, Type.STALE_KEY);
+		shuffle(valueGenerator, Arrays.asList(queries));
+		return new ViewQueries(queries, parsedArguments.durationSecs > 0, viewDesign,
+				valueGenerator, parsedArguments.viewQueryLimit);
+	}
+
+	/**
+	 * @return the design document whose views are queried
+	 */
+	public ViewDesign getViewDesign() {
+		return viewDesign;
+	}
+
+	/**
+	 * @param queryIndex the index of the query
+	 * @return the type of the query
+	 */
+	public Type getQuery(int queryIndex) {
+		// If unbounded, then repeat the queries until the benchmark step ends.
+		return queries[queryIndex % queries.length];
+	}
+
+	/**
+	 * @return the number of queries, or {@link Integer#MAX_VALUE} if unbounded
+	 */
+	public int size() {
+		if (unbounded && (queries.length > 0)) {
+			return Integer.MAX_VALUE;
+		}
+		return queries.length;
+	}
+
+	private static String encodeKey(Object key) {
+		try {
+			return URLEncoder.encode(JSONValue.toJSONString(key), "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// Every implementation of Java supports UTF-8.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the name of the view and the query parameters of a new query of the
+	 * given type, which follow the path of the views of the design document.
+	 *
+	 * @param type the type of query
+	 * @return the end of the path of the query
+	 */
+	public String getNextQuery(Type type) {
+		StringBuilder sb = new StringBuilder();
+		if (type == Type.BUILD) {
+			// Build the index of every view in the design document, but return no rows.
+			sb.append(viewDesign.getFieldsViewName()).append("?reduce=false&limit=0");
+			return sb.toString();
+		} else if (type == Type.REDUCE) {
+			// A group level of 0 reduces all rows to one.
+			int groupLevel = valueGenerator.nextInt(viewDesign.getNumFields() + 1);
+			sb.append(viewDesign.getFieldsViewName()).append("?group_level=").append(groupLevel);
+			sb.append("&limit=").append(limit);
+			return sb.toString();
+		}
+
+		int fieldIndex = valueGenerator.nextInt(viewDesign.getNumFields());
+		Object key = viewDesign.getField(fieldIndex).getNewValue(valueGenerator);
+		sb.append(viewDesign.getFieldViewName(fieldIndex));
+		sb.append((type == Type.RANGE) ? "?startkey=" : "?key=").append(encodeKey(key));
+		sb.append("&limit=").append(limit);
+		if (type == Type.STALE_KEY) {
+			sb.append("&update=false");
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,140 @@
+package co.adhoclabs.ironcushion.view;
+
+import java.io.IOException;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import co.adhoclabs.ironcushion.BenchmarkException;
+import co.adhoclabs.ironcushion.ChannelBufferReader;
+
+/**
+ * Parses the responses to view queries of one connection. Each response is
+ * streamed through a {@link ContentHandler} that only counts the rows, and keeps
+ * the total number of rows in the view if present, without creating an object for
+ * any row. The bytes of each response are read directly from its
+ * {@link ChannelBuffer}, and the same {@link JSONParser} is reused for every
+ * response.
+ *
+ * @author Michael Parker (michael.g.parker@gmail.com)
+ */
+public class ViewResponseParser implements ContentHandler {
+	// Each row is an object in the array {"rows":[...]}.
+	private static final int ROW_DEPTH = 2;
+
+	private final JSONParser jsonParser;
+	private final ChannelBufferReader reader;
+
+	private int depth;
+	private boolean inRows;
+	private String name;
+	private int numRows;
+	private long totalRows;
+
+	public ViewResponseParser() {
+		this.jsonParser = new JSONParser();
+		this.reader = new ChannelBufferReader();
+	}
+
+	/**
+	 * Parses the readable bytes of the given buffer, which are not consumed.
+	 *
+	 * @param content the JSON of the response
+	 * @throws BenchmarkException if the JSON is malformed
+	 */
+	public void parse(ChannelBuffer content) throws BenchmarkException {
+		depth = 0;
+		inRows = false;
+		name = null;
+		numRows = 0;
+		totalRows = -1;
+		reader.reset(content);
+		try {
+			jsonParser.parse(reader, this);
+		} catch (IOException e) {
+			throw new BenchmarkException(e);
+		} catch (ParseException e) {
+			throw new BenchmarkException(e);
+		} finally {
+			reader.reset(null);
+		}
+	}
+
+	/**
+	 * @return the number of rows parsed by the last call to {@link #parse}
+	 */
+	public int getNumRows() {
+		return numRows;
+	}
+
+	/**
+	 * @return the total number of rows in the view parsed by the last call to
+	 *         {@link #parse}, or {@code -1} if none, such as for a reduce query
+	 */
+	public long getTotalRows() {
+		return totalRows;
+	}
+
+	@Override
+	public void startJSON() {
+	}
+
+	@Override
+	public void endJSON() {
+	}
+
+	@Override
+	public boolean startObject() {
+		if (inRows && (depth == ROW_DEPTH)) {
+			numRows++;
+		}
+		depth++;
+		return true;
+	}
+
+	@Override
+	public boolean endObject() {
+		depth--;
+		return true;
+	}
+
+	@Override
+	public boolean startObjectEntry(String key) {
+		name = (depth == 1) ? key : null;
+		return true;
+	}
+
+	@Override
+	public boolean endObjectEntry() {
+		name = null;
+		return true;
+	}
+
+	@Override
+	public boolean startArray() {
+		if ((depth == 1) && "rows".equals(name)) {
+			inRows = true;
+		}
+		depth++;
+		return true;
+	}
+
+	@Override
+	public boolean endArray() {
+		depth--;
+		if (depth == 1) {
+			inRows = false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean primitive(Object value) {
+		if ("total_rows".equals(name) && (value instanceof Number)) {
+			totalRows = ((Number) value).longValue();
+		}
+		return true;
+	}
+}